@@ -2,11 +2,22 @@ package com.aichat.foundation;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.r2dbc.R2dbcDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.r2dbc.R2dbcRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
 
-@SpringBootApplication
+// R2DBC is only set up by ReactivePersistenceConfig in the reactive profile; left to
+// auto-configuration it would replace the DataSource and JPA transaction manager everywhere
+@SpringBootApplication(exclude = {
+    R2dbcAutoConfiguration.class,
+    R2dbcTransactionManagerAutoConfiguration.class,
+    R2dbcDataAutoConfiguration.class,
+    R2dbcRepositoriesAutoConfiguration.class
+})
 public class AiChatFoundationApplication {
 
     public static void main(String[] args) {
         SpringApplication.run(AiChatFoundationApplication.class, args);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,184 @@
+package com.aichat.foundation.client;
+
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Request body for multimodal generate calls that never materialises the image on the heap.
+ *
+ * The JSON envelope (model, prompt, options) is serialised up front, and each image is
+ * base64-encoded straight from its source (a local file or a blob store object) into the
+ * outgoing request through a fixed-size buffer. Images are opened one at a time as the body
+ * is written, so peak memory per request is constant regardless of image size or count, and
+ * the exact Content-Length is known before the first byte is sent.
+ */
+final class MultimodalBodyPublisher {
+
+    /** Raw bytes read per chunk; a multiple of 3 so chunks encode without padding */
+    private static final int READ_CHUNK = 3 * 16 * 1024;
+
+    private static final byte[] IMAGES_OPEN = ",\"images\":[\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IMAGES_SEPARATOR = "\",\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IMAGES_CLOSE = "\"]}".getBytes(StandardCharsets.US_ASCII);
+
+    private MultimodalBodyPublisher() {}
+
+    /**
+     * Build a publisher for {@code envelope} (a serialised JSON object) with the images
+     * appended, in order, as its {@code images} field
+     */
+    static HttpRequest.BodyPublisher of(byte[] envelope, List<? extends Resource> images) throws IOException {
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("At least one image is required");
+        }
+        byte[] head = openEnvelope(envelope);
+        long contentLength = head.length + IMAGES_OPEN.length + IMAGES_CLOSE.length
+            + (long) IMAGES_SEPARATOR.length * (images.size() - 1);
+        for (Resource image : images) {
+            contentLength += encodedLength(image.contentLength());
+        }
+
+        List<Resource> parts = List.copyOf(images);
+        return HttpRequest.BodyPublishers.fromPublisher(
+            HttpRequest.BodyPublishers.ofInputStream(() -> openBody(head, parts)),
+            contentLength
+        );
+    }
+
+    /**
+     * Length of the base64 encoding of {@code size} bytes, including padding
+     */
+    static long encodedLength(long size) {
+        return 4 * ((size + 2) / 3);
+    }
+
+    /**
+     * Strip the closing brace of a JSON object so more fields can be appended
+     */
+    private static byte[] openEnvelope(byte[] envelope) {
+        int end = envelope.length - 1;
+        while (end >= 0 && Character.isWhitespace(envelope[end])) {
+            end--;
+        }
+        if (end < 0 || envelope[end] != '}') {
+            throw new IllegalArgumentException("Request envelope must be a JSON object");
+        }
+        byte[] head = new byte[end];
+        System.arraycopy(envelope, 0, head, 0, end);
+        return head;
+    }
+
+    private static InputStream openBody(byte[] head, List<Resource> images) {
+        List<Supplier<InputStream>> parts = new ArrayList<>();
+        parts.add(() -> new ByteArrayInputStream(head));
+        parts.add(() -> new ByteArrayInputStream(IMAGES_OPEN));
+        for (int i = 0; i < images.size(); i++) {
+            if (i > 0) {
+                parts.add(() -> new ByteArrayInputStream(IMAGES_SEPARATOR));
+            }
+            Resource image = images.get(i);
+            parts.add(() -> new Base64EncodingInputStream(open(image)));
+        }
+        parts.add(() -> new ByteArrayInputStream(IMAGES_CLOSE));
+
+        // Each part is opened only when the previous one is exhausted
+        Iterator<Supplier<InputStream>> remaining = parts.iterator();
+        return new SequenceInputStream(new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return remaining.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return remaining.next().get();
+            }
+        });
+    }
+
+    private static InputStream open(Resource image) {
+        try {
+            return image.getInputStream();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open image for upload: " + image.getDescription(), e);
+        }
+    }
+
+    /**
+     * Streams the base64 encoding of another stream, reading it through a single reusable buffer
+     */
+    static final class Base64EncodingInputStream extends InputStream {
+
+        private final InputStream source;
+        private final byte[] rawChunk = new byte[READ_CHUNK];
+        private final byte[] encoded = new byte[(READ_CHUNK / 3) * 4];
+        private final Base64.Encoder encoder = Base64.getEncoder();
+        private int encodedPos;
+        private int encodedLimit;
+        private boolean eof;
+
+        Base64EncodingInputStream(InputStream source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (encodedPos == encodedLimit && !refill()) {
+                return -1;
+            }
+            int n = Math.min(length, encodedLimit - encodedPos);
+            System.arraycopy(encoded, encodedPos, target, offset, n);
+            encodedPos += n;
+            return n;
+        }
+
+        /**
+         * Read the next full chunk (or the final partial one) and encode it
+         */
+        private boolean refill() throws IOException {
+            if (eof) {
+                return false;
+            }
+            int rawLength = source.readNBytes(rawChunk, 0, READ_CHUNK);
+            if (rawLength < READ_CHUNK) {
+                eof = true;
+            }
+            if (rawLength == 0) {
+                return false;
+            }
+            byte[] source = rawLength == READ_CHUNK ? rawChunk : Arrays.copyOf(rawChunk, rawLength);
+            encodedLimit = encoder.encode(source, encoded);
+            encodedPos = 0;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
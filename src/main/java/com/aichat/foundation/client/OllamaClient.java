@@ -3,9 +3,13 @@ package com.aichat.foundation.client;
 import com.aichat.foundation.exception.OllamaException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 import jakarta.annotation.PostConstruct;
 import java.io.BufferedReader;
@@ -16,30 +20,41 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
-import java.util.Base64;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class OllamaClient {
     
     @Value("${ollama.base-url}")
-    private String baseUrl;
-    
-    @Value("${ollama.model}")
-    private String defaultModel;
+    String baseUrl;
     
     @Value("${ollama.timeout}")
-    private int timeout;
+    int timeout;
     
     @Value("${ollama.max-retries}")
     private int maxRetries;
     
+    /** Marks a response body that was closed by a cancellation */
+    private static final Stream<String> CLOSED = Stream.empty();
+    
+    private final OllamaStreamProperties streamProperties;
+    private final StreamBuffer.Meters bufferMeters;
+    
     private HttpClient httpClient;
-    private ObjectMapper objectMapper;
+    ObjectMapper objectMapper;
+    
+    public OllamaClient(OllamaStreamProperties streamProperties, MeterRegistry meterRegistry) {
+        this.streamProperties = streamProperties;
+        this.bufferMeters = new StreamBuffer.Meters(meterRegistry);
+    }
     
     @PostConstruct
     public void init() {
@@ -50,111 +65,158 @@ public class OllamaClient {
     }
     
     /**
-     * Send a text-only message to OLLAMA and get streaming response
+     * Send a text-only message to a model and get streaming response
      */
-    public Flux<String> sendTextMessage(String message) {
-        return sendMessage(message, null);
+    public Flux<String> sendTextMessage(String model, Map<String, Object> options, String message) {
+        return sendMessage(() -> HttpRequest.BodyPublishers.ofByteArray(
+            objectMapper.writeValueAsBytes(createRequestBody(model, options, message))));
     }
     
     /**
-     * Send a multimodal message (text + image) to OLLAMA and get streaming response
+     * Send a multimodal message (text + images) to a model and get streaming response.
+     * The images are base64-encoded from their sources while the request is being sent.
      */
-    public Flux<String> sendMultimodalMessage(String message, byte[] imageData) {
-        String base64Image = Base64.getEncoder().encodeToString(imageData);
-        return sendMessage(message, base64Image);
+    public Flux<String> sendMultimodalMessage(String model, Map<String, Object> options, String message,
+                                              List<? extends Resource> images) {
+        return sendMessage(() -> MultimodalBodyPublisher.of(
+            objectMapper.writeValueAsBytes(createRequestBody(model, options, message)), images));
     }
     
     /**
-     * Core method to send messages to OLLAMA with streaming response
+     * Core method to send messages to OLLAMA with streaming response, read on a worker thread.
+     * Cancelling the returned stream aborts the exchange or closes the response body, so the
+     * connection is dropped and Ollama stops generating instead of producing tokens nobody reads.
+     * Chunks reach the subscriber only as it requests them; see {@link StreamBuffer} for what
+     * is held meanwhile.
      */
-    private Flux<String> sendMessage(String message, String base64Image) {
-        return Flux.create(sink -> {
+    private Flux<String> sendMessage(RequestBodyFactory bodyFactory) {
+        return Flux.<String>create(sink -> {
+            CompletableFuture<HttpResponse<Stream<String>>> exchange;
             try {
-                Map<String, Object> requestBody = createRequestBody(message, base64Image);
-                String jsonBody = objectMapper.writeValueAsString(requestBody);
-                
                 HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create(baseUrl + "/api/generate"))
                     .header("Content-Type", "application/json")
                     .header("Accept", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
+                    .POST(bodyFactory.create())
                     .timeout(Duration.ofSeconds(timeout))
                     .build();
                 
                 // Use streaming body handler
-                HttpResponse<Stream<String>> response = httpClient.send(request, 
-                    HttpResponse.BodyHandlers.ofLines());
+                exchange = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofLines());
+            } catch (Exception e) {
+                sink.error(new OllamaException("Failed to send request to OLLAMA: " + e.getMessage(), e));
+                return;
+            }
+            
+            StreamBuffer buffer = new StreamBuffer(sink, streamProperties, bufferMeters);
+            sink.onRequest(n -> buffer.drain());
+            
+            AtomicReference<Stream<String>> body = new AtomicReference<>();
+            sink.onDispose(() -> {
+                buffer.release();
+                exchange.cancel(true);
+                Stream<String> lines = body.getAndSet(CLOSED);
+                if (lines != null) {
+                    lines.close();
+                }
+            });
+            
+            try {
+                HttpResponse<Stream<String>> response = exchange.get();
+                if (!body.compareAndSet(null, response.body())) {
+                    // Cancelled while waiting for the response headers
+                    response.body().close();
+                    return;
+                }
                 
                 if (response.statusCode() != 200) {
-                    sink.error(new OllamaException("OLLAMA returned error code: " + response.statusCode()));
+                    buffer.error(new OllamaException("OLLAMA returned error code: " + response.statusCode()));
                     return;
                 }
                 
-                // Process streaming lines in real-time
-                response.body().forEach(line -> {
+                // Process streaming lines in real-time until Ollama is done or the subscriber cancels
+                Iterator<String> lines = response.body().iterator();
+                while (!sink.isCancelled() && lines.hasNext()) {
+                    String line = lines.next();
                     if (line.trim().isEmpty()) {
-                        return;
+                        continue;
                     }
                     
+                    JsonNode jsonNode;
                     try {
-                        JsonNode jsonNode = objectMapper.readTree(line);
-                        
-                        // Check for errors
-                        if (jsonNode.has("error")) {
-                            sink.error(new OllamaException("OLLAMA error: " + jsonNode.get("error").asText()));
-                            return;
-                        }
-                        
-                        // Extract response content and emit immediately
-                        if (jsonNode.has("response")) {
-                            String content = jsonNode.get("response").asText();
-                            if (!content.isEmpty()) {
-                                sink.next(content);
-                            }
-                        }
-                        
-                        // Check if done
-                        if (jsonNode.has("done") && jsonNode.get("done").asBoolean()) {
-                            sink.complete();
-                            return;
-                        }
-                        
+                        jsonNode = objectMapper.readTree(line);
                     } catch (Exception e) {
                         // Log malformed JSON line but continue processing
                         System.err.println("Failed to parse JSON line: " + line + " - " + e.getMessage());
+                        continue;
+                    }
+                    
+                    // Check for errors
+                    if (jsonNode.has("error")) {
+                        buffer.error(new OllamaException("OLLAMA error: " + jsonNode.get("error").asText()));
+                        return;
                     }
-                });
+                    
+                    // Hand the content to the subscriber, pausing here while it lags too far behind
+                    if (jsonNode.has("response")) {
+                        String content = jsonNode.get("response").asText();
+                        if (!content.isEmpty() && !buffer.offer(content)) {
+                            return;
+                        }
+                    }
+                    
+                    // Check if done
+                    if (jsonNode.has("done") && jsonNode.get("done").asBoolean()) {
+                        buffer.complete();
+                        return;
+                    }
+                }
+                
+                if (!sink.isCancelled()) {
+                    buffer.error(new OllamaException("OLLAMA closed the stream before it was done"));
+                }
                 
             } catch (Exception e) {
-                sink.error(new OllamaException("Failed to send request to OLLAMA: " + e.getMessage(), e));
+                // Reading fails once the body is closed by a cancellation; nobody is listening any more
+                if (sink.isCancelled()) {
+                    return;
+                }
+                Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                buffer.error(new OllamaException("Failed to send request to OLLAMA: " + cause.getMessage(), cause));
             }
-        });
+        })
+        // Read on a worker so the subscriber's thread is free to deliver chunks and to cancel;
+        // demand must not be queued behind the read loop on that worker
+        .subscribeOn(Schedulers.boundedElastic(), false);
     }
     
     /**
-     * Create request body for OLLAMA API
+     * Create request body for OLLAMA API with the generation options of the chosen route.
+     * Images are not part of the map; multimodal requests append them while streaming.
      */
-    private Map<String, Object> createRequestBody(String message, String base64Image) {
+    Map<String, Object> createRequestBody(String model, Map<String, Object> options, String message) {
         Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", defaultModel);
+        requestBody.put("model", model);
         requestBody.put("prompt", message);
         requestBody.put("stream", true);
-        
-        // Add image if provided (multimodal request)
-        if (base64Image != null && !base64Image.isEmpty()) {
-            requestBody.put("images", List.of(base64Image));
+        if (!options.isEmpty()) {
+            requestBody.put("options", options);
         }
         
-        // Add generation parameters
-        Map<String, Object> options = new HashMap<>();
-        options.put("temperature", 0.7);
-        options.put("top_p", 0.9);
-        options.put("max_tokens", 2048);
-        requestBody.put("options", options);
-        
         return requestBody;
     }
     
+    /**
+     * Builds the request body once the request is actually sent
+     */
+    @FunctionalInterface
+    private interface RequestBodyFactory {
+        HttpRequest.BodyPublisher create() throws IOException;
+    }
+    
     /**
      * Test connection to OLLAMA service
      */
@@ -0,0 +1,66 @@
+package com.aichat.foundation.client;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Limits on the chunks a model stream holds for a subscriber that reads slower than
+ * Ollama generates, bound from {@code ollama.stream}
+ */
+@Component
+@ConfigurationProperties(prefix = "ollama.stream")
+public class OllamaStreamProperties {
+
+    public enum Overflow {
+        /** Append further chunks to the last pending one, so Ollama keeps generating at full speed */
+        COALESCE,
+        /** Stop reading from Ollama until the subscriber catches up */
+        BLOCK
+    }
+
+    /** Chunks held for a stream before the overflow policy applies */
+    private int maxPendingChunks = 64;
+
+    /** Text held for a stream, in UTF-8 bytes; once reached, reading from Ollama pauses */
+    private DataSize maxBufferedBytes = DataSize.ofKilobytes(64);
+
+    private Overflow overflow = Overflow.COALESCE;
+
+    /** How long reading may stay paused before the subscriber is given up on and the stream fails */
+    private Duration stallTimeout = Duration.ofSeconds(60);
+
+    public int getMaxPendingChunks() {
+        return maxPendingChunks;
+    }
+
+    public void setMaxPendingChunks(int maxPendingChunks) {
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+    public DataSize getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    public void setMaxBufferedBytes(DataSize maxBufferedBytes) {
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    public void setOverflow(Overflow overflow) {
+        this.overflow = overflow;
+    }
+
+    public Duration getStallTimeout() {
+        return stallTimeout;
+    }
+
+    public void setStallTimeout(Duration stallTimeout) {
+        this.stallTimeout = stallTimeout;
+    }
+}
@@ -0,0 +1,152 @@
+package com.aichat.foundation.client;
+
+import com.aichat.foundation.exception.OllamaException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import jakarta.annotation.PostConstruct;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ollama client for the reactive profile. Generate calls go through Spring's WebClient on
+ * the server's Netty event loops instead of a worker thread per reply, and the model's
+ * stream is read only as fast as the subscriber asks for it: when a client lags, reading
+ * pauses and TCP holds Ollama back, so no chunks pile up here and {@link StreamBuffer}
+ * is not needed. Cancelling the stream closes the connection, which stops generation.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveOllamaClient extends OllamaClient {
+
+    private final WebClient.Builder webClientBuilder;
+
+    private WebClient webClient;
+
+    public ReactiveOllamaClient(OllamaStreamProperties streamProperties, MeterRegistry meterRegistry,
+                                WebClient.Builder webClientBuilder) {
+        super(streamProperties, meterRegistry);
+        this.webClientBuilder = webClientBuilder;
+    }
+
+    @Override
+    @PostConstruct
+    public void init() {
+        super.init();
+        this.webClient = webClientBuilder.build();
+    }
+
+    @Override
+    public Flux<String> sendTextMessage(String model, Map<String, Object> options, String message) {
+        return generate(request -> request
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(createRequestBody(model, options, message)));
+    }
+
+    /**
+     * The images are base64-encoded from their sources while the request is being sent, as
+     * by {@link OllamaClient}; reading them may block, so it happens on a worker thread
+     */
+    @Override
+    public Flux<String> sendMultimodalMessage(String model, Map<String, Object> options, String message,
+                                              List<? extends Resource> images) {
+        return generate(request -> {
+            HttpRequest.BodyPublisher body = MultimodalBodyPublisher.of(
+                objectMapper.writeValueAsBytes(createRequestBody(model, options, message)), images);
+            Flux<DataBuffer> content = JdkFlowAdapter.flowPublisherToFlux(body)
+                .<DataBuffer>map(DefaultDataBufferFactory.sharedInstance::wrap)
+                .subscribeOn(Schedulers.boundedElastic());
+            return request
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(body.contentLength())
+                .body(BodyInserters.fromDataBuffers(content));
+        });
+    }
+
+    /**
+     * Send a generate request and stream the content of its response lines until Ollama
+     * is done. The request timeout applies to the response starting, not to its length.
+     */
+    private Flux<String> generate(RequestBodySpec body) {
+        return Flux.defer(() -> {
+            AtomicBoolean done = new AtomicBoolean();
+            WebClient.RequestHeadersSpec<?> request;
+            try {
+                request = body.apply(webClient.post()
+                    .uri(baseUrl + "/api/generate")
+                    .accept(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON));
+            } catch (Exception e) {
+                return Flux.error(new OllamaException("Failed to send request to OLLAMA: " + e.getMessage(), e));
+            }
+
+            return request
+                .exchangeToFlux(response -> response.statusCode().value() != 200
+                    ? response.releaseBody().thenMany(Flux.error(
+                        new OllamaException("OLLAMA returned error code: " + response.statusCode().value())))
+                    : response.bodyToFlux(String.class))
+                .timeout(Mono.delay(Duration.ofSeconds(timeout)), line -> Mono.never())
+                .<String>handle((line, sink) -> {
+                    if (line.isBlank()) {
+                        return;
+                    }
+
+                    JsonNode jsonNode;
+                    try {
+                        jsonNode = objectMapper.readTree(line);
+                    } catch (JsonProcessingException e) {
+                        // Log malformed JSON line but continue processing
+                        System.err.println("Failed to parse JSON line: " + line + " - " + e.getMessage());
+                        return;
+                    }
+
+                    // Check for errors
+                    if (jsonNode.has("error")) {
+                        sink.error(new OllamaException("OLLAMA error: " + jsonNode.get("error").asText()));
+                        return;
+                    }
+
+                    if (jsonNode.has("response")) {
+                        String content = jsonNode.get("response").asText();
+                        if (!content.isEmpty()) {
+                            sink.next(content);
+                        }
+                    }
+
+                    // Check if done; completing cancels the rest of the exchange
+                    if (jsonNode.has("done") && jsonNode.get("done").asBoolean()) {
+                        done.set(true);
+                        sink.complete();
+                    }
+                })
+                .concatWith(Mono.defer(() -> done.get()
+                    ? Mono.empty()
+                    : Mono.error(new OllamaException("OLLAMA closed the stream before it was done"))))
+                .onErrorMap(e -> !(e instanceof OllamaException),
+                    e -> new OllamaException("Failed to send request to OLLAMA: " + e.getMessage(), e));
+        });
+    }
+
+    /**
+     * Completes a generate request with its body, which is built once the request is sent
+     */
+    @FunctionalInterface
+    private interface RequestBodySpec {
+        WebClient.RequestHeadersSpec<?> apply(WebClient.RequestBodySpec request) throws Exception;
+    }
+}
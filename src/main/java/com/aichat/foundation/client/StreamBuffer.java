@@ -0,0 +1,246 @@
+package com.aichat.foundation.client;
+
+import com.aichat.foundation.exception.OllamaException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.FluxSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Chunks of one model stream waiting for their subscriber, in place of the unbounded buffer
+ * of {@code Flux.create}. Chunks are emitted only against demand. While the subscriber lags,
+ * up to {@code max-pending-chunks} are held; past that they are merged into the last one or
+ * reading pauses, depending on the overflow policy. Reading always pauses once
+ * {@code max-buffered-bytes} are held, which leaves the rest to TCP flow control, and fails
+ * the stream if the subscriber does not catch up within the stall timeout.
+ */
+final class StreamBuffer {
+
+    private final FluxSink<String> sink;
+    private final int maxPendingChunks;
+    private final long maxBufferedBytes;
+    private final OllamaStreamProperties.Overflow overflow;
+    private final Duration stallTimeout;
+    private final Meters meters;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition space = lock.newCondition();
+    private final ArrayDeque<Chunk> pending = new ArrayDeque<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private long bufferedBytes;
+    private long peakBytes;
+    private boolean done;
+    private boolean terminated;
+
+    private static final class Chunk {
+        private final StringBuilder text;
+        private int bytes;
+
+        private Chunk(String text, int bytes) {
+            this.text = new StringBuilder(text);
+            this.bytes = bytes;
+        }
+    }
+
+    StreamBuffer(FluxSink<String> sink, OllamaStreamProperties properties, Meters meters) {
+        this.sink = sink;
+        this.maxPendingChunks = Math.max(1, properties.getMaxPendingChunks());
+        this.maxBufferedBytes = properties.getMaxBufferedBytes().toBytes();
+        this.overflow = properties.getOverflow();
+        this.stallTimeout = properties.getStallTimeout();
+        this.meters = meters;
+    }
+
+    /**
+     * Hold a chunk for the subscriber, waiting while the buffer is full
+     *
+     * @return false when the stream ended meanwhile, because it was cancelled or stalled
+     */
+    boolean offer(String chunk) throws InterruptedException {
+        int bytes = utf8Length(chunk);
+        boolean stalled = false;
+        lock.lock();
+        try {
+            long deadline = System.nanoTime() + stallTimeout.toNanos();
+            while (!terminated && isFull(bytes)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    stalled = true;
+                    break;
+                }
+                space.awaitNanos(remaining);
+            }
+            if (terminated || stalled) {
+                return false;
+            }
+            Chunk last = pending.peekLast();
+            if (last != null && pending.size() >= maxPendingChunks) {
+                last.text.append(chunk);
+                last.bytes += bytes;
+                meters.coalesced.increment();
+            } else {
+                pending.add(new Chunk(chunk, bytes));
+            }
+            bufferedBytes += bytes;
+            peakBytes = Math.max(peakBytes, bufferedBytes);
+            meters.buffered.addAndGet(bytes);
+        } finally {
+            lock.unlock();
+            if (stalled) {
+                meters.stalled.increment();
+                error(new OllamaException(
+                    "Stream subscriber did not read for " + stallTimeout.toSeconds() + "s, giving up"));
+            }
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * Complete the stream once the subscriber has taken every held chunk
+     */
+    void complete() {
+        lock.lock();
+        try {
+            done = true;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Fail the stream at once; held chunks are dropped
+     */
+    void error(Throwable error) {
+        release();
+        sink.error(error);
+    }
+
+    /**
+     * Emit held chunks while the subscriber has demand. Called by the reader and on every
+     * request; only one caller emits at a time, the others leave it another pass.
+     */
+    void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (true) {
+                String next = null;
+                boolean complete = false;
+                lock.lock();
+                try {
+                    if (terminated) {
+                        break;
+                    }
+                    if (pending.isEmpty()) {
+                        complete = done;
+                    } else if (sink.requestedFromDownstream() > 0) {
+                        Chunk chunk = pending.poll();
+                        bufferedBytes -= chunk.bytes;
+                        meters.buffered.addAndGet(-chunk.bytes);
+                        next = chunk.text.toString();
+                        space.signalAll();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (next != null) {
+                    sink.next(next);
+                    continue;
+                }
+                if (complete) {
+                    release();
+                    sink.complete();
+                }
+                break;
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Drop held chunks, wake a waiting reader and record the stream's peak. Runs when the
+     * stream terminates or its subscriber cancels.
+     */
+    void release() {
+        lock.lock();
+        try {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            pending.clear();
+            meters.buffered.addAndGet(-bufferedBytes);
+            bufferedBytes = 0;
+            meters.peak.record(peakBytes);
+            space.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isFull(int incoming) {
+        if (pending.isEmpty()) {
+            // A single chunk is always taken, however large
+            return false;
+        }
+        return bufferedBytes + incoming > maxBufferedBytes
+            || overflow == OllamaStreamProperties.Overflow.BLOCK && pending.size() >= maxPendingChunks;
+    }
+
+    static int utf8Length(CharSequence text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Meters shared by all streams of a client
+     */
+    static final class Meters {
+        private final AtomicLong buffered = new AtomicLong();
+        private final DistributionSummary peak;
+        private final Counter coalesced;
+        private final Counter stalled;
+
+        Meters(MeterRegistry meterRegistry) {
+            Gauge.builder("ollama.stream.buffered", buffered, AtomicLong::get)
+                .description("Bytes of model output held for subscribers that read slower than it is generated")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+            this.peak = DistributionSummary.builder("ollama.stream.buffered.peak")
+                .description("Most bytes held at once for a single stream")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+            this.coalesced = Counter.builder("ollama.stream.coalesced")
+                .description("Chunks merged into a pending one because the subscriber lagged")
+                .register(meterRegistry);
+            this.stalled = Counter.builder("ollama.stream.stalled")
+                .description("Streams failed because their subscriber stopped reading")
+                .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.aichat.foundation.config;
+
+import com.aichat.foundation.storage.BlobStore;
+import com.aichat.foundation.storage.CachingBlobStore;
+import com.aichat.foundation.storage.LocalBlobStore;
+import com.aichat.foundation.storage.S3BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * Selects where attachment bytes are stored, via {@code storage.type}
+ */
+@Configuration
+public class BlobStoreConfig {
+
+    /**
+     * Local disk, laid out under the upload directory
+     */
+    @Bean
+    @ConditionalOnProperty(name = "storage.type", havingValue = "local", matchIfMissing = true)
+    public BlobStore localBlobStore(@Value("${storage.local.root:${file.upload-dir}}") String root) {
+        return new LocalBlobStore(Paths.get(root));
+    }
+
+    /**
+     * S3-compatible bucket shared by all nodes, with recently used blobs cached in memory
+     */
+    @Bean
+    @ConditionalOnProperty(name = "storage.type", havingValue = "s3")
+    public S3BlobStore s3BlobStore(
+            @Value("${storage.s3.endpoint:}") String endpoint,
+            @Value("${storage.s3.region:us-east-1}") String region,
+            @Value("${storage.s3.bucket}") String bucket,
+            @Value("${storage.s3.prefix:}") String prefix,
+            @Value("${storage.s3.access-key:}") String accessKey,
+            @Value("${storage.s3.secret-key:}") String secretKey,
+            @Value("${storage.s3.path-style:true}") boolean pathStyle) {
+        AwsCredentialsProvider credentials = accessKey.isEmpty()
+            ? DefaultCredentialsProvider.create()
+            : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        
+        S3ClientBuilder builder = S3Client.builder()
+            .region(Region.of(region))
+            .credentialsProvider(credentials)
+            .forcePathStyle(pathStyle);
+        if (!endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return new S3BlobStore(builder.build(), bucket, prefix);
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "storage.type", havingValue = "s3")
+    public BlobStore cachedS3BlobStore(
+            S3BlobStore s3BlobStore,
+            @Value("${storage.cache.max-bytes:67108864}") long maxBytes,
+            @Value("${storage.cache.max-entry-bytes:10485760}") long maxEntryBytes) {
+        return new CachingBlobStore(s3BlobStore, maxBytes, maxEntryBytes);
+    }
+}
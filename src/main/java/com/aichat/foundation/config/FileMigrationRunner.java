@@ -1,34 +1,95 @@
 package com.aichat.foundation.config;
 
+import com.aichat.foundation.entity.MaintenanceCheckpoint;
+import com.aichat.foundation.repository.MaintenanceCheckpointRepository;
+import com.aichat.foundation.service.FileReshardingService;
 import com.aichat.foundation.service.FileService;
-import org.springframework.boot.CommandLineRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
- * Data migration component to update file paths when upload directory changes
+ * Data migration component to update file paths when upload directory changes.
+ * Runs in the background once the application is ready, so startup time does not
+ * depend on the number of stored attachments. A completed path migration is recorded
+ * and skipped on later starts; the upload directory is resharded afterwards so it
+ * sees the migrated paths.
  */
 @Component
-public class FileMigrationRunner implements CommandLineRunner {
+public class FileMigrationRunner {
+    
+    private static final Logger log = LoggerFactory.getLogger(FileMigrationRunner.class);
+    
+    @Value("${file.migration.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${file.migration.from-dir:./uploads}")
+    private String oldUploadPath;
+    
+    @Value("${file.upload-dir}")
+    private String newUploadPath;
     
     private final FileService fileService;
+    private final FileReshardingService fileReshardingService;
+    private final MaintenanceCheckpointRepository checkpointRepository;
+    private final Executor taskExecutor;
     
-    public FileMigrationRunner(FileService fileService) {
+    public FileMigrationRunner(FileService fileService,
+                               FileReshardingService fileReshardingService,
+                               MaintenanceCheckpointRepository checkpointRepository,
+                               @Qualifier("applicationTaskExecutor") Executor taskExecutor) {
         this.fileService = fileService;
+        this.fileReshardingService = fileReshardingService;
+        this.checkpointRepository = checkpointRepository;
+        this.taskExecutor = taskExecutor;
     }
     
-    @Override
-    public void run(String... args) throws Exception {
-        // Check if migration is needed by looking for old upload directory pattern
-        String oldUploadPath = "./uploads";
-        String newUploadPath = "/Users/sansi/data/app/foundation/image";
+    @EventListener(ApplicationReadyEvent.class)
+    public void startAfterStartup() {
+        try {
+            taskExecutor.execute(this::run);
+        } catch (RejectedExecutionException e) {
+            log.warn("Could not schedule file migration: {}", e.getMessage());
+        }
+    }
+    
+    void run() {
+        if (enabled) {
+            migrateFilePaths();
+        }
+        fileReshardingService.reshardAll();
+    }
+    
+    private void migrateFilePaths() {
+        String name = "file-paths:" + oldUploadPath + "->" + newUploadPath;
+        boolean completed = checkpointRepository.findById(name)
+            .map(MaintenanceCheckpoint::isCompleted)
+            .orElse(false);
+        if (completed) {
+            log.debug("File path migration {} already completed", name);
+            return;
+        }
         
         try {
-            System.out.println("Checking for file path migration...");
-            fileService.migrateFilePathsToNewDirectory(oldUploadPath, newUploadPath);
-            System.out.println("File path migration completed.");
-        } catch (Exception e) {
-            System.err.println("Error during file path migration: " + e.getMessage());
-            // Don't fail the application startup, just log the error
+            int updated = fileService.migrateFilePathsToNewDirectory(oldUploadPath, newUploadPath);
+            
+            MaintenanceCheckpoint checkpoint = checkpointRepository.findById(name)
+                .orElseGet(() -> new MaintenanceCheckpoint(name));
+            checkpoint.setCompletedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+            
+            log.info("File path migration completed, {} attachments updated", updated);
+        } catch (RuntimeException e) {
+            // Don't fail the application, the migration is retried on next start
+            log.error("Error during file path migration: {}", e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
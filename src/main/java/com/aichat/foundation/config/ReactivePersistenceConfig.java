@@ -0,0 +1,66 @@
+package com.aichat.foundation.config;
+
+import com.aichat.foundation.repository.ReactiveChatSessionRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * Database access for the reactive profile. Sessions and messages, which every streamed
+ * reply reads and writes, go through R2DBC so a reply never waits for a pooled connection
+ * on a thread of its own; attachments, quotas and the maintenance jobs stay on JPA, over
+ * the same database.
+ *
+ * Spring Boot's DataSource backs off once an R2DBC ConnectionFactory exists, so the JPA
+ * pool is declared here too, from the usual {@code spring.datasource} settings.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableConfigurationProperties(DataSourceProperties.class)
+@EnableR2dbcRepositories(basePackageClasses = ReactiveChatSessionRepository.class)
+public class ReactivePersistenceConfig extends AbstractR2dbcConfiguration {
+
+    @Value("${spring.r2dbc.url}")
+    private String url;
+
+    @Value("${spring.r2dbc.username:}")
+    private String username;
+
+    @Value("${spring.r2dbc.password:}")
+    private String password;
+
+    @Bean
+    @Override
+    public ConnectionFactory connectionFactory() {
+        return ConnectionFactoryBuilder.withUrl(url)
+            .username(username)
+            .password(password)
+            .build();
+    }
+
+    /**
+     * Transactions over the R2DBC connections. Only the operator is a bean: a second
+     * transaction manager would take the place of the one JPA uses.
+     */
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator(ConnectionFactory connectionFactory) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+}
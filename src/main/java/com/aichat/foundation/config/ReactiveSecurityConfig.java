@@ -0,0 +1,54 @@
+package com.aichat.foundation.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.header.XFrameOptionsServerHttpHeadersWriter;
+import org.springframework.web.cors.reactive.CorsConfigurationSource;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+
+/**
+ * The rules of {@link SecurityConfig} for the reactive profile, on WebFlux
+ */
+@Configuration
+@EnableWebFluxSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        http
+            .csrf(ServerHttpSecurity.CsrfSpec::disable)
+            .cors(cors -> cors.configurationSource(reactiveCorsConfigurationSource()))
+            .authorizeExchange(authz -> authz
+                // Public endpoints
+                .pathMatchers("/api/chat/health").permitAll()
+                .pathMatchers("/actuator/**").permitAll()
+
+                // Static resources
+                .pathMatchers("/", "/index.html", "/static/**", "/css/**", "/js/**", "/lib/**", "/images/**").permitAll()
+
+                // API endpoints - for now allow all (in production, implement proper authentication)
+                .pathMatchers("/api/**").permitAll()
+
+                // Default require authentication
+                .anyExchange().authenticated()
+            )
+            .headers(headers -> headers
+                .frameOptions(frameOptions -> frameOptions.mode(XFrameOptionsServerHttpHeadersWriter.Mode.SAMEORIGIN))
+            );
+
+        return http.build();
+    }
+
+    @Bean
+    public CorsConfigurationSource reactiveCorsConfigurationSource() {
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/**", SecurityConfig.corsConfiguration());
+
+        return source;
+    }
+}
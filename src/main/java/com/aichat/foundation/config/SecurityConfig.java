@@ -1,5 +1,6 @@
 package com.aichat.foundation.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -15,6 +16,7 @@ import java.util.List;
 
 @Configuration
 @EnableWebSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SecurityConfig {
     
     @Bean
@@ -26,7 +28,7 @@ public class SecurityConfig {
                 // Public endpoints
                 .requestMatchers("/api/chat/health").permitAll()
                 .requestMatchers("/h2-console/**").permitAll()
-                .requestMatchers("/ws/chat/**").permitAll()
+                .requestMatchers("/ws/stream/**").permitAll()
                 .requestMatchers("/actuator/**").permitAll()
                 
                 // Static resources
@@ -47,6 +49,17 @@ public class SecurityConfig {
     
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
+        // Apply CORS configuration to all paths
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/**", corsConfiguration());
+        
+        return source;
+    }
+    
+    /**
+     * CORS rules shared with {@link ReactiveSecurityConfig}
+     */
+    static CorsConfiguration corsConfiguration() {
         CorsConfiguration configuration = new CorsConfiguration();
         
         // Allow all origins for development (restrict in production)
@@ -71,10 +84,6 @@ public class SecurityConfig {
             "Access-Control-Allow-Origin", "Access-Control-Allow-Credentials"
         ));
         
-        // Apply CORS configuration to all paths
-        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
-        source.registerCorsConfiguration("/**", configuration);
-        
-        return source;
+        return configuration;
     }
 }
\ No newline at end of file
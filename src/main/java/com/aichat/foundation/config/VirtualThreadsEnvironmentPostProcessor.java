@@ -0,0 +1,38 @@
+package com.aichat.foundation.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+import java.util.List;
+
+/**
+ * Moves Reactor's bounded-elastic scheduler, which runs the blocking work behind a reply
+ * (saving the turn, reading the model's stream), onto virtual threads when the application
+ * runs on them. Reactor reads its scheduler settings once, from system properties, the
+ * first time a scheduler is used, so they are copied from the configuration before the
+ * context starts. Settings passed on the command line with {@code -D} win.
+ */
+public class VirtualThreadsEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final List<String> REACTOR_SCHEDULER_PROPERTIES = List.of(
+        "reactor.schedulers.defaultBoundedElasticOnVirtualThreads",
+        "reactor.schedulers.defaultBoundedElasticSize",
+        "reactor.schedulers.defaultBoundedElasticQueueSize");
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        // Only on Java 21 with spring.threads.virtual.enabled; a bounded-elastic size meant
+        // for virtual threads would otherwise allow that many platform threads
+        if (!Threading.VIRTUAL.isActive(environment)) {
+            return;
+        }
+        for (String name : REACTOR_SCHEDULER_PROPERTIES) {
+            String value = environment.getProperty(name);
+            if (value != null && System.getProperty(name) == null) {
+                System.setProperty(name, value);
+            }
+        }
+    }
+}
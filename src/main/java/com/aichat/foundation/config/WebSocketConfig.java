@@ -1,28 +1,51 @@
 package com.aichat.foundation.config;
 
+import com.aichat.foundation.controller.StreamWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
-import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
-import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistration;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
 @Configuration
-@EnableWebSocketMessageBroker
-public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+@EnableWebSocket
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WebSocketConfig implements WebSocketConfigurer {
     
-    @Override
-    public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable a simple in-memory message broker
-        config.enableSimpleBroker("/topic", "/queue");
-        // Set application destination prefix
-        config.setApplicationDestinationPrefixes("/app");
+    private final StreamWebSocketHandler streamWebSocketHandler;
+    
+    @Value("${websocket.sockjs:false}")
+    private boolean sockJs;
+    
+    @Value("${websocket.max-message-size:64KB}")
+    private DataSize maxMessageSize;
+    
+    public WebSocketConfig(StreamWebSocketHandler streamWebSocketHandler) {
+        this.streamWebSocketHandler = streamWebSocketHandler;
     }
     
     @Override
-    public void registerStompEndpoints(StompEndpointRegistry registry) {
-        // Register STOMP endpoint for WebSocket connections
-        registry.addEndpoint("/ws/chat")
-                .setAllowedOriginPatterns("*")
-                .withSockJS();
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Plain WebSocket by default; SockJS can be enabled for clients behind proxies that block it
+        WebSocketHandlerRegistration registration = registry.addHandler(streamWebSocketHandler, "/ws/stream")
+                .setAllowedOriginPatterns("*");
+        if (sockJs) {
+            registration.withSockJS();
+        }
+    }
+    
+    /**
+     * Incoming frames carry a whole message, which may be longer than the container's default buffer
+     */
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize((int) maxMessageSize.toBytes());
+        return container;
     }
-}
\ No newline at end of file
+}
@@ -2,16 +2,18 @@ package com.aichat.foundation.controller;
 
 import com.aichat.foundation.dto.*;
 import com.aichat.foundation.service.ChatService;
+import com.aichat.foundation.service.StorageQuotaService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import java.time.format.DateTimeFormatter;
 import java.time.LocalDateTime;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
@@ -21,13 +23,19 @@ import java.util.UUID;
 @RestController
 @RequestMapping("/api/chat")
 @CrossOrigin(origins = "*")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ChatController {
     
     private final ChatService chatService;
+    private final StreamingMultipartReader multipartReader;
+    private final StorageQuotaService storageQuotaService;
     private final ObjectMapper objectMapper;
     
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, StreamingMultipartReader multipartReader,
+                          StorageQuotaService storageQuotaService) {
         this.chatService = chatService;
+        this.multipartReader = multipartReader;
+        this.storageQuotaService = storageQuotaService;
         this.objectMapper = new ObjectMapper();
         // Register JavaTimeModule to handle LocalDateTime serialization
         JavaTimeModule javaTimeModule = new JavaTimeModule();
@@ -43,7 +51,7 @@ public class ChatController {
         // For demo purposes, using a default user ID
         String userId = "default-user";
         
-        ChatSessionDto session = chatService.createSession(request.getTitle(), userId);
+        ChatSessionDto session = chatService.createSession(request.getTitle(), userId, request.getModel());
         return ResponseEntity.ok(session);
     }
     
@@ -115,17 +123,32 @@ public class ChatController {
     }
     
     /**
-     * Send a multimodal message (text + image)
+     * Send a multimodal message (text + images).
+     * Form fields {@code sessionId}, {@code content}, an optional {@code model} route and one or more {@code file} parts are read
+     * from the request body as it streams in; each image is staged in one pass while it arrives.
+     * A body whose declared length alone exceeds the user's remaining quota is not read.
      */
     @PostMapping(value = "/message/multimodal", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> sendMultimodalMessage(
-            @RequestParam("sessionId") UUID sessionId,
-            @RequestParam("content") String content,
-            @RequestParam("file") MultipartFile file) {
+    public Flux<String> sendMultimodalMessage(HttpServletRequest request) {
         
         String userId = "default-user";
+        if (request.getContentLengthLong() > 0) {
+            storageQuotaService.checkQuota(userId, null, request.getContentLengthLong());
+        }
+        
+        Flux<StreamResponse> responses;
+        try (StreamingMultipartReader.Form form = multipartReader.read(request)) {
+            UUID sessionId = UUID.fromString(form.field("sessionId"));
+            // The uploads are stored before this returns, so closing the form only drops unused staged files
+            responses = chatService.processMultimodalUploads(sessionId, form.field("content"), form.files("file"),
+                form.optionalField("model"), userId);
+        }
         
-        return chatService.processMultimodalMessage(sessionId, content, file, userId)
+        return toEventStream(responses);
+    }
+    
+    private Flux<String> toEventStream(Flux<StreamResponse> responses) {
+        return responses
             .map(streamResponse -> {
                 try {
                     // For SSE, just return the JSON without the data: prefix
@@ -136,6 +159,31 @@ public class ChatController {
             });
     }
     
+    /**
+     * Send a multimodal message referring to files already uploaded through
+     * {@code POST /api/files/upload}, so no image bytes travel with the message itself
+     */
+    @PostMapping(value = "/message/multimodal", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<String> sendMultimodalMessage(@Valid @RequestBody ChatMessageRequest request) {
+        
+        String userId = "default-user";
+        
+        return toEventStream(chatService.processMultimodalMessage(
+            request.getSessionId(), request.getContent(), request.getAttachmentIds(), request.getModel(), userId));
+    }
+    
+    /**
+     * Stop a reply that is still streaming. The model request is cancelled and the reply is
+     * kept as far as it got, marked aborted; its stream ends with a {@code stream_aborted} event.
+     */
+    @PostMapping("/messages/{id}/cancel")
+    public ResponseEntity<Void> cancelMessage(@PathVariable UUID id) {
+        String userId = "default-user";
+        
+        boolean cancelled = chatService.cancelGeneration(id, userId);
+        return cancelled ? ResponseEntity.accepted().build() : ResponseEntity.notFound().build();
+    }
+    
     /**
      * Health check endpoint
      */
@@ -147,6 +195,7 @@ public class ChatController {
     // Inner classes for request/response DTOs
     public static class CreateSessionRequest {
         private String title;
+        private String model;  // Optional model route for every message of the session
         
         public String getTitle() {
             return title;
@@ -155,6 +204,14 @@ public class ChatController {
         public void setTitle(String title) {
             this.title = title;
         }
+        
+        public String getModel() {
+            return model;
+        }
+        
+        public void setModel(String model) {
+            this.model = model;
+        }
     }
     
     public static class HealthResponse {
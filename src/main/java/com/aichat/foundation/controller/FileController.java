@@ -1,41 +1,89 @@
 package com.aichat.foundation.controller;
 
 import com.aichat.foundation.dto.FileAttachmentDto;
+import com.aichat.foundation.exception.StorageQuotaExceededException;
 import com.aichat.foundation.service.FileService;
-import org.springframework.core.io.ByteArrayResource;
+import com.aichat.foundation.service.StorageQuotaService;
+import com.aichat.foundation.service.ThumbnailService;
+import com.aichat.foundation.service.ThumbnailSize;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/files")
 @CrossOrigin(origins = "*")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class FileController {
     
     private final FileService fileService;
+    private final ThumbnailService thumbnailService;
+    private final StreamingMultipartReader multipartReader;
+    private final StorageQuotaService storageQuotaService;
     
-    public FileController(FileService fileService) {
+    public FileController(FileService fileService, ThumbnailService thumbnailService,
+                          StreamingMultipartReader multipartReader, StorageQuotaService storageQuotaService) {
         this.fileService = fileService;
+        this.thumbnailService = thumbnailService;
+        this.multipartReader = multipartReader;
+        this.storageQuotaService = storageQuotaService;
     }
     
     /**
-     * Get file content by ID
+     * Get file content by ID.
+     * The file is streamed from disk rather than buffered on the heap. Attachments are
+     * immutable, so responses carry a content-hash ETag and a long-lived Cache-Control;
+     * conditional requests get a 304 and Range requests a 206 from Spring MVC.
+     * With {@code size=small|medium|large} an image thumbnail is returned instead, or the
+     * original when it is no larger than the requested size.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Resource> getFile(@PathVariable UUID id) {
+    public ResponseEntity<Resource> getFile(@PathVariable UUID id,
+                                            @RequestParam(required = false) String size) {
+        ThumbnailSize thumbnailSize;
+        try {
+            thumbnailSize = size == null ? null : ThumbnailSize.fromParam(size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        
         try {
             FileAttachmentDto fileInfo = fileService.getFileInfo(id);
-            byte[] fileContent = fileService.getFileContent(id);
             
-            ByteArrayResource resource = new ByteArrayResource(fileContent);
+            Resource resource = fileService.loadFileAsResource(fileInfo);
+            
+            Optional<Path> thumbnail = thumbnailSize == null
+                ? Optional.empty()
+                : thumbnailService.getThumbnail(fileInfo.getContentHash(), resource, thumbnailSize);
+            if (thumbnail.isPresent()) {
+                Path thumbnailPath = thumbnail.get();
+                return ResponseEntity.ok()
+                    .contentType(thumbnailPath.toString().endsWith(".png") ? MediaType.IMAGE_PNG : MediaType.IMAGE_JPEG)
+                    .eTag(fileInfo.getContentHash() + "-" + thumbnailSize.paramValue())
+                    .lastModified(fileInfo.getUploadedAt().atZone(ZoneId.systemDefault()))
+                    .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable())
+                    .body(new FileSystemResource(thumbnailPath));
+            }
             
             return ResponseEntity.ok()
                 .contentType(MediaType.parseMediaType(fileInfo.getFileType()))
+                .eTag(fileInfo.getContentHash())
+                .lastModified(fileInfo.getUploadedAt().atZone(ZoneId.systemDefault()))
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable())
                 .header(HttpHeaders.CONTENT_DISPOSITION, 
                        "attachment; filename=\"" + fileInfo.getFileName() + "\"")
                 .body(resource);
@@ -72,31 +120,52 @@ public class FileController {
     }
     
     /**
-     * Upload a standalone file (not associated with a message yet)
+     * Upload a standalone file ahead of the message it belongs to.
+     * The file is streamed from the request body and validated as it arrives. The
+     * returned attachment id can be sent with a multimodal message until it expires,
+     * so the transfer overlaps with the user typing. A request whose declared length
+     * alone exceeds the remaining quota is refused before its body is read.
      */
     @PostMapping("/upload")
-    public ResponseEntity<UploadResponse> uploadFile(@RequestParam("file") MultipartFile file) {
-        try {
-            // This would typically be used for temporary uploads
-            // For now, return basic file information
-            return ResponseEntity.ok(new UploadResponse(
+    public ResponseEntity<UploadResponse> uploadFile(HttpServletRequest request) {
+        String userId = "default-user";
+        
+        try (StreamingMultipartReader.Form form = readWithinQuota(request, userId)) {
+            FileAttachmentDto attachment = fileService.uploadPending(form.file("file"), userId);
+            UploadResponse response = new UploadResponse(
                 "File uploaded successfully",
-                file.getOriginalFilename(),
-                file.getSize(),
-                file.getContentType()
-            ));
+                attachment.getFileName(),
+                attachment.getFileSize(),
+                attachment.getFileType()
+            );
+            response.setAttachmentId(attachment.getId());
+            response.setThumbnailUrls(attachment.getThumbnailUrls());
+            return ResponseEntity.ok(response);
+        } catch (StorageQuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(new UploadResponse("Upload failed: " + e.getMessage(), null, 0L, null));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                 .body(new UploadResponse("Upload failed: " + e.getMessage(), null, 0L, null));
         }
     }
     
+    private StreamingMultipartReader.Form readWithinQuota(HttpServletRequest request, String userId) {
+        // The declared length includes the form overhead, so the exact check still follows once the file is staged
+        if (request.getContentLengthLong() > 0) {
+            storageQuotaService.checkQuota(userId, null, request.getContentLengthLong());
+        }
+        return multipartReader.read(request);
+    }
+    
     // Response DTO for file upload
     public static class UploadResponse {
         private String message;
         private String fileName;
         private Long fileSize;
         private String fileType;
+        private UUID attachmentId;
+        private Map<String, String> thumbnailUrls;
         
         public UploadResponse(String message, String fileName, Long fileSize, String fileType) {
             this.message = message;
@@ -137,5 +206,21 @@ public class FileController {
         public void setFileType(String fileType) {
             this.fileType = fileType;
         }
+        
+        public UUID getAttachmentId() {
+            return attachmentId;
+        }
+        
+        public void setAttachmentId(UUID attachmentId) {
+            this.attachmentId = attachmentId;
+        }
+        
+        public Map<String, String> getThumbnailUrls() {
+            return thumbnailUrls;
+        }
+        
+        public void setThumbnailUrls(Map<String, String> thumbnailUrls) {
+            this.thumbnailUrls = thumbnailUrls;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.dto.*;
+import com.aichat.foundation.service.ReactiveChatService;
+import com.aichat.foundation.service.StorageQuotaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import jakarta.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The chat API of {@link ChatController} on WebFlux, for the reactive profile. Requests
+ * and replies are handled on the server's event loops; nothing here waits on a thread.
+ */
+@RestController
+@RequestMapping("/api/chat")
+@CrossOrigin(origins = "*")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveChatController {
+
+    private final ReactiveChatService chatService;
+    private final ReactiveMultipartReader multipartReader;
+    private final StorageQuotaService storageQuotaService;
+    private final ObjectMapper objectMapper;
+
+    public ReactiveChatController(ReactiveChatService chatService, ReactiveMultipartReader multipartReader,
+                                  StorageQuotaService storageQuotaService) {
+        this.chatService = chatService;
+        this.multipartReader = multipartReader;
+        this.storageQuotaService = storageQuotaService;
+        this.objectMapper = new ObjectMapper();
+        // Register JavaTimeModule to handle LocalDateTime serialization
+        JavaTimeModule javaTimeModule = new JavaTimeModule();
+        javaTimeModule.addSerializer(LocalDateTime.class, new LocalDateTimeSerializer(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        this.objectMapper.registerModule(javaTimeModule);
+    }
+
+    /**
+     * Create a new chat session
+     */
+    @PostMapping("/sessions")
+    public Mono<ResponseEntity<ChatSessionDto>> createSession(@RequestBody ChatController.CreateSessionRequest request) {
+        // For demo purposes, using a default user ID
+        String userId = "default-user";
+
+        return chatService.createSession(request.getTitle(), userId, request.getModel())
+            .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Get all sessions for the user
+     */
+    @GetMapping("/sessions")
+    public Mono<ResponseEntity<List<ChatSessionDto>>> getUserSessions() {
+        String userId = "default-user";
+
+        return chatService.getUserSessions(userId)
+            .collectList()
+            .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Get a specific session
+     */
+    @GetMapping("/sessions/{id}")
+    public Mono<ResponseEntity<ChatSessionDto>> getSession(@PathVariable UUID id) {
+        String userId = "default-user";
+
+        return chatService.getSession(id, userId)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Delete a chat session
+     */
+    @DeleteMapping("/sessions/{id}")
+    public Mono<ResponseEntity<Void>> deleteSession(@PathVariable UUID id) {
+        String userId = "default-user";
+
+        return chatService.deleteSession(id, userId)
+            .map(deleted -> deleted ? ResponseEntity.ok().<Void>build() : ResponseEntity.notFound().<Void>build());
+    }
+
+    /**
+     * Get messages for a session
+     */
+    @GetMapping("/sessions/{id}/messages")
+    public Mono<ResponseEntity<List<MessageDto>>> getSessionMessages(@PathVariable UUID id) {
+        String userId = "default-user";
+
+        return chatService.getSessionMessages(id, userId)
+            .collectList()
+            .map(ResponseEntity::ok)
+            .onErrorResume(e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Send a text message
+     */
+    @PostMapping(value = "/message", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<String> sendMessage(@Valid @RequestBody ChatMessageRequest request) {
+        String userId = "default-user";
+
+        return toEventStream(chatService.processTextMessage(request, userId));
+    }
+
+    /**
+     * Send a multimodal message (text + images).
+     * Form fields {@code sessionId}, {@code content}, an optional {@code model} route and one or more {@code file} parts are read
+     * from the request body as it streams in; each image is staged in one pass while it arrives.
+     * A body whose declared length alone exceeds the user's remaining quota is not read.
+     */
+    @PostMapping(value = "/message/multimodal", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<String> sendMultimodalMessage(@RequestHeader HttpHeaders headers, @RequestBody Flux<PartEvent> parts) {
+
+        String userId = "default-user";
+
+        Flux<StreamResponse> responses = checkQuota(userId, headers.getContentLength())
+            .then(multipartReader.read(parts))
+            // Uploads not stored by the time the reply ends are discarded with the form
+            .flatMapMany(form -> Flux.using(() -> form,
+                f -> chatService.processMultimodalUploads(UUID.fromString(f.field("sessionId")), f.field("content"),
+                    f.files("file"), f.optionalField("model"), userId),
+                StreamingMultipartReader.Form::close));
+
+        return toEventStream(responses);
+    }
+
+    /**
+     * Send a multimodal message referring to files already uploaded through
+     * {@code POST /api/files/upload}, so no image bytes travel with the message itself
+     */
+    @PostMapping(value = "/message/multimodal", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<String> sendMultimodalMessage(@Valid @RequestBody ChatMessageRequest request) {
+
+        String userId = "default-user";
+
+        return toEventStream(chatService.processMultimodalMessage(
+            request.getSessionId(), request.getContent(), request.getAttachmentIds(), request.getModel(), userId));
+    }
+
+    /**
+     * Stop a reply that is still streaming. The model request is cancelled and the reply is
+     * kept as far as it got, marked aborted; its stream ends with a {@code stream_aborted} event.
+     */
+    @PostMapping("/messages/{id}/cancel")
+    public ResponseEntity<Void> cancelMessage(@PathVariable UUID id) {
+        String userId = "default-user";
+
+        boolean cancelled = chatService.cancelGeneration(id, userId);
+        return cancelled ? ResponseEntity.accepted().build() : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Health check endpoint
+     */
+    @GetMapping("/health")
+    public ResponseEntity<ChatController.HealthResponse> health() {
+        return ResponseEntity.ok(new ChatController.HealthResponse("Chat service is running", "UP"));
+    }
+
+    /**
+     * Refuse a body whose declared length alone exceeds the user's remaining quota; the
+     * counters may have to be read from the database the first time
+     */
+    private Mono<Void> checkQuota(String userId, long contentLength) {
+        if (contentLength <= 0) {
+            return Mono.empty();
+        }
+        return Mono.<Void>fromRunnable(() -> storageQuotaService.checkQuota(userId, null, contentLength))
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Flux<String> toEventStream(Flux<StreamResponse> responses) {
+        return responses
+            .map(streamResponse -> {
+                try {
+                    // For SSE, just return the JSON without the data: prefix
+                    return objectMapper.writeValueAsString(streamResponse) + "\n";
+                } catch (Exception e) {
+                    return "{\"type\":\"error\",\"content\":\"JSON serialization error: " + e.getMessage() + "\"}\n";
+                }
+            });
+    }
+}
@@ -0,0 +1,177 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.dto.FileAttachmentDto;
+import com.aichat.foundation.exception.StorageQuotaExceededException;
+import com.aichat.foundation.service.FileService;
+import com.aichat.foundation.service.StorageQuotaService;
+import com.aichat.foundation.service.ThumbnailService;
+import com.aichat.foundation.service.ThumbnailSize;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The file API of {@link FileController} on WebFlux, for the reactive profile. Files on
+ * local disk are sent with zero-copy transfer, Range support and conditional requests as
+ * before; objects in a remote blob store are streamed from a worker thread, as reading
+ * them blocks. Attachment lookups go through JPA on workers as well.
+ */
+@RestController
+@RequestMapping("/api/files")
+@CrossOrigin(origins = "*")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveFileController {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final FileService fileService;
+    private final ThumbnailService thumbnailService;
+    private final ReactiveMultipartReader multipartReader;
+    private final StorageQuotaService storageQuotaService;
+
+    public ReactiveFileController(FileService fileService, ThumbnailService thumbnailService,
+                                  ReactiveMultipartReader multipartReader, StorageQuotaService storageQuotaService) {
+        this.fileService = fileService;
+        this.thumbnailService = thumbnailService;
+        this.multipartReader = multipartReader;
+        this.storageQuotaService = storageQuotaService;
+    }
+
+    /**
+     * Get file content by ID, or with {@code size=small|medium|large} an image thumbnail;
+     * see {@link FileController#getFile}
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<?>> getFile(@PathVariable UUID id,
+                                           @RequestParam(required = false) String size) {
+        ThumbnailSize thumbnailSize;
+        try {
+            thumbnailSize = size == null ? null : ThumbnailSize.fromParam(size);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        return blocking(() -> {
+            FileAttachmentDto fileInfo = fileService.getFileInfo(id);
+
+            Resource resource = fileService.loadFileAsResource(fileInfo);
+
+            Optional<Path> thumbnail = thumbnailSize == null
+                ? Optional.empty()
+                : thumbnailService.getThumbnail(fileInfo.getContentHash(), resource, thumbnailSize);
+            if (thumbnail.isPresent()) {
+                Path thumbnailPath = thumbnail.get();
+                return ResponseEntity.ok()
+                    .contentType(thumbnailPath.toString().endsWith(".png") ? MediaType.IMAGE_PNG : MediaType.IMAGE_JPEG)
+                    .eTag(fileInfo.getContentHash() + "-" + thumbnailSize.paramValue())
+                    .lastModified(fileInfo.getUploadedAt().atZone(ZoneId.systemDefault()))
+                    .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable())
+                    .body(new FileSystemResource(thumbnailPath));
+            }
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(fileInfo.getFileType()))
+                .eTag(fileInfo.getContentHash())
+                .lastModified(fileInfo.getUploadedAt().atZone(ZoneId.systemDefault()))
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                       "attachment; filename=\"" + fileInfo.getFileName() + "\"");
+            if (resource.isFile()) {
+                return response.body(resource);
+            }
+            return response
+                .contentLength(fileInfo.getFileSize())
+                .body(DataBufferUtils.readInputStream(resource::getInputStream,
+                        DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE)
+                    .subscribeOn(Schedulers.boundedElastic()));
+        }).onErrorResume(e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Get file information (metadata only)
+     */
+    @GetMapping("/{id}/info")
+    public Mono<ResponseEntity<FileAttachmentDto>> getFileInfo(@PathVariable UUID id) {
+        return blocking(() -> fileService.getFileInfo(id))
+            .map(ResponseEntity::ok)
+            .onErrorResume(e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Delete a file
+     */
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteFile(@PathVariable UUID id) {
+        return blocking(() -> {
+                fileService.deleteFile(id);
+                return ResponseEntity.ok().<Void>build();
+            })
+            .onErrorResume(e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Upload a standalone file ahead of the message it belongs to; see
+     * {@link FileController#uploadFile}
+     */
+    @PostMapping("/upload")
+    public Mono<ResponseEntity<FileController.UploadResponse>> uploadFile(@RequestHeader HttpHeaders headers,
+                                                                          @RequestBody Flux<PartEvent> parts) {
+        String userId = "default-user";
+
+        // The declared length includes the form overhead, so the exact check still follows once the file is staged
+        long contentLength = headers.getContentLength();
+        Mono<Void> quota = contentLength > 0
+            ? blocking(() -> {
+                storageQuotaService.checkQuota(userId, null, contentLength);
+                return true;
+            }).then()
+            : Mono.empty();
+
+        return quota
+            .then(multipartReader.read(parts))
+            .flatMap(form -> Mono.using(() -> form,
+                f -> blocking(() -> fileService.uploadPending(f.file("file"), userId)),
+                StreamingMultipartReader.Form::close))
+            .map(attachment -> {
+                FileController.UploadResponse response = new FileController.UploadResponse(
+                    "File uploaded successfully",
+                    attachment.getFileName(),
+                    attachment.getFileSize(),
+                    attachment.getFileType()
+                );
+                response.setAttachmentId(attachment.getId());
+                response.setThumbnailUrls(attachment.getThumbnailUrls());
+                return ResponseEntity.ok(response);
+            })
+            .onErrorResume(StorageQuotaExceededException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(new FileController.UploadResponse("Upload failed: " + e.getMessage(), null, 0L, null))))
+            .onErrorResume(e -> Mono.just(ResponseEntity.badRequest()
+                .body(new FileController.UploadResponse("Upload failed: " + e.getMessage(), null, 0L, null))));
+    }
+
+    /**
+     * Run a call to the blocking services on a worker rather than the event loop
+     */
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,93 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.exception.FileStorageException;
+import com.aichat.foundation.service.FileService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.FormPartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads a multipart upload as its parts arrive, for the reactive profile; the counterpart
+ * of {@link StreamingMultipartReader}. Each file part is handed to
+ * {@link FileService#stageUpload(Flux, String)} buffer by buffer, so it is validated,
+ * hashed and written once, and an oversized or mistyped file is rejected without reading
+ * the rest of it, as is a file part beyond the number one message may carry.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMultipartReader {
+
+    private final FileService fileService;
+    private final long maxRequestSize;
+    private final int maxFiles;
+
+    public ReactiveMultipartReader(FileService fileService,
+                                   @Value("${spring.servlet.multipart.max-request-size:10MB}") DataSize maxRequestSize,
+                                   @Value("${image.max-per-message:8}") int maxFiles) {
+        this.fileService = fileService;
+        this.maxRequestSize = maxRequestSize.toBytes();
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Read every part of the request, staging file parts and collecting form fields
+     */
+    public Mono<StreamingMultipartReader.Form> read(Flux<PartEvent> parts) {
+        return Mono.defer(() -> {
+            StreamingMultipartReader.Form form = new StreamingMultipartReader.Form();
+            AtomicLong received = new AtomicLong();
+            return parts
+                .windowUntil(PartEvent::isLast)
+                .concatMap(part -> part.switchOnFirst((first, events) -> {
+                    PartEvent event = first.get();
+                    if (event instanceof FormPartEvent field) {
+                        form.putField(field.name(), readField(field));
+                        return events.then();
+                    }
+                    if (event instanceof FilePartEvent file && !file.filename().isEmpty()) {
+                        if (form.fileCount() >= maxFiles) {
+                            DataBufferUtils.release(file.content());
+                            return Mono.error(StreamingMultipartReader.tooManyFiles(maxFiles));
+                        }
+                        Flux<DataBuffer> content = events.map(fileEvent -> counted(fileEvent.content(), received));
+                        return fileService.stageUpload(content, file.filename())
+                            .doOnNext(staged -> form.addFile(file.name(), staged))
+                            .then();
+                    }
+                    return events.doOnNext(skipped -> DataBufferUtils.release(skipped.content())).then();
+                }))
+                .then(Mono.just(form))
+                .onErrorMap(e -> !(e instanceof FileStorageException || e instanceof IllegalArgumentException),
+                    e -> new FileStorageException("Failed to read upload", e))
+                .doOnError(e -> form.close())
+                .doOnCancel(form::close);
+        });
+    }
+
+    private String readField(FormPartEvent field) {
+        String value = field.value();
+        if (value.getBytes(StandardCharsets.UTF_8).length > StreamingMultipartReader.MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("Form field too large: " + field.name());
+        }
+        return value;
+    }
+
+    private DataBuffer counted(DataBuffer buffer, AtomicLong received) {
+        if (received.addAndGet(buffer.readableByteCount()) > maxRequestSize) {
+            DataBufferUtils.release(buffer);
+            throw new FileStorageException("Upload rejected: the request exceeds its maximum size of " + maxRequestSize + " bytes");
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,110 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.dto.StreamResponse;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A reply streaming to one stream of a WebSocket connection. It requests one event per
+ * credit granted by the client and remembers which assistant message it carries, so that
+ * it can be found by connection and stream id or by message id.
+ */
+public abstract class StreamSubscription extends BaseSubscriber<StreamResponse> {
+
+    private final String connectionId;
+    private final String streamId;
+    private final UUID sessionId;
+    private final long maxCredits;
+    private final long initialCredits;
+    private final Instant startedAt = Instant.now();
+    // Credits granted but not yet used, never more than maxCredits
+    private final AtomicLong credits = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private volatile UUID messageId;
+
+    protected StreamSubscription(String connectionId, String streamId, UUID sessionId,
+                                 long initialCredits, long maxCredits) {
+        this.connectionId = connectionId;
+        this.streamId = streamId;
+        this.sessionId = sessionId;
+        this.maxCredits = maxCredits;
+        this.initialCredits = initialCredits;
+    }
+
+    /**
+     * Send an event to the client
+     *
+     * @return false when the connection can no longer take it, which cancels the reply
+     */
+    protected abstract boolean deliver(StreamResponse event);
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+        grant(initialCredits);
+    }
+
+    @Override
+    protected final void hookOnNext(StreamResponse event) {
+        credits.decrementAndGet();
+        events.incrementAndGet();
+        if ("stream_start".equals(event.getType())) {
+            messageId = event.getMessageId();
+        }
+        if (!deliver(event)) {
+            cancel();
+        }
+    }
+
+    /**
+     * Add credits from the client, keeping at most max-credits outstanding
+     */
+    public void grant(long requested) {
+        if (requested <= 0) {
+            return;
+        }
+        long held = credits.getAndUpdate(current -> Math.min(maxCredits, current + requested));
+        long added = Math.min(maxCredits, held + requested) - held;
+        if (added > 0) {
+            request(added);
+        }
+    }
+
+    /**
+     * Let the rest of the reply through regardless of credits, once it is known to be short
+     */
+    public void drain() {
+        request(Long.MAX_VALUE);
+    }
+
+    public String getConnectionId() {
+        return connectionId;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    public UUID getSessionId() {
+        return sessionId;
+    }
+
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public long getEvents() {
+        return events.get();
+    }
+
+    public long getCredits() {
+        return Math.max(credits.get(), 0);
+    }
+}
@@ -0,0 +1,116 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.exception.ChatServiceException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Replies streaming over WebSocket connections on this node, by connection and stream id.
+ * A connection may hold a limited number at once. Its streams are disposed when the client
+ * stops one or when the connection closes, which also cancels their model requests.
+ */
+@Component
+public class StreamSubscriptionRegistry {
+
+    private final int maxStreamsPerConnection;
+    private final ConcurrentMap<String, ConcurrentMap<String, StreamSubscription>> connections =
+        new ConcurrentHashMap<>();
+
+    public StreamSubscriptionRegistry(@Value("${websocket.max-streams-per-connection:4}") int maxStreamsPerConnection,
+                                      MeterRegistry meterRegistry) {
+        this.maxStreamsPerConnection = maxStreamsPerConnection;
+        Gauge.builder("websocket.streams.active", this, registry -> registry.all().size())
+            .description("Replies streaming over WebSocket connections")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Start tracking a connection; streams can only be added to open connections
+     */
+    public void openConnection(String connectionId) {
+        connections.putIfAbsent(connectionId, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Stop tracking a connection and dispose every stream still open on it
+     */
+    public void closeConnection(String connectionId) {
+        Map<String, StreamSubscription> streams = connections.remove(connectionId);
+        if (streams != null) {
+            streams.values().forEach(StreamSubscription::dispose);
+        }
+    }
+
+    /**
+     * Add a stream before it is subscribed
+     *
+     * @throws ChatServiceException when the connection is closed, already has a stream with
+     *                              this id or is at its limit
+     */
+    public void register(StreamSubscription subscription) {
+        ConcurrentMap<String, StreamSubscription> added = connections.computeIfPresent(subscription.getConnectionId(),
+            (id, streams) -> {
+                if (streams.containsKey(subscription.getStreamId())) {
+                    throw new ChatServiceException("Stream " + subscription.getStreamId() + " is already open");
+                }
+                if (streams.size() >= maxStreamsPerConnection) {
+                    throw new ChatServiceException("At most " + maxStreamsPerConnection
+                        + " replies can stream over one connection at a time");
+                }
+                streams.put(subscription.getStreamId(), subscription);
+                return streams;
+            });
+        if (added == null) {
+            throw new ChatServiceException("Connection is closed");
+        }
+    }
+
+    /**
+     * Forget a stream that has finished
+     */
+    public void remove(StreamSubscription subscription) {
+        Map<String, StreamSubscription> streams = connections.get(subscription.getConnectionId());
+        if (streams != null) {
+            streams.remove(subscription.getStreamId(), subscription);
+        }
+    }
+
+    public Optional<StreamSubscription> get(String connectionId, String streamId) {
+        Map<String, StreamSubscription> streams = connections.get(connectionId);
+        return Optional.ofNullable(streams == null ? null : streams.get(streamId));
+    }
+
+    /**
+     * The stream carrying the reply with this assistant message id, once it has started
+     */
+    public Optional<StreamSubscription> findByMessageId(UUID messageId) {
+        return all().stream()
+            .filter(subscription -> messageId.equals(subscription.getMessageId()))
+            .findFirst();
+    }
+
+    public List<StreamSubscription> all() {
+        return connections.values().stream()
+            .map(Map::values)
+            .flatMap(Collection::stream)
+            .toList();
+    }
+
+    public int connectionCount() {
+        return connections.size();
+    }
+
+    public int getMaxStreamsPerConnection() {
+        return maxStreamsPerConnection;
+    }
+}
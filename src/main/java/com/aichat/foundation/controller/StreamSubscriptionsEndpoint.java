@@ -0,0 +1,60 @@
+package com.aichat.foundation.controller;
+
+import org.springframework.boot.actuate.endpoint.SecurityContext;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replies streaming over WebSocket on this node, at {@code /actuator/streams} once the
+ * endpoint is exposed. Session and message ids are enough to cancel a reply, so only an
+ * authenticated caller gets the list of streams; anyone else sees the counts.
+ */
+@Component
+@Endpoint(id = "streams")
+public class StreamSubscriptionsEndpoint {
+
+    private final StreamSubscriptionRegistry registry;
+
+    public StreamSubscriptionsEndpoint(StreamSubscriptionRegistry registry) {
+        this.registry = registry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> streams(SecurityContext securityContext) {
+        List<StreamSubscription> subscriptions = registry.all();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("connections", registry.connectionCount());
+        result.put("maxStreamsPerConnection", registry.getMaxStreamsPerConnection());
+        result.put("activeStreams", subscriptions.size());
+        if (isAuthenticated(securityContext.getPrincipal())) {
+            result.put("streams", subscriptions.stream()
+                .map(StreamSubscriptionsEndpoint::describe)
+                .toList());
+        }
+        return result;
+    }
+
+    private static boolean isAuthenticated(Principal principal) {
+        return principal != null && !(principal instanceof AnonymousAuthenticationToken);
+    }
+
+    private static Map<String, Object> describe(StreamSubscription subscription) {
+        Map<String, Object> stream = new LinkedHashMap<>();
+        stream.put("connection", subscription.getConnectionId());
+        stream.put("stream", subscription.getStreamId());
+        stream.put("sessionId", subscription.getSessionId());
+        stream.put("messageId", subscription.getMessageId());
+        stream.put("startedAt", subscription.getStartedAt());
+        stream.put("events", subscription.getEvents());
+        stream.put("credits", subscription.getCredits());
+        return stream;
+    }
+}
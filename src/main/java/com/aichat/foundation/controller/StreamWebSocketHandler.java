@@ -0,0 +1,270 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.dto.ChatMessageRequest;
+import com.aichat.foundation.dto.StreamResponse;
+import com.aichat.foundation.exception.ChatServiceException;
+import com.aichat.foundation.service.ChatService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams replies over a plain WebSocket. A connection carries several replies at once,
+ * each under a stream id chosen by the client:
+ * <pre>
+ * → {"type":"start", "stream":"1", "sessionId":"…", "content":"…", "model":"text", "credits":32}
+ * ← {"stream":"1", "event":{"type":"stream_start", …}}
+ * → {"type":"credit", "stream":"1", "credits":16}
+ * → {"type":"cancel", "stream":"1"}
+ * </pre>
+ * A stream sends one event per credit and waits for more once they are used up, so a
+ * slow client holds the reply back rather than piling events up on the server. Open
+ * streams are tracked in {@link StreamSubscriptionRegistry}, which also limits how many a
+ * connection may have. Outbound frames go through a per-connection queue bounded in size
+ * and send time; a client that exceeds either is disconnected, which cancels its replies.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class StreamWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamWebSocketHandler.class);
+
+    private final ChatService chatService;
+    private final StreamSubscriptionRegistry subscriptions;
+    private final ObjectMapper objectMapper;
+
+    @Value("${websocket.send-buffer-size-limit:512KB}")
+    private DataSize sendBufferSizeLimit;
+
+    @Value("${websocket.send-time-limit:PT10S}")
+    private Duration sendTimeLimit;
+
+    @Value("${websocket.max-credits:256}")
+    private int maxCredits;
+
+    // Outbound side of each connection, bounded by the decorator
+    private final Map<String, WebSocketSession> connections = new ConcurrentHashMap<>();
+
+    public StreamWebSocketHandler(ChatService chatService, StreamSubscriptionRegistry subscriptions,
+                                  ObjectMapper objectMapper) {
+        this.chatService = chatService;
+        this.subscriptions = subscriptions;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        connections.put(session.getId(), new ConcurrentWebSocketSessionDecorator(session,
+            (int) sendTimeLimit.toMillis(), (int) sendBufferSizeLimit.toBytes(),
+            ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE));
+        subscriptions.openConnection(session.getId());
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        String connectionId = session.getId();
+        ClientFrame frame;
+        try {
+            frame = objectMapper.readValue(message.getPayload(), ClientFrame.class);
+        } catch (JsonProcessingException e) {
+            send(connectionId, null, StreamResponse.error(null, "Malformed frame: " + e.getOriginalMessage()));
+            return;
+        }
+        if (frame.getStream() == null || frame.getStream().isBlank()) {
+            send(connectionId, null, StreamResponse.error(null, "Frame has no stream id"));
+            return;
+        }
+        switch (frame.getType() == null ? "" : frame.getType()) {
+            case "start" -> start(connectionId, frame);
+            case "credit" -> subscriptions.get(connectionId, frame.getStream())
+                .ifPresent(subscription -> subscription.grant(frame.getCredits()));
+            case "cancel" -> cancel(connectionId, frame.getStream());
+            default -> send(connectionId, frame.getStream(),
+                StreamResponse.error(frame.getSessionId(), "Unknown frame type: " + frame.getType()));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        connections.remove(session.getId());
+        subscriptions.closeConnection(session.getId());
+    }
+
+    private void start(String connectionId, ClientFrame frame) {
+        String userId = "default-user"; // In real implementation, get from security context
+        if (frame.getSessionId() == null || frame.getContent() == null || frame.getContent().isBlank()) {
+            send(connectionId, frame.getStream(),
+                StreamResponse.error(frame.getSessionId(), "A stream needs a sessionId and content"));
+            return;
+        }
+        StreamSubscriber subscriber = new StreamSubscriber(connectionId, frame.getStream(), frame.getSessionId(),
+            Math.min(Math.max(frame.getCredits(), 0), maxCredits));
+        try {
+            subscriptions.register(subscriber);
+        } catch (ChatServiceException e) {
+            send(connectionId, frame.getStream(), StreamResponse.error(frame.getSessionId(), e.getMessage()));
+            return;
+        }
+
+        ChatMessageRequest request = new ChatMessageRequest();
+        request.setSessionId(frame.getSessionId());
+        request.setContent(frame.getContent());
+        request.setType("text");
+        request.setModel(frame.getModel());
+
+        // Saving the turn and building its prompt hit the database; keep them off the socket's thread
+        Flux.defer(() -> chatService.processTextMessage(request, userId))
+            .subscribeOn(Schedulers.boundedElastic(), false)
+            .subscribe(subscriber);
+    }
+
+    /**
+     * Stop a stream. Once its reply has started it is stopped like any other, so the client
+     * still gets {@code stream_aborted} after the partial reply has been saved; before that
+     * the stream is dropped and {@code stream_aborted} sent straight away.
+     */
+    private void cancel(String connectionId, String streamId) {
+        StreamSubscription subscription = subscriptions.get(connectionId, streamId).orElse(null);
+        if (subscription == null) {
+            return;
+        }
+        UUID messageId = subscription.getMessageId();
+        if (messageId != null && chatService.cancelGeneration(messageId, "default-user")) {
+            // The model request is stopped, so what is left is short; let it through however
+            // few credits the client has so that it sees the reply end
+            subscription.drain();
+        } else {
+            subscription.dispose();
+            send(connectionId, streamId, StreamResponse.streamAborted(subscription.getSessionId(), messageId));
+        }
+    }
+
+    /**
+     * Send an event on a stream
+     *
+     * @return false when the connection is gone or can no longer take it
+     */
+    private boolean send(String connectionId, String streamId, StreamResponse event) {
+        WebSocketSession session = connections.get(connectionId);
+        if (session == null) {
+            return false;
+        }
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("stream", streamId);
+        frame.put("event", event);
+        try {
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(frame)));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // The decorator closes a connection whose queue overflows or stalls
+            logger.debug("Dropping frame for WebSocket {}: {}", connectionId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Forwards one reply to its stream
+     */
+    private final class StreamSubscriber extends StreamSubscription {
+
+        private StreamSubscriber(String connectionId, String streamId, UUID sessionId, long initialCredits) {
+            super(connectionId, streamId, sessionId, initialCredits, maxCredits);
+        }
+
+        @Override
+        protected boolean deliver(StreamResponse event) {
+            return send(getConnectionId(), getStreamId(), event);
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            send(getConnectionId(), getStreamId(),
+                StreamResponse.error(getSessionId(), "Error processing message: " + throwable.getMessage()));
+        }
+
+        @Override
+        protected void hookFinally(SignalType type) {
+            subscriptions.remove(this);
+        }
+    }
+
+    /**
+     * A frame sent by the client
+     */
+    public static class ClientFrame {
+        private String type;
+        private String stream;
+        private UUID sessionId;
+        private String content;
+        private String model;
+        private long credits;
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getStream() {
+            return stream;
+        }
+
+        public void setStream(String stream) {
+            this.stream = stream;
+        }
+
+        public UUID getSessionId() {
+            return sessionId;
+        }
+
+        public void setSessionId(UUID sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public void setContent(String content) {
+            this.content = content;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public void setModel(String model) {
+            this.model = model;
+        }
+
+        public long getCredits() {
+            return credits;
+        }
+
+        public void setCredits(long credits) {
+            this.credits = credits;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.exception.FileStorageException;
+import com.aichat.foundation.service.FileService;
+import com.aichat.foundation.service.StagedUpload;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.core.FileUploadException;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a multipart upload straight off the request body.
+ *
+ * Servlet multipart handling buffers every part to memory or a temp file before the
+ * controller runs. Here file parts are handed to {@link FileService#stageUpload} as
+ * they arrive, so each upload is validated, hashed and written once, and an oversized
+ * or mistyped file is rejected without reading the rest of it, as is a file part beyond
+ * the number one message may carry. Requires
+ * {@code spring.servlet.multipart.resolve-lazily} so the body is still unread.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class StreamingMultipartReader {
+
+    static final int MAX_FIELD_BYTES = 64 * 1024;
+
+    private final FileService fileService;
+    private final long maxRequestSize;
+    private final int maxFiles;
+
+    public StreamingMultipartReader(FileService fileService,
+                                    @Value("${spring.servlet.multipart.max-request-size:10MB}") DataSize maxRequestSize,
+                                    @Value("${image.max-per-message:8}") int maxFiles) {
+        this.fileService = fileService;
+        this.maxRequestSize = maxRequestSize.toBytes();
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Read every part of the request, staging file parts and collecting form fields
+     */
+    public Form read(HttpServletRequest request) {
+        if (!JakartaServletFileUpload.isMultipartContent(request)) {
+            throw new IllegalArgumentException("Expected a multipart/form-data request");
+        }
+
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+        upload.setMaxSize(maxRequestSize);
+
+        Form form = new Form();
+        try {
+            FileItemInputIterator items = upload.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemInput item = items.next();
+                try (InputStream in = item.getInputStream()) {
+                    if (item.isFormField()) {
+                        form.putField(item.getFieldName(), readField(item.getFieldName(), in));
+                    } else if (item.getName() != null && !item.getName().isEmpty()) {
+                        if (form.fileCount() >= maxFiles) {
+                            throw tooManyFiles(maxFiles);
+                        }
+                        form.addFile(item.getFieldName(), fileService.stageUpload(in, item.getName()));
+                    }
+                }
+            }
+            return form;
+        } catch (FileUploadException e) {
+            form.close();
+            throw new FileStorageException("Upload rejected: " + e.getMessage(), e);
+        } catch (IOException e) {
+            form.close();
+            throw new FileStorageException("Failed to read upload", e);
+        } catch (RuntimeException e) {
+            form.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Rejection for a file part beyond the limit, raised before any of its bytes are staged
+     */
+    static FileStorageException tooManyFiles(int maxFiles) {
+        return new FileStorageException("Upload rejected: at most " + maxFiles + " files can be sent per request");
+    }
+
+    private String readField(String name, InputStream in) throws IOException {
+        byte[] value = in.readNBytes(MAX_FIELD_BYTES + 1);
+        if (value.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("Form field too large: " + name);
+        }
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parsed form fields and staged files; closing it discards files that were not stored
+     */
+    public static final class Form implements AutoCloseable {
+
+        private final Map<String, String> fields = new HashMap<>();
+        private final Map<String, List<StagedUpload>> files = new HashMap<>();
+
+        void putField(String name, String value) {
+            fields.put(name, value);
+        }
+
+        void addFile(String name, StagedUpload upload) {
+            files.computeIfAbsent(name, key -> new ArrayList<>()).add(upload);
+        }
+
+        int fileCount() {
+            return files.values().stream().mapToInt(List::size).sum();
+        }
+
+        public String field(String name) {
+            String value = fields.get(name);
+            if (value == null) {
+                throw new IllegalArgumentException("Missing required field: " + name);
+            }
+            return value;
+        }
+
+        public String optionalField(String name) {
+            return fields.get(name);
+        }
+
+        public StagedUpload file(String name) {
+            List<StagedUpload> staged = files.get(name);
+            if (staged == null || staged.isEmpty()) {
+                throw new IllegalArgumentException("Missing required file: " + name);
+            }
+            return staged.get(0);
+        }
+
+        public List<StagedUpload> files(String name) {
+            List<StagedUpload> staged = files.get(name);
+            if (staged == null || staged.isEmpty()) {
+                throw new IllegalArgumentException("Missing required file: " + name);
+            }
+            return List.copyOf(staged);
+        }
+
+        @Override
+        public void close() {
+            files.values().forEach(staged -> staged.forEach(StagedUpload::close));
+        }
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 
+import java.util.List;
 import java.util.UUID;
 
 public class ChatMessageRequest {
@@ -17,6 +18,8 @@ public class ChatMessageRequest {
     
     private String type = "text";  // Default to text
     private String clientId;       // For client-side tracking
+    private List<UUID> attachmentIds;  // Pre-uploaded files sent with a multimodal message
+    private String model;          // Optional model route for this message, overriding the session's
     
     // Constructors
     public ChatMessageRequest() {}
@@ -59,4 +62,20 @@ public class ChatMessageRequest {
     public void setClientId(String clientId) {
         this.clientId = clientId;
     }
+    
+    public List<UUID> getAttachmentIds() {
+        return attachmentIds;
+    }
+    
+    public void setAttachmentIds(List<UUID> attachmentIds) {
+        this.attachmentIds = attachmentIds;
+    }
+    
+    public String getModel() {
+        return model;
+    }
+    
+    public void setModel(String model) {
+        this.model = model;
+    }
 }
\ No newline at end of file
@@ -16,6 +16,7 @@ public class ChatSessionDto {
     
     private String userId;
     private String status;
+    private String modelRoute;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private int messageCount;
@@ -67,6 +68,14 @@ public class ChatSessionDto {
         this.status = status;
     }
     
+    public String getModelRoute() {
+        return modelRoute;
+    }
+    
+    public void setModelRoute(String modelRoute) {
+        this.modelRoute = modelRoute;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
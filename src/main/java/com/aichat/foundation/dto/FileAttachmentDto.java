@@ -1,6 +1,7 @@
 package com.aichat.foundation.dto;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 import java.util.UUID;
 
 public class FileAttachmentDto {
@@ -11,7 +12,9 @@ public class FileAttachmentDto {
     private String fileType;
     private String filePath;
     private Long fileSize;
+    private String contentHash;
     private LocalDateTime uploadedAt;
+    private Map<String, String> thumbnailUrls;
     
     // Constructors
     public FileAttachmentDto() {}
@@ -76,6 +79,14 @@ public class FileAttachmentDto {
         this.fileSize = fileSize;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
     public LocalDateTime getUploadedAt() {
         return uploadedAt;
     }
@@ -83,4 +94,12 @@ public class FileAttachmentDto {
     public void setUploadedAt(LocalDateTime uploadedAt) {
         this.uploadedAt = uploadedAt;
     }
+    
+    public Map<String, String> getThumbnailUrls() {
+        return thumbnailUrls;
+    }
+    
+    public void setThumbnailUrls(Map<String, String> thumbnailUrls) {
+        this.thumbnailUrls = thumbnailUrls;
+    }
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ public class MessageDto {
     @NotBlank(message = "Message type is required")
     private String type;
     
+    private String status;
     private LocalDateTime createdAt;
     private String metadata;
     private List<FileAttachmentDto> attachments;
@@ -73,6 +74,14 @@ public class MessageDto {
         this.type = type;
     }
     
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -5,7 +5,7 @@ import java.util.UUID;
 
 public class StreamResponse {
     
-    private String type;           // stream_start, stream_chunk, stream_end, error
+    private String type;           // stream_start, stream_chunk, stream_end, stream_aborted, error
     private UUID sessionId;
     private UUID messageId;
     private String content;
@@ -76,6 +76,10 @@ public class StreamResponse {
         return new StreamResponse("stream_end", sessionId, messageId, "");
     }
     
+    public static StreamResponse streamAborted(UUID sessionId, UUID messageId) {
+        return new StreamResponse("stream_aborted", sessionId, messageId, "");
+    }
+    
     public static StreamResponse error(UUID sessionId, String errorMessage) {
         return new StreamResponse("error", sessionId, null, errorMessage);
     }
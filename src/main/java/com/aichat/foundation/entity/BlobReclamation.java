@@ -0,0 +1,61 @@
+package com.aichat.foundation.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stored bytes that lost their last reference and are waiting to be removed from
+ * the blob store by the background reclaimer
+ */
+@Entity
+@Table(name = "blob_reclamations", indexes = @Index(name = "idx_blob_reclamations_enqueued_at", columnList = "enqueued_at"))
+public class BlobReclamation {
+    
+    @Id
+    @Size(max = 500)
+    @Column(name = "storage_path", length = 500)
+    private String storagePath;
+    
+    @Size(max = 64)
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
+    @Column(name = "enqueued_at", nullable = false)
+    private LocalDateTime enqueuedAt;
+    
+    // Constructors
+    public BlobReclamation() {}
+    
+    public BlobReclamation(String storagePath, String contentHash) {
+        this.storagePath = storagePath;
+        this.contentHash = contentHash;
+        this.enqueuedAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public String getStoragePath() {
+        return storagePath;
+    }
+    
+    public void setStoragePath(String storagePath) {
+        this.storagePath = storagePath;
+    }
+    
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public LocalDateTime getEnqueuedAt() {
+        return enqueuedAt;
+    }
+    
+    public void setEnqueuedAt(LocalDateTime enqueuedAt) {
+        this.enqueuedAt = enqueuedAt;
+    }
+}
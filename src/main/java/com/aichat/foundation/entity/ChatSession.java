@@ -34,6 +34,10 @@ public class ChatSession {
     @Column(nullable = false)
     private SessionStatus status = SessionStatus.ACTIVE;
     
+    @Size(max = 50)
+    @Column(name = "model_route", length = 50)
+    private String modelRoute;
+    
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -86,6 +90,14 @@ public class ChatSession {
         this.status = status;
     }
     
+    public String getModelRoute() {
+        return modelRoute;
+    }
+    
+    public void setModelRoute(String modelRoute) {
+        this.modelRoute = modelRoute;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,119 @@
+package com.aichat.foundation.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.domain.Persistable;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A row of {@code chat_sessions} as read and written over R2DBC in the reactive profile.
+ * The table itself is defined by {@link ChatSession}; ids and timestamps, which Hibernate
+ * fills in there, are set when the row is created.
+ */
+@Table("chat_sessions")
+public class ChatSessionRow implements Persistable<UUID> {
+
+    @Id
+    private UUID id;
+
+    private String title;
+
+    private String userId;
+
+    private SessionStatus status;
+
+    private String modelRoute;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    @Transient
+    private boolean isNew;
+
+    // Constructors
+    public ChatSessionRow() {}
+
+    /**
+     * A new active session, inserted on save
+     */
+    public static ChatSessionRow create(String title, String userId, String modelRoute) {
+        LocalDateTime now = LocalDateTime.now();
+        ChatSessionRow row = new ChatSessionRow();
+        row.id = UUID.randomUUID();
+        row.title = title;
+        row.userId = userId;
+        row.status = SessionStatus.ACTIVE;
+        row.modelRoute = modelRoute;
+        row.createdAt = now;
+        row.updatedAt = now;
+        row.isNew = true;
+        return row;
+    }
+
+    // Getters and Setters
+    @Override
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public SessionStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(SessionStatus status) {
+        this.status = status;
+    }
+
+    public String getModelRoute() {
+        return modelRoute;
+    }
+
+    public void setModelRoute(String modelRoute) {
+        this.modelRoute = modelRoute;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+}
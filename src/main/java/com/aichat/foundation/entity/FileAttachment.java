@@ -17,8 +17,9 @@ public class FileAttachment {
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
     
+    /** Null while the attachment is a pre-uploaded handle not yet sent with a message */
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "message_id", nullable = false)
+    @JoinColumn(name = "message_id")
     private Message message;
     
     @NotBlank
@@ -40,6 +41,18 @@ public class FileAttachment {
     @Column(name = "file_size", nullable = false)
     private Long fileSize;
     
+    @Size(max = 64)
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
+    @Size(max = 255)
+    @Column(name = "owner_id")
+    private String ownerId;
+    
+    /** When an unclaimed pre-upload is removed; cleared once the attachment is sent */
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+    
     @CreationTimestamp
     @Column(name = "uploaded_at", nullable = false, updatable = false)
     private LocalDateTime uploadedAt;
@@ -104,6 +117,30 @@ public class FileAttachment {
         this.fileSize = fileSize;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public String getOwnerId() {
+        return ownerId;
+    }
+    
+    public void setOwnerId(String ownerId) {
+        this.ownerId = ownerId;
+    }
+    
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
     public LocalDateTime getUploadedAt() {
         return uploadedAt;
     }
@@ -0,0 +1,78 @@
+package com.aichat.foundation.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persisted progress of a one-off or recurring maintenance job, so finished
+ * migrations are not repeated on every startup and an interrupted pass resumes
+ * from its last position
+ */
+@Entity
+@Table(name = "maintenance_checkpoints")
+public class MaintenanceCheckpoint {
+    
+    @Id
+    @Size(max = 255)
+    @Column(name = "name", length = 255)
+    private String name;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    /** Job-specific resume position of a pass in progress; null when no pass is running */
+    @Size(max = 255)
+    @Column(name = "position", length = 255)
+    private String position;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Constructors
+    public MaintenanceCheckpoint() {}
+    
+    public MaintenanceCheckpoint(String name) {
+        this.name = name;
+    }
+    
+    public boolean isCompleted() {
+        return completedAt != null;
+    }
+    
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+    
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+    
+    public String getPosition() {
+        return position;
+    }
+    
+    public void setPosition(String position) {
+        this.position = position;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
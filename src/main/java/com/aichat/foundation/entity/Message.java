@@ -31,6 +31,11 @@ public class Message {
     @Column(nullable = false)
     private MessageType type;
     
+    // Assistant replies stopped by the user or a disconnect keep the content generated so far
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private MessageStatus status = MessageStatus.COMPLETE;
+    
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -83,6 +88,14 @@ public class Message {
         this.type = type;
     }
     
+    public MessageStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(MessageStatus status) {
+        this.status = status;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
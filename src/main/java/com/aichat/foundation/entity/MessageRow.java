@@ -0,0 +1,125 @@
+package com.aichat.foundation.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.domain.Persistable;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A row of {@code messages} as read and written over R2DBC in the reactive profile.
+ * The table itself is defined by {@link Message}; the session is referenced by id only.
+ */
+@Table("messages")
+public class MessageRow implements Persistable<UUID> {
+
+    @Id
+    private UUID id;
+
+    private UUID sessionId;
+
+    private String content;
+
+    private MessageType type;
+
+    private MessageStatus status;
+
+    private LocalDateTime createdAt;
+
+    private String metadata;
+
+    @Transient
+    private boolean isNew;
+
+    // Constructors
+    public MessageRow() {}
+
+    /**
+     * A new message in the session, inserted on save
+     */
+    public static MessageRow create(UUID sessionId, String content, MessageType type) {
+        MessageRow row = new MessageRow();
+        row.id = UUID.randomUUID();
+        row.sessionId = sessionId;
+        row.content = content;
+        row.type = type;
+        row.status = MessageStatus.COMPLETE;
+        row.createdAt = LocalDateTime.now();
+        row.isNew = true;
+        return row;
+    }
+
+    /**
+     * An empty assistant reply, marked streaming until the generated content is saved
+     */
+    public static MessageRow createReply(UUID sessionId) {
+        MessageRow row = create(sessionId, "", MessageType.ASSISTANT);
+        row.status = MessageStatus.STREAMING;
+        return row;
+    }
+
+    // Getters and Setters
+    @Override
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public UUID getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(UUID sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public MessageType getType() {
+        return type;
+    }
+
+    public void setType(MessageType type) {
+        this.type = type;
+    }
+
+    public MessageStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(MessageStatus status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getMetadata() {
+        return metadata;
+    }
+
+    public void setMetadata(String metadata) {
+        this.metadata = metadata;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+}
@@ -0,0 +1,8 @@
+package com.aichat.foundation.entity;
+
+public enum MessageStatus {
+    // An assistant reply that is still being generated
+    STREAMING,
+    COMPLETE,
+    ABORTED
+}
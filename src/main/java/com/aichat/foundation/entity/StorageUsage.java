@@ -0,0 +1,46 @@
+package com.aichat.foundation.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Running total of attachment bytes for one user or one session, maintained on every
+ * upload and delete so quota checks never have to sum attachments
+ */
+@Entity
+@Table(name = "storage_usage")
+public class StorageUsage {
+    
+    @Id
+    @Size(max = 300)
+    @Column(name = "scope_key", length = 300)
+    private String scopeKey;
+    
+    @Column(name = "bytes", nullable = false)
+    private long bytes;
+    
+    // Constructors
+    public StorageUsage() {}
+    
+    public StorageUsage(String scopeKey, long bytes) {
+        this.scopeKey = scopeKey;
+        this.bytes = bytes;
+    }
+    
+    // Getters and Setters
+    public String getScopeKey() {
+        return scopeKey;
+    }
+    
+    public void setScopeKey(String scopeKey) {
+        this.scopeKey = scopeKey;
+    }
+    
+    public long getBytes() {
+        return bytes;
+    }
+    
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
@@ -0,0 +1,126 @@
+package com.aichat.foundation.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Content-addressed file blob shared by every attachment with identical bytes.
+ * The reference count tracks how many attachments point at the blob; the file
+ * on disk is removed only when the last reference is released.
+ */
+@Entity
+@Table(name = "stored_blobs")
+public class StoredBlob implements Persistable<String> {
+    
+    @Id
+    @Size(max = 64)
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
+    @NotBlank
+    @Size(max = 500)
+    @Column(name = "storage_path", nullable = false)
+    private String storagePath;
+    
+    @NotNull
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+    
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Transient
+    private boolean isNew;
+    
+    // Constructors
+    public StoredBlob() {}
+    
+    public StoredBlob(String contentHash, String storagePath, Long fileSize) {
+        this.contentHash = contentHash;
+        this.storagePath = storagePath;
+        this.fileSize = fileSize;
+        this.refCount = 1;
+        this.isNew = true;
+    }
+    
+    // Getters and Setters
+    @Override
+    public String getId() {
+        return contentHash;
+    }
+    
+    /**
+     * Blobs are always inserted, never merged, so two concurrent first uploads
+     * of the same bytes collide on the primary key instead of losing a reference.
+     */
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+    
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public String getStoragePath() {
+        return storagePath;
+    }
+    
+    public void setStoragePath(String storagePath) {
+        this.storagePath = storagePath;
+    }
+    
+    public Long getFileSize() {
+        return fileSize;
+    }
+    
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+    
+    public int getRefCount() {
+        return refCount;
+    }
+    
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    @Override
+    public String toString() {
+        return "StoredBlob{" +
+                "contentHash='" + contentHash + '\'' +
+                ", storagePath='" + storagePath + '\'' +
+                ", fileSize=" + fileSize +
+                ", refCount=" + refCount +
+                '}';
+    }
+}
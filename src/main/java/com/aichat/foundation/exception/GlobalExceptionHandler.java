@@ -4,10 +4,12 @@ import com.aichat.foundation.dto.ErrorResponse;
 import com.aichat.foundation.dto.ValidationErrorResponse;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
 import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import java.time.LocalDateTime;
@@ -37,6 +39,16 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
     
+    @ExceptionHandler(StorageQuotaExceededException.class)
+    public ResponseEntity<ErrorResponse> handleStorageQuotaExceededException(StorageQuotaExceededException ex) {
+        ErrorResponse error = new ErrorResponse(
+            "STORAGE_QUOTA_EXCEEDED",
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(error);
+    }
+    
     @ExceptionHandler(OllamaException.class)
     public ResponseEntity<ErrorResponse> handleOllamaException(OllamaException ex) {
         ErrorResponse error = new ErrorResponse(
@@ -59,9 +71,21 @@ public class GlobalExceptionHandler {
     
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ValidationErrorResponse> handleValidationException(MethodArgumentNotValidException ex) {
+        return validationErrorResponse(ex.getBindingResult());
+    }
+    
+    /**
+     * Validation failures of request bodies under the reactive profile
+     */
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<ValidationErrorResponse> handleWebExchangeBindException(WebExchangeBindException ex) {
+        return validationErrorResponse(ex.getBindingResult());
+    }
+    
+    private ResponseEntity<ValidationErrorResponse> validationErrorResponse(BindingResult bindingResult) {
         Map<String, String> errors = new HashMap<>();
         
-        ex.getBindingResult().getAllErrors().forEach((error) -> {
+        bindingResult.getAllErrors().forEach((error) -> {
             String fieldName = ((FieldError) error).getField();
             String errorMessage = error.getDefaultMessage();
             errors.put(fieldName, errorMessage);
@@ -0,0 +1,8 @@
+package com.aichat.foundation.exception;
+
+public class StorageQuotaExceededException extends FileStorageException {
+    
+    public StorageQuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,143 @@
+package com.aichat.foundation.prompt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A prompt layout compiled once into literal and variable segments.
+ *
+ * Templates refer to variables as {@code {{name}}}. Text between {@code {{#name}}} and
+ * {@code {{/name}}} is only rendered when the variable is non-empty; sections do not nest.
+ * Rendering measures the segments first and fills a buffer of exactly that size, and the
+ * literal text is the same on every call, so prompts that share leading values share a
+ * byte-identical prefix the model server can reuse.
+ */
+public final class PromptTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final int LITERAL = -1;
+    private static final int ALWAYS = -1;
+
+    private final String[] literals;
+    /** Slot of the variable rendered by each segment, or {@link #LITERAL} */
+    private final int[] variables;
+    /** Slot that must be non-empty for each segment to render, or {@link #ALWAYS} */
+    private final int[] guards;
+    private final int slotCount;
+
+    private PromptTemplate(String[] literals, int[] variables, int[] guards, int slotCount) {
+        this.literals = literals;
+        this.variables = variables;
+        this.guards = guards;
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * Compile a template whose variables are given, in the order their values are passed to
+     * {@link #render}
+     *
+     * @throws IllegalArgumentException when the template uses an unknown variable or a
+     *                                  section is not closed
+     */
+    public static PromptTemplate compile(String source, String... variableNames) {
+        List<String> names = Arrays.asList(variableNames);
+        List<String> literals = new ArrayList<>();
+        List<Integer> variables = new ArrayList<>();
+        List<Integer> guards = new ArrayList<>();
+
+        int guard = ALWAYS;
+        int position = 0;
+        while (position < source.length()) {
+            int open = source.indexOf(OPEN, position);
+            if (open < 0) {
+                addLiteral(literals, variables, guards, source.substring(position), guard);
+                break;
+            }
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at offset " + open);
+            }
+            addLiteral(literals, variables, guards, source.substring(position, open), guard);
+
+            String tag = source.substring(open + OPEN.length(), close).trim();
+            if (tag.startsWith("#")) {
+                if (guard != ALWAYS) {
+                    throw new IllegalArgumentException("Sections cannot be nested: " + tag);
+                }
+                guard = slotOf(names, tag.substring(1));
+            } else if (tag.startsWith("/")) {
+                if (guard == ALWAYS || guard != slotOf(names, tag.substring(1))) {
+                    throw new IllegalArgumentException("Unexpected section end: " + tag);
+                }
+                guard = ALWAYS;
+            } else {
+                literals.add(null);
+                variables.add(slotOf(names, tag));
+                guards.add(guard);
+            }
+            position = close + CLOSE.length();
+        }
+        if (guard != ALWAYS) {
+            throw new IllegalArgumentException("Section not closed: " + names.get(guard));
+        }
+
+        return new PromptTemplate(
+            literals.toArray(String[]::new),
+            variables.stream().mapToInt(Integer::intValue).toArray(),
+            guards.stream().mapToInt(Integer::intValue).toArray(),
+            names.size());
+    }
+
+    /**
+     * Render with one value per compiled variable, in order; null renders as empty
+     */
+    public String render(String... values) {
+        if (values.length != slotCount) {
+            throw new IllegalArgumentException("Expected " + slotCount + " values but got " + values.length);
+        }
+        int length = 0;
+        for (int i = 0; i < literals.length; i++) {
+            if (renders(i, values)) {
+                length += variables[i] == LITERAL ? literals[i].length() : lengthOf(values[variables[i]]);
+            }
+        }
+
+        StringBuilder prompt = new StringBuilder(length);
+        for (int i = 0; i < literals.length; i++) {
+            if (renders(i, values)) {
+                String value = variables[i] == LITERAL ? literals[i] : values[variables[i]];
+                if (value != null) {
+                    prompt.append(value);
+                }
+            }
+        }
+        return prompt.toString();
+    }
+
+    private boolean renders(int segment, String[] values) {
+        return guards[segment] == ALWAYS || lengthOf(values[guards[segment]]) > 0;
+    }
+
+    private static int lengthOf(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static void addLiteral(List<String> literals, List<Integer> variables, List<Integer> guards,
+                                   String text, int guard) {
+        if (!text.isEmpty()) {
+            literals.add(text);
+            variables.add(LITERAL);
+            guards.add(guard);
+        }
+    }
+
+    private static int slotOf(List<String> names, String name) {
+        int slot = names.indexOf(name.trim());
+        if (slot < 0) {
+            throw new IllegalArgumentException("Unknown prompt variable '" + name.trim() + "', expected one of " + names);
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,124 @@
+package com.aichat.foundation.prompt;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prompt layouts for each model, compiled at startup.
+ *
+ * {@code prompt.text} and {@code prompt.multimodal} are the defaults; entries under
+ * {@code prompt.models} override either of them for one model. Templates may use the
+ * variables {@code language}, {@code context}, {@code images} and {@code message}.
+ * A template that does not compile fails startup rather than the first request.
+ */
+@Component
+@ConfigurationProperties(prefix = "prompt")
+public class PromptTemplates {
+
+    static final String[] VARIABLES = {"language", "context", "images", "message"};
+
+    private String text = """
+        {{language}}
+
+        {{#context}}Previous conversation context:
+        {{context}}
+
+        {{/context}}User: {{message}}
+
+        Assistant:\s""";
+
+    private String multimodal = """
+        {{language}}
+
+        {{#images}}Image description: {{images}}
+
+        {{/images}}User message: {{message}}
+
+        Please analyze the image and respond to the user's message. Assistant:\s""";
+
+    private Map<String, Layout> models = new HashMap<>();
+
+    private Compiled defaults;
+    private final Map<String, Compiled> compiledModels = new HashMap<>();
+
+    /**
+     * Layout configured for one model; a missing template falls back to the default
+     */
+    public static class Layout {
+        private String text;
+        private String multimodal;
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public String getMultimodal() {
+            return multimodal;
+        }
+
+        public void setMultimodal(String multimodal) {
+            this.multimodal = multimodal;
+        }
+    }
+
+    private record Compiled(PromptTemplate text, PromptTemplate multimodal) {}
+
+    @PostConstruct
+    public void compile() {
+        defaults = new Compiled(PromptTemplate.compile(text, VARIABLES), PromptTemplate.compile(multimodal, VARIABLES));
+        compiledModels.clear();
+        models.forEach((model, layout) -> compiledModels.put(model, new Compiled(
+            layout.getText() != null ? PromptTemplate.compile(layout.getText(), VARIABLES) : defaults.text(),
+            layout.getMultimodal() != null ? PromptTemplate.compile(layout.getMultimodal(), VARIABLES) : defaults.multimodal())));
+    }
+
+    /**
+     * Prompt for a text message
+     */
+    public String renderText(String model, String language, String context, String message) {
+        return compiledFor(model).text().render(language, context, null, message);
+    }
+
+    /**
+     * Prompt for a message with images
+     */
+    public String renderMultimodal(String model, String language, String context, String images, String message) {
+        return compiledFor(model).multimodal().render(language, context, images, message);
+    }
+
+    private Compiled compiledFor(String model) {
+        return compiledModels.getOrDefault(model, defaults);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public String getMultimodal() {
+        return multimodal;
+    }
+
+    public void setMultimodal(String multimodal) {
+        this.multimodal = multimodal;
+    }
+
+    public Map<String, Layout> getModels() {
+        return models;
+    }
+
+    public void setModels(Map<String, Layout> models) {
+        this.models = models;
+    }
+}
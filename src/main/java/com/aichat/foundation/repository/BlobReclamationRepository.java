@@ -0,0 +1,54 @@
+package com.aichat.foundation.repository;
+
+import com.aichat.foundation.entity.BlobReclamation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface BlobReclamationRepository extends JpaRepository<BlobReclamation, String> {
+    
+    /**
+     * Oldest entries first
+     */
+    @Query("SELECT r FROM BlobReclamation r ORDER BY r.enqueuedAt ASC")
+    List<BlobReclamation> findOldest(Pageable pageable);
+    
+    /**
+     * Queue the blobs of a session's attachments that no longer have any reference
+     */
+    @Modifying
+    @Query("INSERT INTO BlobReclamation (storagePath, contentHash, enqueuedAt) "
+         + "SELECT b.storagePath, b.contentHash, LOCAL DATETIME FROM StoredBlob b "
+         + "WHERE b.refCount <= 0 AND b.storagePath IN ("
+         + "SELECT f.filePath FROM FileAttachment f WHERE f.message.id IN (SELECT m.id FROM Message m WHERE m.session.id = :sessionId)) "
+         + "AND NOT EXISTS (SELECT r FROM BlobReclamation r WHERE r.storagePath = b.storagePath)")
+    int enqueueUnreferencedBlobsOfSession(@Param("sessionId") UUID sessionId);
+    
+    /**
+     * Queue files of a session's attachments that are not stored as a blob, such as those
+     * stored before content deduplication, which belong to that attachment alone. A hash
+     * computed for them later does not make them a blob reference.
+     */
+    @Modifying
+    @Query("INSERT INTO BlobReclamation (storagePath, contentHash, enqueuedAt) "
+         + "SELECT f.filePath, f.contentHash, LOCAL DATETIME FROM FileAttachment f "
+         + "WHERE f.message.id IN (SELECT m.id FROM Message m WHERE m.session.id = :sessionId) "
+         + "AND NOT EXISTS (SELECT b FROM StoredBlob b WHERE b.storagePath = f.filePath) "
+         + "AND NOT EXISTS (SELECT r FROM BlobReclamation r WHERE r.storagePath = f.filePath)")
+    int enqueueUnsharedFilesOfSession(@Param("sessionId") UUID sessionId);
+    
+    /**
+     * Take an entry off the queue; returns 0 when another worker or a new upload of the
+     * same bytes got to it first. The row lock is held until the caller's transaction ends.
+     */
+    @Modifying
+    @Query("DELETE FROM BlobReclamation r WHERE r.storagePath = :storagePath")
+    int dequeue(@Param("storagePath") String storagePath);
+}
@@ -2,12 +2,15 @@ package com.aichat.foundation.repository;
 
 import com.aichat.foundation.entity.ChatSession;
 import com.aichat.foundation.entity.SessionStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -44,15 +47,31 @@ public interface ChatSessionRepository extends JpaRepository<ChatSession, UUID>
                                                        @Param("endDate") LocalDateTime endDate);
     
     /**
-     * Find sessions that haven't been updated for a specified duration (for cleanup)
+     * Next page of sessions not updated since {@code cutoffDate}, in (updatedAt, id) order
+     * starting after the given position, so retention can walk the table in bounded batches
      */
-    @Query("SELECT s FROM ChatSession s WHERE s.updatedAt < :cutoffDate")
-    List<ChatSession> findInactiveSessions(@Param("cutoffDate") LocalDateTime cutoffDate);
+    @Query("SELECT s FROM ChatSession s WHERE s.updatedAt < :cutoffDate AND s.status IN :statuses "
+         + "AND (s.updatedAt > :afterTime OR (s.updatedAt = :afterTime AND s.id > :afterId)) "
+         + "ORDER BY s.updatedAt ASC, s.id ASC")
+    List<ChatSession> findInactiveSessions(@Param("cutoffDate") LocalDateTime cutoffDate,
+                                           @Param("statuses") Collection<SessionStatus> statuses,
+                                           @Param("afterTime") LocalDateTime afterTime,
+                                           @Param("afterId") UUID afterId,
+                                           Pageable pageable);
     
     /**
-     * Delete sessions older than specified date
+     * Mark sessions as archived without touching their update time
      */
-    void deleteByUpdatedAtBefore(LocalDateTime cutoffDate);
+    @Modifying
+    @Query("UPDATE ChatSession s SET s.status = :status WHERE s.id IN :ids")
+    int updateStatus(@Param("ids") Collection<UUID> ids, @Param("status") SessionStatus status);
+    
+    /**
+     * Delete a session row without loading its messages; they must be removed first
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM ChatSession s WHERE s.id = :sessionId AND s.userId = :userId")
+    int deleteByIdAndUserId(@Param("sessionId") UUID sessionId, @Param("userId") String userId);
     
     /**
      * Check if user owns the session
@@ -1,12 +1,16 @@
 package com.aichat.foundation.repository;
 
 import com.aichat.foundation.entity.FileAttachment;
+import com.aichat.foundation.entity.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -53,10 +57,16 @@ public interface FileAttachmentRepository extends JpaRepository<FileAttachment,
     Long calculateTotalFileSizeByUserId(@Param("userId") String userId);
     
     /**
-     * Find files older than specified date for cleanup
+     * Next page of sent attachments uploaded before {@code cutoffDate}, in (uploadedAt, id)
+     * order starting after the given position
      */
-    @Query("SELECT f FROM FileAttachment f WHERE f.uploadedAt < :cutoffDate")
-    List<FileAttachment> findOldFiles(@Param("cutoffDate") LocalDateTime cutoffDate);
+    @Query("SELECT f FROM FileAttachment f WHERE f.uploadedAt < :cutoffDate AND f.message IS NOT NULL "
+         + "AND (f.uploadedAt > :afterTime OR (f.uploadedAt = :afterTime AND f.id > :afterId)) "
+         + "ORDER BY f.uploadedAt ASC, f.id ASC")
+    List<FileAttachment> findOldFiles(@Param("cutoffDate") LocalDateTime cutoffDate,
+                                      @Param("afterTime") LocalDateTime afterTime,
+                                      @Param("afterId") UUID afterId,
+                                      Pageable pageable);
     
     /**
      * Count attachments for a message
@@ -73,4 +83,61 @@ public interface FileAttachmentRepository extends JpaRepository<FileAttachment,
      * Delete attachments for a specific message
      */
     void deleteByMessageId(UUID messageId);
-}
\ No newline at end of file
+    
+    /**
+     * Delete every attachment of a session's messages in one statement
+     */
+    @Modifying
+    @Query("DELETE FROM FileAttachment f WHERE f.message.id IN (SELECT m.id FROM Message m WHERE m.session.id = :sessionId)")
+    int deleteAllInSession(@Param("sessionId") UUID sessionId);
+    
+    boolean existsByFilePath(String filePath);
+    
+    /**
+     * Next page, in id order, of attachments whose file is not a {@code blob:} locator, such
+     * as those stored before content deduplication; they may have been hashed since
+     */
+    @Query("SELECT f FROM FileAttachment f WHERE f.filePath NOT LIKE 'blob:%' AND f.id > :afterId ORDER BY f.id ASC")
+    List<FileAttachment> findLegacyFilesAfter(@Param("afterId") UUID afterId, Pageable pageable);
+    
+    /**
+     * Point every attachment stored at {@code oldPath} to {@code newPath}
+     */
+    @Modifying
+    @Query("UPDATE FileAttachment f SET f.filePath = :newPath WHERE f.filePath = :oldPath")
+    int updateFilePath(@Param("oldPath") String oldPath, @Param("newPath") String newPath);
+    
+    /**
+     * Rewrite every stored path starting with {@code oldPrefix} in a single statement
+     */
+    @Modifying
+    @Query("UPDATE FileAttachment f SET f.filePath = CONCAT(:newPrefix, SUBSTRING(f.filePath, LENGTH(:oldPrefix) + 1)) "
+         + "WHERE SUBSTRING(f.filePath, 1, LENGTH(:oldPrefix)) = :oldPrefix")
+    int replaceFilePathPrefix(@Param("oldPrefix") String oldPrefix, @Param("newPrefix") String newPrefix);
+    
+    /**
+     * Unclaimed pre-uploads of an owner among the given ids that have not expired yet
+     */
+    @Query("SELECT f FROM FileAttachment f WHERE f.id IN :ids AND f.ownerId = :ownerId "
+         + "AND f.message IS NULL AND f.expiresAt > :now")
+    List<FileAttachment> findClaimable(@Param("ids") Collection<UUID> ids,
+                                       @Param("ownerId") String ownerId,
+                                       @Param("now") LocalDateTime now);
+    
+    /**
+     * Attach unclaimed pre-uploads to a message; the conditions make a handle usable only once
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE FileAttachment f SET f.message = :message, f.expiresAt = NULL "
+         + "WHERE f.id IN :ids AND f.ownerId = :ownerId AND f.message IS NULL AND f.expiresAt > :now")
+    int claim(@Param("ids") Collection<UUID> ids,
+              @Param("ownerId") String ownerId,
+              @Param("message") Message message,
+              @Param("now") LocalDateTime now);
+    
+    /**
+     * Ids of pre-uploads that expired without being sent
+     */
+    @Query("SELECT f.id FROM FileAttachment f WHERE f.message IS NULL AND f.expiresAt < :now ORDER BY f.expiresAt")
+    List<UUID> findExpiredPendingIds(@Param("now") LocalDateTime now, Pageable pageable);
+}
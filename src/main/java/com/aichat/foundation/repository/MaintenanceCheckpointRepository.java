@@ -0,0 +1,9 @@
+package com.aichat.foundation.repository;
+
+import com.aichat.foundation.entity.MaintenanceCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MaintenanceCheckpointRepository extends JpaRepository<MaintenanceCheckpoint, String> {
+}
@@ -1,8 +1,10 @@
 package com.aichat.foundation.repository;
 
 import com.aichat.foundation.entity.Message;
+import com.aichat.foundation.entity.MessageStatus;
 import com.aichat.foundation.entity.MessageType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -53,13 +55,17 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
     List<Message> findMessagesWithAttachmentsBySessionId(@Param("sessionId") UUID sessionId);
     
     /**
-     * Delete all messages for a session (cascade should handle this, but explicit for cleanup)
+     * Delete all messages for a session in one statement; their attachments must be removed first
      */
-    void deleteBySessionId(UUID sessionId);
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.session.id = :sessionId")
+    int deleteBySessionId(@Param("sessionId") UUID sessionId);
     
     /**
-     * Find messages older than specified date for cleanup
+     * Move every message with one status to another, returning how many were changed
      */
-    @Query("SELECT m FROM Message m WHERE m.createdAt < :cutoffDate")
-    List<Message> findOldMessages(@Param("cutoffDate") LocalDateTime cutoffDate);
+    @Modifying
+    @Query("UPDATE Message m SET m.status = :to WHERE m.status = :from")
+    int replaceStatus(@Param("from") MessageStatus from, @Param("to") MessageStatus to);
+
 }
\ No newline at end of file
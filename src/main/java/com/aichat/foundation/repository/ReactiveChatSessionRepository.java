@@ -0,0 +1,49 @@
+package com.aichat.foundation.repository;
+
+import com.aichat.foundation.entity.ChatSessionRow;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Chat sessions over R2DBC, for the reactive profile; see {@link ChatSessionRepository}
+ */
+@Repository
+public interface ReactiveChatSessionRepository extends R2dbcRepository<ChatSessionRow, UUID> {
+
+    /**
+     * Find all chat sessions for a specific user, ordered by updated date descending
+     */
+    Flux<ChatSessionRow> findByUserIdOrderByUpdatedAtDesc(String userId);
+
+    /**
+     * Find a specific session by ID and user ID for security
+     */
+    Mono<ChatSessionRow> findByIdAndUserId(UUID id, String userId);
+
+    /**
+     * Check if user owns the session
+     */
+    Mono<Boolean> existsByIdAndUserId(UUID id, String userId);
+
+    /**
+     * Record activity on a session without reading it first
+     */
+    @Modifying
+    @Query("UPDATE chat_sessions SET updated_at = :updatedAt WHERE id = :sessionId")
+    Mono<Integer> touch(@Param("sessionId") UUID sessionId, @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Delete a session row; its messages must be removed first
+     */
+    @Modifying
+    @Query("DELETE FROM chat_sessions WHERE id = :sessionId AND user_id = :userId")
+    Mono<Integer> deleteByIdAndUserId(@Param("sessionId") UUID sessionId, @Param("userId") String userId);
+}
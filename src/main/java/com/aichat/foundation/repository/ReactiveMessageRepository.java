@@ -0,0 +1,50 @@
+package com.aichat.foundation.repository;
+
+import com.aichat.foundation.entity.MessageRow;
+import com.aichat.foundation.entity.MessageStatus;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Messages over R2DBC, for the reactive profile; see {@link MessageRepository}
+ */
+@Repository
+public interface ReactiveMessageRepository extends R2dbcRepository<MessageRow, UUID> {
+
+    /**
+     * Find all messages in a session, ordered by creation time
+     */
+    Flux<MessageRow> findBySessionIdOrderByCreatedAtAsc(UUID sessionId);
+
+    /**
+     * The latest ten messages in a session, newest first, for the prompt's context
+     */
+    Flux<MessageRow> findTop10BySessionIdOrderByCreatedAtDesc(UUID sessionId);
+
+    /**
+     * Count messages in a session
+     */
+    Mono<Long> countBySessionId(UUID sessionId);
+
+    /**
+     * Store a streamed reply once it has ended
+     */
+    @Modifying
+    @Query("UPDATE messages SET content = :content, status = :status WHERE id = :id")
+    Mono<Integer> updateReply(@Param("id") UUID id, @Param("content") String content,
+                              @Param("status") MessageStatus status);
+
+    /**
+     * Delete all messages for a session in one statement; their attachments must be removed first
+     */
+    @Modifying
+    @Query("DELETE FROM messages WHERE session_id = :sessionId")
+    Mono<Integer> deleteBySessionId(@Param("sessionId") UUID sessionId);
+}
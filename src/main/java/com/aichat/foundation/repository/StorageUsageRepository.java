@@ -0,0 +1,62 @@
+package com.aichat.foundation.repository;
+
+import com.aichat.foundation.entity.StorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, String> {
+    
+    /**
+     * Current total of a scope, without loading the entity
+     */
+    @Query("SELECT u.bytes FROM StorageUsage u WHERE u.scopeKey = :scopeKey")
+    Optional<Long> findBytes(@Param("scopeKey") String scopeKey);
+    
+    /**
+     * Adjust a counter in place; returns 0 when the scope has no counter yet
+     */
+    @Modifying
+    @Query("UPDATE StorageUsage u SET u.bytes = u.bytes + :delta WHERE u.scopeKey = :scopeKey")
+    int addBytes(@Param("scopeKey") String scopeKey, @Param("delta") long delta);
+    
+    /**
+     * Add to a counter only if it stays within {@code limit}; returns 0 when it would not,
+     * or when the scope has no counter yet. The comparison is part of the update, so
+     * concurrent uploads cannot both pass it.
+     */
+    @Modifying
+    @Query("UPDATE StorageUsage u SET u.bytes = u.bytes + :delta WHERE u.scopeKey = :scopeKey AND u.bytes + :delta <= :limit")
+    int addBytesWithin(@Param("scopeKey") String scopeKey, @Param("delta") long delta, @Param("limit") long limit);
+    
+    @Modifying
+    @Query("INSERT INTO StorageUsage (scopeKey, bytes) VALUES (:scopeKey, :bytes)")
+    int insert(@Param("scopeKey") String scopeKey, @Param("bytes") long bytes);
+    
+    @Modifying
+    @Query("DELETE FROM StorageUsage u WHERE u.scopeKey = :scopeKey")
+    int deleteByScopeKey(@Param("scopeKey") String scopeKey);
+    
+    /**
+     * Create the session counters from the attachments stored so far
+     */
+    @Modifying
+    @Query("INSERT INTO StorageUsage (scopeKey, bytes) "
+         + "SELECT CONCAT('session:', CAST(m.session.id AS String)), SUM(f.fileSize) "
+         + "FROM FileAttachment f JOIN f.message m GROUP BY m.session.id")
+    int backfillSessions();
+    
+    /**
+     * Create the user counters from the attachments stored so far
+     */
+    @Modifying
+    @Query("INSERT INTO StorageUsage (scopeKey, bytes) "
+         + "SELECT CONCAT('user:', m.session.userId), SUM(f.fileSize) "
+         + "FROM FileAttachment f JOIN f.message m GROUP BY m.session.userId")
+    int backfillUsers();
+}
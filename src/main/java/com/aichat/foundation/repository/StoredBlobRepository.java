@@ -0,0 +1,98 @@
+package com.aichat.foundation.repository;
+
+import com.aichat.foundation.entity.StoredBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+    
+    /**
+     * Add a reference to a stored blob; returns 0 when no blob with this hash exists, or
+     * when it is only reserved and its bytes may not have been written yet
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount + 1 WHERE b.contentHash = :contentHash AND b.refCount > 0")
+    int incrementRefCount(@Param("contentHash") String contentHash);
+    
+    /**
+     * Take the first reference on a reserved blob; returns 0 when another upload took it
+     * first or the reservation was reclaimed. The row lock is held until the caller's
+     * transaction ends, so concurrent uploads of the same bytes wait for it to commit.
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = 1 WHERE b.contentHash = :contentHash AND b.refCount = 0")
+    int claimReserved(@Param("contentHash") String contentHash);
+    
+    /**
+     * Release a reference to a blob
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount - 1 WHERE b.contentHash = :contentHash AND b.refCount > 0")
+    int decrementRefCount(@Param("contentHash") String contentHash);
+    
+    /**
+     * Remove the blob row once nothing references it; returns 1 when the row was deleted
+     */
+    @Modifying
+    @Query("DELETE FROM StoredBlob b WHERE b.contentHash = :contentHash AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("contentHash") String contentHash);
+    
+    /**
+     * Remove an unreferenced blob row by its location, such as a reservation left behind
+     * by an upload that rolled back
+     */
+    @Modifying
+    @Query("DELETE FROM StoredBlob b WHERE b.storagePath = :storagePath AND b.refCount <= 0")
+    int deleteUnreferencedAt(@Param("storagePath") String storagePath);
+    
+    /**
+     * Release every reference held by a session's attachments in one statement. An
+     * attachment holds a reference when it is stored at the blob's path; a legacy file
+     * hashed on download may share the hash without sharing the blob.
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount - CAST(("
+         + "SELECT COUNT(f) FROM FileAttachment f WHERE f.filePath = b.storagePath "
+         + "AND f.message.id IN (SELECT m.id FROM Message m WHERE m.session.id = :sessionId)) AS Integer) "
+         + "WHERE b.storagePath IN (SELECT f.filePath FROM FileAttachment f "
+         + "WHERE f.message.id IN (SELECT m.id FROM Message m WHERE m.session.id = :sessionId))")
+    int releaseSessionReferences(@Param("sessionId") UUID sessionId);
+    
+    /**
+     * Remove the rows of a session's blobs that no longer have any reference
+     */
+    @Modifying
+    @Query("DELETE FROM StoredBlob b WHERE b.refCount <= 0 AND b.storagePath IN ("
+         + "SELECT f.filePath FROM FileAttachment f WHERE f.message.id IN (SELECT m.id FROM Message m WHERE m.session.id = :sessionId))")
+    int deleteUnreferencedBlobsOfSession(@Param("sessionId") UUID sessionId);
+    
+    boolean existsByStoragePath(String storagePath);
+    
+    /**
+     * Next page of blobs in hash order, for walking the table in bounded batches
+     */
+    List<StoredBlob> findByContentHashGreaterThanOrderByContentHashAsc(String afterHash, Pageable pageable);
+    
+    /**
+     * Point a blob at the new location of its file
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.storagePath = :newPath WHERE b.storagePath = :oldPath")
+    int updateStoragePath(@Param("oldPath") String oldPath, @Param("newPath") String newPath);
+    
+    /**
+     * Rewrite every stored path starting with {@code oldPrefix} in a single statement
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.storagePath = CONCAT(:newPrefix, SUBSTRING(b.storagePath, LENGTH(:oldPrefix) + 1)) "
+         + "WHERE SUBSTRING(b.storagePath, 1, LENGTH(:oldPrefix)) = :oldPrefix")
+    int replaceStoragePathPrefix(@Param("oldPrefix") String oldPrefix, @Param("newPrefix") String newPrefix);
+}
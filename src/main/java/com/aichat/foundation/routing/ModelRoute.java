@@ -0,0 +1,122 @@
+package com.aichat.foundation.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One model requests can be routed to, with its own concurrency limit, generation
+ * options and meters. All meters are tagged with the route and model name.
+ */
+public final class ModelRoute {
+
+    private final String name;
+    private final String model;
+    private final boolean vision;
+    private final int maxConcurrent;
+    private final int maxPromptChars;
+    private final Map<String, Object> options;
+    private final Semaphore permits;
+
+    private final MeterRegistry meterRegistry;
+    private final Tags tags;
+    private final Timer firstToken;
+    private final Counter chunks;
+    private final Counter rejected;
+
+    ModelRoute(String name, String model, boolean vision, int maxConcurrent, int maxPromptChars,
+               Map<String, Object> options, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.model = model;
+        this.vision = vision;
+        this.maxConcurrent = maxConcurrent;
+        this.maxPromptChars = maxPromptChars;
+        this.options = Map.copyOf(options);
+        this.permits = new Semaphore(maxConcurrent, true);
+
+        this.meterRegistry = meterRegistry;
+        this.tags = Tags.of("route", name, "model", model);
+        this.firstToken = Timer.builder("ollama.first.token")
+            .description("Time from sending a request to the first streamed chunk")
+            .tags(tags)
+            .register(meterRegistry);
+        this.chunks = Counter.builder("ollama.response.chunks")
+            .description("Streamed response chunks, whose rate is the route's throughput")
+            .tags(tags)
+            .register(meterRegistry);
+        this.rejected = Counter.builder("ollama.requests.rejected")
+            .description("Requests that found no free slot within the queue timeout")
+            .tags(tags)
+            .register(meterRegistry);
+        Gauge.builder("ollama.requests.active", permits, p -> maxConcurrent - p.availablePermits())
+            .description("Requests in flight on the route")
+            .tags(tags)
+            .register(meterRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public boolean isVision() {
+        return vision;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public Map<String, Object> getOptions() {
+        return options;
+    }
+
+    /**
+     * Whether a text prompt of this many characters fits the route
+     */
+    boolean accepts(int promptChars) {
+        return maxPromptChars <= 0 || promptChars <= maxPromptChars;
+    }
+
+    boolean tryAcquire(Duration timeout) {
+        try {
+            if (permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.increment();
+        return false;
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    void recordFirstToken(long nanos) {
+        firstToken.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordChunk() {
+        chunks.increment();
+    }
+
+    void recordCompletion(String outcome, long nanos) {
+        Timer.builder("ollama.requests")
+            .description("Duration of streamed model requests")
+            .tags(tags.and("outcome", outcome))
+            .register(meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,154 @@
+package com.aichat.foundation.routing;
+
+import com.aichat.foundation.exception.ChatServiceException;
+import com.aichat.foundation.exception.ModelServiceException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Chooses the model for each turn and runs requests within the limits of its route.
+ *
+ * Turns with images go to the {@code vision} route. Text turns go to the {@code text}
+ * route when one is configured and the prompt fits it, otherwise to {@code vision}.
+ * A route named by the request or the session overrides that choice, except that
+ * images are never sent to a model that cannot read them.
+ */
+@Component
+public class ModelRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelRouter.class);
+
+    public static final String TEXT = "text";
+    public static final String VISION = "vision";
+
+    private final Map<String, ModelRoute> routes = new LinkedHashMap<>();
+    private final Duration queueTimeout;
+
+    public ModelRouter(ModelRoutingProperties properties, MeterRegistry meterRegistry,
+                       @Value("${ollama.model}") String defaultModel) {
+        this.queueTimeout = properties.getQueueTimeout();
+        properties.getRoutes().forEach((name, route) -> {
+            if (route.getModel() == null || route.getModel().isBlank()) {
+                throw new IllegalArgumentException("Route " + name + " has no model");
+            }
+            if (route.getMaxConcurrent() < 1) {
+                throw new IllegalArgumentException("Route " + name + " must allow at least one concurrent request");
+            }
+            routes.put(name, new ModelRoute(name, route.getModel(), route.isVision(), route.getMaxConcurrent(),
+                route.getMaxPromptChars(), parseOptions(route.getOptions()), meterRegistry));
+        });
+        if (!routes.containsKey(VISION)) {
+            // Without configuration everything goes to ollama.model, as before routing existed
+            routes.put(VISION, new ModelRoute(VISION, defaultModel, true, 4, 0,
+                Map.of("temperature", 0.7, "top_p", 0.9, "num_predict", 2048), meterRegistry));
+        } else if (!routes.get(VISION).isVision()) {
+            throw new IllegalArgumentException("Route " + VISION + " must accept images");
+        }
+        routes.values().forEach(route -> logger.info("Model route {} -> {} (max {} concurrent)",
+            route.getName(), route.getModel(), route.getMaxConcurrent()));
+    }
+
+    /**
+     * Route for a turn.
+     *
+     * @param hasImages   whether the turn carries images
+     * @param override    route named by the request or session, or null
+     * @param promptChars length of the prompt sent to the model
+     */
+    public ModelRoute select(boolean hasImages, String override, int promptChars) {
+        if (override != null && !override.isBlank()) {
+            ModelRoute route = routes.get(override);
+            if (route == null) {
+                throw new ChatServiceException("Unknown model route: " + override);
+            }
+            if (!hasImages || route.isVision()) {
+                return route;
+            }
+        }
+        if (hasImages) {
+            return routes.get(VISION);
+        }
+        ModelRoute text = routes.get(TEXT);
+        return text != null && text.accepts(promptChars) ? text : routes.get(VISION);
+    }
+
+    /**
+     * Whether a route of this name is configured
+     */
+    public boolean hasRoute(String name) {
+        return routes.containsKey(name);
+    }
+
+    /**
+     * Run a model request on the route once one of its slots is free, recording its
+     * time to first chunk, duration and chunk count. The slot is held until the stream
+     * completes, fails or is cancelled.
+     */
+    public Flux<String> execute(ModelRoute route, Function<ModelRoute, Flux<String>> request) {
+        return Flux.defer(() -> {
+            if (!route.tryAcquire(queueTimeout)) {
+                return Flux.error(new ModelServiceException(
+                    "Model " + route.getModel() + " is busy, please try again later"));
+            }
+            long start = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean(true);
+            return request.apply(route)
+                .doOnNext(chunk -> {
+                    if (first.compareAndSet(true, false)) {
+                        route.recordFirstToken(System.nanoTime() - start);
+                    }
+                    route.recordChunk();
+                })
+                .doFinally(signal -> {
+                    route.release();
+                    route.recordCompletion(outcome(signal), System.nanoTime() - start);
+                });
+        })
+        // Waiting for a slot blocks, so it must not hold up the caller's thread
+        .subscribeOn(Schedulers.boundedElastic(), false);
+    }
+
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_COMPLETE -> "success";
+            case ON_ERROR -> "error";
+            default -> "cancelled";
+        };
+    }
+
+    /**
+     * Options bound from configuration arrive as strings; Ollama expects numbers and booleans
+     */
+    private static Map<String, Object> parseOptions(Map<String, String> options) {
+        Map<String, Object> parsed = new LinkedHashMap<>();
+        options.forEach((key, value) -> parsed.put(key, parseOption(value)));
+        return parsed;
+    }
+
+    private static Object parseOption(String value) {
+        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+            return Boolean.parseBoolean(value);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException notLong) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException notNumber) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.aichat.foundation.routing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Routes to Ollama models, bound from {@code ollama.routing}
+ */
+@Component
+@ConfigurationProperties(prefix = "ollama.routing")
+public class ModelRoutingProperties {
+
+    /** How long a request waits for a free slot on its route before failing */
+    private Duration queueTimeout = Duration.ofSeconds(30);
+
+    private Map<String, Route> routes = new LinkedHashMap<>();
+
+    public static class Route {
+        private String model;
+        /** Whether the model accepts images */
+        private boolean vision;
+        /** Requests sent to the model at the same time */
+        private int maxConcurrent = 4;
+        /** Longest prompt, in characters, this route takes for a text turn; 0 for no limit */
+        private int maxPromptChars;
+        /** Ollama generation options sent with every request */
+        private Map<String, String> options = new LinkedHashMap<>();
+
+        public String getModel() {
+            return model;
+        }
+
+        public void setModel(String model) {
+            this.model = model;
+        }
+
+        public boolean isVision() {
+            return vision;
+        }
+
+        public void setVision(boolean vision) {
+            this.vision = vision;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getMaxPromptChars() {
+            return maxPromptChars;
+        }
+
+        public void setMaxPromptChars(int maxPromptChars) {
+            this.maxPromptChars = maxPromptChars;
+        }
+
+        public Map<String, String> getOptions() {
+            return options;
+        }
+
+        public void setOptions(Map<String, String> options) {
+            this.options = options;
+        }
+    }
+
+    public Duration getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    public void setQueueTimeout(Duration queueTimeout) {
+        this.queueTimeout = queueTimeout;
+    }
+
+    public Map<String, Route> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, Route> routes) {
+        this.routes = routes;
+    }
+}
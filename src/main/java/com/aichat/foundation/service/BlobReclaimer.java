@@ -0,0 +1,54 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.entity.BlobReclamation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Drains the blob reclamation queue in the background, removing at most one batch of
+ * unreferenced blobs per interval so large deletions never compete with uploads and
+ * downloads for the blob store
+ */
+@Component
+public class BlobReclaimer {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobReclaimer.class);
+
+    @Value("${file.reclamation.batch-size:100}")
+    private int batchSize;
+
+    private final FileService fileService;
+
+    public BlobReclaimer(FileService fileService) {
+        this.fileService = fileService;
+    }
+
+    /**
+     * Reclaim one batch, each blob in its own transaction. Stops at the first failure
+     * and leaves the rest queued for the next run.
+     */
+    @Scheduled(fixedDelayString = "${file.reclamation.interval:PT10S}",
+               initialDelayString = "${file.reclamation.interval:PT10S}")
+    public void reclaim() {
+        List<BlobReclamation> pending = fileService.findPendingReclamations(batchSize);
+        int reclaimed = 0;
+        for (BlobReclamation reclamation : pending) {
+            try {
+                if (fileService.reclaimBlob(reclamation)) {
+                    reclaimed++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Blob reclamation stopped at {}: {}", reclamation.getStoragePath(), e.getMessage());
+                break;
+            }
+        }
+        if (reclaimed > 0) {
+            log.info("Reclaimed {} unreferenced blobs", reclaimed);
+        }
+    }
+}
@@ -5,15 +5,27 @@ import com.aichat.foundation.entity.*;
 import com.aichat.foundation.exception.ChatServiceException;
 import com.aichat.foundation.repository.ChatSessionRepository;
 import com.aichat.foundation.repository.MessageRepository;
+import com.aichat.foundation.routing.ModelRoute;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -33,26 +45,52 @@ public class ChatService {
     private final MessageRepository messageRepository;
     private final ModelService modelService;
     private final FileService fileService;
+    private final ImagePreprocessor imagePreprocessor;
+    private final GenerationRegistry generationRegistry;
+    
+    @Value("${image.max-per-message:8}")
+    private int maxImagesPerMessage;
+    
+    @Value("${image.max-payload-bytes:20971520}")
+    private long maxImagePayloadBytes;
     
     public ChatService(ChatSessionRepository chatSessionRepository,
                       MessageRepository messageRepository,
                       ModelService modelService,
-                      FileService fileService) {
+                      FileService fileService,
+                      ImagePreprocessor imagePreprocessor,
+                      GenerationRegistry generationRegistry) {
         this.chatSessionRepository = chatSessionRepository;
         this.messageRepository = messageRepository;
         this.modelService = modelService;
         this.fileService = fileService;
+        this.imagePreprocessor = imagePreprocessor;
+        this.generationRegistry = generationRegistry;
     }
     
     /**
      * Create a new chat session
      */
     public ChatSessionDto createSession(String title, String userId) {
+        return createSession(title, userId, null);
+    }
+    
+    /**
+     * Create a new chat session whose messages go to the named model route unless a message names another
+     */
+    public ChatSessionDto createSession(String title, String userId, String modelRoute) {
         if (title == null || title.trim().isEmpty()) {
             title = "New Chat - " + LocalDateTime.now().toString();
         }
+        if (modelRoute != null && modelRoute.isBlank()) {
+            modelRoute = null;
+        }
+        if (modelRoute != null && !modelService.hasRoute(modelRoute)) {
+            throw new ChatServiceException("Unknown model route: " + modelRoute);
+        }
         
         ChatSession session = new ChatSession(title.trim(), userId);
+        session.setModelRoute(modelRoute);
         ChatSession savedSession = chatSessionRepository.save(session);
         
         return convertToSessionDto(savedSession);
@@ -90,17 +128,19 @@ public class ChatService {
     }
     
     /**
-     * Delete a chat session
+     * Delete a chat session with its messages and attachments.
+     * Rows are removed with bulk statements rather than through the JPA cascade, so the
+     * cost does not grow with the number of messages loaded; stored bytes are reclaimed
+     * in the background.
      */
     public boolean deleteSession(UUID sessionId, String userId) {
-        Optional<ChatSession> sessionOpt = chatSessionRepository.findByIdAndUserId(sessionId, userId);
-        
-        if (sessionOpt.isEmpty()) {
+        if (!chatSessionRepository.existsByIdAndUserId(sessionId, userId)) {
             return false;
         }
         
-        chatSessionRepository.delete(sessionOpt.get());
-        return true;
+        fileService.deleteSessionAttachments(sessionId, userId);
+        messageRepository.deleteBySessionId(sessionId);
+        return chatSessionRepository.deleteByIdAndUserId(sessionId, userId) > 0;
     }
     
     /**
@@ -121,91 +161,224 @@ public class ChatService {
         
         // Create assistant message placeholder
         Message assistantMessage = new Message("", MessageType.ASSISTANT, session);
+        assistantMessage.setStatus(MessageStatus.STREAMING);
         Message savedAssistantMessage = messageRepository.save(assistantMessage);
         
         // Build conversation context
         String conversationContext = buildConversationContext(request.getSessionId());
-        String enhancedPrompt = modelService.createEnhancedPrompt(request.getContent(), conversationContext);
+        ModelRoute route = modelService.selectRoute(false, routeOverride(request.getModel(), session),
+            request.getContent().length() + conversationContext.length());
+        String enhancedPrompt = modelService.createEnhancedPrompt(route, request.getSessionId(), request.getContent(), conversationContext);
         
         // Process with model service and collect response
-        StringBuilder responseBuilder = new StringBuilder();
-        
-        return modelService.processTextRequest(request.getSessionId(), savedAssistantMessage.getId(), enhancedPrompt)
-            .doOnNext(streamResponse -> {
-                if ("stream_chunk".equals(streamResponse.getType())) {
-                    responseBuilder.append(streamResponse.getContent());
-                }
-            })
-            .doOnComplete(() -> {
-                // Save complete response to database
-                savedAssistantMessage.setContent(responseBuilder.toString());
-                messageRepository.save(savedAssistantMessage);
-                
-                // Update session timestamp
-                session.setUpdatedAt(LocalDateTime.now());
-                chatSessionRepository.save(session);
-            })
+        return streamAndSave(
+                modelService.processTextRequest(route, request.getSessionId(), savedAssistantMessage.getId(), enhancedPrompt),
+                session, savedAssistantMessage, userId)
             .onErrorMap(throwable -> new ChatServiceException("Failed to process message", throwable));
     }
     
     /**
-     * Process a multimodal message (text + image) and return streaming response
+     * Process a multimodal message (text + images) and return streaming response
      */
-    public Flux<StreamResponse> processMultimodalMessage(UUID sessionId, String content, 
-                                                       MultipartFile file, String userId) {
+    public Flux<StreamResponse> processMultimodalUploads(UUID sessionId, String content, 
+                                                       List<StagedUpload> uploads, String model, String userId) {
         // Validate session ownership
         if (!chatSessionRepository.existsByIdAndUserId(sessionId, userId)) {
             return Flux.error(new ChatServiceException("Session not found or access denied"));
         }
+        if (uploads.isEmpty()) {
+            return Flux.error(new ChatServiceException("At least one attachment is required"));
+        }
+        if (uploads.size() > maxImagesPerMessage) {
+            return Flux.error(new ChatServiceException("At most " + maxImagesPerMessage + " images can be sent per message"));
+        }
         
         try {
-            // Save user message with attachment
+            // Save user message with attachments
             ChatSession session = chatSessionRepository.findById(sessionId)
                 .orElseThrow(() -> new ChatServiceException("Session not found"));
             
             Message userMessage = new Message(content, MessageType.USER, session);
             Message savedUserMessage = messageRepository.save(userMessage);
             
-            // Upload and attach file
-            FileAttachmentDto fileAttachment = fileService.uploadFile(file, savedUserMessage);
+            // Store the staged uploads; they were hashed and type-checked while they were received
+            List<FileAttachmentDto> attachments = new ArrayList<>(uploads.size());
+            for (StagedUpload upload : uploads) {
+                attachments.add(fileService.uploadFile(upload, savedUserMessage));
+            }
             
-            // Get file content for model processing
-            byte[] imageData = fileService.getFileContent(fileAttachment.getId());
+            return streamMultimodalResponse(session, content, attachments, model, userId);
+                
+        } catch (Exception e) {
+            // Do not keep the user message, nor the files stored before the one that failed
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            }
+            return Flux.error(new ChatServiceException("Failed to process multimodal message", e));
+        }
+    }
+    
+    /**
+     * Process a multimodal message whose images were uploaded beforehand, so the
+     * request carries only their attachment ids
+     */
+    public Flux<StreamResponse> processMultimodalMessage(UUID sessionId, String content,
+                                                       List<UUID> attachmentIds, String model, String userId) {
+        // Validate session ownership
+        if (!chatSessionRepository.existsByIdAndUserId(sessionId, userId)) {
+            return Flux.error(new ChatServiceException("Session not found or access denied"));
+        }
+        if (attachmentIds == null || attachmentIds.isEmpty()) {
+            return Flux.error(new ChatServiceException("At least one attachment is required"));
+        }
+        if (attachmentIds.size() > maxImagesPerMessage) {
+            return Flux.error(new ChatServiceException("At most " + maxImagesPerMessage + " images can be sent per message"));
+        }
+        
+        try {
+            ChatSession session = chatSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new ChatServiceException("Session not found"));
             
-            // Create assistant message placeholder
-            Message assistantMessage = new Message("", MessageType.ASSISTANT, session);
-            Message savedAssistantMessage = messageRepository.save(assistantMessage);
+            Message userMessage = new Message(content, MessageType.USER, session);
+            Message savedUserMessage = messageRepository.save(userMessage);
             
-            // Build conversation context
-            String conversationContext = buildConversationContext(sessionId);
-            String enhancedPrompt = modelService.createMultimodalPrompt(content, "User uploaded an image");
+            List<FileAttachmentDto> attachments =
+                fileService.claimPendingAttachments(attachmentIds, userId, savedUserMessage);
             
-            // Process with model service
-            StringBuilder responseBuilder = new StringBuilder();
+            return streamMultimodalResponse(session, content, attachments, model, userId);
             
-            return modelService.processMultimodalRequest(sessionId, savedAssistantMessage.getId(), 
-                                                       enhancedPrompt, imageData)
-                .doOnNext(streamResponse -> {
-                    if ("stream_chunk".equals(streamResponse.getType())) {
-                        responseBuilder.append(streamResponse.getContent());
-                    }
-                })
-                .doOnComplete(() -> {
-                    // Save complete response to database
-                    savedAssistantMessage.setContent(responseBuilder.toString());
-                    messageRepository.save(savedAssistantMessage);
-                    
-                    // Update session timestamp
-                    session.setUpdatedAt(LocalDateTime.now());
-                    chatSessionRepository.save(session);
-                })
-                .onErrorMap(throwable -> new ChatServiceException("Failed to process multimodal message", throwable));
-                
         } catch (Exception e) {
+            // Do not keep the user message when its attachments could not be claimed
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            }
             return Flux.error(new ChatServiceException("Failed to process multimodal message", e));
         }
     }
     
+    /**
+     * Send the message and its stored images to the model, saving the streamed answer
+     */
+    private Flux<StreamResponse> streamMultimodalResponse(ChatSession session, String content,
+                                                          List<FileAttachmentDto> attachments, String model,
+                                                          String userId) {
+        UUID sessionId = session.getId();
+        
+        // Prepare the model's copies in parallel on the image pool while the rest of the request
+        // is set up; pre-uploads and images sent in earlier turns are served from the cache
+        List<Resource> storedImages = new ArrayList<>(attachments.size());
+        List<CompletableFuture<Optional<Path>>> modelImages = new ArrayList<>(attachments.size());
+        for (FileAttachmentDto attachment : attachments) {
+            Resource storedImage = fileService.loadFileAsResource(attachment);
+            storedImages.add(storedImage);
+            modelImages.add(imagePreprocessor.prepareForModelAsync(attachment.getContentHash(), storedImage));
+        }
+        
+        // Create assistant message placeholder
+        Message assistantMessage = new Message("", MessageType.ASSISTANT, session);
+        assistantMessage.setStatus(MessageStatus.STREAMING);
+        Message savedAssistantMessage = messageRepository.save(assistantMessage);
+        
+        // Build conversation context
+        String conversationContext = buildConversationContext(sessionId);
+        String imageDescription = attachments.size() == 1
+            ? "User uploaded an image"
+            : "User uploaded " + attachments.size() + " images";
+        ModelRoute route = modelService.selectRoute(true, routeOverride(model, session),
+            content.length() + conversationContext.length());
+        String enhancedPrompt = modelService.createMultimodalPrompt(route, sessionId, content, conversationContext, imageDescription);
+        
+        // Process with model service
+        Flux<StreamResponse> responses = Mono.fromFuture(CompletableFuture.allOf(modelImages.toArray(CompletableFuture[]::new)))
+            .then(Mono.fromCallable(() -> modelImagesOrOriginals(modelImages, storedImages, maxImagePayloadBytes)))
+            .flatMapMany(images -> modelService.processMultimodalRequest(route, sessionId, savedAssistantMessage.getId(), 
+                                                                        enhancedPrompt, images));
+        
+        return streamAndSave(responses, session, savedAssistantMessage, userId)
+            .onErrorMap(throwable -> new ChatServiceException("Failed to process multimodal message", throwable));
+    }
+    
+    /**
+     * Stop a reply that is still being generated; the content streamed so far is kept
+     *
+     * @return false when no reply with this id is streaming for the user
+     */
+    public boolean cancelGeneration(UUID messageId, String userId) {
+        return generationRegistry.cancel(messageId, userId);
+    }
+    
+    /**
+     * Collect the streamed reply into the assistant message. A reply stopped through
+     * {@link #cancelGeneration}, abandoned by its client or failed is saved as far as it got
+     * and marked aborted; cancelling the stream also cancels the model request.
+     */
+    private Flux<StreamResponse> streamAndSave(Flux<StreamResponse> responses, ChatSession session,
+                                               Message assistantMessage, String userId) {
+        StringBuilder responseBuilder = new StringBuilder();
+        AtomicReference<MessageStatus> status = new AtomicReference<>(MessageStatus.COMPLETE);
+        AtomicBoolean saved = new AtomicBoolean();
+        Runnable save = () -> {
+            if (saved.compareAndSet(false, true)) {
+                synchronized (responseBuilder) {
+                    assistantMessage.setContent(responseBuilder.toString());
+                }
+                assistantMessage.setStatus(status.get());
+                messageRepository.save(assistantMessage);
+                
+                // Update session timestamp
+                session.setUpdatedAt(LocalDateTime.now());
+                chatSessionRepository.save(session);
+            }
+        };
+        
+        return generationRegistry.register(session.getId(), assistantMessage.getId(), userId, responses)
+            .doOnNext(streamResponse -> {
+                if ("stream_chunk".equals(streamResponse.getType())) {
+                    synchronized (responseBuilder) {
+                        responseBuilder.append(streamResponse.getContent());
+                    }
+                } else if ("stream_aborted".equals(streamResponse.getType())) {
+                    status.set(MessageStatus.ABORTED);
+                }
+            })
+            .doOnComplete(save)
+            .doOnError(e -> {
+                status.set(MessageStatus.ABORTED);
+                save.run();
+            })
+            .doOnCancel(() -> {
+                status.set(MessageStatus.ABORTED);
+                save.run();
+            });
+    }
+    
+    /**
+     * Pick the prepared copy of each image where there is one, enforcing the total payload cap
+     */
+    static List<Resource> modelImagesOrOriginals(List<CompletableFuture<Optional<Path>>> modelImages,
+                                                 List<Resource> storedImages, long maxImagePayloadBytes) throws IOException {
+        List<Resource> images = new ArrayList<>(storedImages.size());
+        long payloadBytes = 0;
+        for (int i = 0; i < storedImages.size(); i++) {
+            Resource image = modelImages.get(i).join()
+                .<Resource>map(FileSystemResource::new)
+                .orElse(storedImages.get(i));
+            payloadBytes += image.contentLength();
+            if (payloadBytes > maxImagePayloadBytes) {
+                throw new ChatServiceException("Images exceed the maximum payload of " + maxImagePayloadBytes + " bytes");
+            }
+            images.add(image);
+        }
+        return images;
+    }
+    
+    /**
+     * Route named by the message, falling back to the one chosen for the session
+     */
+    private String routeOverride(String model, ChatSession session) {
+        return model != null && !model.isBlank() ? model : session.getModelRoute();
+    }
+    
     /**
      * Get messages for a session
      */
@@ -248,7 +421,7 @@ public class ChatService {
     private ChatSessionDto convertToSessionDto(ChatSession session) {
         int messageCount = (int) messageRepository.countBySessionId(session.getId());
         
-        return new ChatSessionDto(
+        ChatSessionDto dto = new ChatSessionDto(
             session.getId(),
             session.getTitle(),
             session.getUserId(),
@@ -257,6 +430,8 @@ public class ChatService {
             session.getUpdatedAt(),
             messageCount
         );
+        dto.setModelRoute(session.getModelRoute());
+        return dto;
     }
     
     /**
@@ -265,7 +440,7 @@ public class ChatService {
     private MessageDto convertToMessageDto(Message message) {
         List<FileAttachmentDto> attachments = fileService.getFileAttachmentsByMessageId(message.getId());
         
-        return new MessageDto(
+        MessageDto dto = new MessageDto(
             message.getId(),
             message.getSession().getId(),
             message.getContent(),
@@ -274,5 +449,9 @@ public class ChatService {
             message.getMetadata(),
             attachments
         );
+        if (message.getStatus() != null) {
+            dto.setStatus(message.getStatus().name());
+        }
+        return dto;
     }
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.repository.FileAttachmentRepository;
+import com.aichat.foundation.repository.StoredBlobRepository;
+import com.aichat.foundation.storage.ShardedLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves files stored flat in the upload directory into the {@link ShardedLayout}.
+ *
+ * Started in the background by {@code FileMigrationRunner} once the application is
+ * ready and any path migration has finished. Each batch first places the
+ * files at their sharded location (a hard link, or a copy across file systems), then
+ * repoints the database rows in one transaction, and only then removes the old names,
+ * so every stored path stays readable throughout. Only files still sitting at the top
+ * level are picked up, which makes an interrupted run resume where it stopped.
+ */
+@Service
+public class FileReshardingService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileReshardingService.class);
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${file.resharding.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.resharding.batch-size:200}")
+    private int batchSize;
+
+    private final FileAttachmentRepository fileAttachmentRepository;
+    private final StoredBlobRepository storedBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public FileReshardingService(FileAttachmentRepository fileAttachmentRepository,
+                                 StoredBlobRepository storedBlobRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.fileAttachmentRepository = fileAttachmentRepository;
+        this.storedBlobRepository = storedBlobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Move every remaining flat file into its shard directory
+     *
+     * @return number of files moved
+     */
+    public int reshardAll() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return 0;
+        }
+        Path root = Paths.get(uploadDir);
+        int moved = 0;
+        try {
+            if (!Files.isDirectory(root)) {
+                return 0;
+            }
+
+            List<Path> batch = new ArrayList<>(batchSize);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(root, this::isFlatStoredFile)) {
+                for (Path file : files) {
+                    batch.add(file);
+                    if (batch.size() == batchSize) {
+                        moved += reshardBatch(root, batch);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                moved += reshardBatch(root, batch);
+            }
+
+            if (moved > 0) {
+                log.info("Moved {} stored files into the sharded layout", moved);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Upload directory resharding stopped after {} files, it resumes on next start: {}", moved, e.getMessage());
+        } finally {
+            running.set(false);
+        }
+        return moved;
+    }
+
+    private int reshardBatch(Path root, List<Path> batch) {
+        // Make each file readable at its new location while the old one still exists
+        Map<Path, Path> placed = new LinkedHashMap<>();
+        for (Path source : batch) {
+            Path target = ShardedLayout.resolve(root, source.getFileName().toString());
+            try {
+                place(source, target);
+                placed.put(source, target);
+            } catch (IOException e) {
+                log.warn("Skipping {} during resharding: {}", source.getFileName(), e.getMessage());
+            }
+        }
+        if (placed.isEmpty()) {
+            return 0;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> placed.forEach((source, target) -> {
+            storedBlobRepository.updateStoragePath(source.toString(), target.toString());
+            fileAttachmentRepository.updateFilePath(source.toString(), target.toString());
+        }));
+
+        for (Path source : placed.keySet()) {
+            try {
+                Files.deleteIfExists(source);
+            } catch (IOException e) {
+                log.warn("Failed to remove {} after resharding: {}", source.getFileName(), e.getMessage());
+            }
+        }
+        return placed.size();
+    }
+
+    /**
+     * Hard-link the file into place, falling back to a copy when links are not supported
+     */
+    private void place(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        if (Files.exists(target)) {
+            // Left behind by an interrupted run, or written by a concurrent upload of the same content
+            if (Files.size(target) != Files.size(source)) {
+                throw new IOException("a different file already exists at " + target);
+            }
+            return;
+        }
+
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp-" + UUID.randomUUID());
+            try {
+                Files.copy(source, temp);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Regular files at the top level, excluding hidden directories such as the derived
+     * image cache and temporary files of uploads in progress
+     */
+    private boolean isFlatStoredFile(Path file) {
+        String name = file.getFileName().toString();
+        return Files.isRegularFile(file)
+            && !name.startsWith(".")
+            && !name.contains(".tmp-")
+            && name.length() >= 4;
+    }
+}
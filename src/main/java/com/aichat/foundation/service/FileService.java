@@ -1,26 +1,74 @@
 package com.aichat.foundation.service;
 
 import com.aichat.foundation.dto.FileAttachmentDto;
+import com.aichat.foundation.entity.BlobReclamation;
+import com.aichat.foundation.entity.ChatSession;
 import com.aichat.foundation.entity.FileAttachment;
 import com.aichat.foundation.entity.Message;
+import com.aichat.foundation.entity.StoredBlob;
 import com.aichat.foundation.exception.FileStorageException;
+import com.aichat.foundation.repository.BlobReclamationRepository;
 import com.aichat.foundation.repository.FileAttachmentRepository;
+import com.aichat.foundation.repository.StoredBlobRepository;
+import com.aichat.foundation.storage.BlobStore;
+import com.aichat.foundation.storage.ShardedLayout;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 public class FileService {
     
+    /** Stored paths with this prefix are keys in the {@link BlobStore} */
+    static final String BLOB_LOCATOR_PREFIX = "blob:";
+    
+    private static final String STAGING_DIR = ".staging";
+    
+    private static final int STAGING_BUFFER_SIZE = 64 * 1024;
+    
+    private static final int MAX_BLOB_ATTEMPTS = 3;
+    
     @Value("${file.upload-dir}")
     private String uploadDir;
     
@@ -30,51 +78,400 @@ public class FileService {
     @Value("${file.allowed-types}")
     private String allowedTypes;
     
+    @Value("${file.pending.ttl:PT30M}")
+    private Duration pendingTtl;
+    
     private final FileAttachmentRepository fileAttachmentRepository;
+    private final StoredBlobRepository storedBlobRepository;
+    private final BlobReclamationRepository blobReclamationRepository;
+    private final ThumbnailService thumbnailService;
+    private final ImagePreprocessor imagePreprocessor;
+    private final BlobStore blobStore;
+    private final StorageQuotaService storageQuotaService;
+    private final TransactionTemplate reservationTransaction;
     
-    public FileService(FileAttachmentRepository fileAttachmentRepository) {
+    public FileService(FileAttachmentRepository fileAttachmentRepository,
+                       StoredBlobRepository storedBlobRepository,
+                       BlobReclamationRepository blobReclamationRepository,
+                       ThumbnailService thumbnailService,
+                       ImagePreprocessor imagePreprocessor,
+                       BlobStore blobStore,
+                       StorageQuotaService storageQuotaService,
+                       PlatformTransactionManager transactionManager) {
         this.fileAttachmentRepository = fileAttachmentRepository;
+        this.storedBlobRepository = storedBlobRepository;
+        this.blobReclamationRepository = blobReclamationRepository;
+        this.thumbnailService = thumbnailService;
+        this.imagePreprocessor = imagePreprocessor;
+        this.blobStore = blobStore;
+        this.storageQuotaService = storageQuotaService;
+        this.reservationTransaction = new TransactionTemplate(transactionManager);
+        this.reservationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
     
     /**
-     * Upload and store a file
+     * Upload and store a file.
+     * Files are content-addressed: the SHA-256 is computed while the upload is staged,
+     * and bytes already stored are shared by reference instead of being written again.
      */
+    @Transactional
     public FileAttachmentDto uploadFile(MultipartFile file, Message message) {
-        validateFile(file);
+        try (StagedUpload upload = stageUpload(file)) {
+            return uploadFile(upload, message);
+        }
+    }
+    
+    /**
+     * Store a staged upload and attach it to a message, counting it against the quotas
+     * of the session and its user
+     */
+    @Transactional
+    public FileAttachmentDto uploadFile(StagedUpload upload, Message message) {
+        ChatSession session = message.getSession();
+        storageQuotaService.checkQuota(session.getUserId(), session.getId(), upload.getSize());
         
+        FileAttachment fileAttachment = newAttachment(upload);
+        fileAttachment.setMessage(message);
+        FileAttachmentDto dto = store(upload, fileAttachment);
+        
+        storageQuotaService.recordAdded(session.getUserId(), session.getId(), upload.getSize());
+        return dto;
+    }
+    
+    /**
+     * Store several staged uploads on one message, all of them or none
+     */
+    @Transactional
+    public List<FileAttachmentDto> uploadFiles(List<StagedUpload> uploads, Message message) {
+        List<FileAttachmentDto> attachments = new ArrayList<>(uploads.size());
+        for (StagedUpload upload : uploads) {
+            attachments.add(uploadFile(upload, message));
+        }
+        return attachments;
+    }
+    
+    /**
+     * Store a staged upload ahead of the message it will be sent with.
+     * The returned attachment id is a handle that the owner can claim with
+     * {@link #claimPendingAttachments} until {@code file.pending.ttl} passes; the image
+     * is also prepared for the model right away so sending it does not wait for that.
+     */
+    @Transactional
+    public FileAttachmentDto uploadPending(StagedUpload upload, String ownerId) {
+        storageQuotaService.checkQuota(ownerId, null, upload.getSize());
+        
+        FileAttachment fileAttachment = newAttachment(upload);
+        fileAttachment.setOwnerId(ownerId);
+        fileAttachment.setExpiresAt(LocalDateTime.now().plus(pendingTtl));
+        FileAttachmentDto dto = store(upload, fileAttachment);
+        storageQuotaService.recordAdded(ownerId, null, upload.getSize());
+        
+        if (isImage(upload.getContentType())) {
+            Resource stored = openStoredFile(dto.getFilePath());
+            runAfterCommit(() -> imagePreprocessor.prepareForModelAsync(upload.getContentHash(), stored));
+        }
+        return dto;
+    }
+    
+    /**
+     * Attach pre-uploaded files to a message, in the order their ids are given.
+     * Each handle can be claimed once, by its owner, before it expires.
+     */
+    @Transactional
+    public List<FileAttachmentDto> claimPendingAttachments(List<UUID> attachmentIds, String ownerId, Message message) {
+        Set<UUID> ids = new LinkedHashSet<>(attachmentIds);
+        LocalDateTime now = LocalDateTime.now();
+        
+        Map<UUID, FileAttachment> claimable = new HashMap<>();
+        for (FileAttachment attachment : fileAttachmentRepository.findClaimable(ids, ownerId, now)) {
+            claimable.put(attachment.getId(), attachment);
+        }
+        if (claimable.size() != ids.size()) {
+            throw new FileStorageException("Attachment not found, expired or already sent");
+        }
+        
+        // Pre-uploads already count against their owner; the session is charged when they are sent
+        UUID sessionId = message.getSession().getId();
+        long claimedBytes = claimable.values().stream().mapToLong(FileAttachment::getFileSize).sum();
+        storageQuotaService.checkQuota(null, sessionId, claimedBytes);
+        
+        // Re-checks the conditions atomically, so a handle raced by another message is not shared
+        if (fileAttachmentRepository.claim(ids, ownerId, message, now) != ids.size()) {
+            throw new FileStorageException("Attachment not found, expired or already sent");
+        }
+        
+        List<FileAttachmentDto> claimed = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            FileAttachment attachment = claimable.get(id);
+            attachment.setMessage(message);
+            attachment.setExpiresAt(null);
+            claimed.add(convertToDto(attachment));
+        }
+        storageQuotaService.recordClaimed(sessionId, claimedBytes);
+        return claimed;
+    }
+    
+    /**
+     * Remove pre-uploads that expired without being sent, releasing their blobs
+     *
+     * @return number of attachments removed
+     */
+    @Transactional
+    public int deleteExpiredPendingAttachments(int limit) {
+        List<UUID> expired = fileAttachmentRepository.findExpiredPendingIds(LocalDateTime.now(), PageRequest.of(0, limit));
+        expired.forEach(this::deleteFile);
+        return expired.size();
+    }
+    
+    private FileAttachment newAttachment(StagedUpload upload) {
+        FileAttachment fileAttachment = new FileAttachment(
+            upload.getOriginalFilename(),
+            upload.getContentType(),
+            null,
+            upload.getSize(),
+            null
+        );
+        fileAttachment.setContentHash(upload.getContentHash());
+        return fileAttachment;
+    }
+    
+    private FileAttachmentDto store(StagedUpload upload, FileAttachment fileAttachment) {
+        String contentHash = upload.getContentHash();
+        if (isImage(upload.getContentType())) {
+            // Refuse decompression bombs at the door rather than when the model or thumbnails need them
+            imagePreprocessor.checkDimensions(new FileSystemResource(upload.getFile()));
+        }
         try {
-            // Ensure upload directory exists
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-            
-            // Generate unique filename
-            String originalFilename = file.getOriginalFilename();
-            String fileExtension = getFileExtension(originalFilename);
-            String uniqueFilename = UUID.randomUUID().toString() + fileExtension;
-            
-            // Save file to disk
-            Path filePath = uploadPath.resolve(uniqueFilename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-            
-            // Create file attachment entity
-            FileAttachment fileAttachment = new FileAttachment(
-                originalFilename,
-                file.getContentType(),
-                filePath.toString(),
-                file.getSize(),
-                message
-            );
+            StoredBlob blob = acquireBlob(upload);
+            fileAttachment.setFilePath(blob.getStoragePath());
             
             // Save to database
             FileAttachment savedAttachment = fileAttachmentRepository.save(fileAttachment);
             
+            // Render thumbnails in the background once the upload is committed
+            if (isImage(upload.getContentType())) {
+                Resource stored = openStoredFile(blob.getStoragePath());
+                runAfterCommit(() -> thumbnailService.generateAsync(contentHash, stored));
+            }
+            
             // Convert to DTO
             return convertToDto(savedAttachment);
             
         } catch (IOException e) {
-            throw new FileStorageException("Failed to store file: " + file.getOriginalFilename(), e);
+            throw new FileStorageException("Failed to store file: " + upload.getOriginalFilename(), e);
+        }
+    }
+    
+    /**
+     * Take a reference on the blob for the upload's hash, moving the staged bytes into
+     * the blob store only when no identical content has been stored before.
+     * Concurrent first uploads of the same bytes all reserve the blob row; exactly one
+     * of them claims it and writes the bytes, and the others wait for that to commit and
+     * share its reference instead of failing on the primary key.
+     */
+    private StoredBlob acquireBlob(StagedUpload upload) throws IOException {
+        String contentHash = upload.getContentHash();
+        String key = ShardedLayout.key(contentHash + getFileExtension(upload.getOriginalFilename()).toLowerCase());
+        for (int attempt = 0; attempt < MAX_BLOB_ATTEMPTS; attempt++) {
+            if (storedBlobRepository.incrementRefCount(contentHash) > 0) {
+                return storedBlobRepository.findById(contentHash)
+                    .orElseThrow(() -> new FileStorageException("Blob disappeared while uploading: " + contentHash));
+            }
+            
+            reserveBlob(contentHash, BLOB_LOCATOR_PREFIX + key, upload.getSize());
+            StoredBlob reserved = storedBlobRepository.findById(contentHash).orElse(null);
+            if (reserved == null) {
+                // Reclaimed before this upload could claim it
+                continue;
+            }
+            // Taking the reservation off the queue also waits for a reclaimer still
+            // removing older bytes at this location, so it cannot delete the new ones
+            blobReclamationRepository.dequeue(reserved.getStoragePath());
+            if (storedBlobRepository.claimReserved(contentHash) > 0) {
+                blobStore.put(blobKey(reserved.getStoragePath()), upload.getFile());
+                return reserved;
+            }
+        }
+        throw new FileStorageException("Could not store file, too many concurrent uploads of the same content: "
+            + upload.getOriginalFilename());
+    }
+    
+    /**
+     * Insert the blob row for new content without any reference, in a transaction of its
+     * own so that losing the insert to a concurrent upload does not fail the caller's.
+     * The reservation stays queued for reclamation until an upload claims it, so one
+     * that rolls back leaves neither the row nor its bytes behind.
+     */
+    private void reserveBlob(String contentHash, String storagePath, long size) {
+        try {
+            reservationTransaction.executeWithoutResult(status -> {
+                blobReclamationRepository.dequeue(storagePath);
+                StoredBlob blob = new StoredBlob(contentHash, storagePath, size);
+                blob.setRefCount(0);
+                storedBlobRepository.saveAndFlush(blob);
+                blobReclamationRepository.save(new BlobReclamation(storagePath, contentHash));
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another upload of the same bytes reserved the blob first
+        }
+    }
+    
+    /**
+     * Stage a multipart file, rejecting it up front when its declared size is too large
+     */
+    public StagedUpload stageUpload(MultipartFile file) {
+        if (file.getSize() > maxFileSize) {
+            throw new FileStorageException("File size exceeds maximum limit of " + maxFileSize + " bytes");
+        }
+        try (InputStream in = file.getInputStream()) {
+            return stageUpload(in, file.getOriginalFilename());
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to read file: " + file.getOriginalFilename(), e);
+        }
+    }
+    
+    /**
+     * Validate, hash and stage an upload in a single pass over its content.
+     * The type is taken from the leading bytes rather than the client's declaration,
+     * and the upload is abandoned as soon as it exceeds the size limit, without
+     * reading the rest of the body.
+     */
+    public StagedUpload stageUpload(InputStream content, String originalFilename) {
+        if (originalFilename == null || originalFilename.contains("..")) {
+            throw new FileStorageException("Invalid filename: " + originalFilename);
+        }
+        
+        Path staged = null;
+        try {
+            byte[] header = content.readNBytes(MagicBytes.HEADER_LENGTH);
+            if (header.length == 0) {
+                throw new FileStorageException("Cannot upload empty file");
+            }
+            String contentType = MagicBytes.detect(header)
+                .filter(this::isAllowedContentType)
+                .orElseThrow(() -> new FileStorageException("File type not allowed. Allowed types: " + allowedTypes));
+            
+            Path stagingPath = Paths.get(uploadDir).resolve(STAGING_DIR);
+            Files.createDirectories(stagingPath);
+            staged = stagingPath.resolve("upload.tmp-" + UUID.randomUUID());
+            
+            MessageDigest digest = newContentDigest();
+            long size = header.length;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(staged, StandardOpenOption.CREATE_NEW), digest)) {
+                out.write(header);
+                byte[] buffer = new byte[STAGING_BUFFER_SIZE];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxFileSize) {
+                        throw new FileStorageException("File size exceeds maximum limit of " + maxFileSize + " bytes");
+                    }
+                    out.write(buffer, 0, read);
+                }
+            }
+            
+            return new StagedUpload(staged, originalFilename, contentType, size, HexFormat.of().formatHex(digest.digest()));
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(staged);
+            if (e instanceof FileStorageException fse) {
+                throw fse;
+            }
+            throw new FileStorageException("Failed to receive file: " + originalFilename, e);
+        }
+    }
+    
+    /**
+     * Validate, hash and stage an upload as its buffers arrive, for the reactive profile.
+     * Same checks as {@link #stageUpload(InputStream, String)}, but the bytes are written
+     * through an asynchronous file channel, so no thread waits on the request body or the
+     * disk. A cancelled or rejected upload leaves no staged file behind.
+     */
+    public Mono<StagedUpload> stageUpload(Flux<DataBuffer> content, String originalFilename) {
+        if (originalFilename == null || originalFilename.contains("..")) {
+            return Mono.error(new FileStorageException("Invalid filename: " + originalFilename));
+        }
+        
+        return Mono.fromCallable(() -> {
+                Path stagingPath = Paths.get(uploadDir).resolve(STAGING_DIR);
+                Files.createDirectories(stagingPath);
+                return stagingPath.resolve("upload.tmp-" + UUID.randomUUID());
+            })
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(staged -> {
+                StagingCheck check = new StagingCheck();
+                return DataBufferUtils.write(content.doOnNext(check::accept), staged, StandardOpenOption.CREATE_NEW)
+                    .then(Mono.fromCallable(() -> new StagedUpload(staged, originalFilename, check.contentType(),
+                        check.size, HexFormat.of().formatHex(check.digest.digest()))))
+                    .onErrorResume(e -> {
+                        deleteQuietly(staged);
+                        return Mono.error(e instanceof FileStorageException
+                            ? e
+                            : new FileStorageException("Failed to receive file: " + originalFilename, e));
+                    })
+                    .doOnCancel(() -> deleteQuietly(staged));
+            });
+    }
+    
+    /**
+     * Size limit, type detection and hashing for an upload read buffer by buffer
+     */
+    private final class StagingCheck {
+        
+        private final MessageDigest digest = newContentDigest();
+        private final byte[] header = new byte[MagicBytes.HEADER_LENGTH];
+        private int headerLength;
+        private String contentType;
+        private long size;
+        
+        void accept(DataBuffer buffer) {
+            try {
+                size += buffer.readableByteCount();
+                if (size > maxFileSize) {
+                    throw new FileStorageException("File size exceeds maximum limit of " + maxFileSize + " bytes");
+                }
+                // Reading these views leaves the buffer itself untouched for the write
+                try (DataBuffer.ByteBufferIterator buffers = buffer.readableByteBuffers()) {
+                    while (buffers.hasNext()) {
+                        ByteBuffer bytes = buffers.next();
+                        int headerBytes = Math.min(bytes.remaining(), header.length - headerLength);
+                        bytes.get(bytes.position(), header, headerLength, headerBytes);
+                        headerLength += headerBytes;
+                        digest.update(bytes);
+                    }
+                }
+                if (contentType == null && headerLength == header.length) {
+                    contentType();
+                }
+            } catch (RuntimeException e) {
+                DataBufferUtils.release(buffer);
+                throw e;
+            }
+        }
+        
+        /**
+         * Content type from the leading bytes, which may be all there is for a small file
+         */
+        String contentType() {
+            if (contentType == null) {
+                if (headerLength == 0) {
+                    throw new FileStorageException("Cannot upload empty file");
+                }
+                contentType = MagicBytes.detect(Arrays.copyOf(header, headerLength))
+                    .filter(FileService.this::isAllowedContentType)
+                    .orElseThrow(() -> new FileStorageException("File type not allowed. Allowed types: " + allowedTypes));
+            }
+            return contentType;
+        }
+    }
+    
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Nothing references the staged file
         }
     }
     
@@ -86,66 +483,185 @@ public class FileService {
             .orElseThrow(() -> new FileStorageException("File not found with id: " + fileId));
         
         try {
-            Path filePath = Paths.get(fileAttachment.getFilePath());
-            return Files.readAllBytes(filePath);
+            String storedPath = fileAttachment.getFilePath();
+            if (isBlobLocator(storedPath)) {
+                return blobStore.get(blobKey(storedPath));
+            }
+            return Files.readAllBytes(resolveStoredPath(storedPath));
         } catch (IOException e) {
             throw new FileStorageException("Failed to read file: " + fileAttachment.getFileName(), e);
         }
     }
     
     /**
-     * Delete a file
+     * Open a stored file as a streamable resource without loading it into memory
+     */
+    public Resource loadFileAsResource(FileAttachmentDto fileInfo) {
+        Resource resource = openStoredFile(fileInfo.getFilePath());
+        if (!resource.isReadable()) {
+            throw new FileStorageException("Stored file is missing or unreadable: " + fileInfo.getFileName());
+        }
+        return resource;
+    }
+    
+    /**
+     * Resource for a stored path: a {@code blob:} locator in the blob store, or a local
+     * file path recorded before the blob store was introduced
      */
+    private Resource openStoredFile(String storedPath) {
+        if (isBlobLocator(storedPath)) {
+            return blobStore.asResource(blobKey(storedPath));
+        }
+        return new FileSystemResource(resolveStoredPath(storedPath));
+    }
+    
+    private static boolean isBlobLocator(String storedPath) {
+        return storedPath.startsWith(BLOB_LOCATOR_PREFIX);
+    }
+    
+    private static String blobKey(String storedPath) {
+        return storedPath.substring(BLOB_LOCATOR_PREFIX.length());
+    }
+    
+    /**
+     * Locate a stored file. Files written before the sharded layout may be moved into
+     * their shard directory while a request holds the old path, so a missing file is
+     * looked up at its sharded location before giving up.
+     */
+    public Path resolveStoredPath(String filePath) {
+        Path path = Paths.get(filePath);
+        if (Files.exists(path) || path.getFileName() == null) {
+            return path;
+        }
+        Path sharded = ShardedLayout.resolve(Paths.get(uploadDir), path.getFileName().toString());
+        return Files.exists(sharded) ? sharded : path;
+    }
+    
+    /**
+     * Delete a file.
+     * Shared blobs are only queued for removal when the last attachment referencing
+     * them is deleted; the {@link BlobReclaimer} removes the bytes and thumbnails later,
+     * unless the same content has been uploaded again by then.
+     */
+    @Transactional
     public void deleteFile(UUID fileId) {
         FileAttachment fileAttachment = fileAttachmentRepository.findById(fileId)
             .orElseThrow(() -> new FileStorageException("File not found with id: " + fileId));
         
-        try {
-            // Delete from file system
-            Path filePath = Paths.get(fileAttachment.getFilePath());
-            Files.deleteIfExists(filePath);
-            
-            // Delete from database
-            fileAttachmentRepository.delete(fileAttachment);
-            
-        } catch (IOException e) {
-            throw new FileStorageException("Failed to delete file: " + fileAttachment.getFileName(), e);
+        // Delete from database
+        fileAttachmentRepository.delete(fileAttachment);
+        if (fileAttachment.getMessage() != null) {
+            ChatSession session = fileAttachment.getMessage().getSession();
+            storageQuotaService.recordRemoved(session.getUserId(), session.getId(), fileAttachment.getFileSize());
+        } else if (fileAttachment.getOwnerId() != null) {
+            storageQuotaService.recordRemoved(fileAttachment.getOwnerId(), null, fileAttachment.getFileSize());
         }
+        
+        // Queue the bytes once nothing else references them. Only an attachment stored at
+        // the blob's path holds a reference; files stored before content deduplication
+        // belong to this attachment alone, even once they were hashed on download
+        String contentHash = fileAttachment.getContentHash();
+        boolean holdsBlob = contentHash != null && storedBlobRepository.findById(contentHash)
+            .map(blob -> blob.getStoragePath().equals(fileAttachment.getFilePath()))
+            .orElse(false);
+        if (holdsBlob) {
+            storedBlobRepository.decrementRefCount(contentHash);
+            if (storedBlobRepository.deleteIfUnreferenced(contentHash) == 0) {
+                return;
+            }
+        }
+        blobReclamationRepository.save(new BlobReclamation(fileAttachment.getFilePath(), contentHash));
     }
     
     /**
-     * Get file attachments for a message
+     * Delete every attachment of a session with a fixed number of statements, however
+     * many messages it has. Blobs left without references are queued for the
+     * {@link BlobReclaimer} instead of being removed inline, and their bytes are taken
+     * off the user's storage usage.
+     *
+     * @return number of attachments deleted
      */
-    public List<FileAttachmentDto> getFileAttachmentsByMessageId(UUID messageId) {
-        List<FileAttachment> attachments = fileAttachmentRepository.findByMessageIdOrderByUploadedAtAsc(messageId);
-        return attachments.stream()
-            .map(this::convertToDto)
-            .toList();
+    @Transactional
+    public int deleteSessionAttachments(UUID sessionId, String userId) {
+        storageQuotaService.recordSessionDeleted(userId, sessionId);
+        storedBlobRepository.releaseSessionReferences(sessionId);
+        blobReclamationRepository.enqueueUnreferencedBlobsOfSession(sessionId);
+        blobReclamationRepository.enqueueUnsharedFilesOfSession(sessionId);
+        storedBlobRepository.deleteUnreferencedBlobsOfSession(sessionId);
+        return fileAttachmentRepository.deleteAllInSession(sessionId);
+    }
+    
+    /**
+     * Oldest entries of the reclamation queue
+     */
+    @Transactional(readOnly = true)
+    public List<BlobReclamation> findPendingReclamations(int limit) {
+        return blobReclamationRepository.findOldest(PageRequest.of(0, limit));
     }
     
     /**
-     * Validate uploaded file
+     * Remove the bytes of a queued blob unless it was taken off the queue or is referenced
+     * again; a blob row reserved by an upload that never claimed it goes with them. The queue
+     * row stays locked until the bytes are gone, so an upload of the same content waits for
+     * this to finish before writing them again.
+     *
+     * @return true when the bytes were removed
      */
-    private void validateFile(MultipartFile file) {
-        if (file.isEmpty()) {
-            throw new FileStorageException("Cannot upload empty file");
+    @Transactional
+    public boolean reclaimBlob(BlobReclamation reclamation) {
+        String storagePath = reclamation.getStoragePath();
+        if (blobReclamationRepository.dequeue(storagePath) == 0) {
+            return false;
         }
-        
-        if (file.getSize() > maxFileSize) {
-            throw new FileStorageException("File size exceeds maximum limit of " + maxFileSize + " bytes");
+        storedBlobRepository.deleteUnreferencedAt(storagePath);
+        if (storedBlobRepository.existsByStoragePath(storagePath) || fileAttachmentRepository.existsByFilePath(storagePath)) {
+            return false;
         }
-        
-        String contentType = file.getContentType();
-        if (contentType == null || !isAllowedContentType(contentType)) {
-            throw new FileStorageException("File type not allowed. Allowed types: " + allowedTypes);
+        deleteStored(storagePath, storagePath);
+        if (reclamation.getContentHash() != null) {
+            thumbnailService.evict(reclamation.getContentHash());
         }
-        
-        String filename = file.getOriginalFilename();
-        if (filename == null || filename.contains("..")) {
-            throw new FileStorageException("Invalid filename: " + filename);
+        return true;
+    }
+    
+    /**
+     * Run an action once the surrounding transaction commits, or right away outside one
+     */
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    private void deleteStored(String storedPath, String fileName) {
+        try {
+            if (isBlobLocator(storedPath)) {
+                blobStore.delete(blobKey(storedPath));
+            } else {
+                Files.deleteIfExists(resolveStoredPath(storedPath));
+            }
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to delete file: " + fileName, e);
         }
     }
     
+    /**
+     * Get file attachments for a message
+     */
+    public List<FileAttachmentDto> getFileAttachmentsByMessageId(UUID messageId) {
+        List<FileAttachment> attachments = fileAttachmentRepository.findByMessageIdOrderByUploadedAtAsc(messageId);
+        return attachments.stream()
+            .map(this::convertToDto)
+            .toList();
+    }
+    
     /**
      * Check if content type is allowed
      */
@@ -154,6 +670,10 @@ public class FileService {
         return allowedTypesList.contains(contentType.trim());
     }
     
+    private boolean isImage(String contentType) {
+        return contentType != null && contentType.startsWith("image/");
+    }
+    
     /**
      * Get file extension from filename
      */
@@ -168,15 +688,24 @@ public class FileService {
      * Convert FileAttachment entity to DTO
      */
     private FileAttachmentDto convertToDto(FileAttachment fileAttachment) {
-        return new FileAttachmentDto(
+        FileAttachmentDto dto = new FileAttachmentDto(
             fileAttachment.getId(),
-            fileAttachment.getMessage().getId(),
+            fileAttachment.getMessage() != null ? fileAttachment.getMessage().getId() : null,
             fileAttachment.getFileName(),
             fileAttachment.getFileType(),
             fileAttachment.getFilePath(),
             fileAttachment.getFileSize(),
             fileAttachment.getUploadedAt()
         );
+        dto.setContentHash(fileAttachment.getContentHash());
+        if (fileAttachment.getId() != null && isImage(fileAttachment.getFileType())) {
+            Map<String, String> thumbnailUrls = new LinkedHashMap<>();
+            for (ThumbnailSize size : ThumbnailSize.values()) {
+                thumbnailUrls.put(size.paramValue(), "/api/files/" + fileAttachment.getId() + "?size=" + size.paramValue());
+            }
+            dto.setThumbnailUrls(thumbnailUrls);
+        }
+        return dto;
     }
     
     /**
@@ -187,51 +716,74 @@ public class FileService {
     }
     
     /**
-     * Get file info without content
+     * Get file info without content.
+     * Attachments stored before content hashing was introduced get their hash
+     * computed and persisted on first access, so every download has a strong ETag.
      */
     public FileAttachmentDto getFileInfo(UUID fileId) {
         FileAttachment fileAttachment = fileAttachmentRepository.findById(fileId)
             .orElseThrow(() -> new FileStorageException("File not found with id: " + fileId));
         
+        if (fileAttachment.getContentHash() == null) {
+            fileAttachment.setContentHash(computeContentHash(openStoredFile(fileAttachment.getFilePath())));
+            fileAttachment = fileAttachmentRepository.save(fileAttachment);
+        }
+        
         return convertToDto(fileAttachment);
     }
     
     /**
-     * Migrate existing file paths to new upload directory
-     * This method updates database records to reflect the new upload directory
+     * Compute the hex-encoded SHA-256 of a stored file by streaming it
      */
-    public void migrateFilePathsToNewDirectory(String oldDirectoryPath, String newDirectoryPath) {
-        List<FileAttachment> allFiles = fileAttachmentRepository.findAll();
-        
-        for (FileAttachment fileAttachment : allFiles) {
-            String currentPath = fileAttachment.getFilePath();
-            if (currentPath.contains(oldDirectoryPath)) {
-                // Extract just the filename from the current path
-                String filename = Paths.get(currentPath).getFileName().toString();
-                // Create new path with the new directory
-                String newPath = Paths.get(newDirectoryPath, filename).toString();
-                
-                // Update the file path
-                fileAttachment.setFilePath(newPath);
-                fileAttachmentRepository.save(fileAttachment);
-                
-                System.out.println("Updated file path: " + currentPath + " -> " + newPath);
-            }
+    private String computeContentHash(Resource stored) {
+        try (InputStream in = stored.getInputStream()) {
+            return computeContentHash(in);
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to hash file: " + stored.getFilename(), e);
         }
     }
-
+    
+    private String computeContentHash(InputStream source) throws IOException {
+        MessageDigest digest = newContentDigest();
+        new DigestInputStream(source, digest).transferTo(OutputStream.nullOutputStream());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+    
+    private static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
     /**
-     * Calculate total file size for a session
+     * Migrate existing file paths to new upload directory.
+     * Paths are rewritten with set-based updates rather than by loading every
+     * attachment, keeping whatever sits below the directory (e.g. shard folders).
+     *
+     * @return number of attachment rows updated
      */
-    public long getTotalFileSizeBySessionId(UUID sessionId) {
-        return fileAttachmentRepository.calculateTotalFileSizeBySessionId(sessionId);
+    @Transactional
+    public int migrateFilePathsToNewDirectory(String oldDirectoryPath, String newDirectoryPath) {
+        String oldPrefix = asDirectoryPrefix(oldDirectoryPath);
+        String newPrefix = asDirectoryPrefix(newDirectoryPath);
+        if (oldPrefix.equals(newPrefix)) {
+            return 0;
+        }
+        storedBlobRepository.replaceStoragePathPrefix(oldPrefix, newPrefix);
+        return fileAttachmentRepository.replaceFilePathPrefix(oldPrefix, newPrefix);
     }
     
+    private String asDirectoryPrefix(String directoryPath) {
+        String separator = FileSystems.getDefault().getSeparator();
+        return directoryPath.endsWith(separator) ? directoryPath : directoryPath + separator;
+    }
+
     /**
-     * Clean up old files (for maintenance)
+     * Total file size for a session, read from its maintained counter
      */
-    public void cleanupOldFiles(int daysOld) {
-        // Implementation for cleanup based on business requirements
-        // This would typically run as a scheduled task
+    public long getTotalFileSizeBySessionId(UUID sessionId) {
+        return storageQuotaService.getSessionUsage(sessionId);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.dto.StreamResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Replies being generated on this node, by assistant message id, so that one can be
+ * stopped while it streams. Stopping cancels the model request upstream.
+ */
+@Component
+public class GenerationRegistry {
+
+    private final ConcurrentMap<UUID, Generation> generations = new ConcurrentHashMap<>();
+
+    private static final class Generation {
+        private final String userId;
+        private final Sinks.One<Boolean> stop = Sinks.one();
+        private final AtomicBoolean stopped = new AtomicBoolean();
+
+        private Generation(String userId) {
+            this.userId = userId;
+        }
+    }
+
+    /**
+     * Make the reply stream stoppable through {@link #cancel}. A stopped stream ends with a
+     * {@code stream_aborted} event in place of {@code stream_end}.
+     */
+    public Flux<StreamResponse> register(UUID sessionId, UUID messageId, String userId, Flux<StreamResponse> stream) {
+        return Flux.defer(() -> {
+            Generation generation = new Generation(userId);
+            generations.put(messageId, generation);
+            return stream
+                .takeUntilOther(generation.stop.asMono())
+                .concatWith(Mono.fromSupplier(() -> StreamResponse.streamAborted(sessionId, messageId))
+                    .filter(aborted -> generation.stopped.get()))
+                .doFinally(signal -> generations.remove(messageId, generation));
+        });
+    }
+
+    /**
+     * Stop the reply with this message id
+     *
+     * @return false when the reply is not streaming on this node or belongs to another user
+     */
+    public boolean cancel(UUID messageId, String userId) {
+        Generation generation = generations.get(messageId);
+        if (generation == null || !generation.userId.equals(userId)) {
+            return false;
+        }
+        if (generation.stopped.compareAndSet(false, true)) {
+            generation.stop.tryEmitValue(true);
+        }
+        return true;
+    }
+
+    /**
+     * Whether a reply with this message id is streaming on this node
+     */
+    public boolean isGenerating(UUID messageId) {
+        return generations.containsKey(messageId);
+    }
+}
@@ -0,0 +1,334 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.exception.FileStorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Prepares uploaded images for the vision model.
+ *
+ * Images are decoded, downscaled so the longest edge fits the model's input
+ * resolution and re-encoded, which keeps multimodal request payloads small and
+ * saves the model from resizing pixels it never uses. Results are cached on disk
+ * keyed by the original's content hash, so an image is only processed once.
+ */
+@Service
+public class ImagePreprocessor {
+
+    private static final Logger log = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+    @Value("${image.preprocess.enabled:true}")
+    private boolean enabled;
+
+    @Value("${image.preprocess.max-edge:1280}")
+    private int maxEdge;
+
+    @Value("${image.preprocess.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    @Value("${image.preprocess.max-pixels:40000000}")
+    private long maxPixels;
+
+    @Value("${image.cache-dir:${file.upload-dir}/.derived}")
+    private String cacheDir;
+
+    private final Executor imageProcessingExecutor;
+    private final ConcurrentMap<String, CompletableFuture<Optional<Path>>> inFlight = new ConcurrentHashMap<>();
+
+    public ImagePreprocessor(@Qualifier("imageProcessingExecutor") Executor imageProcessingExecutor) {
+        this.imageProcessingExecutor = imageProcessingExecutor;
+    }
+
+    /**
+     * Return the image file to send to the model: a downscaled re-encoding when the
+     * original exceeds the configured edge, otherwise the original unchanged
+     */
+    public Path prepareForModel(String contentHash, Path original) {
+        try {
+            return prepareVariant(contentHash, new FileSystemResource(original)).orElse(original);
+        } catch (IOException | FileStorageException e) {
+            log.warn("Image preprocessing failed for {}, sending original: {}", contentHash, e.getMessage());
+            return original;
+        }
+    }
+
+    /**
+     * Start preparing the model's copy of an image on the image processing pool, so the
+     * work overlaps with the rest of the request. Completes empty when the original
+     * should be sent as is. Concurrent calls for the same content share one run, e.g.
+     * a message sent while its pre-upload is still being prepared, or the same image
+     * attached twice.
+     */
+    public CompletableFuture<Optional<Path>> prepareForModelAsync(String contentHash, InputStreamSource source) {
+        CompletableFuture<Optional<Path>> created = new CompletableFuture<>();
+        if (contentHash != null) {
+            CompletableFuture<Optional<Path>> existing = inFlight.putIfAbsent(contentHash, created);
+            if (existing != null) {
+                return existing;
+            }
+        }
+
+        Runnable run = () -> {
+            try {
+                created.complete(prepareVariant(contentHash, source));
+            } catch (IOException | FileStorageException e) {
+                log.warn("Image preprocessing failed for {}, sending original: {}", contentHash, e.getMessage());
+                created.complete(Optional.empty());
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+            } finally {
+                release(contentHash, created);
+            }
+        };
+
+        try {
+            imageProcessingExecutor.execute(run);
+        } catch (RejectedExecutionException e) {
+            log.warn("Image processing pool saturated, sending original for {}", contentHash);
+            release(contentHash, created);
+            created.complete(Optional.empty());
+        }
+        return created;
+    }
+
+    /**
+     * Reject an image whose header declares more pixels than may be decoded, reading only
+     * the header. Content no reader recognises (e.g. WebP) or whose header cannot be read
+     * is left to the decoder, which sends the original instead.
+     */
+    public void checkDimensions(InputStreamSource source) {
+        try (InputStream in = source.getInputStream();
+             ImageInputStream input = new MemoryCacheImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                checkPixels(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            log.debug("Could not read image header: {}", e.getMessage());
+        }
+    }
+
+    private void checkPixels(int width, int height) {
+        if ((long) width * height > maxPixels) {
+            throw new FileStorageException("Image dimensions " + width + "x" + height
+                + " exceed the limit of " + maxPixels + " pixels");
+        }
+    }
+
+    private void release(String contentHash, CompletableFuture<Optional<Path>> run) {
+        if (contentHash != null) {
+            inFlight.remove(contentHash, run);
+        }
+    }
+
+    /**
+     * Return the cached or freshly written downscaled variant, or empty when the
+     * image already fits or cannot be decoded (e.g. WebP)
+     */
+    private Optional<Path> prepareVariant(String contentHash, InputStreamSource source) throws IOException {
+        if (!enabled || contentHash == null) {
+            return Optional.empty();
+        }
+
+        String variant = "model" + maxEdge;
+        Path cached = findDerived(contentHash, variant);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        BufferedImage scaled = decodeScaled(source, maxEdge);
+        if (scaled == null) {
+            return Optional.empty();
+        }
+
+        Path target = writeDerived(contentHash, variant, scaled);
+        log.debug("Preprocessed image {} to {} ({} bytes)", contentHash, target.getFileName(), Files.size(target));
+        return Optional.of(target);
+    }
+
+    /**
+     * Decode an image so that its longest edge is at most {@code targetEdge}.
+     * Returns null when the image already fits or cannot be decoded.
+     */
+    BufferedImage decodeScaled(InputStreamSource source, int targetEdge) throws IOException {
+        try (InputStream in = source.getInputStream();
+             ImageInputStream input = new MemoryCacheImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+
+                // Dimensions come from the header, so oversized images are rejected before decoding
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                checkPixels(width, height);
+
+                int longestEdge = Math.max(width, height);
+                if (longestEdge <= targetEdge) {
+                    return null;
+                }
+
+                // Let the decoder skip rows and columns for very large images, then finish with a smooth resize
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longestEdge / (targetEdge * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                return resize(reader.read(0, param), targetEdge);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Resize an image so its longest edge equals {@code targetEdge}, halving in steps for quality
+     */
+    BufferedImage resize(BufferedImage image, int targetEdge) {
+        int longestEdge = Math.max(image.getWidth(), image.getHeight());
+        double scale = (double) targetEdge / longestEdge;
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+
+        return current;
+    }
+
+    /**
+     * Encode an image as JPEG, or PNG when it has transparency
+     */
+    void encode(BufferedImage image, Path target) throws IOException {
+        if (image.getColorModel().hasAlpha()) {
+            if (!ImageIO.write(image, "png", target.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+            return;
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Find a previously written derived image, e.g. the model copy or a thumbnail
+     */
+    Path findDerived(String contentHash, String variant) {
+        for (String extension : new String[] {".jpg", ".png"}) {
+            Path candidate = derivedPath(contentHash, variant, extension);
+            if (Files.exists(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write a derived image to a temporary file and move it into place so readers never
+     * see a partial image
+     */
+    Path writeDerived(String contentHash, String variant, BufferedImage image) throws IOException {
+        Path target = derivedPath(contentHash, variant, image.getColorModel().hasAlpha() ? ".png" : ".jpg");
+        Files.createDirectories(target.getParent());
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp-" + UUID.randomUUID());
+        try {
+            encode(image, temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target;
+    }
+
+    /**
+     * Remove every derived image of a blob once the original is gone
+     */
+    public void deleteDerived(String contentHash) {
+        Path dir = Paths.get(cacheDir);
+        if (contentHash == null || !Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> derived = Files.newDirectoryStream(dir, contentHash + "-*")) {
+            for (Path path : derived) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete derived images for {}: {}", contentHash, e.getMessage());
+        }
+    }
+
+    private Path derivedPath(String contentHash, String variant, String extension) {
+        return Paths.get(cacheDir).resolve(contentHash + "-" + variant + extension);
+    }
+}
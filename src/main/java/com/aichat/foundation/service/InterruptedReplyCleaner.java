@@ -0,0 +1,39 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.entity.MessageStatus;
+import com.aichat.foundation.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Marks replies left streaming by a previous run as aborted. It runs before the server
+ * accepts requests, so no reply of this run is streaming yet; a reply that another node
+ * is still streaming gets its final status when that node saves it.
+ */
+@Component
+public class InterruptedReplyCleaner implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(InterruptedReplyCleaner.class);
+
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public InterruptedReplyCleaner(MessageRepository messageRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Integer aborted = transactionTemplate.execute(status ->
+            messageRepository.replaceStatus(MessageStatus.STREAMING, MessageStatus.ABORTED));
+        if (aborted != null && aborted > 0) {
+            log.info("Marked {} interrupted replies as aborted", aborted);
+        }
+    }
+}
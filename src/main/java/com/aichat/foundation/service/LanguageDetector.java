@@ -0,0 +1,281 @@
+package com.aichat.foundation.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Detects the language a user writes in, so the model can be asked to answer in it.
+ *
+ * A single pass over the code points counts letters per script and the script with the
+ * most weight wins, so a stray foreign word no longer decides the language. Latin text
+ * is then told apart between common languages by counting characteristic trigrams.
+ * The result is remembered per session and reused while later messages keep the same
+ * script, which leaves only the script pass on most turns.
+ */
+@Component
+public class LanguageDetector {
+
+    /**
+     * A Han, kana or Hangul character carries roughly a word, a Latin letter only part of
+     * one, so ideographs and syllables weigh more when scripts are mixed in one message
+     */
+    private static final int SYLLABIC_WEIGHT = 3;
+
+    /** Letters of Latin text looked at for trigrams; more rarely changes the answer */
+    private static final int MAX_CLASSIFIED_LETTERS = 1000;
+
+    /** Trigram hits needed before a Latin language other than English is chosen */
+    private static final int MIN_TRIGRAM_HITS = 3;
+
+    /** Shorter Latin messages, such as "ok", are classified but not remembered for the session */
+    private static final int MIN_REMEMBERED_LENGTH = 20;
+
+    public enum Script { LATIN, HAN, KANA, HANGUL, CYRILLIC, ARABIC, OTHER }
+
+    public enum Language {
+        ENGLISH("Please respond in English. Keep your response clear and helpful."),
+        FRENCH("Veuillez répondre en français. Gardez la même langue que la question de l'utilisateur."),
+        GERMAN("Bitte antworte auf Deutsch. Behalte dieselbe Sprache wie in der Frage des Nutzers bei."),
+        SPANISH("Por favor, responde en español. Mantén el mismo idioma que la pregunta del usuario."),
+        PORTUGUESE("Por favor, responda em português. Mantenha o mesmo idioma da pergunta do usuário."),
+        ITALIAN("Per favore, rispondi in italiano. Mantieni la stessa lingua della domanda dell'utente."),
+        CHINESE("请使用中文回答用户的问题。务必保持与用户问题相同的语言。"),
+        JAPANESE("ユーザーの質問に日本語で答えてください。ユーザーの質問と同じ言語を保ってください。"),
+        KOREAN("사용자의 질문에 한국어로 답변해 주세요. 사용자 질문과 같은 언어를 유지해 주세요."),
+        RUSSIAN("Пожалуйста, отвечайте на вопросы пользователя на русском языке. Сохраняйте тот же язык, что и в вопросе пользователя."),
+        ARABIC("يرجى الإجابة على أسئلة المستخدم باللغة العربية. حافظ على نفس لغة سؤال المستخدم."),
+        UNKNOWN("Please respond in the same language as the user's question.");
+
+        private final String instruction;
+
+        Language(String instruction) {
+            this.instruction = instruction;
+        }
+
+        public String getInstruction() {
+            return instruction;
+        }
+    }
+
+    /** Latin languages told apart by trigrams, in the order of the profile bits */
+    private static final Language[] LATIN_LANGUAGES = {
+        Language.ENGLISH, Language.FRENCH, Language.GERMAN, Language.SPANISH, Language.PORTUGUESE, Language.ITALIAN
+    };
+
+    /** Frequent trigrams of each Latin language, with a space standing for a word boundary */
+    private static final String[][] LATIN_PROFILES = {
+        {" th", "the", "he ", " an", "and", "nd ", " of", "of ", " to", "to ", "ing", "ng ", " is", "is ", "ion",
+         "hat", "tha", " wh", "wha", " yo", "you", "ou ", " fo", "for", "or ", "ere", " ca", "can", "an ", " it",
+         "it ", "at ", " be", "ith", "wit", " wi", "ts ", "ly ", "ed ", "his", "thi", "'s ", "ow ", "how", " ho"},
+        {" de", "de ", " le", "le ", " la", "la ", "les", "es ", " et", "et ", " qu", "que", "ue ", "des", " po",
+         "our", "ous", "vou", " vo", "ez ", "ait", " un", "une", " pa", "pas", "est", " es", "ne ", "eur", "ans",
+         " da", "dan", " je", "je ", " ce", "ce ", " à ", "té ", "ée ", "pré", "oi ", "moi", " mo", "qu'", " j'"},
+        {"en ", "er ", " de", "der", "ie ", "die", " di", "ch ", "ich", " ic", "ein", " ei", "sch", "che", "und",
+         " un", "nd ", "cht", "ist", " is", "den", "das", " da", "ine", "gen", "ung", "nic", "ber", " zu", "zu ",
+         "mit", " mi", "auf", " au", "sie", " si", "wie", " wi", "ür ", "für", " fü", "eiß", "eit", "ten", "kan"},
+        {" de", "de ", "os ", " la", "la ", "el ", " el", "es ", " qu", "que", "ue ", " en", "en ", "as ", "ión",
+         "ón ", " lo", "los", " co", "con", " pa", "par", "ara", " se", "ado", "una", " un", "est", "por", " po",
+         "ien", "mos", " es", "ómo", "cóm", " có", "ño ", " y ", "ar ", "er ", " me", "me ", "ero", "ndo", "año"},
+        {" de", "de ", "os ", " qu", "que", "ue ", "do ", " do", "da ", " da", "em ", " em", "ão ", "ção", "nte",
+         "com", " co", "ara", " pa", "par", " nã", "não", " um", "uma", "est", " é ", "voc", "ocê", "cê ", "ões",
+         "men", "as ", " se", "eu ", "meu", " me", "ar ", "mos", "nho", "lho", "açã", "ra ", " o ", "ma ", "tem"},
+        {" di", "di ", "che", " ch", "he ", " il", "il ", "la ", " la", "to ", "re ", " de", "del", "ell", "lla",
+         "per", " pe", "zio", "ion", "one", "ne ", " un", "una", "non", " no", "ono", " so", "son", "gli", " gl",
+         " è ", "no ", " co", "con", "are", "ere", "ire", "tto", "sta", "mi ", "cos", "ai ", "ti ", "ci ", "è u"}
+    };
+
+    /** Packed trigrams, sorted, with a bit per language of {@link #LATIN_LANGUAGES} that uses each */
+    private static final long[] TRIGRAMS;
+    private static final int[] TRIGRAM_LANGUAGES;
+
+    static {
+        TreeMap<Long, Integer> trigrams = new TreeMap<>();
+        for (int language = 0; language < LATIN_PROFILES.length; language++) {
+            for (String trigram : LATIN_PROFILES[language]) {
+                trigrams.merge(pack(trigram.charAt(0), trigram.charAt(1), trigram.charAt(2)), 1 << language, (a, b) -> a | b);
+            }
+        }
+        TRIGRAMS = trigrams.keySet().stream().mapToLong(Long::longValue).toArray();
+        TRIGRAM_LANGUAGES = trigrams.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Value("${language.session-cache-size:10000}")
+    private int sessionCacheSize;
+
+    private final Map<UUID, SessionLanguage> sessionLanguages = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, SessionLanguage> eldest) {
+            return size() > sessionCacheSize;
+        }
+    };
+
+    private record SessionLanguage(Script script, Language language) {}
+
+    /**
+     * Language of a message in a session; the session's earlier result is reused while
+     * the message is written in the same script
+     *
+     * @return the detected language, or {@link Language#UNKNOWN} when the text has no letters
+     */
+    public Language detect(UUID sessionId, CharSequence text) {
+        Script script = dominantScript(text);
+        if (script == null) {
+            return Language.UNKNOWN;
+        }
+        if (sessionId == null) {
+            return languageOf(script, text);
+        }
+        synchronized (sessionLanguages) {
+            SessionLanguage cached = sessionLanguages.get(sessionId);
+            if (cached != null && cached.script() == script) {
+                return cached.language();
+            }
+        }
+        Language language = languageOf(script, text);
+        if (script != Script.LATIN || text.length() >= MIN_REMEMBERED_LENGTH) {
+            synchronized (sessionLanguages) {
+                sessionLanguages.put(sessionId, new SessionLanguage(script, language));
+            }
+        }
+        return language;
+    }
+
+    /**
+     * Language of a single message, without consulting any session
+     */
+    public Language detect(CharSequence text) {
+        return detect(null, text);
+    }
+
+    private static Language languageOf(Script script, CharSequence text) {
+        return switch (script) {
+            case LATIN -> classifyLatin(text);
+            case HAN -> Language.CHINESE;
+            case KANA -> Language.JAPANESE;
+            case HANGUL -> Language.KOREAN;
+            case CYRILLIC -> Language.RUSSIAN;
+            case ARABIC -> Language.ARABIC;
+            case OTHER -> Language.UNKNOWN;
+        };
+    }
+
+    /**
+     * Script carrying the most weight in the text, or null when it has no letters.
+     * Kana decide for Japanese even alongside more kanji, since Chinese text has no kana.
+     */
+    static Script dominantScript(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        int[] counts = new int[Script.values().length];
+        int length = text.length();
+        for (int i = 0; i < length; ) {
+            int cp = Character.codePointAt(text, i);
+            i += Character.charCount(cp);
+            Script script = scriptOf(cp);
+            if (script != null) {
+                counts[script.ordinal()]++;
+            }
+        }
+
+        int kana = counts[Script.KANA.ordinal()];
+        int han = counts[Script.HAN.ordinal()];
+        if (kana > 0 && kana * 4 >= han) {
+            counts[Script.KANA.ordinal()] += han;
+            counts[Script.HAN.ordinal()] = 0;
+        }
+
+        Script dominant = null;
+        int best = 0;
+        for (Script script : Script.values()) {
+            int weight = counts[script.ordinal()];
+            if (script == Script.HAN || script == Script.KANA || script == Script.HANGUL) {
+                weight *= SYLLABIC_WEIGHT;
+            }
+            if (weight > best) {
+                best = weight;
+                dominant = script;
+            }
+        }
+        return dominant;
+    }
+
+    private static Script scriptOf(int cp) {
+        if (cp < 0x80) {
+            return (cp >= 'a' && cp <= 'z') || (cp >= 'A' && cp <= 'Z') ? Script.LATIN : null;
+        }
+        if (cp < 0x250) {
+            return Character.isLetter(cp) ? Script.LATIN : null;
+        }
+        if (cp >= 0x4e00 && cp <= 0x9fff || cp >= 0x3400 && cp <= 0x4dbf) {
+            return Script.HAN;
+        }
+        if (cp >= 0x3040 && cp <= 0x30ff) {
+            return Script.KANA;
+        }
+        if (cp >= 0xac00 && cp <= 0xd7af || cp >= 0x1100 && cp <= 0x11ff || cp >= 0x3130 && cp <= 0x318f) {
+            return Script.HANGUL;
+        }
+        if (cp >= 0x0400 && cp <= 0x04ff) {
+            return Script.CYRILLIC;
+        }
+        if (cp >= 0x0600 && cp <= 0x06ff) {
+            return Script.ARABIC;
+        }
+        return Character.isLetter(cp) ? Script.OTHER : null;
+    }
+
+    /**
+     * Pick the Latin language whose trigrams occur most often; English unless another
+     * language has clearly more evidence
+     */
+    static Language classifyLatin(CharSequence text) {
+        int[] hits = new int[LATIN_LANGUAGES.length];
+        char previous2 = ' ';
+        char previous = ' ';
+        int letters = 0;
+        int length = text.length();
+        for (int i = 0; i <= length && letters < MAX_CLASSIFIED_LETTERS; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetter(c) || c == '\'') {
+                c = Character.toLowerCase(c);
+                letters++;
+            } else {
+                c = ' ';
+                if (previous == ' ') {
+                    continue;
+                }
+            }
+            int index = Arrays.binarySearch(TRIGRAMS, pack(previous2, previous, c));
+            if (index >= 0) {
+                int languages = TRIGRAM_LANGUAGES[index];
+                for (int language = 0; languages != 0; language++, languages >>>= 1) {
+                    hits[language] += languages & 1;
+                }
+            }
+            previous2 = previous;
+            previous = c;
+        }
+
+        int best = 0;
+        for (int language = 1; language < hits.length; language++) {
+            if (hits[language] > hits[best]) {
+                best = language;
+            }
+        }
+        if (best != 0 && hits[best] < MIN_TRIGRAM_HITS) {
+            return Language.ENGLISH;
+        }
+        return LATIN_LANGUAGES[best];
+    }
+
+    private static long pack(char first, char second, char third) {
+        return ((long) first << 32) | ((long) second << 16) | third;
+    }
+}
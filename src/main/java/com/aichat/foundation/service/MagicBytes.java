@@ -0,0 +1,54 @@
+package com.aichat.foundation.service;
+
+import java.util.Optional;
+
+/**
+ * Detects the image formats accepted for upload from their leading bytes, so the stored
+ * content type reflects what was actually sent rather than what the client declared
+ */
+final class MagicBytes {
+
+    /** Bytes needed to recognise every supported format */
+    static final int HEADER_LENGTH = 12;
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] GIF87A = {'G', 'I', 'F', '8', '7', 'a'};
+    private static final byte[] GIF89A = {'G', 'I', 'F', '8', '9', 'a'};
+    private static final byte[] RIFF = {'R', 'I', 'F', 'F'};
+    private static final byte[] WEBP = {'W', 'E', 'B', 'P'};
+
+    private MagicBytes() {
+    }
+
+    /**
+     * Content type of the image starting with the given bytes, or empty when unrecognised
+     */
+    static Optional<String> detect(byte[] header) {
+        if (startsWith(header, 0, JPEG)) {
+            return Optional.of("image/jpeg");
+        }
+        if (startsWith(header, 0, PNG)) {
+            return Optional.of("image/png");
+        }
+        if (startsWith(header, 0, GIF87A) || startsWith(header, 0, GIF89A)) {
+            return Optional.of("image/gif");
+        }
+        if (startsWith(header, 0, RIFF) && startsWith(header, 8, WEBP)) {
+            return Optional.of("image/webp");
+        }
+        return Optional.empty();
+    }
+
+    private static boolean startsWith(byte[] header, int offset, byte[] magic) {
+        if (header.length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[offset + i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
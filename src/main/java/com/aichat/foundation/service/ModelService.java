@@ -3,30 +3,56 @@ package com.aichat.foundation.service;
 import com.aichat.foundation.client.OllamaClient;
 import com.aichat.foundation.dto.StreamResponse;
 import com.aichat.foundation.exception.ModelServiceException;
+import com.aichat.foundation.prompt.PromptTemplates;
+import com.aichat.foundation.routing.ModelRoute;
+import com.aichat.foundation.routing.ModelRouter;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
+import java.util.List;
 import java.util.UUID;
 
 @Service
 public class ModelService {
     
     private final OllamaClient ollamaClient;
+    private final LanguageDetector languageDetector;
+    private final PromptTemplates promptTemplates;
+    private final ModelRouter modelRouter;
     
-    public ModelService(OllamaClient ollamaClient) {
+    public ModelService(OllamaClient ollamaClient, LanguageDetector languageDetector, PromptTemplates promptTemplates,
+                        ModelRouter modelRouter) {
         this.ollamaClient = ollamaClient;
+        this.languageDetector = languageDetector;
+        this.promptTemplates = promptTemplates;
+        this.modelRouter = modelRouter;
     }
     
     /**
-     * Process text-only request and return streaming response
+     * Choose the model route for a turn by modality, prompt length and an optional route override
      */
-    public Flux<StreamResponse> processTextRequest(UUID sessionId, UUID messageId, String prompt) {
+    public ModelRoute selectRoute(boolean hasImages, String override, int promptChars) {
+        return modelRouter.select(hasImages, override, promptChars);
+    }
+    
+    /**
+     * Whether a model route of this name is configured
+     */
+    public boolean hasRoute(String name) {
+        return modelRouter.hasRoute(name);
+    }
+    
+    /**
+     * Process text-only request on the given route and return streaming response
+     */
+    public Flux<StreamResponse> processTextRequest(ModelRoute route, UUID sessionId, UUID messageId, String prompt) {
         return Flux.concat(
             // Send stream start
             Flux.just(StreamResponse.streamStart(sessionId, messageId)),
             
             // Process streaming response from OLLAMA
-            ollamaClient.sendTextMessage(prompt)
+            modelRouter.execute(route, r -> ollamaClient.sendTextMessage(r.getModel(), r.getOptions(), prompt))
                 .map(content -> StreamResponse.streamChunk(sessionId, messageId, content))
                 .onErrorMap(throwable -> new ModelServiceException("Failed to process text request", throwable)),
             
@@ -36,15 +62,16 @@ public class ModelService {
     }
     
     /**
-     * Process multimodal request (text + image) and return streaming response
+     * Process multimodal request (text + images) on the given route and return streaming response
      */
-    public Flux<StreamResponse> processMultimodalRequest(UUID sessionId, UUID messageId, String prompt, byte[] imageData) {
+    public Flux<StreamResponse> processMultimodalRequest(ModelRoute route, UUID sessionId, UUID messageId, String prompt,
+                                                         List<? extends Resource> images) {
         return Flux.concat(
             // Send stream start
             Flux.just(StreamResponse.streamStart(sessionId, messageId)),
             
             // Process streaming response from OLLAMA
-            ollamaClient.sendMultimodalMessage(prompt, imageData)
+            modelRouter.execute(route, r -> ollamaClient.sendMultimodalMessage(r.getModel(), r.getOptions(), prompt, images))
                 .map(content -> StreamResponse.streamChunk(sessionId, messageId, content))
                 .onErrorMap(throwable -> new ModelServiceException("Failed to process multimodal request", throwable)),
             
@@ -61,75 +88,19 @@ public class ModelService {
     }
     
     /**
-     * Create enhanced prompt with context and language matching
-     */
-    public String createEnhancedPrompt(String userMessage, String conversationContext) {
-        StringBuilder promptBuilder = new StringBuilder();
-        
-        // Add language instruction based on user message language
-        String languageInstruction = detectAndCreateLanguageInstruction(userMessage);
-        promptBuilder.append(languageInstruction).append("\n\n");
-        
-        if (conversationContext != null && !conversationContext.isEmpty()) {
-            promptBuilder.append("Previous conversation context:\n");
-            promptBuilder.append(conversationContext);
-            promptBuilder.append("\n\n");
-        }
-        
-        promptBuilder.append("User: ").append(userMessage);
-        promptBuilder.append("\n\nAssistant: ");
-        
-        return promptBuilder.toString();
-    }
-    
-    /**
-     * Create multimodal prompt with image description and language matching
+     * Create the prompt for a text message from the model's template, with context and language matching
      */
-    public String createMultimodalPrompt(String userMessage, String imageDescription) {
-        StringBuilder promptBuilder = new StringBuilder();
-        
-        // Add language instruction based on user message language
-        String languageInstruction = detectAndCreateLanguageInstruction(userMessage);
-        promptBuilder.append(languageInstruction).append("\n\n");
-        
-        if (imageDescription != null && !imageDescription.isEmpty()) {
-            promptBuilder.append("Image description: ").append(imageDescription).append("\n\n");
-        }
-        
-        promptBuilder.append("User message: ").append(userMessage);
-        promptBuilder.append("\n\nPlease analyze the image and respond to the user's message. Assistant: ");
-        
-        return promptBuilder.toString();
+    public String createEnhancedPrompt(ModelRoute route, UUID sessionId, String userMessage, String conversationContext) {
+        String languageInstruction = languageDetector.detect(sessionId, userMessage).getInstruction();
+        return promptTemplates.renderText(route.getModel(), languageInstruction, conversationContext, userMessage);
     }
     
     /**
-     * Detect the language of user message and create appropriate instruction
+     * Create the prompt for a message with images from the model's template, with language matching
      */
-    private String detectAndCreateLanguageInstruction(String userMessage) {
-        if (userMessage == null || userMessage.trim().isEmpty()) {
-            return "Please respond in the same language as the user's question.";
-        }
-        
-        // Simple language detection based on character patterns
-        boolean hasChinese = userMessage.matches(".*[\u4e00-\u9fff]+.*");
-        boolean hasJapanese = userMessage.matches(".*[\u3040-\u309f\u30a0-\u30ff]+.*");
-        boolean hasKorean = userMessage.matches(".*[\uac00-\ud7af]+.*");
-        boolean hasRussian = userMessage.matches(".*[\u0400-\u04ff]+.*");
-        boolean hasArabic = userMessage.matches(".*[\u0600-\u06ff]+.*");
-        
-        if (hasChinese) {
-            return "请使用中文回答用户的问题。务必保持与用户问题相同的语言。";
-        } else if (hasJapanese) {
-            return "ユーザーの質問に日本語で答えてください。ユーザーの質問と同じ言語を保ってください。";
-        } else if (hasKorean) {
-            return "사용자의 질문에 한국어로 답변해 주세요. 사용자 질문과 같은 언어를 유지해 주세요.";
-        } else if (hasRussian) {
-            return "Пожалуйста, отвечайте на вопросы пользователя на русском языке. Сохраняйте тот же язык, что и в вопросе пользователя.";
-        } else if (hasArabic) {
-            return "يرجى الإجابة على أسئلة المستخدم باللغة العربية. حافظ على نفس لغة سؤال المستخدم.";
-        } else {
-            // Default to English for Latin script or mixed content
-            return "Please respond in English. Keep your response clear and helpful.";
-        }
+    public String createMultimodalPrompt(ModelRoute route, UUID sessionId, String userMessage, String conversationContext,
+                                         String imageDescription) {
+        String languageInstruction = languageDetector.detect(sessionId, userMessage).getInstruction();
+        return promptTemplates.renderMultimodal(route.getModel(), languageInstruction, conversationContext, imageDescription, userMessage);
     }
-}
\ No newline at end of file
+}
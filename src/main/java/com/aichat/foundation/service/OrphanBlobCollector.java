@@ -0,0 +1,261 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.entity.FileAttachment;
+import com.aichat.foundation.entity.StoredBlob;
+import com.aichat.foundation.repository.FileAttachmentRepository;
+import com.aichat.foundation.repository.StoredBlobRepository;
+import com.aichat.foundation.storage.ShardedLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mark-and-sweep collector for files in the upload directory that no database row
+ * refers to, such as leftovers of failed uploads or of deletions that never removed
+ * their bytes.
+ *
+ * The mark phase pages through every stored path and keeps only a 64-bit fingerprint
+ * of each in a sorted {@code long[]}, about 8 bytes per file. The sweep walks the upload
+ * directory and deletes files whose fingerprint is absent and whose last modification
+ * is older than the grace period, which protects uploads written after the mark phase.
+ * A fingerprint collision can only keep an orphan, never delete a live file.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "local", matchIfMissing = true)
+public class OrphanBlobCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(OrphanBlobCollector.class);
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    @Value("${storage.local.root:${file.upload-dir}}")
+    private String root;
+
+    @Value("${image.cache-dir:${file.upload-dir}/.derived}")
+    private String cacheDir;
+
+    @Value("${file.orphans.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.orphans.grace-period:PT24H}")
+    private Duration gracePeriod;
+
+    @Value("${file.orphans.batch-size:1000}")
+    private int batchSize;
+
+    private final StoredBlobRepository storedBlobRepository;
+    private final FileAttachmentRepository fileAttachmentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public OrphanBlobCollector(StoredBlobRepository storedBlobRepository,
+                               FileAttachmentRepository fileAttachmentRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.storedBlobRepository = storedBlobRepository;
+        this.fileAttachmentRepository = fileAttachmentRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Outcome of one collection
+     *
+     * @param scannedFiles   files looked at in the upload directory
+     * @param deletedFiles   orphans removed
+     * @param reclaimedBytes total size of the removed orphans
+     */
+    public record Report(long scannedFiles, long deletedFiles, long reclaimedBytes) {}
+
+    @Scheduled(fixedDelayString = "${file.orphans.interval:PT24H}",
+               initialDelayString = "${file.orphans.initial-delay:PT1H}")
+    public void collectScheduled() {
+        if (enabled) {
+            collect();
+        }
+    }
+
+    /**
+     * Run one mark-and-sweep pass; returns an empty report when a pass is already running
+     */
+    public Report collect() {
+        if (!running.compareAndSet(false, true)) {
+            return new Report(0, 0, 0);
+        }
+        try {
+            Path rootDir = Paths.get(root).toAbsolutePath().normalize();
+            if (!Files.isDirectory(rootDir)) {
+                return new Report(0, 0, 0);
+            }
+            long[] live = markLivePaths(rootDir);
+            Report report = sweep(rootDir, live, Instant.now().minus(gracePeriod));
+            log.info("Orphan collection scanned {} files against {} live paths, removed {} orphans ({} bytes reclaimed)",
+                report.scannedFiles(), live.length, report.deletedFiles(), report.reclaimedBytes());
+            return report;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Orphan collection stopped: {}", e.getMessage());
+            return new Report(0, 0, 0);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Fingerprint every path still referenced by a blob or by an attachment stored outside
+     * the blob store, hashed or not, reading them a page at a time
+     */
+    long[] markLivePaths(Path rootDir) {
+        LongArray live = new LongArray();
+
+        String afterHash = "";
+        List<StoredBlob> blobs;
+        do {
+            String after = afterHash;
+            blobs = transactionTemplate.execute(status ->
+                storedBlobRepository.findByContentHashGreaterThanOrderByContentHashAsc(after, PageRequest.of(0, batchSize)));
+            for (StoredBlob blob : blobs) {
+                addStoredPath(live, rootDir, blob.getStoragePath());
+                afterHash = blob.getContentHash();
+            }
+        } while (blobs.size() == batchSize);
+
+        UUID afterId = new UUID(0L, 0L);
+        List<FileAttachment> attachments;
+        do {
+            UUID after = afterId;
+            attachments = transactionTemplate.execute(status ->
+                fileAttachmentRepository.findLegacyFilesAfter(after, PageRequest.of(0, batchSize)));
+            for (FileAttachment attachment : attachments) {
+                addStoredPath(live, rootDir, attachment.getFilePath());
+                afterId = attachment.getId();
+            }
+        } while (attachments.size() == batchSize);
+
+        return live.sorted();
+    }
+
+    /**
+     * Stored paths are blob locators relative to the root, or legacy file paths that may
+     * since have been moved into the sharded layout; both candidates are kept live
+     */
+    private void addStoredPath(LongArray live, Path rootDir, String storedPath) {
+        if (storedPath == null) {
+            return;
+        }
+        if (storedPath.startsWith(FileService.BLOB_LOCATOR_PREFIX)) {
+            live.add(fingerprint(rootDir.resolve(storedPath.substring(FileService.BLOB_LOCATOR_PREFIX.length()))));
+            return;
+        }
+        Path path = Paths.get(storedPath);
+        live.add(fingerprint(path));
+        Path fileName = path.getFileName();
+        if (fileName != null) {
+            try {
+                live.add(fingerprint(ShardedLayout.resolve(rootDir, fileName.toString())));
+            } catch (IllegalArgumentException e) {
+                // Name too short to have been sharded
+            }
+        }
+    }
+
+    private Report sweep(Path rootDir, long[] live, Instant graceCutoff) throws IOException {
+        Path derivedDir = Paths.get(cacheDir).toAbsolutePath().normalize();
+        long[] counts = new long[3];
+
+        Files.walkFileTree(rootDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                // Derived images are keyed by content hash and evicted with their blob
+                return dir.equals(derivedDir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                counts[0]++;
+                if (attrs.lastModifiedTime().toInstant().isAfter(graceCutoff)
+                        || Arrays.binarySearch(live, fingerprint(file)) >= 0) {
+                    return FileVisitResult.CONTINUE;
+                }
+                try {
+                    if (Files.deleteIfExists(file)) {
+                        counts[1]++;
+                        counts[2] += attrs.size();
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not remove orphaned file {}: {}", file, e.getMessage());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Removed while walking, e.g. by a concurrent delete
+                if (!(e instanceof NoSuchFileException)) {
+                    log.warn("Skipping {} during orphan collection: {}", file, e.getMessage());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new Report(counts[0], counts[1], counts[2]);
+    }
+
+    /**
+     * 64-bit FNV-1a of the absolute, normalised path
+     */
+    static long fingerprint(Path path) {
+        byte[] bytes = path.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8);
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Growable array of primitive longs, avoiding a boxed object per live path
+     */
+    private static final class LongArray {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] sorted() {
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
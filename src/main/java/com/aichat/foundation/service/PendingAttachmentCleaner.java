@@ -0,0 +1,46 @@
+package com.aichat.foundation.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically removes pre-uploaded attachments that were never sent with a message
+ */
+@Component
+public class PendingAttachmentCleaner {
+
+    private static final Logger log = LoggerFactory.getLogger(PendingAttachmentCleaner.class);
+
+    @Value("${file.pending.cleanup-batch-size:100}")
+    private int batchSize;
+
+    private final FileService fileService;
+
+    public PendingAttachmentCleaner(FileService fileService) {
+        this.fileService = fileService;
+    }
+
+    /**
+     * Delete expired handles in batches, each in its own transaction
+     */
+    @Scheduled(fixedDelayString = "${file.pending.cleanup-interval:PT5M}",
+               initialDelayString = "${file.pending.cleanup-interval:PT5M}")
+    public void removeExpired() {
+        int removed = 0;
+        try {
+            int batch;
+            do {
+                batch = fileService.deleteExpiredPendingAttachments(batchSize);
+                removed += batch;
+            } while (batch == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Expired upload cleanup stopped after {} attachments: {}", removed, e.getMessage());
+        }
+        if (removed > 0) {
+            log.info("Removed {} expired pre-uploaded attachments", removed);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.dto.*;
+import com.aichat.foundation.entity.*;
+import com.aichat.foundation.exception.ChatServiceException;
+import com.aichat.foundation.repository.ReactiveChatSessionRepository;
+import com.aichat.foundation.repository.ReactiveMessageRepository;
+import com.aichat.foundation.routing.ModelRoute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * The chat operations of {@link ChatService} for the reactive profile. Sessions and
+ * messages are read and written over R2DBC, so a reply holds neither a thread nor a
+ * connection while it streams. Attachments are still stored through {@link FileService}
+ * and JPA; those calls run on Reactor's bounded-elastic workers, off the event loops.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveChatService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveChatService.class);
+
+    private final ReactiveChatSessionRepository chatSessionRepository;
+    private final ReactiveMessageRepository messageRepository;
+    private final ModelService modelService;
+    private final FileService fileService;
+    private final ImagePreprocessor imagePreprocessor;
+    private final GenerationRegistry generationRegistry;
+    private final TransactionalOperator transactionalOperator;
+
+    @Value("${image.max-per-message:8}")
+    private int maxImagesPerMessage;
+
+    @Value("${image.max-payload-bytes:20971520}")
+    private long maxImagePayloadBytes;
+
+    public ReactiveChatService(ReactiveChatSessionRepository chatSessionRepository,
+                               ReactiveMessageRepository messageRepository,
+                               ModelService modelService,
+                               FileService fileService,
+                               ImagePreprocessor imagePreprocessor,
+                               GenerationRegistry generationRegistry,
+                               TransactionalOperator transactionalOperator) {
+        this.chatSessionRepository = chatSessionRepository;
+        this.messageRepository = messageRepository;
+        this.modelService = modelService;
+        this.fileService = fileService;
+        this.imagePreprocessor = imagePreprocessor;
+        this.generationRegistry = generationRegistry;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    /**
+     * Create a new chat session whose messages go to the named model route unless a message names another
+     */
+    public Mono<ChatSessionDto> createSession(String title, String userId, String modelRoute) {
+        if (title == null || title.trim().isEmpty()) {
+            title = "New Chat - " + LocalDateTime.now().toString();
+        }
+        if (modelRoute != null && modelRoute.isBlank()) {
+            modelRoute = null;
+        }
+        if (modelRoute != null && !modelService.hasRoute(modelRoute)) {
+            return Mono.error(new ChatServiceException("Unknown model route: " + modelRoute));
+        }
+
+        return chatSessionRepository.save(ChatSessionRow.create(title.trim(), userId, modelRoute))
+            .flatMap(this::convertToSessionDto);
+    }
+
+    /**
+     * Get all sessions for a user
+     */
+    public Flux<ChatSessionDto> getUserSessions(String userId) {
+        return chatSessionRepository.findByUserIdOrderByUpdatedAtDesc(userId)
+            .flatMapSequential(this::convertToSessionDto);
+    }
+
+    /**
+     * Get a specific session, or nothing when the user has no such session
+     */
+    public Mono<ChatSessionDto> getSession(UUID sessionId, String userId) {
+        return chatSessionRepository.findByIdAndUserId(sessionId, userId)
+            .flatMap(this::convertToSessionDto);
+    }
+
+    /**
+     * Delete a chat session with its messages and attachments. The attachments go first,
+     * in a JPA transaction of their own, so a failure part way leaves messages without
+     * their files rather than files pointing at deleted messages.
+     */
+    public Mono<Boolean> deleteSession(UUID sessionId, String userId) {
+        return chatSessionRepository.existsByIdAndUserId(sessionId, userId)
+            .flatMap(exists -> !exists
+                ? Mono.just(false)
+                : blocking(() -> fileService.deleteSessionAttachments(sessionId, userId))
+                    .then(Mono.defer(() -> messageRepository.deleteBySessionId(sessionId)
+                        .then(Mono.defer(() -> chatSessionRepository.deleteByIdAndUserId(sessionId, userId)))
+                        .as(transactionalOperator::transactional)))
+                    .map(deleted -> deleted > 0));
+    }
+
+    /**
+     * Get messages for a session, with their attachments
+     */
+    public Flux<MessageDto> getSessionMessages(UUID sessionId, String userId) {
+        return findSession(sessionId, userId)
+            .flatMapMany(session -> messageRepository.findBySessionIdOrderByCreatedAtAsc(sessionId).collectList())
+            .flatMap(messages -> blocking(() -> messages.stream()
+                .map(message -> convertToMessageDto(message, fileService.getFileAttachmentsByMessageId(message.getId())))
+                .toList()))
+            .flatMapIterable(Function.identity());
+    }
+
+    /**
+     * Process a text message and return streaming response
+     */
+    public Flux<StreamResponse> processTextMessage(ChatMessageRequest request, String userId) {
+        return findSession(request.getSessionId(), userId)
+            .flatMapMany(session -> saveTurn(session.getId(), request.getContent())
+                .zipWhen(assistantMessage -> buildConversationContext(session.getId()))
+                .flatMapMany(turn -> {
+                    MessageRow assistantMessage = turn.getT1();
+                    String conversationContext = turn.getT2();
+                    ModelRoute route = modelService.selectRoute(false, routeOverride(request.getModel(), session),
+                        request.getContent().length() + conversationContext.length());
+                    String enhancedPrompt = modelService.createEnhancedPrompt(route, session.getId(),
+                        request.getContent(), conversationContext);
+
+                    return streamAndSave(
+                            modelService.processTextRequest(route, session.getId(), assistantMessage.getId(), enhancedPrompt),
+                            session, assistantMessage, userId)
+                        .onErrorMap(throwable -> new ChatServiceException("Failed to process message", throwable));
+                }));
+    }
+
+    /**
+     * Process a multimodal message whose images were staged from the request; they are
+     * stored before the reply starts
+     */
+    public Flux<StreamResponse> processMultimodalUploads(UUID sessionId, String content,
+                                                         List<StagedUpload> uploads, String model, String userId) {
+        return findSession(sessionId, userId)
+            .flatMapMany(session -> {
+                if (uploads.isEmpty()) {
+                    return Flux.error(new ChatServiceException("At least one attachment is required"));
+                }
+                if (uploads.size() > maxImagesPerMessage) {
+                    return Flux.error(new ChatServiceException("At most " + maxImagesPerMessage + " images can be sent per message"));
+                }
+                return saveWithAttachments(session, content, userMessage -> fileService.uploadFiles(uploads, userMessage))
+                    .flatMapMany(attachments -> streamMultimodalResponse(session, content, attachments, model, userId));
+            });
+    }
+
+    /**
+     * Process a multimodal message whose images were uploaded beforehand, so the
+     * request carries only their attachment ids
+     */
+    public Flux<StreamResponse> processMultimodalMessage(UUID sessionId, String content,
+                                                         List<UUID> attachmentIds, String model, String userId) {
+        return findSession(sessionId, userId)
+            .flatMapMany(session -> {
+                if (attachmentIds == null || attachmentIds.isEmpty()) {
+                    return Flux.error(new ChatServiceException("At least one attachment is required"));
+                }
+                if (attachmentIds.size() > maxImagesPerMessage) {
+                    return Flux.error(new ChatServiceException("At most " + maxImagesPerMessage + " images can be sent per message"));
+                }
+                return saveWithAttachments(session, content,
+                        userMessage -> fileService.claimPendingAttachments(attachmentIds, userId, userMessage))
+                    .flatMapMany(attachments -> streamMultimodalResponse(session, content, attachments, model, userId));
+            });
+    }
+
+    /**
+     * Stop a reply that is still being generated; the content streamed so far is kept
+     *
+     * @return false when no reply with this id is streaming for the user
+     */
+    public boolean cancelGeneration(UUID messageId, String userId) {
+        return generationRegistry.cancel(messageId, userId);
+    }
+
+    private Mono<ChatSessionRow> findSession(UUID sessionId, String userId) {
+        return chatSessionRepository.findByIdAndUserId(sessionId, userId)
+            .switchIfEmpty(Mono.error(() -> new ChatServiceException("Session not found or access denied")));
+    }
+
+    /**
+     * Save the user's message with an empty assistant message after it, returning the latter
+     */
+    private Mono<MessageRow> saveTurn(UUID sessionId, String content) {
+        return messageRepository.save(MessageRow.create(sessionId, content, MessageType.USER))
+            .then(Mono.defer(() -> messageRepository.save(MessageRow.createReply(sessionId))))
+            .as(transactionalOperator::transactional);
+    }
+
+    /**
+     * Save the user's message and attach its files to it. Attachments are written through
+     * JPA, outside the message's transaction, so the message is deleted again when they
+     * cannot be attached.
+     */
+    private Mono<List<FileAttachmentDto>> saveWithAttachments(ChatSessionRow session, String content,
+                                                              Function<Message, List<FileAttachmentDto>> attach) {
+        return messageRepository.save(MessageRow.create(session.getId(), content, MessageType.USER))
+            .flatMap(userMessage -> blocking(() -> attach.apply(attachmentOwner(session, userMessage)))
+                .onErrorResume(e -> messageRepository.deleteById(userMessage.getId()).then(Mono.error(e))))
+            .onErrorMap(e -> new ChatServiceException("Failed to process multimodal message", e));
+    }
+
+    /**
+     * Send the message and its stored images to the model, saving the streamed answer
+     */
+    private Flux<StreamResponse> streamMultimodalResponse(ChatSessionRow session, String content,
+                                                          List<FileAttachmentDto> attachments, String model,
+                                                          String userId) {
+        UUID sessionId = session.getId();
+        List<Resource> storedImages = new ArrayList<>(attachments.size());
+        List<CompletableFuture<Optional<Path>>> modelImages = new ArrayList<>(attachments.size());
+
+        // Opening a stored image may reach the blob store; the model's copies are then
+        // prepared on the image pool while the rest of the request is set up
+        Mono<Void> prepareImages = blocking(() -> {
+            for (FileAttachmentDto attachment : attachments) {
+                Resource storedImage = fileService.loadFileAsResource(attachment);
+                storedImages.add(storedImage);
+                modelImages.add(imagePreprocessor.prepareForModelAsync(attachment.getContentHash(), storedImage));
+            }
+            return attachments;
+        }).then();
+
+        String imageDescription = attachments.size() == 1
+            ? "User uploaded an image"
+            : "User uploaded " + attachments.size() + " images";
+
+        return prepareImages
+            .then(messageRepository.save(MessageRow.createReply(sessionId)))
+            .zipWhen(assistantMessage -> buildConversationContext(sessionId))
+            .flatMapMany(turn -> {
+                MessageRow assistantMessage = turn.getT1();
+                String conversationContext = turn.getT2();
+                ModelRoute route = modelService.selectRoute(true, routeOverride(model, session),
+                    content.length() + conversationContext.length());
+                String enhancedPrompt = modelService.createMultimodalPrompt(route, sessionId, content,
+                    conversationContext, imageDescription);
+
+                Flux<StreamResponse> responses = Mono.fromFuture(CompletableFuture.allOf(modelImages.toArray(CompletableFuture[]::new)))
+                    .then(blocking(() -> ChatService.modelImagesOrOriginals(modelImages, storedImages, maxImagePayloadBytes)))
+                    .flatMapMany(images -> modelService.processMultimodalRequest(route, sessionId, assistantMessage.getId(),
+                                                                                enhancedPrompt, images));
+
+                return streamAndSave(responses, session, assistantMessage, userId)
+                    .onErrorMap(throwable -> new ChatServiceException("Failed to process multimodal message", throwable));
+            });
+    }
+
+    /**
+     * Collect the streamed reply into the assistant message, as {@link ChatService} does.
+     * A completed reply is saved before the stream ends, so it is in the session by the time
+     * the client sees the response finish; a stopped or abandoned one is saved in the
+     * background, marked aborted, and a failed one is saved aborted before the error is passed on.
+     */
+    private Flux<StreamResponse> streamAndSave(Flux<StreamResponse> responses, ChatSessionRow session,
+                                               MessageRow assistantMessage, String userId) {
+        return Flux.defer(() -> {
+            StringBuilder responseBuilder = new StringBuilder();
+            AtomicReference<MessageStatus> status = new AtomicReference<>(MessageStatus.COMPLETE);
+            AtomicBoolean saved = new AtomicBoolean();
+            Function<MessageStatus, Mono<Void>> save = finalStatus -> Mono.defer(() -> {
+                if (!saved.compareAndSet(false, true)) {
+                    return Mono.empty();
+                }
+                String content;
+                synchronized (responseBuilder) {
+                    content = responseBuilder.toString();
+                }
+                return messageRepository.updateReply(assistantMessage.getId(), content, finalStatus)
+                    .then(chatSessionRepository.touch(session.getId(), LocalDateTime.now()))
+                    .as(transactionalOperator::transactional)
+                    .then();
+            });
+
+            return generationRegistry.register(session.getId(), assistantMessage.getId(), userId, responses)
+                .doOnNext(streamResponse -> {
+                    if ("stream_chunk".equals(streamResponse.getType())) {
+                        synchronized (responseBuilder) {
+                            responseBuilder.append(streamResponse.getContent());
+                        }
+                    } else if ("stream_aborted".equals(streamResponse.getType())) {
+                        status.set(MessageStatus.ABORTED);
+                    }
+                })
+                .onErrorResume(e -> save.apply(MessageStatus.ABORTED)
+                    .onErrorResume(saveError -> {
+                        logger.warn("Failed to save failed reply {}: {}", assistantMessage.getId(), saveError.getMessage());
+                        return Mono.empty();
+                    })
+                    .then(Mono.error(e)))
+                // The save carries on when the client leaves while it runs
+                .concatWith(Mono.defer(() -> Mono.fromFuture(save.apply(status.get()).toFuture(), true))
+                    .then(Mono.empty()))
+                .doOnCancel(() -> save.apply(MessageStatus.ABORTED).subscribe(null, e ->
+                    logger.warn("Failed to save aborted reply {}: {}", assistantMessage.getId(), e.getMessage())));
+        });
+    }
+
+    /**
+     * Route named by the message, falling back to the one chosen for the session
+     */
+    private String routeOverride(String model, ChatSessionRow session) {
+        return model != null && !model.isBlank() ? model : session.getModelRoute();
+    }
+
+    /**
+     * Build conversation context from the last 10 messages
+     */
+    private Mono<String> buildConversationContext(UUID sessionId) {
+        return messageRepository.findTop10BySessionIdOrderByCreatedAtDesc(sessionId)
+            .collectList()
+            .map(recentMessages -> {
+                StringBuilder context = new StringBuilder();
+                for (int i = recentMessages.size() - 1; i >= 0; i--) {
+                    MessageRow message = recentMessages.get(i);
+                    String sender = message.getType() == MessageType.USER ? "User" : "Assistant";
+                    context.append(sender).append(": ").append(message.getContent()).append("\n");
+                }
+                return context.toString();
+            });
+    }
+
+    /**
+     * The message as JPA sees it, for attaching files to; only its id and its session's
+     * id and user are read
+     */
+    private static Message attachmentOwner(ChatSessionRow sessionRow, MessageRow messageRow) {
+        ChatSession session = new ChatSession(sessionRow.getTitle(), sessionRow.getUserId());
+        session.setId(sessionRow.getId());
+        Message message = new Message(messageRow.getContent(), messageRow.getType(), session);
+        message.setId(messageRow.getId());
+        return message;
+    }
+
+    /**
+     * Run a call to the blocking services on a worker rather than the caller's event loop
+     */
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Convert a session row to DTO
+     */
+    private Mono<ChatSessionDto> convertToSessionDto(ChatSessionRow session) {
+        return messageRepository.countBySessionId(session.getId())
+            .map(messageCount -> {
+                ChatSessionDto dto = new ChatSessionDto(
+                    session.getId(),
+                    session.getTitle(),
+                    session.getUserId(),
+                    session.getStatus().name(),
+                    session.getCreatedAt(),
+                    session.getUpdatedAt(),
+                    messageCount.intValue()
+                );
+                dto.setModelRoute(session.getModelRoute());
+                return dto;
+            });
+    }
+
+    /**
+     * Convert a message row to DTO
+     */
+    private static MessageDto convertToMessageDto(MessageRow message, List<FileAttachmentDto> attachments) {
+        MessageDto dto = new MessageDto(
+            message.getId(),
+            message.getSessionId(),
+            message.getContent(),
+            message.getType().name(),
+            message.getCreatedAt(),
+            message.getMetadata(),
+            attachments
+        );
+        if (message.getStatus() != null) {
+            dto.setStatus(message.getStatus().name());
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,216 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.entity.ChatSession;
+import com.aichat.foundation.entity.FileAttachment;
+import com.aichat.foundation.entity.MaintenanceCheckpoint;
+import com.aichat.foundation.entity.SessionStatus;
+import com.aichat.foundation.repository.ChatSessionRepository;
+import com.aichat.foundation.repository.FileAttachmentRepository;
+import com.aichat.foundation.repository.MaintenanceCheckpointRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+/**
+ * Scheduled retention for inactive sessions (with their messages) and old attachments.
+ *
+ * Each pass walks its table in (timestamp, id) order one page at a time, so memory stays
+ * bounded by the batch size. Every batch and its resume position are committed together
+ * in a {@link MaintenanceCheckpoint}, so a restart continues the interrupted pass instead
+ * of starting over. Batches are paced to {@code retention.max-rows-per-second}.
+ */
+@Service
+public class RetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    static final String SESSIONS_CHECKPOINT = "retention:sessions";
+    static final String FILES_CHECKPOINT = "retention:files";
+
+    /** Position before every row, used when a pass starts */
+    private static final LocalDateTime FIRST_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    @Value("${retention.enabled:false}")
+    private boolean enabled;
+
+    @Value("${retention.batch-size:100}")
+    private int batchSize;
+
+    @Value("${retention.max-rows-per-second:200}")
+    private int maxRowsPerSecond;
+
+    @Value("${retention.sessions.inactive-after:P90D}")
+    private Duration sessionInactiveAfter;
+
+    @Value("${retention.sessions.action:delete}")
+    private String sessionAction;
+
+    @Value("${retention.files.max-age:P365D}")
+    private Duration fileMaxAge;
+
+    private final ChatSessionRepository chatSessionRepository;
+    private final FileAttachmentRepository fileAttachmentRepository;
+    private final MaintenanceCheckpointRepository checkpointRepository;
+    private final ChatService chatService;
+    private final FileService fileService;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public RetentionService(ChatSessionRepository chatSessionRepository,
+                            FileAttachmentRepository fileAttachmentRepository,
+                            MaintenanceCheckpointRepository checkpointRepository,
+                            ChatService chatService,
+                            FileService fileService,
+                            PlatformTransactionManager transactionManager) {
+        this.chatSessionRepository = chatSessionRepository;
+        this.fileAttachmentRepository = fileAttachmentRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.chatService = chatService;
+        this.fileService = fileService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Apply every retention rule, resuming passes interrupted by a restart
+     */
+    @Scheduled(cron = "${retention.cron:0 30 3 * * *}")
+    public void applyRetention() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            drain("sessions", this::expireSessionBatch);
+            drain("attachments", this::expireFileBatch);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Run batches until one comes back short, waiting between them to stay under the rate limit
+     */
+    private void drain(String what, IntSupplier batch) {
+        long minBatchNanos = TimeUnit.SECONDS.toNanos(batchSize) / Math.max(1, maxRowsPerSecond);
+        int processed = 0;
+        try {
+            int count;
+            do {
+                long started = System.nanoTime();
+                count = batch.getAsInt();
+                processed += count;
+                long remaining = minBatchNanos - (System.nanoTime() - started);
+                if (count == batchSize && remaining > 0) {
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                }
+            } while (count == batchSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Retention of {} stopped after {} rows, it resumes on the next run: {}", what, processed, e.getMessage());
+        }
+        if (processed > 0) {
+            log.info("Retention processed {} {}", processed, what);
+        }
+    }
+
+    /**
+     * Delete or archive the next page of inactive sessions
+     *
+     * @return number of sessions processed
+     */
+    int expireSessionBatch() {
+        boolean archive = "archive".equalsIgnoreCase(sessionAction);
+        Set<SessionStatus> statuses = archive ? EnumSet.of(SessionStatus.ACTIVE) : EnumSet.allOf(SessionStatus.class);
+        LocalDateTime cutoff = LocalDateTime.now().minus(sessionInactiveAfter);
+
+        return inBatch(SESSIONS_CHECKPOINT, (afterTime, afterId) -> {
+            List<ChatSession> sessions = chatSessionRepository.findInactiveSessions(
+                cutoff, statuses, afterTime, afterId, PageRequest.of(0, batchSize));
+            if (sessions.isEmpty()) {
+                return null;
+            }
+            if (archive) {
+                chatSessionRepository.updateStatus(sessions.stream().map(ChatSession::getId).toList(), SessionStatus.ARCHIVED);
+            } else {
+                sessions.forEach(session -> chatService.deleteSession(session.getId(), session.getUserId()));
+            }
+            ChatSession last = sessions.get(sessions.size() - 1);
+            return new Page(sessions.size(), last.getUpdatedAt(), last.getId());
+        });
+    }
+
+    /**
+     * Delete the next page of attachments past their maximum age; their messages are kept
+     *
+     * @return number of attachments deleted
+     */
+    int expireFileBatch() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(fileMaxAge);
+
+        return inBatch(FILES_CHECKPOINT, (afterTime, afterId) -> {
+            List<FileAttachment> attachments = fileAttachmentRepository.findOldFiles(
+                cutoff, afterTime, afterId, PageRequest.of(0, batchSize));
+            if (attachments.isEmpty()) {
+                return null;
+            }
+            attachments.forEach(attachment -> fileService.deleteFile(attachment.getId()));
+            FileAttachment last = attachments.get(attachments.size() - 1);
+            return new Page(attachments.size(), last.getUploadedAt(), last.getId());
+        });
+    }
+
+    /**
+     * Process one page in a transaction that also records where the next page starts,
+     * or marks the pass completed when the page was the last one
+     */
+    private int inBatch(String checkpointName, PageProcessor processor) {
+        Integer processed = transactionTemplate.execute(status -> {
+            MaintenanceCheckpoint checkpoint = checkpointRepository.findById(checkpointName)
+                .orElseGet(() -> new MaintenanceCheckpoint(checkpointName));
+
+            LocalDateTime afterTime = FIRST_TIME;
+            UUID afterId = FIRST_ID;
+            if (checkpoint.getPosition() != null) {
+                int separator = checkpoint.getPosition().indexOf('|');
+                afterTime = LocalDateTime.parse(checkpoint.getPosition().substring(0, separator));
+                afterId = UUID.fromString(checkpoint.getPosition().substring(separator + 1));
+            }
+
+            Page page = processor.process(afterTime, afterId);
+            int count = page == null ? 0 : page.count();
+            if (count == batchSize) {
+                checkpoint.setPosition(page.lastTime() + "|" + page.lastId());
+            } else {
+                checkpoint.setPosition(null);
+                checkpoint.setCompletedAt(LocalDateTime.now());
+            }
+            checkpointRepository.save(checkpoint);
+            return count;
+        });
+        return processed == null ? 0 : processed;
+    }
+
+    @FunctionalInterface
+    private interface PageProcessor {
+        /** Process the page after the given position; null when there was nothing left */
+        Page process(LocalDateTime afterTime, UUID afterId);
+    }
+
+    private record Page(int count, LocalDateTime lastTime, UUID lastId) {}
+}
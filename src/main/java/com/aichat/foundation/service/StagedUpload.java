@@ -0,0 +1,67 @@
+package com.aichat.foundation.service;
+
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An upload that has been validated, hashed and written to the staging directory in a
+ * single pass over the request body. Storing it moves the staged file into the blob
+ * store; closing it removes whatever was not stored.
+ */
+public final class StagedUpload implements InputStreamSource, AutoCloseable {
+
+    private final Path file;
+    private final String originalFilename;
+    private final String contentType;
+    private final long size;
+    private final String contentHash;
+
+    StagedUpload(Path file, String originalFilename, String contentType, long size, String contentHash) {
+        this.file = file;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.size = size;
+        this.contentHash = contentHash;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    /**
+     * Content type detected from the file's leading bytes
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Best effort: a leftover staged file is never referenced by any attachment
+        }
+    }
+}
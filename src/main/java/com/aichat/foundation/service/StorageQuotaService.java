@@ -0,0 +1,233 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.entity.MaintenanceCheckpoint;
+import com.aichat.foundation.exception.StorageQuotaExceededException;
+import com.aichat.foundation.repository.MaintenanceCheckpointRepository;
+import com.aichat.foundation.repository.StorageUsageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Per-user and per-session attachment byte counts, and the quotas enforced on them.
+ *
+ * The counters live in {@code storage_usage} and are adjusted in the same transaction as
+ * the attachment rows they describe; the quotas are enforced by that update itself.
+ * Committed values are mirrored in memory as {@link LongAdder}s, loaded on first use and
+ * adjusted after each commit, so the early check made before an upload is stored is a
+ * map lookup rather than a sum over every attachment of the user.
+ */
+@Service
+public class StorageQuotaService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageQuotaService.class);
+
+    static final String BACKFILL_CHECKPOINT = "storage-usage-backfill";
+
+    @Value("${file.quota.user-bytes:1GB}")
+    private DataSize userQuota;
+
+    @Value("${file.quota.session-bytes:256MB}")
+    private DataSize sessionQuota;
+
+    private final StorageUsageRepository storageUsageRepository;
+    private final MaintenanceCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate counterTransaction;
+    private final ConcurrentMap<String, LongAdder> committedUsage = new ConcurrentHashMap<>();
+
+    public StorageQuotaService(StorageUsageRepository storageUsageRepository,
+                               MaintenanceCheckpointRepository checkpointRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.storageUsageRepository = storageUsageRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.counterTransaction = new TransactionTemplate(transactionManager);
+        this.counterTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Create the counters from existing attachments once, before the server accepts uploads
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        transactionTemplate.executeWithoutResult(status -> {
+            MaintenanceCheckpoint checkpoint = checkpointRepository.findById(BACKFILL_CHECKPOINT)
+                .orElseGet(() -> new MaintenanceCheckpoint(BACKFILL_CHECKPOINT));
+            if (checkpoint.isCompleted()) {
+                return;
+            }
+            int sessions = storageUsageRepository.backfillSessions();
+            int users = storageUsageRepository.backfillUsers();
+            checkpoint.setCompletedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+            if (sessions + users > 0) {
+                log.info("Initialised storage usage for {} users and {} sessions", users, sessions);
+            }
+        });
+    }
+
+    /**
+     * Reject an upload of {@code bytes} that would take the user or the session, whichever
+     * are given, past its quota. This reads the committed usage only, to fail fast before
+     * an upload is stored; {@link #recordAdded} enforces the quotas atomically.
+     */
+    public void checkQuota(String userId, UUID sessionId, long bytes) {
+        if (userId != null && getUserUsage(userId) + bytes > userQuota.toBytes()) {
+            throw userQuotaExceeded();
+        }
+        if (sessionId != null && getSessionUsage(sessionId) + bytes > sessionQuota.toBytes()) {
+            throw sessionQuotaExceeded();
+        }
+    }
+
+    public long getUserUsage(String userId) {
+        return committed(userKey(userId)).sum();
+    }
+
+    public long getSessionUsage(UUID sessionId) {
+        return committed(sessionKey(sessionId)).sum();
+    }
+
+    /**
+     * Count bytes added for a user and, when given, one of their sessions, failing when
+     * either would go past its quota. The counters stay locked until the caller's
+     * transaction ends, so concurrent uploads are counted one after the other.
+     */
+    @Transactional
+    public void recordAdded(String userId, UUID sessionId, long bytes) {
+        adjustWithin(userKey(userId), bytes, userQuota.toBytes(), this::userQuotaExceeded);
+        if (sessionId != null) {
+            adjustWithin(sessionKey(sessionId), bytes, sessionQuota.toBytes(), this::sessionQuotaExceeded);
+        }
+    }
+
+    /**
+     * Count bytes removed from a user and, when given, one of their sessions
+     */
+    @Transactional
+    public void recordRemoved(String userId, UUID sessionId, long bytes) {
+        adjust(userKey(userId), -bytes);
+        if (sessionId != null) {
+            adjust(sessionKey(sessionId), -bytes);
+        }
+    }
+
+    /**
+     * Move a pre-upload already counted for its owner into a session, failing when the
+     * session would go past its quota
+     */
+    @Transactional
+    public void recordClaimed(UUID sessionId, long bytes) {
+        adjustWithin(sessionKey(sessionId), bytes, sessionQuota.toBytes(), this::sessionQuotaExceeded);
+    }
+
+    /**
+     * Drop a deleted session's counter and take its bytes off the user
+     */
+    @Transactional
+    public void recordSessionDeleted(String userId, UUID sessionId) {
+        String sessionKey = sessionKey(sessionId);
+        long bytes = storageUsageRepository.findBytes(sessionKey).orElse(0L);
+        storageUsageRepository.deleteByScopeKey(sessionKey);
+        if (bytes != 0) {
+            adjust(userKey(userId), -bytes);
+        }
+        afterCommit(() -> committedUsage.remove(sessionKey));
+    }
+
+    private void adjust(String key, long delta) {
+        LongAdder usage = committed(key);
+        if (storageUsageRepository.addBytes(key, delta) == 0) {
+            createCounter(key);
+            storageUsageRepository.addBytes(key, delta);
+        }
+        afterCommit(() -> usage.add(delta));
+    }
+
+    private void adjustWithin(String key, long delta, long limit, Supplier<StorageQuotaExceededException> exceeded) {
+        LongAdder usage = committed(key);
+        if (storageUsageRepository.addBytesWithin(key, delta, limit) == 0) {
+            createCounter(key);
+            if (storageUsageRepository.addBytesWithin(key, delta, limit) == 0) {
+                throw exceeded.get();
+            }
+        }
+        afterCommit(() -> usage.add(delta));
+    }
+
+    /**
+     * Create a counter at zero unless it exists, in a transaction of its own so that two
+     * uploads creating it at once do not fail the caller's transaction on the primary key
+     */
+    private void createCounter(String key) {
+        try {
+            counterTransaction.executeWithoutResult(status -> {
+                if (storageUsageRepository.findBytes(key).isEmpty()) {
+                    storageUsageRepository.insert(key, 0L);
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Created concurrently
+        }
+    }
+
+    private StorageQuotaExceededException userQuotaExceeded() {
+        return new StorageQuotaExceededException("Storage quota of " + userQuota.toMegabytes() + "MB exceeded");
+    }
+
+    private StorageQuotaExceededException sessionQuotaExceeded() {
+        return new StorageQuotaExceededException("Session storage quota of " + sessionQuota.toMegabytes() + "MB exceeded");
+    }
+
+    /**
+     * In-memory copy of a counter's committed value. Every change loads it before updating
+     * the row, so a copy loaded later never misses a change still waiting to commit, and
+     * each change is added to it exactly once after commit.
+     */
+    private LongAdder committed(String key) {
+        return committedUsage.computeIfAbsent(key, k -> {
+            LongAdder usage = new LongAdder();
+            usage.add(storageUsageRepository.findBytes(k).orElse(0L));
+            return usage;
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static String userKey(String userId) {
+        return "user:" + userId;
+    }
+
+    private static String sessionKey(UUID sessionId) {
+        return "session:" + sessionId;
+    }
+}
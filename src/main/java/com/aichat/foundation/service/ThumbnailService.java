@@ -0,0 +1,191 @@
+package com.aichat.foundation.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Generates and caches thumbnails of image attachments.
+ *
+ * Thumbnails for every {@link ThumbnailSize} are rendered from a single decode on a
+ * background pool right after upload and stored next to the other derived images,
+ * keyed by content hash. A request that arrives before they exist generates the one
+ * it needs; concurrent requests for the same image share a single generation.
+ */
+@Service
+public class ThumbnailService {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    @Value("${image.thumbnails.enabled:true}")
+    private boolean enabled;
+
+    private final ImagePreprocessor imagePreprocessor;
+    private final Executor thumbnailExecutor;
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    public ThumbnailService(ImagePreprocessor imagePreprocessor,
+                            @Qualifier("thumbnailExecutor") Executor thumbnailExecutor) {
+        this.imagePreprocessor = imagePreprocessor;
+        this.thumbnailExecutor = thumbnailExecutor;
+    }
+
+    /**
+     * Queue generation of all thumbnail sizes for a stored image. Skipped when the pool is
+     * saturated; the thumbnails are then generated on first request instead.
+     */
+    public CompletableFuture<Void> generateAsync(String contentHash, InputStreamSource original) {
+        if (!enabled || contentHash == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return singleFlight(contentHash, () -> generateAll(contentHash, original), false)
+            .whenComplete((ignored, e) -> {
+                if (e != null) {
+                    log.warn("Thumbnail generation failed for {}: {}", contentHash, e.getMessage());
+                }
+            });
+    }
+
+    /**
+     * Return the thumbnail of the given size, generating it if needed. Empty when the
+     * original is already no larger than the thumbnail or cannot be decoded, in which
+     * case the original should be served.
+     */
+    public Optional<Path> getThumbnail(String contentHash, InputStreamSource original, ThumbnailSize size) {
+        if (!enabled || contentHash == null) {
+            return Optional.empty();
+        }
+
+        String variant = variant(size);
+        Path cached = imagePreprocessor.findDerived(contentHash, variant);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        try {
+            // Wait for a background run already rendering this image before starting another
+            CompletableFuture<Void> batch = inFlight.get(contentHash);
+            if (batch != null) {
+                batch.join();
+                cached = imagePreprocessor.findDerived(contentHash, variant);
+                if (cached != null) {
+                    return Optional.of(cached);
+                }
+            }
+
+            singleFlight(contentHash + "-" + variant, () -> generateOne(contentHash, original, size), true).join();
+        } catch (CompletionException e) {
+            log.warn("Thumbnail generation failed for {}, serving original: {}", contentHash, e.getCause().getMessage());
+            return Optional.empty();
+        }
+        return Optional.ofNullable(imagePreprocessor.findDerived(contentHash, variant));
+    }
+
+    /**
+     * Drop the cached thumbnails and other derived images of a blob that was deleted
+     */
+    public void evict(String contentHash) {
+        imagePreprocessor.deleteDerived(contentHash);
+    }
+
+    /**
+     * Run a task unless one with the same key is already running, in which case its
+     * future is shared. A busy pool either skips the task or runs it on the caller.
+     */
+    private CompletableFuture<Void> singleFlight(String key, ThumbnailTask task, boolean runInlineWhenBusy) {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        Runnable run = () -> {
+            try {
+                task.run();
+                created.complete(null);
+            } catch (Throwable e) {
+                created.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, created);
+            }
+        };
+
+        try {
+            thumbnailExecutor.execute(run);
+        } catch (RejectedExecutionException e) {
+            if (runInlineWhenBusy) {
+                run.run();
+            } else {
+                log.debug("Thumbnail pool saturated, deferring {} to first request", key);
+                inFlight.remove(key, created);
+                created.complete(null);
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Render every size from one decode, each one scaled down from the previous
+     */
+    private void generateAll(String contentHash, InputStreamSource original) throws IOException {
+        ThumbnailSize[] sizes = ThumbnailSize.values();
+        BufferedImage current = imagePreprocessor.decodeScaled(original, sizes[sizes.length - 1].getEdge());
+        int originalEdge = Integer.MAX_VALUE;
+        if (current == null) {
+            // Already within the largest thumbnail, so decoding it in full is cheap
+            try (InputStream in = original.getInputStream()) {
+                current = ImageIO.read(in);
+            }
+            if (current == null) {
+                return;
+            }
+            originalEdge = Math.max(current.getWidth(), current.getHeight());
+        }
+
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            ThumbnailSize size = sizes[i];
+            if (originalEdge <= size.getEdge()) {
+                continue;
+            }
+            if (Math.max(current.getWidth(), current.getHeight()) > size.getEdge()) {
+                current = imagePreprocessor.resize(current, size.getEdge());
+            }
+            if (imagePreprocessor.findDerived(contentHash, variant(size)) == null) {
+                imagePreprocessor.writeDerived(contentHash, variant(size), current);
+            }
+        }
+        log.debug("Generated thumbnails for {}", contentHash);
+    }
+
+    private void generateOne(String contentHash, InputStreamSource original, ThumbnailSize size) throws IOException {
+        BufferedImage scaled = imagePreprocessor.decodeScaled(original, size.getEdge());
+        if (scaled != null) {
+            imagePreprocessor.writeDerived(contentHash, variant(size), scaled);
+        }
+    }
+
+    private static String variant(ThumbnailSize size) {
+        return "thumb" + size.getEdge();
+    }
+
+    @FunctionalInterface
+    private interface ThumbnailTask {
+        void run() throws IOException;
+    }
+}
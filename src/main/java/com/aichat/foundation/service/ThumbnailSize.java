@@ -0,0 +1,41 @@
+package com.aichat.foundation.service;
+
+import java.util.Locale;
+
+/**
+ * Thumbnail sizes served for image attachments, by longest edge in pixels
+ */
+public enum ThumbnailSize {
+    SMALL(128),
+    MEDIUM(320),
+    LARGE(640);
+
+    private final int edge;
+
+    ThumbnailSize(int edge) {
+        this.edge = edge;
+    }
+
+    public int getEdge() {
+        return edge;
+    }
+
+    /**
+     * Name used in the {@code size} query parameter
+     */
+    public String paramValue() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parse a {@code size} query parameter, ignoring case
+     */
+    public static ThumbnailSize fromParam(String value) {
+        for (ThumbnailSize size : values()) {
+            if (size.name().equalsIgnoreCase(value)) {
+                return size;
+            }
+        }
+        throw new IllegalArgumentException("Unknown thumbnail size: " + value);
+    }
+}
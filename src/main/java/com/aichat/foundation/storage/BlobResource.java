@@ -0,0 +1,99 @@
+package com.aichat.foundation.storage;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Resource view of a blob in a {@link BlobStore}.
+ *
+ * The returned stream opens the blob lazily, so a skip before the first read (which is
+ * how Spring serves HTTP Range requests) becomes a ranged fetch instead of downloading
+ * and discarding the leading bytes.
+ */
+class BlobResource extends AbstractResource {
+
+    private final BlobStore store;
+    private final String key;
+
+    BlobResource(BlobStore store, String key) {
+        this.store = store;
+        this.key = key;
+    }
+
+    @Override
+    public boolean exists() {
+        return store.exists(key);
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return store.size(key);
+    }
+
+    @Override
+    public String getFilename() {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Blob [" + key + "]";
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new LazyBlobInputStream();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || (other instanceof BlobResource that && store == that.store && key.equals(that.key));
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    private class LazyBlobInputStream extends InputStream {
+
+        private InputStream delegate;
+        private long offset;
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (delegate != null) {
+                return delegate.skip(n);
+            }
+            long skipped = Math.max(0, Math.min(n, store.size(key) - offset));
+            offset += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return open().read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            return open().read(buffer, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (delegate != null) {
+                delegate.close();
+            }
+        }
+
+        private InputStream open() throws IOException {
+            if (delegate == null) {
+                delegate = offset == 0 ? store.stream(key) : store.range(key, offset, store.size(key) - offset);
+            }
+            return delegate;
+        }
+    }
+}
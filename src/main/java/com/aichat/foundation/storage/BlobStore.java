@@ -0,0 +1,58 @@
+package com.aichat.foundation.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Storage for attachment bytes, addressed by relative keys such as {@code ab/cd/<hash>.png}.
+ *
+ * Implementations decide where the bytes live (local disk, an S3-compatible bucket, ...),
+ * so application nodes can share attachments without a shared file system. Missing keys
+ * are reported with {@link java.nio.file.NoSuchFileException}.
+ */
+public interface BlobStore {
+
+    /**
+     * Store a fully written local file under {@code key}. Implementations may move the
+     * file instead of copying it, so callers must not rely on it afterwards.
+     */
+    void put(String key, Path stagedFile) throws IOException;
+
+    /**
+     * Read a whole blob into memory; meant for small blobs such as images
+     */
+    byte[] get(String key) throws IOException;
+
+    /**
+     * Open a blob for streaming
+     */
+    InputStream stream(String key) throws IOException;
+
+    /**
+     * Open {@code length} bytes of a blob starting at {@code offset}
+     */
+    InputStream range(String key, long offset, long length) throws IOException;
+
+    /**
+     * Size of a blob in bytes
+     */
+    long size(String key) throws IOException;
+
+    boolean exists(String key);
+
+    /**
+     * Remove a blob; removing a missing blob is not an error
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Expose a blob as a Spring resource for streaming downloads and image decoding.
+     * Nothing is fetched until the resource is read.
+     */
+    default Resource asResource(String key) {
+        return new BlobResource(this, key);
+    }
+}
@@ -0,0 +1,124 @@
+package com.aichat.foundation.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process LRU cache of recently used blobs in front of a remote {@link BlobStore}.
+ *
+ * Chat images are read several times shortly after upload (thumbnails, the model request,
+ * the first viewers), so whole blobs up to {@code maxEntryBytes} are kept in memory until
+ * the cache exceeds {@code maxBytes}. Larger blobs always stream from the backing store.
+ * Blobs are immutable under their key, so cached bytes never go stale.
+ */
+public class CachingBlobStore implements BlobStore {
+
+    private final BlobStore delegate;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    public CachingBlobStore(BlobStore delegate, long maxBytes, long maxEntryBytes) {
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+    }
+
+    @Override
+    public void put(String key, Path stagedFile) throws IOException {
+        // Read the local copy before the delegate may move it; a fresh upload is read again right away
+        byte[] content = Files.size(stagedFile) <= maxEntryBytes ? Files.readAllBytes(stagedFile) : null;
+        delegate.put(key, stagedFile);
+        if (content != null) {
+            cache(key, content);
+        }
+    }
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        byte[] cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] content = delegate.get(key);
+        if (content.length <= maxEntryBytes) {
+            cache(key, content);
+        }
+        return content;
+    }
+
+    @Override
+    public InputStream stream(String key) throws IOException {
+        byte[] cached = lookup(key);
+        if (cached != null) {
+            return new ByteArrayInputStream(cached);
+        }
+        if (delegate.size(key) <= maxEntryBytes) {
+            return new ByteArrayInputStream(get(key));
+        }
+        return delegate.stream(key);
+    }
+
+    @Override
+    public InputStream range(String key, long offset, long length) throws IOException {
+        byte[] cached = lookup(key);
+        if (cached != null) {
+            int from = (int) Math.min(offset, cached.length);
+            return new ByteArrayInputStream(cached, from, (int) Math.min(length, cached.length - from));
+        }
+        return delegate.range(key, offset, length);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        byte[] cached = lookup(key);
+        return cached != null ? cached.length : delegate.size(key);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return lookup(key) != null || delegate.exists(key);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        invalidate(key);
+        delegate.delete(key);
+    }
+
+    /**
+     * Bytes currently held in memory
+     */
+    public synchronized long cachedBytes() {
+        return cachedBytes;
+    }
+
+    private synchronized byte[] lookup(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void cache(String key, byte[] content) {
+        byte[] previous = entries.put(key, content);
+        cachedBytes += content.length - (previous == null ? 0 : previous.length);
+
+        var eldest = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, byte[]> entry = eldest.next();
+            cachedBytes -= entry.getValue().length;
+            eldest.remove();
+        }
+    }
+
+    private synchronized void invalidate(String key) {
+        byte[] removed = entries.remove(key);
+        if (removed != null) {
+            cachedBytes -= removed.length;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.aichat.foundation.storage;
+
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Blob store backed by an S3-compatible bucket (AWS S3, MinIO, Ceph RGW, ...).
+ * Keys are stored below an optional prefix so several deployments can share a bucket.
+ */
+public class S3BlobStore implements BlobStore, AutoCloseable {
+
+    private final S3Client client;
+    private final String bucket;
+    private final String prefix;
+
+    public S3BlobStore(S3Client client, String bucket, String prefix) {
+        this.client = client;
+        this.bucket = bucket;
+        this.prefix = prefix == null || prefix.isEmpty() || prefix.endsWith("/") ? nullToEmpty(prefix) : prefix + "/";
+    }
+
+    @Override
+    public void put(String key, Path stagedFile) throws IOException {
+        PutObjectRequest request = PutObjectRequest.builder()
+            .bucket(bucket)
+            .key(objectKey(key))
+            .contentLength(Files.size(stagedFile))
+            .build();
+        call(key, () -> client.putObject(request, RequestBody.fromFile(stagedFile)));
+    }
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        return call(key, () -> client.getObjectAsBytes(getRequest(key, null)).asByteArray());
+    }
+
+    @Override
+    public InputStream stream(String key) throws IOException {
+        return call(key, () -> client.getObject(getRequest(key, null)));
+    }
+
+    @Override
+    public InputStream range(String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        String range = "bytes=" + offset + "-" + (offset + length - 1);
+        return call(key, () -> client.getObject(getRequest(key, range)));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        HeadObjectRequest request = HeadObjectRequest.builder().bucket(bucket).key(objectKey(key)).build();
+        return call(key, () -> client.headObject(request).contentLength());
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try {
+            size(key);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        DeleteObjectRequest request = DeleteObjectRequest.builder().bucket(bucket).key(objectKey(key)).build();
+        call(key, () -> client.deleteObject(request));
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private GetObjectRequest getRequest(String key, String range) {
+        return GetObjectRequest.builder().bucket(bucket).key(objectKey(key)).range(range).build();
+    }
+
+    private String objectKey(String key) {
+        return prefix + key;
+    }
+
+    /**
+     * Run an S3 call, translating SDK failures into the I/O exceptions of the BlobStore contract
+     */
+    private <T> T call(String key, S3Call<T> call) throws IOException {
+        try {
+            return call.run();
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                throw new NoSuchFileException(key);
+            }
+            throw new IOException("S3 request for " + key + " failed: " + e.getMessage(), e);
+        } catch (SdkException e) {
+            throw new IOException("S3 request for " + key + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    @FunctionalInterface
+    private interface S3Call<T> {
+        T run();
+    }
+}
@@ -0,0 +1,47 @@
+package com.aichat.foundation.storage;
+
+import java.nio.file.Path;
+
+/**
+ * Two-level prefix directory layout for stored files.
+ *
+ * A file named {@code 89b31f...e9a9.jpg} lives at {@code <root>/89/b3/89b31f...e9a9.jpg}.
+ * Stored names are content hashes (or UUIDs for older uploads), so the first four
+ * characters are uniformly distributed and each directory stays small no matter how
+ * many files are stored.
+ */
+public final class ShardedLayout {
+
+    private static final int SHARD_WIDTH = 2;
+    private static final int SHARD_LEVELS = 2;
+
+    private ShardedLayout() {}
+
+    /**
+     * Relative key of {@code fileName}, e.g. {@code 89/b3/89b31f...e9a9.jpg}
+     */
+    public static String key(String fileName) {
+        if (fileName.length() < SHARD_WIDTH * SHARD_LEVELS) {
+            throw new IllegalArgumentException("File name too short to shard: " + fileName);
+        }
+        StringBuilder key = new StringBuilder();
+        for (int level = 0; level < SHARD_LEVELS; level++) {
+            key.append(fileName, level * SHARD_WIDTH, (level + 1) * SHARD_WIDTH).append('/');
+        }
+        return key.toString().toLowerCase() + fileName;
+    }
+
+    /**
+     * Location of {@code fileName} under {@code root}
+     */
+    public static Path resolve(Path root, String fileName) {
+        return root.resolve(key(fileName));
+    }
+
+    /**
+     * Whether a file already sits at its sharded location under {@code root}
+     */
+    public static boolean isSharded(Path root, Path file) {
+        return file.getFileName() != null && resolve(root, file.getFileName().toString()).equals(file);
+    }
+}
@@ -89,6 +89,12 @@ class APIClient {
     }
 
     // Files
+    async cancelMessage(messageId) {
+        return this.request(`/chat/messages/${messageId}/cancel`, {
+            method: 'POST'
+        });
+    }
+
     async uploadFile(file) {
         const formData = new FormData();
         formData.append('file', file);
@@ -118,11 +118,6 @@ class ChatManager {
 
     async loadSession(sessionId) {
         try {
-            if (this.currentSessionId) {
-                // Unsubscribe from previous session
-                window.wsManager.unsubscribeFromSession(this.currentSessionId);
-            }
-
             window.app.ui.showLoading('Loading chat session...');
             
             const session = this.sessions.get(sessionId);
@@ -144,11 +139,6 @@ class ChatManager {
             // Render messages
             this.renderMessages(messages);
             
-            // Subscribe to WebSocket updates
-            if (window.wsManager.isConnected()) {
-                window.wsManager.subscribeToSession(sessionId, this.messageHandler);
-            }
-            
             // Focus input
             window.app.ui.focusInput();
             
@@ -193,10 +183,11 @@ class ChatManager {
                                 `;
                             }
                         } else {
-                            // For saved attachments, use API endpoint
+                            // For saved attachments, use the medium thumbnail when the server provides one
+                            const src = (att.thumbnailUrls && att.thumbnailUrls.medium) || `/api/files/${att.id}`;
                             return `
                                 <div class="attachment-preview">
-                                    <img src="/api/files/${att.id}" alt="${att.fileName}" loading="lazy">
+                                    <img src="${src}" alt="${att.fileName}" loading="lazy">
                                     <div class="attachment-info">
                                         <span class="file-name">${att.fileName}</span>
                                         <span class="file-size">${window.app.ui.formatFileSize(att.fileSize)}</span>
@@ -261,8 +252,9 @@ class ChatManager {
             
             // Clear file selection immediately after adding user message
             if (selectedFile) {
+                const pendingUpload = window.app.fileUpload.getPendingUpload();
                 window.app.fileUpload.clearSelection();
-                await this.sendMultimodalMessage(content, selectedFile);
+                await this.sendMultimodalMessage(content, selectedFile, pendingUpload);
             } else {
                 await this.sendTextMessage(content);
             }
@@ -285,6 +277,11 @@ class ChatManager {
         try {
             console.log('Sending message to:', this.currentSessionId, 'Content:', content);
             
+            if (window.wsManager.isConnected()) {
+                await window.wsManager.streamMessage(this.currentSessionId, content, this.messageHandler);
+                return;
+            }
+            
             const response = await fetch('/api/chat/message', {
                 method: 'POST',
                 headers: {
@@ -310,22 +307,41 @@ class ChatManager {
         }
     }
 
-    async sendMultimodalMessage(content, file) {
+    async sendMultimodalMessage(content, file, pendingUpload = null) {
         try {
             this.prepareForStreaming();
             
             console.log('Sending multimodal message to:', this.currentSessionId, 'Content:', content, 'File:', file.name);
             
-            // Create FormData for multipart request
-            const formData = new FormData();
-            formData.append('sessionId', this.currentSessionId);
-            formData.append('content', content);
-            formData.append('file', file);
+            // Refer to the pre-uploaded file when its upload succeeded, otherwise send the file itself
+            const attachmentId = pendingUpload ? await pendingUpload : null;
             
-            const response = await fetch('/api/chat/message/multimodal', {
-                method: 'POST',
-                body: formData
-            });
+            let response;
+            if (attachmentId) {
+                response = await fetch('/api/chat/message/multimodal', {
+                    method: 'POST',
+                    headers: {
+                        'Content-Type': 'application/json'
+                    },
+                    body: JSON.stringify({
+                        sessionId: this.currentSessionId,
+                        content: content,
+                        type: 'multimodal',
+                        attachmentIds: [attachmentId]
+                    })
+                });
+            } else {
+                // Create FormData for multipart request
+                const formData = new FormData();
+                formData.append('sessionId', this.currentSessionId);
+                formData.append('content', content);
+                formData.append('file', file);
+                
+                response = await fetch('/api/chat/message/multimodal', {
+                    method: 'POST',
+                    body: formData
+                });
+            }
 
             if (!response.ok) {
                 throw new Error(`HTTP ${response.status}: ${response.statusText}`);
@@ -449,6 +465,7 @@ class ChatManager {
                 this.handleStreamChunk(data);
                 break;
             case 'stream_end':
+            case 'stream_aborted':
                 this.handleStreamComplete(data);
                 break;
             case 'error':
@@ -461,6 +478,20 @@ class ChatManager {
 
     handleStreamStart(data) {
         console.log('Stream started for message:', data.messageId);
+        this.generatingMessageId = data.messageId;
+        window.app.ui.showStopButton(true);
+    }
+
+    async stopStreaming() {
+        if (!this.generatingMessageId) {
+            return;
+        }
+        try {
+            // The stream ends with stream_aborted once the server has stopped the reply
+            await window.apiClient.cancelMessage(this.generatingMessageId);
+        } catch (error) {
+            console.warn('Failed to stop generating:', error);
+        }
     }
 
     handleStreamChunk(data) {
@@ -527,6 +558,8 @@ class ChatManager {
         
         this.streamingMessageId = null;
         this.streamingContent = '';
+        this.generatingMessageId = null;
+        window.app.ui.showStopButton(false);
         
         // Re-enable input after streaming is complete
         window.app.ui.disableInput(false);
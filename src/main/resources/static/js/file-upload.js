@@ -2,6 +2,7 @@
 class FileUploadManager {
     constructor() {
         this.selectedFile = null;
+        this.pendingUpload = null;
         this.maxFileSize = 10 * 1024 * 1024; // 10MB
         this.allowedTypes = ['image/jpeg', 'image/png', 'image/gif', 'image/webp'];
         this.initializeElements();
@@ -104,10 +105,29 @@ class FileUploadManager {
         }
 
         this.selectedFile = file;
+        this.pendingUpload = this.preUpload(file);
         this.showFilePreview(file);
         window.app.ui.showToast(`File selected: ${file.name}`, 'success');
     }
 
+    // Upload the file as soon as it is selected, so the transfer overlaps with typing.
+    // Resolves to the attachment id, or null if the upload failed.
+    preUpload(file) {
+        const formData = new FormData();
+        formData.append('file', file);
+
+        return fetch('/api/files/upload', {
+            method: 'POST',
+            body: formData
+        })
+            .then(response => response.ok ? response.json() : null)
+            .then(result => (result && result.attachmentId) || null)
+            .catch(error => {
+                console.warn('Pre-upload failed, the file will be sent with the message:', error);
+                return null;
+            });
+    }
+
     validateFile(file) {
         // Check file type
         if (!this.allowedTypes.includes(file.type)) {
@@ -189,6 +209,7 @@ class FileUploadManager {
 
     clearSelection() {
         this.selectedFile = null;
+        this.pendingUpload = null;
         
         // Hide upload zone
         if (this.elements.fileUploadZone) {
@@ -210,6 +231,10 @@ class FileUploadManager {
         return this.selectedFile;
     }
 
+    getPendingUpload() {
+        return this.pendingUpload;
+    }
+
     hasSelectedFile() {
         return this.selectedFile !== null;
     }
@@ -24,6 +24,7 @@ class UIManager {
             messageInput: document.getElementById('message-input'),
             fileInput: document.getElementById('file-input'),
             sendBtn: document.getElementById('send-btn'),
+            stopBtn: document.getElementById('stop-btn'),
             
             // Buttons
             newChatBtn: document.getElementById('new-chat-btn'),
@@ -63,6 +64,10 @@ class UIManager {
             this.elements.sendBtn.addEventListener('click', () => window.app.chat.sendMessage());
         }
         
+        if (this.elements.stopBtn) {
+            this.elements.stopBtn.addEventListener('click', () => window.app.chat.stopStreaming());
+        }
+        
         if (this.elements.deleteChatBtn) {
             this.elements.deleteChatBtn.addEventListener('click', () => window.app.chat.deleteCurrentSession());
         }
@@ -235,6 +240,12 @@ class UIManager {
         }
     }
 
+    showStopButton(show = true) {
+        if (this.elements.stopBtn) {
+            this.elements.stopBtn.style.display = show ? '' : 'none';
+        }
+    }
+
     setActiveSession(sessionId) {
         this.activeSession = sessionId;
         
@@ -1,11 +1,13 @@
 // WebSocket Connection Manager
+// Replies stream over /ws/stream, several at once, each under its own stream id. The server
+// sends one event per credit, so credits are granted back as events are handled.
 class WebSocketManager {
     constructor() {
         this.socket = null;
-        this.stompClient = null;
         this.connected = false;
-        this.subscriptions = new Map();
-        this.messageHandlers = new Map();
+        this.streams = new Map();
+        this.nextStreamId = 1;
+        this.creditWindow = 32;
         this.reconnectAttempts = 0;
         this.maxReconnectAttempts = 5;
         this.reconnectDelay = 1000;
@@ -13,45 +15,40 @@ class WebSocketManager {
 
     connect() {
         return new Promise((resolve, reject) => {
-            // Check if SockJS and Stomp are available
-            if (typeof SockJS === 'undefined' || typeof Stomp === 'undefined') {
-                console.warn('SockJS or STOMP not available, WebSocket connection skipped');
-                reject(new Error('WebSocket libraries not available'));
+            if (typeof WebSocket === 'undefined') {
+                reject(new Error('WebSocket not supported'));
                 return;
             }
-            
+
             try {
-                // Use SockJS with STOMP
-                this.socket = new SockJS('/ws/chat');
-                this.stompClient = Stomp.over(this.socket);
-                
-                // Disable debug logging in production
-                this.stompClient.debug = (msg) => {
-                    if (window.DEBUG_MODE) {
-                        console.log('STOMP:', msg);
+                const protocol = window.location.protocol === 'https:' ? 'wss:' : 'ws:';
+                this.socket = new WebSocket(`${protocol}//${window.location.host}/ws/stream`);
+
+                this.socket.onopen = () => {
+                    console.log('WebSocket connected');
+                    this.connected = true;
+                    this.reconnectAttempts = 0;
+                    resolve();
+                };
+
+                this.socket.onmessage = (message) => {
+                    try {
+                        this.handleFrame(JSON.parse(message.data));
+                    } catch (error) {
+                        console.error('Error parsing WebSocket message:', error);
                     }
                 };
 
-                this.stompClient.connect({}, 
-                    (frame) => {
-                        console.log('WebSocket connected:', frame);
-                        this.connected = true;
-                        this.reconnectAttempts = 0;
-                        resolve(frame);
-                    },
-                    (error) => {
-                        console.log('WebSocket connection failed, HTTP streaming will be used:', error);
-                        this.connected = false;
+                this.socket.onclose = () => {
+                    const wasConnected = this.connected;
+                    this.connected = false;
+                    this.failOpenStreams();
+                    if (!wasConnected) {
                         // Don't attempt reconnection on initial connection failure
-                        // Let the application use HTTP streaming instead
-                        reject(error);
+                        reject(new Error('WebSocket connection failed'));
+                        return;
                     }
-                );
-
-                // Handle socket close
-                this.socket.onclose = (event) => {
                     console.log('WebSocket closed, falling back to HTTP streaming');
-                    this.connected = false;
                     // Only attempt reconnection if we were previously connected
                     if (this.reconnectAttempts === 0) {
                         this.handleReconnect();
@@ -66,62 +63,84 @@ class WebSocketManager {
     }
 
     disconnect() {
-        if (this.stompClient && this.connected) {
-            this.stompClient.disconnect(() => {
-                console.log('WebSocket disconnected');
-                this.connected = false;
-            });
+        if (this.socket && this.connected) {
+            this.socket.close();
+            console.log('WebSocket disconnected');
         }
     }
 
-    subscribeToSession(sessionId, messageHandler) {
-        if (!this.connected || !this.stompClient) {
-            console.warn('WebSocket not connected, cannot subscribe to session');
-            return null;
+    /**
+     * Stream the reply to a text message; resolves once the reply has ended
+     */
+    streamMessage(sessionId, content, messageHandler, model = null) {
+        const streamId = String(this.nextStreamId++);
+        return new Promise((resolve) => {
+            this.streams.set(streamId, { handler: messageHandler, resolve, handled: 0 });
+            const sent = this.send({
+                type: 'start',
+                stream: streamId,
+                sessionId: sessionId,
+                content: content,
+                model: model,
+                credits: this.creditWindow
+            });
+            if (!sent) {
+                this.finishStream(streamId, { type: 'error', sessionId: sessionId, content: 'WebSocket not connected' });
+            }
+        });
+    }
+
+    cancelStream(streamId) {
+        return this.send({ type: 'cancel', stream: streamId });
+    }
+
+    handleFrame(frame) {
+        const stream = this.streams.get(frame.stream);
+        if (!stream) {
+            if (frame.event?.type === 'error') {
+                console.warn('WebSocket error:', frame.event.content);
+            }
+            return;
         }
 
-        const topic = `/topic/session/${sessionId}`;
-        
-        try {
-            const subscription = this.stompClient.subscribe(topic, (message) => {
-                try {
-                    const data = JSON.parse(message.body);
-                    messageHandler(data);
-                } catch (error) {
-                    console.error('Error parsing WebSocket message:', error);
-                }
-            });
+        const event = frame.event;
+        if (['stream_end', 'stream_aborted', 'error'].includes(event.type)) {
+            this.finishStream(frame.stream, event);
+            return;
+        }
 
-            this.subscriptions.set(sessionId, subscription);
-            this.messageHandlers.set(sessionId, messageHandler);
-            
-            console.log(`Subscribed to session: ${sessionId}`);
-            return subscription;
-            
-        } catch (error) {
-            console.error('Failed to subscribe to session:', error);
-            return null;
+        stream.handler(event);
+        // Grant credits back in batches of half the window
+        stream.handled++;
+        if (stream.handled >= this.creditWindow / 2) {
+            this.send({ type: 'credit', stream: frame.stream, credits: stream.handled });
+            stream.handled = 0;
         }
     }
 
-    unsubscribeFromSession(sessionId) {
-        const subscription = this.subscriptions.get(sessionId);
-        if (subscription) {
-            subscription.unsubscribe();
-            this.subscriptions.delete(sessionId);
-            this.messageHandlers.delete(sessionId);
-            console.log(`Unsubscribed from session: ${sessionId}`);
+    finishStream(streamId, event) {
+        const stream = this.streams.get(streamId);
+        if (stream) {
+            this.streams.delete(streamId);
+            stream.handler(event);
+            stream.resolve();
         }
     }
 
-    sendMessage(destination, message) {
-        if (!this.connected || !this.stompClient) {
+    failOpenStreams() {
+        Array.from(this.streams.keys()).forEach(streamId => {
+            this.finishStream(streamId, { type: 'error', content: 'WebSocket connection closed' });
+        });
+    }
+
+    send(frame) {
+        if (!this.connected || !this.socket) {
             console.warn('WebSocket not connected, cannot send message');
             return false;
         }
 
         try {
-            this.stompClient.send(destination, {}, JSON.stringify(message));
+            this.socket.send(JSON.stringify(frame));
             return true;
         } catch (error) {
             console.error('Failed to send WebSocket message:', error);
@@ -129,16 +148,6 @@ class WebSocketManager {
         }
     }
 
-    sendChatMessage(sessionId, content, type = 'text') {
-        const message = {
-            sessionId: sessionId,
-            content: content,
-            type: type
-        };
-
-        return this.sendMessage('/app/chat.stream', message);
-    }
-
     handleReconnect() {
         if (this.reconnectAttempts >= this.maxReconnectAttempts) {
             console.log('Max WebSocket reconnection attempts reached, using HTTP streaming fallback');
@@ -159,9 +168,6 @@ class WebSocketManager {
                     if (this.reconnectAttempts > 1) {
                         window.app?.ui?.showToast('WebSocket connection restored', 'success');
                     }
-                    
-                    // Re-subscribe to active sessions
-                    this.resubscribeToActiveSessions();
                 })
                 .catch((error) => {
                     console.warn('WebSocket reconnection failed, continuing with HTTP fallback:', error);
@@ -170,17 +176,6 @@ class WebSocketManager {
         }, delay);
     }
 
-    resubscribeToActiveSessions() {
-        // Re-subscribe to the current active session if any
-        const currentSessionId = window.app.chat.getCurrentSessionId();
-        if (currentSessionId) {
-            const handler = this.messageHandlers.get(currentSessionId);
-            if (handler) {
-                this.subscribeToSession(currentSessionId, handler);
-            }
-        }
-    }
-
     isConnected() {
         return this.connected;
     }
@@ -189,7 +184,7 @@ class WebSocketManager {
         return {
             connected: this.connected,
             reconnectAttempts: this.reconnectAttempts,
-            subscriptions: this.subscriptions.size
+            streams: this.streams.size
         };
     }
 }
@@ -256,13 +251,7 @@ window.sseManager = new SSEManager();
 
 // Attempt WebSocket connection on page load
 document.addEventListener('DOMContentLoaded', () => {
-    // Load WebSocket libraries first, then attempt connection
-    loadWebSocketLibraries()
-        .then(() => {
-            console.log('WebSocket libraries loaded successfully');
-            // Try WebSocket connection (optional enhancement)
-            return window.wsManager.connect();
-        })
+    window.wsManager.connect()
         .then(() => {
             console.log('WebSocket connection established (optional enhancement)');
         })
@@ -271,35 +260,3 @@ document.addEventListener('DOMContentLoaded', () => {
             // This is expected and normal - HTTP streaming will be used instead
         });
 });
-
-// Include SockJS and STOMP libraries from local files
-function loadWebSocketLibraries() {
-    return new Promise((resolve, reject) => {
-        const sockjsScript = document.createElement('script');
-        sockjsScript.src = '/lib/sockjs.min.js';
-        sockjsScript.onload = () => {
-            const stompScript = document.createElement('script');
-            stompScript.src = '/lib/stomp.umd.min.js';
-            stompScript.onload = () => resolve();
-            stompScript.onerror = (error) => {
-                console.warn('Failed to load STOMP library, WebSocket features will be limited:', error);
-                resolve(); // Continue without STOMP
-            };
-            document.head.appendChild(stompScript);
-        };
-        sockjsScript.onerror = (error) => {
-            console.warn('Failed to load SockJS library, WebSocket features will be limited:', error);
-            resolve(); // Continue without SockJS
-        };
-        document.head.appendChild(sockjsScript);
-    });
-}
-
-// Load libraries when script loads
-loadWebSocketLibraries()
-    .then(() => {
-        console.log('WebSocket libraries loaded, ready for optional connection');
-    })
-    .catch((error) => {
-        console.log('WebSocket libraries not available, HTTP streaming will be used:', error);
-    });
\ No newline at end of file
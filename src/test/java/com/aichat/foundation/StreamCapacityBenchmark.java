@@ -0,0 +1,228 @@
+package com.aichat.foundation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares how many replies one node streams at once on platform threads (the default)
+ * and in the virtual-threads profile. Each invocation sends {@code streams} chat messages
+ * together to the application, backed by a model stub that takes about a second per reply,
+ * and reports the most replies that were streaming at the same moment as
+ * {@code peakStreams}; replies the node could not take at once queue behind the others and
+ * show up as a lower peak and a longer run. The routes' own concurrency limits, which
+ * model what the Ollama server can take, are lifted for the run.
+ *
+ * The virtual-threads mode only runs on virtual threads on Java 21, built with
+ * {@code -Pvirtual-threads}; on an older JVM it keeps the profile's other settings.
+ *
+ * Not part of the test suite; see "Running Benchmarks" in the README.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class StreamCapacityBenchmark {
+
+    private static final int TOKENS = 20;
+    private static final long TOKEN_DELAY_MILLIS = 50;
+
+    @Param({"platform", "virtual-threads"})
+    private String mode;
+
+    @Param({"100", "400", "1000"})
+    private int streams;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ExecutorService modelThreads;
+    private HttpServer model;
+    private ConfigurableApplicationContext application;
+    private HttpClient client;
+    private String baseUrl;
+    private final List<String> sessionIds = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        modelThreads = Executors.newCachedThreadPool();
+        model = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        model.setExecutor(modelThreads);
+        model.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < TOKENS; i++) {
+                    boolean done = i == TOKENS - 1;
+                    out.write(("{\"response\":\"t" + i + " \",\"done\":" + done + "}\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    Thread.sleep(TOKEN_DELAY_MILLIS);
+                }
+            } catch (IOException e) {
+                // Reply stopped by the application
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        model.start();
+
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(AiChatFoundationApplication.class);
+        if ("virtual-threads".equals(mode)) {
+            builder.profiles("virtual-threads");
+        }
+        application = builder.run(
+            "--server.port=0",
+            "--ollama.base-url=http://127.0.0.1:" + model.getAddress().getPort(),
+            "--ollama.routing.routes.text.max-concurrent=100000",
+            "--file.upload-dir=" + Files.createTempDirectory("stream-capacity"),
+            "--file.migration.enabled=false",
+            "--file.resharding.enabled=false",
+            "--file.orphans.enabled=false",
+            "--spring.jpa.show-sql=false",
+            "--logging.level.root=WARN",
+            "--logging.level.com.aichat.foundation=WARN",
+            "--logging.level.org.springframework.web=WARN",
+            "--logging.level.org.springframework.security=WARN");
+        baseUrl = "http://127.0.0.1:" + application.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newHttpClient();
+
+        // A session per stream, so that every prompt carries the same short history
+        for (int i = 0; i < streams; i++) {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/chat/sessions"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"Capacity " + i + "\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+            sessionIds.add(objectMapper.readTree(response.body()).get("id").asText());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+        model.stop(0);
+        modelThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public void streamReplies(Concurrency concurrency) {
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        List<CompletableFuture<?>> replies = new ArrayList<>();
+        for (String sessionId : sessionIds) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/chat/message"))
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                    "{\"sessionId\":\"" + sessionId + "\",\"content\":\"Tell me a story\"}"))
+                .build();
+            replies.add(client.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(
+                    new ReplySubscriber(open, peak, completed)))
+                .exceptionally(e -> null));
+        }
+        CompletableFuture.allOf(replies.toArray(CompletableFuture[]::new)).join();
+        concurrency.peakStreams = peak.get();
+        concurrency.failedStreams = sessionIds.size() - completed.get();
+    }
+
+    /**
+     * Most replies streaming at once, and replies that did not end normally, in the last invocation
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Concurrency {
+        public long peakStreams;
+        public long failedStreams;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakStreams = 0;
+            failedStreams = 0;
+        }
+    }
+
+    /**
+     * Counts a reply as streaming from its first chunk until its response ends, and as
+     * completed once it sees the reply's end event
+     */
+    private static final class ReplySubscriber implements Flow.Subscriber<String> {
+
+        private final AtomicInteger open;
+        private final AtomicInteger peak;
+        private final AtomicInteger completed;
+        private boolean streaming;
+
+        private ReplySubscriber(AtomicInteger open, AtomicInteger peak, AtomicInteger completed) {
+            this.open = open;
+            this.peak = peak;
+            this.completed = completed;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (!streaming && line.contains("\"stream_chunk\"")) {
+                streaming = true;
+                peak.accumulateAndGet(open.incrementAndGet(), Math::max);
+            } else if (line.contains("\"stream_end\"")) {
+                completed.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            onComplete();
+        }
+
+        @Override
+        public void onComplete() {
+            if (streaming) {
+                open.decrementAndGet();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StreamCapacityBenchmark.class.getSimpleName()).build()).run();
+    }
+}
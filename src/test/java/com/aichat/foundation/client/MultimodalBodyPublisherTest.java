@@ -0,0 +1,116 @@
+package com.aichat.foundation.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultimodalBodyPublisherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void of_ShouldStreamEnvelopeWithBase64Image() throws Exception {
+        // Given: an image larger than one read chunk and not a multiple of 3 bytes
+        byte[] imageBytes = new byte[200_003];
+        new Random(42).nextBytes(imageBytes);
+        Path image = Files.write(tempDir.resolve("image.jpg"), imageBytes);
+        byte[] envelope = objectMapper.writeValueAsBytes(Map.of("model", "m", "prompt", "describe \"this\""));
+
+        // When
+        HttpRequest.BodyPublisher publisher = MultimodalBodyPublisher.of(envelope, List.of(new FileSystemResource(image)));
+        byte[] body = drain(publisher);
+
+        // Then
+        assertEquals(publisher.contentLength(), body.length);
+        JsonNode json = objectMapper.readTree(body);
+        assertEquals("m", json.get("model").asText());
+        assertEquals("describe \"this\"", json.get("prompt").asText());
+        assertArrayEquals(imageBytes, Base64.getDecoder().decode(json.get("images").get(0).asText()));
+    }
+
+    @Test
+    void of_ShouldAppendEveryImage_InOrder() throws Exception {
+        // Given: sizes covering each padding case
+        byte[] first = new byte[10];
+        byte[] second = new byte[65_537];
+        byte[] third = new byte[3];
+        Random random = new Random(7);
+        random.nextBytes(first);
+        random.nextBytes(second);
+        random.nextBytes(third);
+        byte[] envelope = objectMapper.writeValueAsBytes(Map.of("model", "m"));
+
+        // When
+        HttpRequest.BodyPublisher publisher = MultimodalBodyPublisher.of(envelope, List.of(
+            new FileSystemResource(Files.write(tempDir.resolve("1.jpg"), first)),
+            new FileSystemResource(Files.write(tempDir.resolve("2.jpg"), second)),
+            new FileSystemResource(Files.write(tempDir.resolve("3.jpg"), third))));
+        byte[] body = drain(publisher);
+
+        // Then
+        assertEquals(publisher.contentLength(), body.length);
+        JsonNode images = objectMapper.readTree(body).get("images");
+        assertEquals(3, images.size());
+        assertArrayEquals(first, Base64.getDecoder().decode(images.get(0).asText()));
+        assertArrayEquals(second, Base64.getDecoder().decode(images.get(1).asText()));
+        assertArrayEquals(third, Base64.getDecoder().decode(images.get(2).asText()));
+    }
+
+    @Test
+    void encodedLength_ShouldIncludePadding() {
+        assertEquals(0, MultimodalBodyPublisher.encodedLength(0));
+        assertEquals(4, MultimodalBodyPublisher.encodedLength(1));
+        assertEquals(4, MultimodalBodyPublisher.encodedLength(3));
+        assertEquals(8, MultimodalBodyPublisher.encodedLength(4));
+    }
+
+    private static byte[] drain(HttpRequest.BodyPublisher publisher) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] chunk = new byte[item.remaining()];
+                item.get(chunk);
+                out.writeBytes(chunk);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.get(10, TimeUnit.SECONDS);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,131 @@
+package com.aichat.foundation.client;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OllamaClientTest {
+
+    private HttpServer server;
+    private OllamaClient ollamaClient;
+    private SimpleMeterRegistry meterRegistry;
+    private final CountDownLatch disconnected = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Generates a token every 20ms, up to 500 of them; under /short it is done after three,
+        // under /burst after 200 sent without pause
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, 0);
+            String path = exchange.getRequestURI().getPath();
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 500; i++) {
+                    boolean done = path.startsWith("/short/") && i == 2 || path.startsWith("/burst/") && i == 199;
+                    out.write(("{\"response\":\"t" + i + "\",\"done\":" + done + "}\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    if (done) {
+                        return;
+                    }
+                    if (!path.startsWith("/burst/")) {
+                        Thread.sleep(20);
+                    }
+                }
+            } catch (IOException e) {
+                disconnected.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        OllamaStreamProperties streamProperties = new OllamaStreamProperties();
+        streamProperties.setMaxPendingChunks(8);
+        ollamaClient = new OllamaClient(streamProperties, meterRegistry);
+        ReflectionTestUtils.setField(ollamaClient, "timeout", 30);
+        ReflectionTestUtils.setField(ollamaClient, "maxRetries", 0);
+        ollamaClient.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void sendTextMessage_ShouldStreamUntilDone() {
+        // Given
+        ReflectionTestUtils.setField(ollamaClient, "baseUrl", baseUrl() + "/short");
+
+        // When
+        List<String> tokens = ollamaClient.sendTextMessage("m", Map.of(), "Hi").collectList().block();
+
+        // Then
+        assertEquals(List.of("t0", "t1", "t2"), tokens);
+    }
+
+    @Test
+    void sendTextMessage_ShouldCloseConnection_WhenSubscriberCancels() throws InterruptedException {
+        // Given
+        ReflectionTestUtils.setField(ollamaClient, "baseUrl", baseUrl());
+
+        // When
+        List<String> tokens = ollamaClient.sendTextMessage("m", Map.of(), "Hi").take(2).collectList().block();
+
+        // Then: the server notices the closed connection long before it would have finished
+        assertEquals(List.of("t0", "t1"), tokens);
+        assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void sendTextMessage_ShouldCoalesceChunks_ForSlowSubscriber() {
+        // Given
+        ReflectionTestUtils.setField(ollamaClient, "baseUrl", baseUrl() + "/burst");
+
+        // When: the subscriber takes one chunk at a time, 5ms apart
+        List<String> chunks = ollamaClient.sendTextMessage("m", Map.of(), "Hi")
+            .publishOn(Schedulers.boundedElastic(), 1)
+            .doOnNext(chunk -> sleep(5))
+            .collectList()
+            .block();
+
+        // Then: nothing is lost, but the backlog arrives in fewer, larger chunks
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            expected.append('t').append(i);
+        }
+        assertEquals(expected.toString(), String.join("", chunks));
+        assertTrue(chunks.size() < 200);
+        assertTrue(meterRegistry.get("ollama.stream.coalesced").counter().count() > 0);
+        assertEquals(0.0, meterRegistry.get("ollama.stream.buffered").gauge().value());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+}
@@ -0,0 +1,145 @@
+package com.aichat.foundation.client;
+
+import com.aichat.foundation.exception.OllamaException;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactiveOllamaClientTest {
+
+    private HttpServer server;
+    private ReactiveOllamaClient ollamaClient;
+    private final CountDownLatch disconnected = new CountDownLatch(1);
+    private final AtomicReference<String> requestBody = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Generates a token every 20ms, up to 500 of them; under /short it is done after three,
+        // under /cut it stops after three without being done, under /fail it answers 500
+        server.createContext("/", exchange -> {
+            requestBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            String path = exchange.getRequestURI().getPath();
+            if (path.startsWith("/fail/")) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 500; i++) {
+                    boolean done = path.startsWith("/short/") && i == 2;
+                    out.write(("{\"response\":\"t" + i + "\",\"done\":" + done + "}\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    if (done || path.startsWith("/cut/") && i == 2) {
+                        return;
+                    }
+                    Thread.sleep(20);
+                }
+            } catch (IOException e) {
+                disconnected.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+
+        ollamaClient = new ReactiveOllamaClient(new OllamaStreamProperties(), new SimpleMeterRegistry(), WebClient.builder());
+        ReflectionTestUtils.setField(ollamaClient, "timeout", 30);
+        ReflectionTestUtils.setField(ollamaClient, "maxRetries", 0);
+        ollamaClient.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void sendTextMessage_ShouldStreamUntilDone() {
+        // Given
+        ReflectionTestUtils.setField(ollamaClient, "baseUrl", baseUrl() + "/short");
+
+        // When
+        List<String> tokens = ollamaClient.sendTextMessage("m", Map.of(), "Hi").collectList().block();
+
+        // Then
+        assertEquals(List.of("t0", "t1", "t2"), tokens);
+        assertTrue(requestBody.get().contains("\"prompt\":\"Hi\""));
+    }
+
+    @Test
+    void sendTextMessage_ShouldCloseConnection_WhenSubscriberCancels() throws InterruptedException {
+        // Given
+        ReflectionTestUtils.setField(ollamaClient, "baseUrl", baseUrl());
+
+        // When
+        List<String> tokens = ollamaClient.sendTextMessage("m", Map.of(), "Hi").take(2).collectList().block();
+
+        // Then: the server notices the closed connection long before it would have finished
+        assertEquals(List.of("t0", "t1"), tokens);
+        assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void sendTextMessage_ShouldFail_WhenOllamaReturnsError() {
+        // Given
+        ReflectionTestUtils.setField(ollamaClient, "baseUrl", baseUrl() + "/fail");
+
+        // When & Then
+        OllamaException e = assertThrows(OllamaException.class,
+            () -> ollamaClient.sendTextMessage("m", Map.of(), "Hi").collectList().block());
+        assertEquals("OLLAMA returned error code: 500", e.getMessage());
+    }
+
+    @Test
+    void sendTextMessage_ShouldFail_WhenStreamEndsBeforeDone() {
+        // Given
+        ReflectionTestUtils.setField(ollamaClient, "baseUrl", baseUrl() + "/cut");
+
+        List<String> tokens = new ArrayList<>();
+
+        // When & Then: what arrived is delivered before the error
+        assertThrows(OllamaException.class,
+            () -> ollamaClient.sendTextMessage("m", Map.of(), "Hi").doOnNext(tokens::add).blockLast());
+        assertEquals(List.of("t0", "t1", "t2"), tokens);
+    }
+
+    @Test
+    void sendMultimodalMessage_ShouldSendImagesBase64Encoded() {
+        // Given
+        ReflectionTestUtils.setField(ollamaClient, "baseUrl", baseUrl() + "/short");
+        byte[] image = {1, 2, 3, 4, 5};
+
+        // When
+        List<String> tokens = ollamaClient.sendMultimodalMessage("m", Map.of(), "Look",
+            List.of(new ByteArrayResource(image))).collectList().block();
+
+        // Then
+        assertEquals(List.of("t0", "t1", "t2"), tokens);
+        assertTrue(requestBody.get().contains("\"images\":[\"" + Base64.getEncoder().encodeToString(image) + "\"]"));
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+}
@@ -0,0 +1,182 @@
+package com.aichat.foundation.client;
+
+import com.aichat.foundation.exception.OllamaException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamBufferTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private StreamBuffer.Meters meters;
+    private OllamaStreamProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        meters = new StreamBuffer.Meters(meterRegistry);
+        properties = new OllamaStreamProperties();
+        properties.setMaxPendingChunks(2);
+        properties.setMaxBufferedBytes(DataSize.ofBytes(1024));
+        properties.setStallTimeout(Duration.ofMillis(100));
+    }
+
+    @Test
+    void offer_ShouldCoalesceChunks_WhenSubscriberLags() throws InterruptedException {
+        // Given
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        StreamBuffer buffer = subscribe(subscriber);
+
+        // When
+        for (String chunk : List.of("a", "b", "c", "d", "e")) {
+            assertTrue(buffer.offer(chunk));
+        }
+        assertEquals(5.0, meterRegistry.get("ollama.stream.buffered").gauge().value());
+        subscriber.request(10);
+
+        // Then
+        assertEquals(List.of("a", "bcde"), subscriber.chunks);
+        assertEquals(3.0, meterRegistry.get("ollama.stream.coalesced").counter().count());
+        assertEquals(0.0, meterRegistry.get("ollama.stream.buffered").gauge().value());
+    }
+
+    @Test
+    void complete_ShouldWaitForHeldChunks() throws InterruptedException {
+        // Given
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        StreamBuffer buffer = subscribe(subscriber);
+        buffer.offer("a");
+
+        // When
+        buffer.complete();
+
+        // Then
+        assertFalse(subscriber.completed);
+        subscriber.request(1);
+        assertEquals(List.of("a"), subscriber.chunks);
+        assertTrue(subscriber.completed);
+        assertEquals(1, meterRegistry.get("ollama.stream.buffered.peak").summary().count());
+    }
+
+    @Test
+    void offer_ShouldPauseReading_UntilSubscriberCatchesUp() throws Exception {
+        // Given
+        properties.setMaxBufferedBytes(DataSize.ofBytes(4));
+        properties.setStallTimeout(Duration.ofSeconds(5));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        StreamBuffer buffer = subscribe(subscriber);
+        buffer.offer("ab");
+        buffer.offer("cd");
+
+        // When
+        CompletableFuture<Boolean> reader = CompletableFuture.supplyAsync(() -> {
+            try {
+                return buffer.offer("ef");
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // Then
+        Thread.sleep(100);
+        assertFalse(reader.isDone());
+        subscriber.request(1);
+        assertTrue(reader.get(5, TimeUnit.SECONDS));
+        subscriber.request(10);
+        assertEquals(List.of("ab", "cd", "ef"), subscriber.chunks);
+    }
+
+    @Test
+    void offer_ShouldFailStream_WhenSubscriberStopsReading() throws InterruptedException {
+        // Given
+        properties.setMaxBufferedBytes(DataSize.ofBytes(4));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        StreamBuffer buffer = subscribe(subscriber);
+        buffer.offer("ab");
+        buffer.offer("cd");
+
+        // When
+        boolean accepted = buffer.offer("ef");
+
+        // Then
+        assertFalse(accepted);
+        assertInstanceOf(OllamaException.class, subscriber.error);
+        assertEquals(1.0, meterRegistry.get("ollama.stream.stalled").counter().count());
+        assertEquals(0.0, meterRegistry.get("ollama.stream.buffered").gauge().value());
+        assertEquals(4.0, meterRegistry.get("ollama.stream.buffered.peak").summary().max());
+    }
+
+    @Test
+    void release_ShouldDropHeldChunks_WhenSubscriberCancels() throws InterruptedException {
+        // Given
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        StreamBuffer buffer = subscribe(subscriber);
+        buffer.offer("abc");
+
+        // When
+        subscriber.cancel();
+
+        // Then
+        assertFalse(buffer.offer("d"));
+        assertEquals(0.0, meterRegistry.get("ollama.stream.buffered").gauge().value());
+    }
+
+    @Test
+    void utf8Length_ShouldCountEncodedBytes() {
+        assertEquals(3, StreamBuffer.utf8Length("abc"));
+        assertEquals(6, StreamBuffer.utf8Length("你好"));
+        assertEquals(4, StreamBuffer.utf8Length("😀"));
+    }
+
+    private StreamBuffer subscribe(RecordingSubscriber subscriber) {
+        AtomicReference<StreamBuffer> buffer = new AtomicReference<>();
+        Flux.<String>create(sink -> {
+            StreamBuffer created = new StreamBuffer(sink, properties, meters);
+            sink.onRequest(n -> created.drain());
+            sink.onDispose(created::release);
+            buffer.set(created);
+        }).subscribe(subscriber);
+        return buffer.get();
+    }
+
+    /**
+     * Requests nothing until told to
+     */
+    private static class RecordingSubscriber extends BaseSubscriber<String> {
+        private final List<String> chunks = new CopyOnWriteArrayList<>();
+        private volatile boolean completed;
+        private volatile Throwable error;
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+        }
+
+        @Override
+        protected void hookOnNext(String chunk) {
+            chunks.add(chunk);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            completed = true;
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            error = throwable;
+        }
+    }
+}
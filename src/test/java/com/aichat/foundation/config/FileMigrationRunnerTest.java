@@ -0,0 +1,93 @@
+package com.aichat.foundation.config;
+
+import com.aichat.foundation.entity.MaintenanceCheckpoint;
+import com.aichat.foundation.repository.MaintenanceCheckpointRepository;
+import com.aichat.foundation.service.FileReshardingService;
+import com.aichat.foundation.service.FileService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FileMigrationRunnerTest {
+
+    private static final String CHECKPOINT = "file-paths:./uploads->/data/uploads";
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private FileReshardingService fileReshardingService;
+
+    @Mock
+    private MaintenanceCheckpointRepository checkpointRepository;
+
+    private FileMigrationRunner fileMigrationRunner;
+
+    @BeforeEach
+    void setUp() {
+        fileMigrationRunner = new FileMigrationRunner(fileService, fileReshardingService, checkpointRepository, Runnable::run);
+        ReflectionTestUtils.setField(fileMigrationRunner, "enabled", true);
+        ReflectionTestUtils.setField(fileMigrationRunner, "oldUploadPath", "./uploads");
+        ReflectionTestUtils.setField(fileMigrationRunner, "newUploadPath", "/data/uploads");
+    }
+
+    @Test
+    void startAfterStartup_ShouldMigrateAndRecordCheckpoint_WhenNotYetCompleted() {
+        // Given
+        when(checkpointRepository.findById(CHECKPOINT)).thenReturn(Optional.empty());
+        when(fileService.migrateFilePathsToNewDirectory("./uploads", "/data/uploads")).thenReturn(3);
+
+        // When
+        fileMigrationRunner.startAfterStartup();
+
+        // Then
+        ArgumentCaptor<MaintenanceCheckpoint> saved = ArgumentCaptor.forClass(MaintenanceCheckpoint.class);
+        verify(checkpointRepository).save(saved.capture());
+        assertEquals(CHECKPOINT, saved.getValue().getName());
+        assertTrue(saved.getValue().isCompleted());
+        verify(fileReshardingService).reshardAll();
+    }
+
+    @Test
+    void startAfterStartup_ShouldSkipMigration_WhenCheckpointCompleted() {
+        // Given
+        MaintenanceCheckpoint done = new MaintenanceCheckpoint(CHECKPOINT);
+        done.setCompletedAt(LocalDateTime.now());
+        when(checkpointRepository.findById(CHECKPOINT)).thenReturn(Optional.of(done));
+
+        // When
+        fileMigrationRunner.startAfterStartup();
+
+        // Then
+        verify(fileService, never()).migrateFilePathsToNewDirectory(anyString(), anyString());
+        verify(checkpointRepository, never()).save(any());
+        verify(fileReshardingService).reshardAll();
+    }
+
+    @Test
+    void startAfterStartup_ShouldNotRecordCheckpoint_WhenMigrationFails() {
+        // Given
+        when(checkpointRepository.findById(CHECKPOINT)).thenReturn(Optional.empty());
+        when(fileService.migrateFilePathsToNewDirectory(anyString(), anyString()))
+            .thenThrow(new IllegalStateException("database unavailable"));
+
+        // When
+        fileMigrationRunner.startAfterStartup();
+
+        // Then
+        verify(checkpointRepository, never()).save(any());
+    }
+}
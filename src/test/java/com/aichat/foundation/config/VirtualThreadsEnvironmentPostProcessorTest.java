@@ -0,0 +1,56 @@
+package com.aichat.foundation.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.SpringApplication;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadsEnvironmentPostProcessorTest {
+
+    private static final String ON_VIRTUAL_THREADS = "reactor.schedulers.defaultBoundedElasticOnVirtualThreads";
+    private static final String SIZE = "reactor.schedulers.defaultBoundedElasticSize";
+
+    private final VirtualThreadsEnvironmentPostProcessor postProcessor = new VirtualThreadsEnvironmentPostProcessor();
+
+    @AfterEach
+    void tearDown() {
+        VirtualThreadsEnvironmentPostProcessor.REACTOR_SCHEDULER_PROPERTIES.forEach(System::clearProperty);
+    }
+
+    @Test
+    void postProcessEnvironment_ShouldLeaveReactorAlone_WhenVirtualThreadsAreDisabled() {
+        // Given
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty(ON_VIRTUAL_THREADS, "true")
+            .withProperty(SIZE, "10000");
+
+        // When
+        postProcessor.postProcessEnvironment(environment, new SpringApplication());
+
+        // Then
+        assertNull(System.getProperty(ON_VIRTUAL_THREADS));
+        assertNull(System.getProperty(SIZE));
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void postProcessEnvironment_ShouldCopySchedulerSettings_WhenVirtualThreadsAreEnabled() {
+        // Given: a size passed with -D wins over the configuration
+        System.setProperty(SIZE, "500");
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("spring.threads.virtual.enabled", "true")
+            .withProperty(ON_VIRTUAL_THREADS, "true")
+            .withProperty(SIZE, "10000");
+
+        // When
+        postProcessor.postProcessEnvironment(environment, new SpringApplication());
+
+        // Then
+        assertEquals("true", System.getProperty(ON_VIRTUAL_THREADS));
+        assertEquals("500", System.getProperty(SIZE));
+    }
+}
@@ -1,13 +1,16 @@
 package com.aichat.foundation.controller;
 
+import com.aichat.foundation.config.SecurityConfig;
 import com.aichat.foundation.dto.ChatSessionDto;
 import com.aichat.foundation.dto.MessageDto;
 import com.aichat.foundation.service.ChatService;
+import com.aichat.foundation.service.StorageQuotaService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -19,11 +22,13 @@ import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(ChatController.class)
+@Import(SecurityConfig.class)
 class ChatControllerTest {
 
     @Autowired
@@ -32,6 +37,12 @@ class ChatControllerTest {
     @MockBean
     private ChatService chatService;
 
+    @MockBean
+    private StreamingMultipartReader multipartReader;
+
+    @MockBean
+    private StorageQuotaService storageQuotaService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -48,7 +59,7 @@ class ChatControllerTest {
             0
         );
         
-        when(chatService.createSession(eq("Test Session"), eq("default-user")))
+        when(chatService.createSession(eq("Test Session"), eq("default-user"), isNull()))
             .thenReturn(sessionDto);
 
         // When & Then
@@ -164,6 +175,21 @@ class ChatControllerTest {
                 .andExpect(jsonPath("$[1].type").value("ASSISTANT"));
     }
 
+    @Test
+    void cancelMessage_ShouldAccept_WhenReplyIsStreaming() throws Exception {
+        // Given
+        UUID streaming = UUID.randomUUID();
+        UUID finished = UUID.randomUUID();
+        when(chatService.cancelGeneration(streaming, "default-user")).thenReturn(true);
+        when(chatService.cancelGeneration(finished, "default-user")).thenReturn(false);
+
+        // When & Then
+        mockMvc.perform(post("/api/chat/messages/{id}/cancel", streaming))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(post("/api/chat/messages/{id}/cancel", finished))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void healthCheck_ShouldReturnHealthStatus() throws Exception {
         // When & Then
@@ -0,0 +1,164 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.config.SecurityConfig;
+import com.aichat.foundation.dto.FileAttachmentDto;
+import com.aichat.foundation.exception.StorageQuotaExceededException;
+import com.aichat.foundation.service.FileService;
+import com.aichat.foundation.service.StorageQuotaService;
+import com.aichat.foundation.service.ThumbnailService;
+import com.aichat.foundation.service.ThumbnailSize;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(FileController.class)
+@Import(SecurityConfig.class)
+class FileControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private FileService fileService;
+
+    @MockBean
+    private ThumbnailService thumbnailService;
+
+    @MockBean
+    private StreamingMultipartReader multipartReader;
+
+    @MockBean
+    private StorageQuotaService storageQuotaService;
+
+    @TempDir
+    Path tempDir;
+
+    private UUID fileId;
+    private Path stored;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fileId = UUID.randomUUID();
+        stored = tempDir.resolve("stored.png");
+        Files.write(stored, "0123456789".getBytes());
+
+        FileAttachmentDto fileInfo = new FileAttachmentDto(
+            fileId,
+            UUID.randomUUID(),
+            "picture.png",
+            "image/png",
+            stored.toString(),
+            10L,
+            LocalDateTime.of(2024, 1, 1, 12, 0)
+        );
+        fileInfo.setContentHash("abc123");
+
+        when(fileService.getFileInfo(fileId)).thenReturn(fileInfo);
+        when(fileService.loadFileAsResource(any())).thenReturn(new FileSystemResource(stored));
+    }
+
+    @Test
+    void getFile_ShouldStreamWithCachingHeaders() throws Exception {
+        mockMvc.perform(get("/api/files/{id}", fileId))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"abc123\""))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    void getFile_ShouldReturn304_WhenETagMatches() throws Exception {
+        mockMvc.perform(get("/api/files/{id}", fileId)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"abc123\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getFile_ShouldReturnPartialContent_ForRangeRequest() throws Exception {
+        mockMvc.perform(get("/api/files/{id}", fileId)
+                .header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(content().string("2345"));
+    }
+
+    @Test
+    void getFile_ShouldReturn404_WhenFileMissing() throws Exception {
+        UUID missingId = UUID.randomUUID();
+        when(fileService.getFileInfo(missingId)).thenThrow(new RuntimeException("missing"));
+
+        mockMvc.perform(get("/api/files/{id}", missingId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getFile_ShouldServeThumbnail_WhenSizeRequested() throws Exception {
+        // Given
+        Path thumbnail = Files.write(tempDir.resolve("abc123-thumb128.jpg"), "thumb".getBytes());
+        when(thumbnailService.getThumbnail(eq("abc123"), eq(new FileSystemResource(stored)), eq(ThumbnailSize.SMALL)))
+            .thenReturn(Optional.of(thumbnail));
+
+        // When & Then
+        mockMvc.perform(get("/api/files/{id}", fileId).param("size", "small"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"abc123-small\""))
+                .andExpect(content().string("thumb"));
+    }
+
+    @Test
+    void getFile_ShouldServeOriginal_WhenImageSmallerThanThumbnail() throws Exception {
+        // Given
+        when(thumbnailService.getThumbnail(any(), any(), any())).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(get("/api/files/{id}", fileId).param("size", "large"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"abc123\""))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    void getFile_ShouldReturn400_WhenSizeUnknown() throws Exception {
+        mockMvc.perform(get("/api/files/{id}", fileId).param("size", "huge"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(thumbnailService);
+    }
+
+    @Test
+    void uploadFile_ShouldReturn413_WithoutReadingBody_WhenDeclaredLengthExceedsQuota() throws Exception {
+        doThrow(new StorageQuotaExceededException("Storage quota of 1MB exceeded"))
+            .when(storageQuotaService).checkQuota(eq("default-user"), eq(null), eq(4L));
+
+        mockMvc.perform(multipart("/api/files/upload").content("body"))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.message", containsString("quota")));
+        verifyNoInteractions(multipartReader, fileService);
+    }
+}
@@ -0,0 +1,194 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.config.ReactiveSecurityConfig;
+import com.aichat.foundation.dto.ChatSessionDto;
+import com.aichat.foundation.dto.MessageDto;
+import com.aichat.foundation.dto.StreamResponse;
+import com.aichat.foundation.exception.ChatServiceException;
+import com.aichat.foundation.service.ReactiveChatService;
+import com.aichat.foundation.service.StorageQuotaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(ReactiveChatController.class)
+@Import(ReactiveSecurityConfig.class)
+class ReactiveChatControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveChatService chatService;
+
+    @MockBean
+    private ReactiveMultipartReader multipartReader;
+
+    @MockBean
+    private StorageQuotaService storageQuotaService;
+
+    @Test
+    void createSession_ShouldReturnCreatedSession() {
+        // Given
+        ChatSessionDto sessionDto = new ChatSessionDto(
+            UUID.randomUUID(), "Test Session", "default-user", "ACTIVE", LocalDateTime.now(), LocalDateTime.now(), 0);
+
+        when(chatService.createSession(eq("Test Session"), eq("default-user"), isNull()))
+            .thenReturn(Mono.just(sessionDto));
+
+        // When & Then
+        webTestClient.post().uri("/api/chat/sessions")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue("{\"title\":\"Test Session\"}")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.title").isEqualTo("Test Session")
+            .jsonPath("$.userId").isEqualTo("default-user")
+            .jsonPath("$.status").isEqualTo("ACTIVE");
+    }
+
+    @Test
+    void getSession_ShouldReturn404_WhenNotExists() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        when(chatService.getSession(sessionId, "default-user")).thenReturn(Mono.empty());
+
+        // When & Then
+        webTestClient.get().uri("/api/chat/sessions/{id}", sessionId)
+            .exchange()
+            .expectStatus().isNotFound();
+    }
+
+    @Test
+    void deleteSession_ShouldReturn404_WhenNotFound() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        when(chatService.deleteSession(sessionId, "default-user")).thenReturn(Mono.just(false));
+
+        // When & Then
+        webTestClient.delete().uri("/api/chat/sessions/{id}", sessionId)
+            .exchange()
+            .expectStatus().isNotFound();
+    }
+
+    @Test
+    void getSessionMessages_ShouldReturnMessagesList() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        when(chatService.getSessionMessages(sessionId, "default-user")).thenReturn(Flux.just(
+            new MessageDto(UUID.randomUUID(), sessionId, "Hello", "USER", LocalDateTime.now(), null, List.of()),
+            new MessageDto(UUID.randomUUID(), sessionId, "Hi there!", "ASSISTANT", LocalDateTime.now(), null, List.of())
+        ));
+
+        // When & Then
+        webTestClient.get().uri("/api/chat/sessions/{id}/messages", sessionId)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.length()").isEqualTo(2)
+            .jsonPath("$[0].content").isEqualTo("Hello")
+            .jsonPath("$[1].type").isEqualTo("ASSISTANT");
+    }
+
+    @Test
+    void getSessionMessages_ShouldReturn404_WhenSessionNotFound() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        when(chatService.getSessionMessages(sessionId, "default-user"))
+            .thenReturn(Flux.error(new ChatServiceException("Session not found or access denied")));
+
+        // When & Then
+        webTestClient.get().uri("/api/chat/sessions/{id}/messages", sessionId)
+            .exchange()
+            .expectStatus().isNotFound();
+    }
+
+    @Test
+    void sendMessage_ShouldStreamEvents() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        UUID messageId = UUID.randomUUID();
+        when(chatService.processTextMessage(any(), eq("default-user"))).thenReturn(Flux.just(
+            StreamResponse.streamStart(sessionId, messageId),
+            StreamResponse.streamChunk(sessionId, messageId, "Hi")
+        ));
+
+        // When
+        List<String> events = webTestClient.post().uri("/api/chat/message")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue("{\"sessionId\":\"" + sessionId + "\",\"content\":\"Hello\"}")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+            .returnResult(String.class)
+            .getResponseBody()
+            .filter(event -> !event.isBlank())
+            .collectList()
+            .block();
+
+        // Then
+        assertEquals(2, events.size());
+        assertTrue(events.get(0).contains("\"type\":\"stream_start\""));
+        assertTrue(events.get(1).contains("\"content\":\"Hi\""));
+    }
+
+    @Test
+    void sendMessage_ShouldReturn400_WhenContentMissing() {
+        // When & Then
+        webTestClient.post().uri("/api/chat/message")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue("{\"sessionId\":\"" + UUID.randomUUID() + "\",\"content\":\"\"}")
+            .exchange()
+            .expectStatus().isBadRequest()
+            .expectBody()
+            .jsonPath("$.code").isEqualTo("VALIDATION_ERROR")
+            .jsonPath("$.fieldErrors.content").isEqualTo("Content cannot be empty");
+        verifyNoInteractions(chatService);
+    }
+
+    @Test
+    void cancelMessage_ShouldAccept_WhenReplyIsStreaming() {
+        // Given
+        UUID streaming = UUID.randomUUID();
+        UUID finished = UUID.randomUUID();
+        when(chatService.cancelGeneration(streaming, "default-user")).thenReturn(true);
+        when(chatService.cancelGeneration(finished, "default-user")).thenReturn(false);
+
+        // When & Then
+        webTestClient.post().uri("/api/chat/messages/{id}/cancel", streaming)
+            .exchange()
+            .expectStatus().isAccepted();
+        webTestClient.post().uri("/api/chat/messages/{id}/cancel", finished)
+            .exchange()
+            .expectStatus().isNotFound();
+    }
+
+    @Test
+    void healthCheck_ShouldReturnHealthStatus() {
+        // When & Then
+        webTestClient.get().uri("/api/chat/health")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.status").isEqualTo("UP")
+            .jsonPath("$.message").isEqualTo("Chat service is running");
+    }
+}
@@ -0,0 +1,119 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.dto.StreamResponse;
+import com.aichat.foundation.exception.ChatServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamSubscriptionRegistryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private StreamSubscriptionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new StreamSubscriptionRegistry(2, meterRegistry);
+        registry.openConnection("ws-1");
+    }
+
+    @Test
+    void register_ShouldEnforceLimitPerConnection() {
+        // Given
+        registry.openConnection("ws-2");
+        registry.register(new RecordingSubscription("ws-1", "1", 0));
+        registry.register(new RecordingSubscription("ws-1", "2", 0));
+
+        // When & Then
+        assertThrows(ChatServiceException.class, () -> registry.register(new RecordingSubscription("ws-1", "3", 0)));
+        assertThrows(ChatServiceException.class, () -> registry.register(new RecordingSubscription("ws-1", "1", 0)));
+        registry.register(new RecordingSubscription("ws-2", "1", 0));
+        assertEquals(3.0, meterRegistry.get("websocket.streams.active").gauge().value());
+    }
+
+    @Test
+    void register_ShouldRefuseStream_WhenConnectionIsClosed() {
+        // Given
+        registry.closeConnection("ws-1");
+
+        // When & Then
+        assertThrows(ChatServiceException.class, () -> registry.register(new RecordingSubscription("ws-1", "1", 0)));
+        assertEquals(0, registry.connectionCount());
+    }
+
+    @Test
+    void findByMessageId_ShouldFindStream_OnceItsReplyHasStarted() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        UUID messageId = UUID.randomUUID();
+        RecordingSubscription subscription = new RecordingSubscription("ws-1", "1", 1);
+        registry.register(subscription);
+        Sinks.Many<StreamResponse> reply = Sinks.many().unicast().onBackpressureBuffer();
+        reply.asFlux().subscribe(subscription);
+
+        // When
+        reply.tryEmitNext(StreamResponse.streamStart(sessionId, messageId));
+
+        // Then
+        assertSame(subscription, registry.findByMessageId(messageId).orElseThrow());
+        assertSame(subscription, registry.get("ws-1", "1").orElseThrow());
+        assertEquals(1, subscription.getEvents());
+        assertEquals(0, subscription.getCredits());
+    }
+
+    @Test
+    void closeConnection_ShouldDisposeItsStreams() {
+        // Given
+        RecordingSubscription subscription = new RecordingSubscription("ws-1", "1", 1);
+        registry.register(subscription);
+        Flux.<StreamResponse>never().subscribe(subscription);
+
+        // When
+        registry.closeConnection("ws-1");
+
+        // Then
+        assertTrue(subscription.isDisposed());
+        assertTrue(registry.all().isEmpty());
+        assertEquals(0.0, meterRegistry.get("websocket.streams.active").gauge().value());
+    }
+
+    @Test
+    void grant_ShouldKeepAtMostMaxCreditsOutstanding() {
+        // Given
+        RecordingSubscription subscription = new RecordingSubscription("ws-1", "1", 0);
+        Sinks.Many<StreamResponse> reply = Sinks.many().unicast().onBackpressureBuffer();
+        reply.asFlux().subscribe(subscription);
+        for (int i = 0; i < 10; i++) {
+            reply.tryEmitNext(StreamResponse.streamChunk(null, null, "t" + i));
+        }
+
+        // When
+        subscription.grant(100);
+
+        // Then
+        assertEquals(4, subscription.delivered.size());
+    }
+
+    private static class RecordingSubscription extends StreamSubscription {
+        private final List<StreamResponse> delivered = new ArrayList<>();
+
+        private RecordingSubscription(String connectionId, String streamId, long initialCredits) {
+            super(connectionId, streamId, null, initialCredits, 4);
+        }
+
+        @Override
+        protected boolean deliver(StreamResponse event) {
+            delivered.add(event);
+            return true;
+        }
+    }
+}
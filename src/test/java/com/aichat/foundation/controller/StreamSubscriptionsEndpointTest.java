@@ -0,0 +1,64 @@
+package com.aichat.foundation.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.endpoint.SecurityContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StreamSubscriptionsEndpointTest {
+
+    @Mock
+    private StreamSubscriptionRegistry registry;
+
+    @Mock
+    private StreamSubscription subscription;
+
+    private StreamSubscriptionsEndpoint endpoint;
+
+    @BeforeEach
+    void setUp() {
+        endpoint = new StreamSubscriptionsEndpoint(registry);
+        when(registry.all()).thenReturn(List.of(subscription));
+        when(registry.connectionCount()).thenReturn(1);
+        when(registry.getMaxStreamsPerConnection()).thenReturn(4);
+    }
+
+    @Test
+    void streams_ShouldShowOnlyCounts_WhenCallerIsAnonymous() {
+        // When
+        Map<String, Object> result = endpoint.streams(SecurityContext.NONE);
+
+        // Then
+        assertEquals(1, result.get("activeStreams"));
+        assertFalse(result.containsKey("streams"));
+        verifyNoInteractions(subscription);
+    }
+
+    @Test
+    void streams_ShouldListStreams_WhenCallerIsAuthenticated() {
+        // Given
+        UUID messageId = UUID.randomUUID();
+        when(subscription.getMessageId()).thenReturn(messageId);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getPrincipal()).thenReturn(new UsernamePasswordAuthenticationToken("ops", null, List.of()));
+
+        // When
+        Map<String, Object> result = endpoint.streams(securityContext);
+
+        // Then
+        List<?> streams = (List<?>) result.get("streams");
+        assertEquals(1, streams.size());
+        assertEquals(messageId, ((Map<?, ?>) streams.get(0)).get("messageId"));
+    }
+}
@@ -0,0 +1,210 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.dto.StreamResponse;
+import com.aichat.foundation.service.ChatService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StreamWebSocketHandlerTest {
+
+    @Mock
+    private ChatService chatService;
+
+    @Mock
+    private WebSocketSession session;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private StreamSubscriptionRegistry subscriptions;
+    private StreamWebSocketHandler handler;
+    private UUID sessionId;
+    private UUID messageId;
+
+    @BeforeEach
+    void setUp() {
+        subscriptions = new StreamSubscriptionRegistry(2, new SimpleMeterRegistry());
+        handler = new StreamWebSocketHandler(chatService, subscriptions, objectMapper);
+        ReflectionTestUtils.setField(handler, "sendBufferSizeLimit", DataSize.ofKilobytes(512));
+        ReflectionTestUtils.setField(handler, "sendTimeLimit", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(handler, "maxCredits", 256);
+        sessionId = UUID.randomUUID();
+        messageId = UUID.randomUUID();
+        lenient().when(session.getId()).thenReturn("ws-1");
+        lenient().when(session.isOpen()).thenReturn(true);
+        handler.afterConnectionEstablished(session);
+    }
+
+    @Test
+    void start_ShouldSendOneEventPerCredit() throws Exception {
+        // Given
+        when(chatService.processTextMessage(argThat(request -> "Hi".equals(request.getContent())), eq("default-user")))
+            .thenReturn(reply());
+
+        // When
+        handler.handleTextMessage(session, frame("{\"type\":\"start\",\"stream\":\"1\",\"sessionId\":\"%s\",\"content\":\"Hi\",\"credits\":2}"));
+
+        // Then: two events, then nothing until the client grants more
+        verify(session, timeout(2000).times(2)).sendMessage(any());
+        Thread.sleep(100);
+        verify(session, times(2)).sendMessage(any());
+
+        handler.handleTextMessage(session, frame("{\"type\":\"credit\",\"stream\":\"1\",\"credits\":8}"));
+        verify(session, timeout(2000).times(4)).sendMessage(any());
+        assertEquals(List.of("stream_start", "stream_chunk", "stream_chunk", "stream_end"),
+            sent().stream().map(frame -> frame.get("event").get("type").asText()).toList());
+    }
+
+    @Test
+    void start_ShouldMultiplexStreamsOverOneConnection() throws Exception {
+        // Given
+        when(chatService.processTextMessage(any(), eq("default-user"))).thenReturn(reply()).thenReturn(reply());
+
+        // When
+        handler.handleTextMessage(session, frame("{\"type\":\"start\",\"stream\":\"a\",\"sessionId\":\"%s\",\"content\":\"One\",\"credits\":10}"));
+        handler.handleTextMessage(session, frame("{\"type\":\"start\",\"stream\":\"b\",\"sessionId\":\"%s\",\"content\":\"Two\",\"credits\":10}"));
+
+        // Then
+        verify(session, timeout(2000).times(8)).sendMessage(any());
+        List<JsonNode> frames = sent();
+        assertEquals(4, frames.stream().filter(frame -> "a".equals(frame.get("stream").asText())).count());
+        assertEquals(4, frames.stream().filter(frame -> "b".equals(frame.get("stream").asText())).count());
+    }
+
+    @Test
+    void cancel_ShouldDropStreamAndStopReply_BeforeItStarts() throws Exception {
+        // Given
+        CountDownLatch subscribed = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(chatService.processTextMessage(any(), eq("default-user")))
+            .thenReturn(Flux.<StreamResponse>never()
+                .doOnSubscribe(subscription -> subscribed.countDown())
+                .doOnCancel(cancelled::countDown));
+        handler.handleTextMessage(session, frame("{\"type\":\"start\",\"stream\":\"1\",\"sessionId\":\"%s\",\"content\":\"Hi\",\"credits\":4}"));
+        assertTrue(subscribed.await(2, TimeUnit.SECONDS));
+
+        // When
+        handler.handleTextMessage(session, frame("{\"type\":\"cancel\",\"stream\":\"1\"}"));
+
+        // Then
+        assertTrue(cancelled.await(2, TimeUnit.SECONDS));
+        verify(session, timeout(2000)).sendMessage(any());
+        assertEquals("stream_aborted", sent().get(0).get("event").get("type").asText());
+        verify(chatService, never()).cancelGeneration(any(), any());
+    }
+
+    @Test
+    void cancel_ShouldDeliverAbortedEvent_WhenClientHasNoCreditsLeft() throws Exception {
+        // Given
+        when(chatService.processTextMessage(any(), eq("default-user"))).thenReturn(Flux.just(
+            StreamResponse.streamStart(sessionId, messageId),
+            StreamResponse.streamAborted(sessionId, messageId)));
+        when(chatService.cancelGeneration(messageId, "default-user")).thenReturn(true);
+        handler.handleTextMessage(session, frame("{\"type\":\"start\",\"stream\":\"1\",\"sessionId\":\"%s\",\"content\":\"Hi\",\"credits\":1}"));
+        verify(session, timeout(2000)).sendMessage(any());
+
+        // When
+        handler.handleTextMessage(session, frame("{\"type\":\"cancel\",\"stream\":\"1\"}"));
+
+        // Then
+        verify(session, timeout(2000).times(2)).sendMessage(any());
+        assertEquals("stream_aborted", sent().get(1).get("event").get("type").asText());
+    }
+
+    @Test
+    void afterConnectionClosed_ShouldCancelOpenStreams() throws Exception {
+        // Given
+        CountDownLatch subscribed = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(chatService.processTextMessage(any(), eq("default-user")))
+            .thenReturn(Flux.<StreamResponse>never()
+                .doOnSubscribe(subscription -> subscribed.countDown())
+                .doOnCancel(cancelled::countDown));
+        handler.handleTextMessage(session, frame("{\"type\":\"start\",\"stream\":\"1\",\"sessionId\":\"%s\",\"content\":\"Hi\",\"credits\":4}"));
+        assertTrue(subscribed.await(2, TimeUnit.SECONDS));
+
+        // When
+        handler.afterConnectionClosed(session, CloseStatus.GOING_AWAY);
+
+        // Then
+        assertTrue(cancelled.await(2, TimeUnit.SECONDS));
+        assertTrue(subscriptions.all().isEmpty());
+    }
+
+    @Test
+    void start_ShouldRefuseStream_WhenConnectionIsAtItsLimit() throws Exception {
+        // Given: two replies still streaming, the most one connection may have
+        when(chatService.processTextMessage(any(), eq("default-user")))
+            .thenReturn(Flux.never())
+            .thenReturn(Flux.never());
+        handler.handleTextMessage(session, frame("{\"type\":\"start\",\"stream\":\"1\",\"sessionId\":\"%s\",\"content\":\"Hi\",\"credits\":4}"));
+        handler.handleTextMessage(session, frame("{\"type\":\"start\",\"stream\":\"2\",\"sessionId\":\"%s\",\"content\":\"Hi\",\"credits\":4}"));
+
+        // When
+        handler.handleTextMessage(session, frame("{\"type\":\"start\",\"stream\":\"3\",\"sessionId\":\"%s\",\"content\":\"Hi\",\"credits\":4}"));
+
+        // Then
+        JsonNode refused = sent().get(0);
+        assertEquals("3", refused.get("stream").asText());
+        assertEquals("error", refused.get("event").get("type").asText());
+        assertEquals(2, subscriptions.all().size());
+        verify(chatService, timeout(2000).times(2)).processTextMessage(any(), eq("default-user"));
+    }
+
+    @Test
+    void handleTextMessage_ShouldAnswerMalformedFrameWithError() throws Exception {
+        // When
+        handler.handleTextMessage(session, new TextMessage("not json"));
+
+        // Then
+        verify(session).sendMessage(any());
+        assertEquals("error", sent().get(0).get("event").get("type").asText());
+        verifyNoInteractions(chatService);
+    }
+
+    private Flux<StreamResponse> reply() {
+        return Flux.just(
+            StreamResponse.streamStart(sessionId, messageId),
+            StreamResponse.streamChunk(sessionId, messageId, "Hel"),
+            StreamResponse.streamChunk(sessionId, messageId, "lo"),
+            StreamResponse.streamEnd(sessionId, messageId));
+    }
+
+    private TextMessage frame(String json) {
+        return new TextMessage(json.formatted(sessionId));
+    }
+
+    private List<JsonNode> sent() throws Exception {
+        ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, atLeastOnce()).sendMessage(captor.capture());
+        List<JsonNode> frames = new ArrayList<>();
+        for (TextMessage message : captor.getAllValues()) {
+            frames.add(objectMapper.readTree(message.getPayload()));
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,128 @@
+package com.aichat.foundation.controller;
+
+import com.aichat.foundation.exception.FileStorageException;
+import com.aichat.foundation.service.FileService;
+import com.aichat.foundation.service.StagedUpload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingMultipartReaderTest {
+
+    private static final String BOUNDARY = "test-boundary";
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private StagedUpload staged;
+
+    private StreamingMultipartReader reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = new StreamingMultipartReader(fileService, DataSize.ofKilobytes(1), 2);
+    }
+
+    @Test
+    void read_ShouldCollectFieldsAndStageFiles() {
+        // Given
+        MockHttpServletRequest request = multipart(
+            field("sessionId", "abc") + file("file", "cat.png", "PNGDATA") + field("content", "What is this?"));
+        when(fileService.stageUpload(any(InputStream.class), eq("cat.png"))).thenAnswer(invocation -> {
+            InputStream in = invocation.getArgument(0);
+            assertEquals("PNGDATA", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            return staged;
+        });
+
+        // When
+        StreamingMultipartReader.Form form = reader.read(request);
+
+        // Then
+        assertEquals("abc", form.field("sessionId"));
+        assertEquals("What is this?", form.field("content"));
+        assertSame(staged, form.file("file"));
+    }
+
+    @Test
+    void read_ShouldRejectRequest_WhenDeclaredSizeExceedsLimit() {
+        // Given
+        MockHttpServletRequest request = multipart(file("file", "cat.png", "x".repeat(2048)));
+
+        // When & Then
+        assertThrows(FileStorageException.class, () -> reader.read(request));
+        verifyNoInteractions(fileService);
+    }
+
+    @Test
+    void read_ShouldDiscardStagedFiles_WhenLaterPartIsRejected() {
+        // Given
+        reader = new StreamingMultipartReader(fileService, DataSize.ofMegabytes(1), 2);
+        MockHttpServletRequest request = multipart(file("file", "cat.png", "PNGDATA") + field("content", "x".repeat(100_000)));
+        when(fileService.stageUpload(any(InputStream.class), eq("cat.png"))).thenReturn(staged);
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> reader.read(request));
+        verify(staged).close();
+    }
+
+    @Test
+    void read_ShouldRejectFilePart_BeyondFileLimit_WithoutStagingIt() {
+        // Given
+        MockHttpServletRequest request = multipart(
+            file("file", "a.png", "A") + file("file", "b.png", "B") + file("file", "c.png", "C"));
+        when(fileService.stageUpload(any(InputStream.class), any())).thenReturn(staged);
+
+        // When & Then
+        assertThrows(FileStorageException.class, () -> reader.read(request));
+        verify(fileService, never()).stageUpload(any(InputStream.class), eq("c.png"));
+        verify(staged, times(2)).close();
+    }
+
+    @Test
+    void field_ShouldRejectMissingField() {
+        // Given
+        MockHttpServletRequest request = multipart(field("content", "hi"));
+
+        // When
+        StreamingMultipartReader.Form form = reader.read(request);
+
+        // Then
+        assertThrows(IllegalArgumentException.class, () -> form.field("sessionId"));
+        assertThrows(IllegalArgumentException.class, () -> form.file("file"));
+        verifyNoInteractions(fileService);
+    }
+
+    private MockHttpServletRequest multipart(String parts) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/files/upload");
+        request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        request.setContent((parts + "--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private String field(String name, String value) {
+        return "--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n"
+            + value + "\r\n";
+    }
+
+    private String file(String name, String fileName, String content) {
+        return "--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + fileName + "\"\r\n"
+            + "Content-Type: image/png\r\n\r\n"
+            + content + "\r\n";
+    }
+}
@@ -0,0 +1,68 @@
+package com.aichat.foundation.prompt;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptTemplateTest {
+
+    @Test
+    void render_ShouldSubstituteVariablesInOrder() {
+        // Given
+        PromptTemplate template = PromptTemplate.compile("{{a}} and {{ b }}, then {{a}}", "a", "b");
+
+        // When
+        String rendered = template.render("x", "y");
+
+        // Then
+        assertEquals("x and y, then x", rendered);
+    }
+
+    @Test
+    void render_ShouldSkipSection_WhenItsVariableIsEmpty() {
+        // Given
+        PromptTemplate template = PromptTemplate.compile("Start.{{#context}} Context: {{context}}.{{/context}} End.", "context");
+
+        // When & Then
+        assertEquals("Start. Context: earlier. End.", template.render("earlier"));
+        assertEquals("Start. End.", template.render(""));
+        assertEquals("Start. End.", template.render((String) null));
+    }
+
+    @Test
+    void render_ShouldKeepLiteralPrefixIdentical_AcrossValues() {
+        // Given
+        PromptTemplate template = PromptTemplate.compile("System prompt.\n{{language}}\n{{message}}", "language", "message");
+
+        // When
+        String first = template.render("Answer in English.", "Hi");
+        String second = template.render("Answer in English.", "And now?");
+
+        // Then
+        String prefix = "System prompt.\nAnswer in English.\n";
+        assertTrue(first.startsWith(prefix));
+        assertTrue(second.startsWith(prefix));
+    }
+
+    @Test
+    void compile_ShouldReject_UnknownVariable() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+            () -> PromptTemplate.compile("{{mesage}}", "message"));
+        assertTrue(error.getMessage().contains("mesage"));
+    }
+
+    @Test
+    void compile_ShouldReject_UnbalancedOrNestedSections() {
+        assertThrows(IllegalArgumentException.class, () -> PromptTemplate.compile("{{#a}}open", "a"));
+        assertThrows(IllegalArgumentException.class, () -> PromptTemplate.compile("close{{/a}}", "a"));
+        assertThrows(IllegalArgumentException.class, () -> PromptTemplate.compile("{{#a}}{{#b}}{{/b}}{{/a}}", "a", "b"));
+        assertThrows(IllegalArgumentException.class, () -> PromptTemplate.compile("{{a", "a"));
+    }
+
+    @Test
+    void render_ShouldReject_WrongNumberOfValues() {
+        PromptTemplate template = PromptTemplate.compile("{{a}}", "a");
+
+        assertThrows(IllegalArgumentException.class, () -> template.render("x", "y"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.aichat.foundation.prompt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptTemplatesTest {
+
+    private PromptTemplates promptTemplates;
+
+    @BeforeEach
+    void setUp() {
+        promptTemplates = new PromptTemplates();
+    }
+
+    @Test
+    void renderText_ShouldUseDefaultLayout() {
+        // Given
+        promptTemplates.compile();
+
+        // When
+        String withContext = promptTemplates.renderText("any-model", "Answer in English.", "User: hi\n", "How are you?");
+        String withoutContext = promptTemplates.renderText("any-model", "Answer in English.", "", "How are you?");
+
+        // Then
+        assertEquals("Answer in English.\n\nPrevious conversation context:\nUser: hi\n\n\nUser: How are you?\n\nAssistant: ",
+            withContext);
+        assertEquals("Answer in English.\n\nUser: How are you?\n\nAssistant: ", withoutContext);
+    }
+
+    @Test
+    void renderMultimodal_ShouldUseDefaultLayout() {
+        // Given
+        promptTemplates.compile();
+
+        // When
+        String prompt = promptTemplates.renderMultimodal("any-model", "Answer in English.", "User: hi\n",
+            "User uploaded an image", "What is this?");
+
+        // Then
+        assertEquals("Answer in English.\n\nImage description: User uploaded an image\n\n"
+            + "User message: What is this?\n\nPlease analyze the image and respond to the user's message. Assistant: ", prompt);
+    }
+
+    @Test
+    void render_ShouldUseModelLayout_AndFallBackToDefaultForMissingTemplate() {
+        // Given
+        PromptTemplates.Layout layout = new PromptTemplates.Layout();
+        layout.setText("<|system|>{{language}}<|user|>{{message}}<|assistant|>");
+        promptTemplates.setModels(Map.of("llama3:8b", layout));
+        promptTemplates.compile();
+
+        // When
+        String text = promptTemplates.renderText("llama3:8b", "Answer in English.", "", "Hi");
+        String multimodal = promptTemplates.renderMultimodal("llama3:8b", "Answer in English.", "", "", "Hi");
+
+        // Then
+        assertEquals("<|system|>Answer in English.<|user|>Hi<|assistant|>", text);
+        assertTrue(multimodal.startsWith("Answer in English.\n\nUser message: Hi"));
+    }
+
+    @Test
+    void compile_ShouldFail_WhenModelTemplateIsInvalid() {
+        // Given
+        PromptTemplates.Layout layout = new PromptTemplates.Layout();
+        layout.setMultimodal("{{picture}}");
+        promptTemplates.setModels(Map.of("llava", layout));
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, promptTemplates::compile);
+    }
+}
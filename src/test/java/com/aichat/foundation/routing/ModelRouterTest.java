@@ -0,0 +1,143 @@
+package com.aichat.foundation.routing;
+
+import com.aichat.foundation.exception.ChatServiceException;
+import com.aichat.foundation.exception.ModelServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelRouterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ModelRoutingProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new ModelRoutingProperties();
+        properties.setQueueTimeout(Duration.ofMillis(50));
+
+        ModelRoutingProperties.Route vision = new ModelRoutingProperties.Route();
+        vision.setModel("qwen2.5vl:32b");
+        vision.setVision(true);
+        vision.setMaxConcurrent(1);
+        vision.setOptions(Map.of("temperature", "0.7", "num_predict", "2048", "raw", "false"));
+
+        ModelRoutingProperties.Route text = new ModelRoutingProperties.Route();
+        text.setModel("qwen2.5:7b");
+        text.setMaxPromptChars(100);
+
+        properties.getRoutes().put(ModelRouter.VISION, vision);
+        properties.getRoutes().put(ModelRouter.TEXT, text);
+    }
+
+    @Test
+    void select_ShouldRouteByModalityAndPromptLength() {
+        // Given
+        ModelRouter router = new ModelRouter(properties, meterRegistry, "default-model");
+
+        // When & Then
+        assertEquals("qwen2.5:7b", router.select(false, null, 80).getModel());
+        assertEquals("qwen2.5vl:32b", router.select(false, null, 120).getModel());
+        assertEquals("qwen2.5vl:32b", router.select(true, null, 10).getModel());
+    }
+
+    @Test
+    void select_ShouldHonourOverride_ButNeverSendImagesToTextModel() {
+        // Given
+        ModelRouter router = new ModelRouter(properties, meterRegistry, "default-model");
+
+        // When & Then
+        assertEquals(ModelRouter.VISION, router.select(false, ModelRouter.VISION, 10).getName());
+        assertEquals(ModelRouter.TEXT, router.select(false, ModelRouter.TEXT, 5000).getName());
+        assertEquals(ModelRouter.VISION, router.select(true, ModelRouter.TEXT, 10).getName());
+        assertThrows(ChatServiceException.class, () -> router.select(false, "missing", 10));
+    }
+
+    @Test
+    void constructor_ShouldFallBackToDefaultModel_WhenNoRoutesConfigured() {
+        // Given
+        ModelRouter router = new ModelRouter(new ModelRoutingProperties(), meterRegistry, "default-model");
+
+        // When
+        ModelRoute route = router.select(false, null, 10);
+
+        // Then
+        assertEquals("default-model", route.getModel());
+        assertTrue(route.isVision());
+        assertEquals(2048, route.getOptions().get("num_predict"));
+    }
+
+    @Test
+    void constructor_ShouldParseOptionTypes() {
+        // Given
+        ModelRouter router = new ModelRouter(properties, meterRegistry, "default-model");
+
+        // When
+        Map<String, Object> options = router.select(true, null, 0).getOptions();
+
+        // Then
+        assertEquals(0.7, options.get("temperature"));
+        assertEquals(2048L, options.get("num_predict"));
+        assertEquals(false, options.get("raw"));
+    }
+
+    @Test
+    void execute_ShouldRejectRequest_WhenRouteStaysBusy() {
+        // Given
+        ModelRouter router = new ModelRouter(properties, meterRegistry, "default-model");
+        ModelRoute vision = router.select(true, null, 0);
+        Sinks.Many<String> running = Sinks.many().unicast().onBackpressureBuffer();
+        router.execute(vision, route -> running.asFlux()).subscribe();
+        await(() -> meterRegistry.get("ollama.requests.active").tag("route", "vision").gauge().value() == 1.0);
+
+        // When & Then
+        assertThrows(ModelServiceException.class, () -> router.execute(vision, route -> Flux.just("late")).blockLast());
+        assertEquals(1.0, meterRegistry.get("ollama.requests.rejected").tag("route", "vision").counter().count());
+        assertEquals(1.0, meterRegistry.get("ollama.requests.active").tag("route", "vision").gauge().value());
+
+        // When the running request finishes, its slot is free again
+        running.tryEmitComplete();
+        assertEquals(List.of("next"), router.execute(vision, route -> Flux.just("next")).collectList().block());
+        await(() -> meterRegistry.get("ollama.requests.active").tag("route", "vision").gauge().value() == 0.0);
+    }
+
+    @Test
+    void execute_ShouldRecordLatencyAndThroughputPerRoute() {
+        // Given
+        ModelRouter router = new ModelRouter(properties, meterRegistry, "default-model");
+        ModelRoute text = router.select(false, null, 10);
+
+        // When
+        router.execute(text, route -> Flux.just("a", "b", "c")).blockLast();
+        assertThrows(IllegalStateException.class,
+            () -> router.execute(text, route -> Flux.error(new IllegalStateException("down"))).blockLast());
+
+        // Then
+        // doFinally runs after completion has reached the caller
+        await(() -> meterRegistry.find("ollama.requests").tags("route", "text", "outcome", "success").timer() != null
+            && meterRegistry.find("ollama.requests").tags("route", "text", "outcome", "error").timer() != null);
+        assertEquals(3.0, meterRegistry.get("ollama.response.chunks").tag("route", "text").counter().count());
+        assertEquals(1, meterRegistry.get("ollama.first.token").tag("model", "qwen2.5:7b").timer().count());
+        assertEquals(1, meterRegistry.get("ollama.requests").tags("route", "text", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("ollama.requests").tags("route", "text", "outcome", "error").timer().count());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within 5s");
+            Thread.onSpinWait();
+        }
+    }
+}
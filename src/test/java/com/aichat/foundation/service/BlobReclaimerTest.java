@@ -0,0 +1,62 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.entity.BlobReclamation;
+import com.aichat.foundation.exception.FileStorageException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BlobReclaimerTest {
+
+    @Mock
+    private FileService fileService;
+
+    @InjectMocks
+    private BlobReclaimer reclaimer;
+
+    private final BlobReclamation first = new BlobReclamation("blob:aa/aa/a.jpg", "a");
+    private final BlobReclamation second = new BlobReclamation("blob:bb/bb/b.jpg", "b");
+    private final BlobReclamation third = new BlobReclamation("blob:cc/cc/c.jpg", "c");
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reclaimer, "batchSize", 3);
+    }
+
+    @Test
+    void reclaim_ShouldProcessOneBatchPerRun() {
+        // Given
+        when(fileService.findPendingReclamations(3)).thenReturn(List.of(first, second, third));
+        when(fileService.reclaimBlob(any())).thenReturn(true, false, true);
+
+        // When
+        reclaimer.reclaim();
+
+        // Then
+        verify(fileService, times(1)).findPendingReclamations(3);
+        verify(fileService, times(3)).reclaimBlob(any());
+    }
+
+    @Test
+    void reclaim_ShouldLeaveRestQueued_WhenBlobStoreFails() {
+        // Given
+        when(fileService.findPendingReclamations(3)).thenReturn(List.of(first, second, third));
+        when(fileService.reclaimBlob(first)).thenReturn(true);
+        when(fileService.reclaimBlob(second)).thenThrow(new FileStorageException("store down"));
+
+        // When
+        reclaimer.reclaim();
+
+        // Then
+        verify(fileService, never()).reclaimBlob(third);
+    }
+}
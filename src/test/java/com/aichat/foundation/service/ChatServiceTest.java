@@ -2,28 +2,53 @@ package com.aichat.foundation.service;
 
 import com.aichat.foundation.dto.ChatMessageRequest;
 import com.aichat.foundation.dto.ChatSessionDto;
+import com.aichat.foundation.dto.FileAttachmentDto;
+import com.aichat.foundation.dto.StreamResponse;
 import com.aichat.foundation.entity.ChatSession;
 import com.aichat.foundation.entity.Message;
+import com.aichat.foundation.entity.MessageStatus;
 import com.aichat.foundation.entity.MessageType;
 import com.aichat.foundation.entity.SessionStatus;
+import com.aichat.foundation.exception.ChatServiceException;
+import com.aichat.foundation.exception.FileStorageException;
 import com.aichat.foundation.repository.ChatSessionRepository;
 import com.aichat.foundation.repository.MessageRepository;
+import com.aichat.foundation.routing.ModelRoute;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -42,9 +67,21 @@ class ChatServiceTest {
     @Mock
     private FileService fileService;
 
+    @Mock
+    private ImagePreprocessor imagePreprocessor;
+
+    @Mock
+    private ModelRoute visionRoute;
+
+    @Spy
+    private GenerationRegistry generationRegistry = new GenerationRegistry();
+
     @InjectMocks
     private ChatService chatService;
 
+    @TempDir
+    Path tempDir;
+
     private ChatSession testSession;
     private String testUserId;
     private UUID testSessionId;
@@ -59,6 +96,9 @@ class ChatServiceTest {
         testSession.setStatus(SessionStatus.ACTIVE);
         testSession.setCreatedAt(LocalDateTime.now());
         testSession.setUpdatedAt(LocalDateTime.now());
+        
+        ReflectionTestUtils.setField(chatService, "maxImagesPerMessage", 8);
+        ReflectionTestUtils.setField(chatService, "maxImagePayloadBytes", 1024L);
     }
 
     @Test
@@ -78,6 +118,16 @@ class ChatServiceTest {
         verify(chatSessionRepository).save(any(ChatSession.class));
     }
 
+    @Test
+    void createSession_ShouldFail_WhenModelRouteUnknown() {
+        // Given
+        when(modelService.hasRoute("huge")).thenReturn(false);
+
+        // When & Then
+        assertThrows(ChatServiceException.class, () -> chatService.createSession("Chat", testUserId, "huge"));
+        verify(chatSessionRepository, never()).save(any());
+    }
+
     @Test
     void createSession_WithNullTitle_ShouldCreateSessionWithDefaultTitle() {
         // Given
@@ -144,31 +194,35 @@ class ChatServiceTest {
     }
 
     @Test
-    void deleteSession_ShouldDeleteSession_WhenSessionExists() {
+    void deleteSession_ShouldDeleteChildrenBeforeSession_WithBulkStatements() {
         // Given
-        when(chatSessionRepository.findByIdAndUserId(testSessionId, testUserId))
-            .thenReturn(Optional.of(testSession));
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+        when(chatSessionRepository.deleteByIdAndUserId(testSessionId, testUserId)).thenReturn(1);
 
         // When
         boolean result = chatService.deleteSession(testSessionId, testUserId);
 
         // Then
         assertTrue(result);
-        verify(chatSessionRepository).delete(testSession);
+        InOrder order = inOrder(fileService, messageRepository, chatSessionRepository);
+        order.verify(fileService).deleteSessionAttachments(testSessionId, testUserId);
+        order.verify(messageRepository).deleteBySessionId(testSessionId);
+        order.verify(chatSessionRepository).deleteByIdAndUserId(testSessionId, testUserId);
+        verify(chatSessionRepository, never()).delete(any());
     }
 
     @Test
     void deleteSession_ShouldReturnFalse_WhenSessionNotFound() {
         // Given
-        when(chatSessionRepository.findByIdAndUserId(testSessionId, testUserId))
-            .thenReturn(Optional.empty());
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(false);
 
         // When
         boolean result = chatService.deleteSession(testSessionId, testUserId);
 
         // Then
         assertFalse(result);
-        verify(chatSessionRepository, never()).delete(any());
+        verifyNoInteractions(fileService);
+        verify(messageRepository, never()).deleteBySessionId(any());
     }
 
     @Test
@@ -216,4 +270,328 @@ class ChatServiceTest {
         verify(chatSessionRepository).existsByIdAndUserId(testSessionId, testUserId);
         verify(messageRepository, never()).save(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void processTextMessage_ShouldRouteBySessionModel_UnlessMessageNamesOne() {
+        // Given
+        testSession.setModelRoute("vision");
+        ChatMessageRequest request = new ChatMessageRequest(testSessionId, "Hello", "text");
+
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+        when(chatSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testSession));
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message saved = invocation.getArgument(0);
+            saved.setId(UUID.randomUUID());
+            return saved;
+        });
+        when(messageRepository.findBySessionIdOrderByCreatedAtAsc(testSessionId)).thenReturn(List.of());
+        when(modelService.selectRoute(eq(false), any(), anyInt())).thenReturn(visionRoute);
+        when(modelService.createEnhancedPrompt(eq(visionRoute), eq(testSessionId), eq("Hello"), any())).thenReturn("prompt");
+        when(modelService.processTextRequest(eq(visionRoute), eq(testSessionId), any(), eq("prompt")))
+            .thenReturn(Flux.just(StreamResponse.streamChunk(testSessionId, UUID.randomUUID(), "Hi")));
+
+        // When
+        chatService.processTextMessage(request, testUserId).blockLast();
+        request.setModel("text");
+        chatService.processTextMessage(request, testUserId).blockLast();
+
+        // Then
+        InOrder order = inOrder(modelService);
+        order.verify(modelService).selectRoute(false, "vision", "Hello".length());
+        order.verify(modelService).selectRoute(eq(false), eq("text"), anyInt());
+    }
+
+    @Test
+    void processTextMessage_ShouldKeepPartialReplyAsAborted_WhenCancelled() {
+        // Given
+        ChatMessageRequest request = new ChatMessageRequest(testSessionId, "Tell me a story", "text");
+        UUID assistantId = UUID.randomUUID();
+        List<Message> saved = new ArrayList<>();
+        Sinks.Many<StreamResponse> model = Sinks.many().unicast().onBackpressureBuffer();
+
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+        when(chatSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testSession));
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            if (message.getType() == MessageType.ASSISTANT) {
+                message.setId(assistantId);
+                saved.add(message);
+            }
+            return message;
+        });
+        when(messageRepository.findBySessionIdOrderByCreatedAtAsc(testSessionId)).thenReturn(List.of());
+        when(modelService.selectRoute(eq(false), any(), anyInt())).thenReturn(visionRoute);
+        when(modelService.createEnhancedPrompt(any(), any(), any(), any())).thenReturn("prompt");
+        when(modelService.processTextRequest(eq(visionRoute), eq(testSessionId), eq(assistantId), eq("prompt")))
+            .thenReturn(model.asFlux());
+
+        List<StreamResponse> responses = new ArrayList<>();
+        chatService.processTextMessage(request, testUserId).subscribe(responses::add);
+        model.tryEmitNext(StreamResponse.streamChunk(testSessionId, assistantId, "Once upon"));
+
+        // When
+        boolean cancelled = chatService.cancelGeneration(assistantId, testUserId);
+
+        // Then
+        assertTrue(cancelled);
+        assertEquals("stream_aborted", responses.get(responses.size() - 1).getType());
+        Message reply = saved.get(saved.size() - 1);
+        assertEquals("Once upon", reply.getContent());
+        assertEquals(MessageStatus.ABORTED, reply.getStatus());
+        assertFalse(chatService.cancelGeneration(assistantId, testUserId));
+    }
+
+    @Test
+    void processTextMessage_ShouldSavePlaceholderAsStreaming_AndFailedReplyAsAborted() {
+        // Given
+        ChatMessageRequest request = new ChatMessageRequest(testSessionId, "Hello", "text");
+        UUID assistantId = UUID.randomUUID();
+        List<MessageStatus> savedStatuses = new ArrayList<>();
+
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+        when(chatSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testSession));
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            if (message.getType() == MessageType.ASSISTANT) {
+                message.setId(assistantId);
+                savedStatuses.add(message.getStatus());
+            }
+            return message;
+        });
+        when(messageRepository.findBySessionIdOrderByCreatedAtAsc(testSessionId)).thenReturn(List.of());
+        when(modelService.selectRoute(eq(false), any(), anyInt())).thenReturn(visionRoute);
+        when(modelService.createEnhancedPrompt(any(), any(), any(), any())).thenReturn("prompt");
+        when(modelService.processTextRequest(eq(visionRoute), eq(testSessionId), eq(assistantId), eq("prompt")))
+            .thenReturn(Flux.just(StreamResponse.streamChunk(testSessionId, assistantId, "Hi"))
+                .concatWith(Flux.error(new IllegalStateException("model down"))));
+
+        // When
+        assertThrows(ChatServiceException.class,
+            () -> chatService.processTextMessage(request, testUserId).blockLast());
+
+        // Then
+        assertEquals(List.of(MessageStatus.STREAMING, MessageStatus.ABORTED), savedStatuses);
+        assertFalse(chatService.cancelGeneration(assistantId, testUserId));
+    }
+
+    @Test
+    void processMultimodalUploads_ShouldSendPreparedImage_WithoutReadingStoredFileBack() throws IOException {
+        // Given
+        StagedUpload upload = new StagedUpload(Paths.get("staged"), "photo.jpg", "image/jpeg", 4L, "hash");
+        Resource storedImage = image("stored.jpg", 4);
+        Path preparedImage = image("prepared.jpg", 2).getFile().toPath();
+        FileAttachmentDto storedAttachment = new FileAttachmentDto(
+            UUID.randomUUID(), UUID.randomUUID(), "photo.jpg", "image/jpeg", "stored.jpg", 4L, LocalDateTime.now());
+        storedAttachment.setContentHash("hash");
+
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+        when(chatSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testSession));
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message saved = invocation.getArgument(0);
+            saved.setId(UUID.randomUUID());
+            return saved;
+        });
+        when(fileService.uploadFile(eq(upload), any(Message.class))).thenReturn(storedAttachment);
+        when(fileService.loadFileAsResource(storedAttachment)).thenReturn(storedImage);
+        when(imagePreprocessor.prepareForModelAsync("hash", storedImage))
+            .thenReturn(CompletableFuture.completedFuture(Optional.of(preparedImage)));
+        when(modelService.selectRoute(eq(true), any(), anyInt())).thenReturn(visionRoute);
+        when(modelService.createMultimodalPrompt(eq(visionRoute), any(), any(), any(), any())).thenReturn("prompt");
+        when(modelService.processMultimodalRequest(eq(visionRoute), eq(testSessionId), any(), eq("prompt"), eq(List.of(new FileSystemResource(preparedImage)))))
+            .thenReturn(Flux.just(StreamResponse.streamChunk(testSessionId, UUID.randomUUID(), "A cat")));
+
+        // When
+        List<StreamResponse> responses = chatService
+            .processMultimodalUploads(testSessionId, "What is this?", List.of(upload), null, testUserId)
+            .collectList()
+            .block();
+
+        // Then
+        assertEquals(1, responses.size());
+        assertEquals("A cat", responses.get(0).getContent());
+        verify(fileService, never()).getFileContent(any());
+    }
+
+    @Test
+    void processMultimodalUploads_ShouldRollBack_WhenSecondUploadFails() {
+        // Given
+        StagedUpload first = new StagedUpload(Paths.get("first"), "a.jpg", "image/jpeg", 4L, "hash-a");
+        StagedUpload second = new StagedUpload(Paths.get("second"), "b.jpg", "image/jpeg", 4L, "hash-b");
+        FileAttachmentDto stored = new FileAttachmentDto(
+            UUID.randomUUID(), UUID.randomUUID(), "a.jpg", "image/jpeg", "blob:a.jpg", 4L, LocalDateTime.now());
+        TransactionStatus transaction = mock(TransactionStatus.class);
+
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+        when(chatSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testSession));
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(fileService.uploadFile(eq(first), any(Message.class))).thenReturn(stored);
+        when(fileService.uploadFile(eq(second), any(Message.class))).thenThrow(new FileStorageException("Disk full"));
+
+        // When
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try (MockedStatic<TransactionAspectSupport> aspect = mockStatic(TransactionAspectSupport.class)) {
+            aspect.when(TransactionAspectSupport::currentTransactionStatus).thenReturn(transaction);
+            assertThrows(ChatServiceException.class, () -> chatService
+                .processMultimodalUploads(testSessionId, "Compare these", List.of(first, second), null, testUserId)
+                .blockLast());
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        // Then: the message and the first file are rolled back with it
+        verify(transaction).setRollbackOnly();
+        verifyNoInteractions(modelService);
+    }
+
+    @Test
+    void processMultimodalMessage_ShouldClaimPreUploadedAttachments() throws IOException {
+        // Given
+        UUID attachmentId = UUID.randomUUID();
+        FileAttachmentDto claimed = new FileAttachmentDto(
+            attachmentId, UUID.randomUUID(), "photo.jpg", "image/jpeg", "blob:ab/cd/hash.jpg", 4L, LocalDateTime.now());
+        claimed.setContentHash("hash");
+        Resource storedImage = image("stored.jpg", 4);
+
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+        when(chatSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testSession));
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message saved = invocation.getArgument(0);
+            saved.setId(UUID.randomUUID());
+            return saved;
+        });
+        when(fileService.claimPendingAttachments(eq(List.of(attachmentId)), eq(testUserId), any(Message.class)))
+            .thenReturn(List.of(claimed));
+        when(fileService.loadFileAsResource(claimed)).thenReturn(storedImage);
+        when(imagePreprocessor.prepareForModelAsync("hash", storedImage))
+            .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        when(modelService.selectRoute(eq(true), any(), anyInt())).thenReturn(visionRoute);
+        when(modelService.createMultimodalPrompt(eq(visionRoute), any(), any(), any(), any())).thenReturn("prompt");
+        when(modelService.processMultimodalRequest(eq(visionRoute), eq(testSessionId), any(), eq("prompt"), eq(List.of(storedImage))))
+            .thenReturn(Flux.just(StreamResponse.streamChunk(testSessionId, UUID.randomUUID(), "A dog")));
+
+        // When
+        List<StreamResponse> responses = chatService
+            .processMultimodalMessage(testSessionId, "What is this?", List.of(attachmentId), null, testUserId)
+            .collectList()
+            .block();
+
+        // Then
+        assertEquals("A dog", responses.get(0).getContent());
+    }
+
+    @Test
+    void processMultimodalUploads_ShouldFail_WhenNoFileGiven() {
+        // Given
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+
+        // When & Then
+        ChatServiceException e = assertThrows(ChatServiceException.class, () -> chatService
+            .processMultimodalUploads(testSessionId, "What is this?", List.of(), null, testUserId)
+            .blockFirst());
+        assertEquals("At least one attachment is required", e.getMessage());
+        verify(messageRepository, never()).save(any());
+        verifyNoInteractions(modelService);
+    }
+
+    @Test
+    void processMultimodalMessage_ShouldFail_WhenNoAttachmentIdsGiven() {
+        // Given
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+
+        // When & Then
+        assertThrows(ChatServiceException.class, () -> chatService
+            .processMultimodalMessage(testSessionId, "What is this?", List.<UUID>of(), null, testUserId)
+            .blockFirst());
+        verify(messageRepository, never()).save(any());
+    }
+
+    @Test
+    void processMultimodalMessage_ShouldSendEveryImage_PreparedInParallel() throws IOException {
+        // Given
+        FileAttachmentDto first = claimedAttachment("hash-1");
+        FileAttachmentDto second = claimedAttachment("hash-2");
+        Resource firstImage = image("first.jpg", 4);
+        Resource secondImage = image("second.jpg", 4);
+        Path preparedSecond = image("second-prepared.jpg", 2).getFile().toPath();
+        CompletableFuture<Optional<Path>> firstPrepared = new CompletableFuture<>();
+        List<UUID> attachmentIds = List.of(first.getId(), second.getId());
+
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+        when(chatSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testSession));
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message saved = invocation.getArgument(0);
+            saved.setId(UUID.randomUUID());
+            return saved;
+        });
+        when(fileService.claimPendingAttachments(eq(attachmentIds), eq(testUserId), any(Message.class)))
+            .thenReturn(List.of(first, second));
+        when(fileService.loadFileAsResource(first)).thenReturn(firstImage);
+        when(fileService.loadFileAsResource(second)).thenReturn(secondImage);
+        when(imagePreprocessor.prepareForModelAsync("hash-1", firstImage)).thenReturn(firstPrepared);
+        when(imagePreprocessor.prepareForModelAsync("hash-2", secondImage))
+            .thenReturn(CompletableFuture.completedFuture(Optional.of(preparedSecond)));
+        when(modelService.selectRoute(eq(true), any(), anyInt())).thenReturn(visionRoute);
+        when(modelService.createMultimodalPrompt(eq(visionRoute), eq(testSessionId), eq("Compare"), any(), eq("User uploaded 2 images"))).thenReturn("prompt");
+        when(modelService.processMultimodalRequest(eq(visionRoute), eq(testSessionId), any(), eq("prompt"),
+                eq(List.of(firstImage, new FileSystemResource(preparedSecond)))))
+            .thenReturn(Flux.just(StreamResponse.streamChunk(testSessionId, UUID.randomUUID(), "Same cat")));
+
+        // When: both preparations were started before either finished
+        Flux<StreamResponse> responses = chatService
+            .processMultimodalMessage(testSessionId, "Compare", attachmentIds, null, testUserId);
+        verify(imagePreprocessor).prepareForModelAsync("hash-2", secondImage);
+        firstPrepared.complete(Optional.empty());
+
+        // Then
+        assertEquals("Same cat", responses.blockFirst().getContent());
+    }
+
+    @Test
+    void processMultimodalMessage_ShouldFail_WhenTooManyImagesGiven() {
+        // Given
+        ReflectionTestUtils.setField(chatService, "maxImagesPerMessage", 1);
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+
+        // When & Then
+        assertThrows(ChatServiceException.class, () -> chatService
+            .processMultimodalMessage(testSessionId, "Compare", List.of(UUID.randomUUID(), UUID.randomUUID()), null, testUserId)
+            .blockFirst());
+        verify(messageRepository, never()).save(any());
+    }
+
+    @Test
+    void processMultimodalMessage_ShouldFail_WhenImagesExceedPayloadLimit() throws IOException {
+        // Given
+        FileAttachmentDto claimed = claimedAttachment("hash-big");
+        Resource storedImage = image("big.jpg", 2048);
+
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(true);
+        when(chatSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testSession));
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message saved = invocation.getArgument(0);
+            saved.setId(UUID.randomUUID());
+            return saved;
+        });
+        when(fileService.claimPendingAttachments(any(), eq(testUserId), any(Message.class))).thenReturn(List.of(claimed));
+        when(fileService.loadFileAsResource(claimed)).thenReturn(storedImage);
+        when(imagePreprocessor.prepareForModelAsync("hash-big", storedImage))
+            .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        // When & Then
+        assertThrows(ChatServiceException.class, () -> chatService
+            .processMultimodalMessage(testSessionId, "What is this?", List.of(claimed.getId()), null, testUserId)
+            .blockFirst());
+        verify(modelService, never()).processMultimodalRequest(any(), any(), any(), any(), any());
+    }
+
+    private FileAttachmentDto claimedAttachment(String contentHash) {
+        FileAttachmentDto attachment = new FileAttachmentDto(
+            UUID.randomUUID(), UUID.randomUUID(), "photo.jpg", "image/jpeg", "blob:" + contentHash, 4L, LocalDateTime.now());
+        attachment.setContentHash(contentHash);
+        return attachment;
+    }
+
+    private FileSystemResource image(String name, int size) throws IOException {
+        return new FileSystemResource(Files.write(tempDir.resolve(name), new byte[size]));
+    }
+}
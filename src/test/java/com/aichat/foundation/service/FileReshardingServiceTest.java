@@ -0,0 +1,116 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.repository.FileAttachmentRepository;
+import com.aichat.foundation.repository.StoredBlobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FileReshardingServiceTest {
+
+    @Mock
+    private FileAttachmentRepository fileAttachmentRepository;
+
+    @Mock
+    private StoredBlobRepository storedBlobRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private FileReshardingService fileReshardingService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        fileReshardingService = new FileReshardingService(
+            fileAttachmentRepository, storedBlobRepository, transactionManager);
+        ReflectionTestUtils.setField(fileReshardingService, "uploadDir", tempDir.toString());
+        ReflectionTestUtils.setField(fileReshardingService, "enabled", true);
+        ReflectionTestUtils.setField(fileReshardingService, "batchSize", 200);
+    }
+
+    @Test
+    void reshardAll_ShouldMoveFlatFilesAndRepointRows() throws IOException {
+        // Given
+        Path flat = Files.write(tempDir.resolve("abcdef.jpg"), "content".getBytes());
+        Path derived = Files.createDirectories(tempDir.resolve(".derived")).resolve("abcdef-thumb128.jpg");
+        Files.write(derived, "thumb".getBytes());
+
+        // When
+        int moved = fileReshardingService.reshardAll();
+
+        // Then
+        Path sharded = tempDir.resolve("ab").resolve("cd").resolve("abcdef.jpg");
+        assertEquals(1, moved);
+        assertFalse(Files.exists(flat));
+        assertEquals("content", Files.readString(sharded));
+        assertTrue(Files.exists(derived));
+        verify(storedBlobRepository).updateStoragePath(flat.toString(), sharded.toString());
+        verify(fileAttachmentRepository).updateFilePath(flat.toString(), sharded.toString());
+    }
+
+    @Test
+    void reshardAll_ShouldCommitOncePerBatch() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(fileReshardingService, "batchSize", 2);
+        for (String name : new String[] {"aaaa1.png", "bbbb2.png", "cccc3.png"}) {
+            Files.write(tempDir.resolve(name), name.getBytes());
+        }
+
+        // When
+        int moved = fileReshardingService.reshardAll();
+
+        // Then
+        assertEquals(3, moved);
+        verify(transactionManager, times(2)).commit(any());
+        verify(fileAttachmentRepository, times(3)).updateFilePath(any(), any());
+    }
+
+    @Test
+    void reshardAll_ShouldResume_WhenFileWasAlreadyPlaced() throws IOException {
+        // Given
+        Path flat = Files.write(tempDir.resolve("abcdef.jpg"), "content".getBytes());
+        Path sharded = tempDir.resolve("ab").resolve("cd").resolve("abcdef.jpg");
+        Files.createDirectories(sharded.getParent());
+        Files.write(sharded, "content".getBytes());
+
+        // When
+        int moved = fileReshardingService.reshardAll();
+
+        // Then
+        assertEquals(1, moved);
+        assertFalse(Files.exists(flat));
+        verify(fileAttachmentRepository).updateFilePath(flat.toString(), sharded.toString());
+    }
+
+    @Test
+    void reshardAll_ShouldDoNothing_WhenAlreadySharded() throws IOException {
+        // Given
+        Path sharded = tempDir.resolve("ab").resolve("cd").resolve("abcdef.jpg");
+        Files.createDirectories(sharded.getParent());
+        Files.write(sharded, "content".getBytes());
+
+        // When
+        int moved = fileReshardingService.reshardAll();
+
+        // Then
+        assertEquals(0, moved);
+        verifyNoInteractions(transactionManager, fileAttachmentRepository, storedBlobRepository);
+    }
+}
@@ -1,27 +1,61 @@
 package com.aichat.foundation.service;
 
+import com.aichat.foundation.dto.FileAttachmentDto;
+import com.aichat.foundation.entity.BlobReclamation;
+import com.aichat.foundation.entity.ChatSession;
 import com.aichat.foundation.entity.FileAttachment;
 import com.aichat.foundation.entity.Message;
+import com.aichat.foundation.entity.StoredBlob;
 import com.aichat.foundation.exception.FileStorageException;
+import com.aichat.foundation.exception.StorageQuotaExceededException;
+import com.aichat.foundation.repository.BlobReclamationRepository;
 import com.aichat.foundation.repository.FileAttachmentRepository;
+import com.aichat.foundation.repository.StoredBlobRepository;
+import com.aichat.foundation.storage.BlobStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import reactor.core.publisher.Flux;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,12 +64,34 @@ class FileServiceTest {
     @Mock
     private FileAttachmentRepository fileAttachmentRepository;
 
+    @Mock
+    private StoredBlobRepository storedBlobRepository;
+
+    @Mock
+    private BlobReclamationRepository blobReclamationRepository;
+
+    @Mock
+    private ThumbnailService thumbnailService;
+
+    @Mock
+    private ImagePreprocessor imagePreprocessor;
+
+    @Mock
+    private BlobStore blobStore;
+
+    @Mock
+    private StorageQuotaService storageQuotaService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private FileService fileService;
 
     @TempDir
     Path tempDir;
 
+    private ChatSession testSession;
     private Message testMessage;
     private FileAttachment testFileAttachment;
     private UUID testFileId;
@@ -43,8 +99,11 @@ class FileServiceTest {
     @BeforeEach
     void setUp() {
         testFileId = UUID.randomUUID();
+        testSession = new ChatSession("Test Chat", "user-1");
+        testSession.setId(UUID.randomUUID());
         testMessage = new Message();
         testMessage.setId(UUID.randomUUID());
+        testMessage.setSession(testSession);
         
         testFileAttachment = new FileAttachment(
             "test-image.jpg",
@@ -59,20 +118,22 @@ class FileServiceTest {
         ReflectionTestUtils.setField(fileService, "uploadDir", tempDir.toString());
         ReflectionTestUtils.setField(fileService, "maxFileSize", 10485760L); // 10MB
         ReflectionTestUtils.setField(fileService, "allowedTypes", "image/jpeg,image/png,image/gif,image/webp");
+        ReflectionTestUtils.setField(fileService, "pendingTtl", Duration.ofMinutes(30));
     }
 
     @Test
-    void uploadFile_ShouldUploadSuccessfully_WhenValidFile() throws IOException {
+    void uploadFile_ShouldUploadSuccessfully_WhenValidFile() throws Exception {
         // Given
-        byte[] fileContent = "test image content".getBytes();
+        byte[] fileContent = jpeg("test image content");
         MockMultipartFile mockFile = new MockMultipartFile(
             "file",
             "test.jpg",
             "image/jpeg",
             fileContent
         );
-        
-        when(fileAttachmentRepository.save(any(FileAttachment.class))).thenReturn(testFileAttachment);
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(fileContent));
+        stubReservation(hash);
+        when(fileAttachmentRepository.save(any(FileAttachment.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // When
         var result = fileService.uploadFile(mockFile, testMessage);
@@ -84,8 +145,317 @@ class FileServiceTest {
         assertEquals(fileContent.length, result.getFileSize());
         verify(fileAttachmentRepository).save(any(FileAttachment.class));
         
-        // Verify file was actually written
-        assertTrue(Files.exists(tempDir.resolve(result.getFilePath().substring(result.getFilePath().lastIndexOf('/') + 1))));
+        // Verify the bytes were written once, as a blob holding this attachment's reference
+        String key = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".jpg";
+        assertEquals("blob:" + key, result.getFilePath());
+        ArgumentCaptor<StoredBlob> blob = ArgumentCaptor.forClass(StoredBlob.class);
+        verify(storedBlobRepository).saveAndFlush(blob.capture());
+        assertEquals(result.getFilePath(), blob.getValue().getStoragePath());
+        assertEquals(0, blob.getValue().getRefCount());
+        verify(storedBlobRepository).claimReserved(hash);
+        verify(storedBlobRepository, never()).decrementRefCount(any());
+        verify(blobStore).put(eq(key), any(Path.class));
+        verify(storageQuotaService).checkQuota("user-1", testSession.getId(), fileContent.length);
+        verify(storageQuotaService).recordAdded("user-1", testSession.getId(), fileContent.length);
+    }
+
+    @Test
+    void uploadFile_ShouldStoreNothing_WhenQuotaExceeded() {
+        // Given
+        MockMultipartFile mockFile = new MockMultipartFile("file", "test.jpg", "image/jpeg", jpeg("over quota"));
+        doThrow(new StorageQuotaExceededException("Storage quota of 1MB exceeded"))
+            .when(storageQuotaService).checkQuota(eq("user-1"), eq(testSession.getId()), anyLong());
+
+        // When & Then
+        assertThrows(StorageQuotaExceededException.class, () -> fileService.uploadFile(mockFile, testMessage));
+        verifyNoInteractions(blobStore, storedBlobRepository, fileAttachmentRepository);
+        verify(storageQuotaService, never()).recordAdded(any(), any(), anyLong());
+    }
+
+    @Test
+    void uploadFile_ShouldStoreNothing_WhenImageDimensionsExceedLimit() throws IOException {
+        // Given
+        MockMultipartFile mockFile = new MockMultipartFile("file", "bomb.png", "image/png", png("huge"));
+        doThrow(new FileStorageException("Image dimensions 50000x50000 exceed the limit of 40000000 pixels"))
+            .when(imagePreprocessor).checkDimensions(any());
+
+        // When & Then
+        assertThrows(FileStorageException.class, () -> fileService.uploadFile(mockFile, testMessage));
+        verifyNoInteractions(blobStore, storedBlobRepository, fileAttachmentRepository);
+        verify(storageQuotaService, never()).recordAdded(any(), any(), anyLong());
+        try (var staged = Files.list(tempDir.resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+    }
+
+    @Test
+    void uploadFile_ShouldStoreBlobUnderContentHash_WhenContentIsNew() throws IOException {
+        // Given
+        MockMultipartFile mockFile = new MockMultipartFile("file", "Shot.PNG", "image/png", png("abc"));
+        String hash = "2cb922ecae93d405c9b9631a154ff097e354a411d5444196a182a0ffcbe63071";
+        stubReservation(hash);
+        when(fileAttachmentRepository.save(any(FileAttachment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        var result = fileService.uploadFile(mockFile, testMessage);
+
+        // Then
+        String key = "2c/b9/" + hash + ".png";
+        assertEquals("blob:" + key, result.getFilePath());
+        assertEquals(hash, result.getContentHash());
+        InOrder order = inOrder(blobReclamationRepository, storedBlobRepository, blobStore);
+        order.verify(storedBlobRepository).saveAndFlush(argThat(blob -> blob.getRefCount() == 0));
+        order.verify(blobReclamationRepository).save(any(BlobReclamation.class));
+        order.verify(blobReclamationRepository).dequeue("blob:" + key);
+        order.verify(storedBlobRepository).claimReserved(hash);
+        order.verify(blobStore).put(eq(key), any(Path.class));
+        verify(thumbnailService).generateAsync(eq(hash), any());
+        try (var staged = Files.list(tempDir.resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+    }
+
+    @Test
+    void uploadFile_ShouldSkipDiskWrite_WhenContentAlreadyStored() throws IOException {
+        // Given
+        MockMultipartFile mockFile = new MockMultipartFile("file", "again.png", "image/png", png("abc"));
+        String hash = "2cb922ecae93d405c9b9631a154ff097e354a411d5444196a182a0ffcbe63071";
+        StoredBlob existing = new StoredBlob(hash, tempDir.resolve("existing.png").toString(), 3L);
+        when(storedBlobRepository.incrementRefCount(hash)).thenReturn(1);
+        when(storedBlobRepository.findById(hash)).thenReturn(Optional.of(existing));
+        when(fileAttachmentRepository.save(any(FileAttachment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        var result = fileService.uploadFile(mockFile, testMessage);
+
+        // Then
+        assertEquals(existing.getStoragePath(), result.getFilePath());
+        assertEquals("again.png", result.getFileName());
+        try (var staged = Files.list(tempDir.resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+        verify(storedBlobRepository, never()).save(any());
+        verifyNoInteractions(blobStore);
+    }
+
+    @Test
+    void uploadFile_ShouldShareBlob_WhenAnotherUploadReservedItFirst() throws IOException {
+        // Given
+        MockMultipartFile mockFile = new MockMultipartFile("file", "race.png", "image/png", png("abc"));
+        String hash = "2cb922ecae93d405c9b9631a154ff097e354a411d5444196a182a0ffcbe63071";
+        StoredBlob winner = new StoredBlob(hash, "blob:2c/b9/" + hash + ".png", 3L);
+        when(storedBlobRepository.incrementRefCount(hash)).thenReturn(0, 1);
+        when(storedBlobRepository.saveAndFlush(any(StoredBlob.class)))
+            .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(storedBlobRepository.findById(hash)).thenReturn(Optional.of(winner));
+        when(storedBlobRepository.claimReserved(hash)).thenReturn(0);
+        when(fileAttachmentRepository.save(any(FileAttachment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        var result = fileService.uploadFile(mockFile, testMessage);
+
+        // Then
+        assertEquals(winner.getStoragePath(), result.getFilePath());
+        verify(storedBlobRepository, times(2)).incrementRefCount(hash);
+        verify(blobStore, never()).put(any(), any(Path.class));
+    }
+
+    @Test
+    void uploadFile_ShouldWriteBytesOnce_WhenSameContentIsUploadedConcurrently() throws Exception {
+        // Given: the repository behaves like the table, with its primary key and conditional updates
+        ConcurrentMap<String, StoredBlob> blobs = new ConcurrentHashMap<>();
+        ConcurrentMap<String, AtomicInteger> refCounts = new ConcurrentHashMap<>();
+        CyclicBarrier bothReserving = new CyclicBarrier(2);
+        when(storedBlobRepository.incrementRefCount(any())).thenAnswer(invocation -> {
+            AtomicInteger refCount = refCounts.get(invocation.<String>getArgument(0));
+            return refCount != null && refCount.getAndUpdate(n -> n > 0 ? n + 1 : n) > 0 ? 1 : 0;
+        });
+        when(storedBlobRepository.saveAndFlush(any(StoredBlob.class))).thenAnswer(invocation -> {
+            StoredBlob blob = invocation.getArgument(0);
+            bothReserving.await(5, TimeUnit.SECONDS);
+            if (blobs.putIfAbsent(blob.getContentHash(), blob) != null) {
+                throw new DataIntegrityViolationException("duplicate key");
+            }
+            refCounts.put(blob.getContentHash(), new AtomicInteger(0));
+            return blob;
+        });
+        when(storedBlobRepository.findById(any())).thenAnswer(invocation ->
+            Optional.ofNullable(blobs.get(invocation.<String>getArgument(0))));
+        when(storedBlobRepository.claimReserved(any())).thenAnswer(invocation ->
+            refCounts.get(invocation.<String>getArgument(0)).compareAndSet(0, 1) ? 1 : 0);
+        when(fileAttachmentRepository.save(any(FileAttachment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StagedUpload first = fileService.stageUpload(new ByteArrayInputStream(png("abc")), "a.png");
+        StagedUpload second = fileService.stageUpload(new ByteArrayInputStream(png("abc")), "b.png");
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<FileAttachmentDto> a = executor.submit(() -> fileService.uploadFile(first, testMessage));
+            Future<FileAttachmentDto> b = executor.submit(() -> fileService.uploadFile(second, testMessage));
+
+            // Then
+            assertEquals(a.get(5, TimeUnit.SECONDS).getFilePath(), b.get(5, TimeUnit.SECONDS).getFilePath());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, refCounts.get(first.getContentHash()).get());
+        verify(blobStore, times(1)).put(any(), any(Path.class));
+    }
+
+    @Test
+    void stageUpload_ShouldTakeContentTypeFromMagicBytes() throws IOException {
+        // Given
+        byte[] content = png("pixels");
+
+        // When
+        try (StagedUpload upload = fileService.stageUpload(new ByteArrayInputStream(content), "photo.jpg")) {
+
+            // Then
+            assertEquals("image/png", upload.getContentType());
+            assertEquals(content.length, upload.getSize());
+            assertArrayEquals(content, Files.readAllBytes(upload.getFile()));
+        }
+    }
+
+    @Test
+    void stageUpload_ShouldAbortAndCleanUp_WhenStreamExceedsLimit() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(fileService, "maxFileSize", 100L);
+        byte[] content = jpeg("x".repeat(500));
+
+        // When & Then
+        assertThrows(FileStorageException.class,
+            () -> fileService.stageUpload(new ByteArrayInputStream(content), "large.jpg"));
+        try (var staged = Files.list(tempDir.resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+    }
+
+    @Test
+    void stageUpload_ShouldRejectContent_WhenMagicBytesDoNotMatchAllowedType() {
+        // Given
+        byte[] content = "<svg xmlns=\"http://www.w3.org/2000/svg\"/>".getBytes();
+
+        // When & Then
+        assertThrows(FileStorageException.class,
+            () -> fileService.stageUpload(new ByteArrayInputStream(content), "image.png"));
+        assertFalse(Files.exists(tempDir.resolve(".staging")));
+    }
+
+    @Test
+    void stageUpload_ShouldStageBuffersAsTheyArrive_WhenHeaderIsSplit() throws IOException {
+        // Given
+        byte[] content = png("pixels");
+
+        // When: the signature itself is spread over three buffers
+        try (StagedUpload upload = fileService.stageUpload(buffers(content, 3), "photo.jpg").block()) {
+
+            // Then
+            assertEquals("image/png", upload.getContentType());
+            assertEquals(content.length, upload.getSize());
+            assertArrayEquals(content, Files.readAllBytes(upload.getFile()));
+        }
+    }
+
+    @Test
+    void stageUpload_ShouldAbortAndCleanUp_WhenBuffersExceedLimit() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(fileService, "maxFileSize", 100L);
+        byte[] content = jpeg("x".repeat(500));
+
+        // When & Then
+        assertThrows(FileStorageException.class,
+            () -> fileService.stageUpload(buffers(content, 64), "large.jpg").block());
+        try (var staged = Files.list(tempDir.resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+    }
+
+    @Test
+    void stageUpload_ShouldRejectBuffers_WhenMagicBytesDoNotMatchAllowedType() throws IOException {
+        // Given
+        byte[] content = "<svg xmlns=\"http://www.w3.org/2000/svg\"/>".getBytes();
+
+        // When & Then
+        assertThrows(FileStorageException.class,
+            () -> fileService.stageUpload(buffers(content, 8), "image.png").block());
+        try (var staged = Files.list(tempDir.resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+    }
+
+    @Test
+    void uploadPending_ShouldStoreUnclaimedHandle_AndPrepareImage() throws IOException {
+        // Given
+        StagedUpload upload = fileService.stageUpload(new ByteArrayInputStream(png("abc")), "Shot.png");
+        stubReservation(upload.getContentHash());
+        when(fileAttachmentRepository.save(any(FileAttachment.class))).thenAnswer(invocation -> {
+            FileAttachment saved = invocation.getArgument(0);
+            saved.setId(testFileId);
+            return saved;
+        });
+
+        // When
+        var result = fileService.uploadPending(upload, "user-1");
+
+        // Then
+        ArgumentCaptor<FileAttachment> saved = ArgumentCaptor.forClass(FileAttachment.class);
+        verify(fileAttachmentRepository).save(saved.capture());
+        assertNull(saved.getValue().getMessage());
+        assertEquals("user-1", saved.getValue().getOwnerId());
+        assertTrue(saved.getValue().getExpiresAt().isAfter(LocalDateTime.now().plusMinutes(29)));
+        assertEquals(testFileId, result.getId());
+        assertNull(result.getMessageId());
+        verify(imagePreprocessor).prepareForModelAsync(eq(upload.getContentHash()), any());
+        verify(storageQuotaService).recordAdded("user-1", null, upload.getSize());
+    }
+
+    @Test
+    void claimPendingAttachments_ShouldAttachHandlesInRequestOrder() {
+        // Given
+        FileAttachment first = pending(UUID.randomUUID());
+        FileAttachment second = pending(UUID.randomUUID());
+        List<UUID> ids = List.of(second.getId(), first.getId());
+        when(fileAttachmentRepository.findClaimable(anyCollection(), eq("user-1"), any())).thenReturn(List.of(first, second));
+        when(fileAttachmentRepository.claim(anyCollection(), eq("user-1"), eq(testMessage), any())).thenReturn(2);
+
+        // When
+        var result = fileService.claimPendingAttachments(ids, "user-1", testMessage);
+
+        // Then
+        assertEquals(List.of(second.getId(), first.getId()), result.stream().map(FileAttachmentDto::getId).toList());
+        assertEquals(testMessage.getId(), result.get(0).getMessageId());
+        assertNull(first.getExpiresAt());
+        verify(storageQuotaService).checkQuota(null, testSession.getId(), 6L);
+        verify(storageQuotaService).recordClaimed(testSession.getId(), 6L);
+    }
+
+    @Test
+    void claimPendingAttachments_ShouldReject_WhenHandleIsExpiredOrAlreadySent() {
+        // Given
+        FileAttachment claimable = pending(UUID.randomUUID());
+        List<UUID> ids = List.of(claimable.getId(), UUID.randomUUID());
+        when(fileAttachmentRepository.findClaimable(anyCollection(), eq("user-1"), any())).thenReturn(List.of(claimable));
+
+        // When & Then
+        assertThrows(FileStorageException.class, () -> fileService.claimPendingAttachments(ids, "user-1", testMessage));
+        verify(fileAttachmentRepository, never()).claim(any(), any(), any(), any());
+    }
+
+    @Test
+    void deleteExpiredPendingAttachments_ShouldDeleteEachExpiredHandle() {
+        // Given
+        FileAttachment expired = pending(testFileId);
+        when(fileAttachmentRepository.findExpiredPendingIds(any(), any())).thenReturn(List.of(testFileId));
+        when(fileAttachmentRepository.findById(testFileId)).thenReturn(Optional.of(expired));
+
+        // When
+        int removed = fileService.deleteExpiredPendingAttachments(100);
+
+        // Then
+        assertEquals(1, removed);
+        verify(fileAttachmentRepository).delete(expired);
     }
 
     @Test
@@ -156,6 +526,20 @@ class FileServiceTest {
         verify(fileAttachmentRepository).findById(testFileId);
     }
 
+    @Test
+    void getFileContent_ShouldReadFromBlobStore_ForBlobLocator() throws IOException {
+        // Given
+        testFileAttachment.setFilePath("blob:ab/cd/abcd.jpg");
+        when(fileAttachmentRepository.findById(testFileId)).thenReturn(Optional.of(testFileAttachment));
+        when(blobStore.get("ab/cd/abcd.jpg")).thenReturn("content".getBytes());
+
+        // When
+        byte[] content = fileService.getFileContent(testFileId);
+
+        // Then
+        assertArrayEquals("content".getBytes(), content);
+    }
+
     @Test
     void getFileContent_ShouldThrowException_WhenFileNotFound() {
         // Given
@@ -170,7 +554,69 @@ class FileServiceTest {
     }
 
     @Test
-    void deleteFile_ShouldDeleteSuccessfully_WhenFileExists() throws IOException {
+    void getFileInfo_ShouldComputeAndPersistContentHash_WhenMissing() throws IOException {
+        // Given
+        Path testFilePath = tempDir.resolve("test-hash.jpg");
+        Files.write(testFilePath, "abc".getBytes());
+        
+        testFileAttachment.setFilePath(testFilePath.toString());
+        when(fileAttachmentRepository.findById(testFileId)).thenReturn(Optional.of(testFileAttachment));
+        when(fileAttachmentRepository.save(testFileAttachment)).thenReturn(testFileAttachment);
+
+        // When
+        var result = fileService.getFileInfo(testFileId);
+
+        // Then
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", result.getContentHash());
+        verify(fileAttachmentRepository).save(testFileAttachment);
+    }
+
+    @Test
+    void getFileInfo_ShouldNotRehash_WhenHashPresent() {
+        // Given
+        testFileAttachment.setContentHash("cafebabe");
+        when(fileAttachmentRepository.findById(testFileId)).thenReturn(Optional.of(testFileAttachment));
+
+        // When
+        var result = fileService.getFileInfo(testFileId);
+
+        // Then
+        assertEquals("cafebabe", result.getContentHash());
+        verify(fileAttachmentRepository, never()).save(any());
+    }
+
+    @Test
+    void getFileInfo_ShouldIncludeThumbnailUrls_ForImages() {
+        // Given
+        testFileAttachment.setContentHash("cafebabe");
+        when(fileAttachmentRepository.findById(testFileId)).thenReturn(Optional.of(testFileAttachment));
+
+        // When
+        var result = fileService.getFileInfo(testFileId);
+
+        // Then
+        assertEquals(3, result.getThumbnailUrls().size());
+        assertEquals("/api/files/" + testFileId + "?size=small", result.getThumbnailUrls().get("small"));
+    }
+
+    @Test
+    void loadFileAsResource_ShouldFindFile_WhenMovedIntoShardDirectory() throws IOException {
+        // Given
+        Path sharded = tempDir.resolve("ab").resolve("cd").resolve("abcdef.jpg");
+        Files.createDirectories(sharded.getParent());
+        Files.write(sharded, "content".getBytes());
+        FileAttachmentDto fileInfo = new FileAttachmentDto();
+        fileInfo.setFilePath(tempDir.resolve("abcdef.jpg").toString());
+
+        // When
+        var resource = fileService.loadFileAsResource(fileInfo);
+
+        // Then
+        assertEquals(sharded.toFile(), resource.getFile());
+    }
+
+    @Test
+    void deleteFile_ShouldQueueStoredFile_WhenFileExists() throws IOException {
         // Given
         Path testFilePath = tempDir.resolve("test-delete.jpg");
         Files.write(testFilePath, "content".getBytes());
@@ -182,8 +628,181 @@ class FileServiceTest {
         fileService.deleteFile(testFileId);
 
         // Then
-        assertFalse(Files.exists(testFilePath));
+        ArgumentCaptor<BlobReclamation> queued = ArgumentCaptor.forClass(BlobReclamation.class);
+        verify(blobReclamationRepository).save(queued.capture());
+        assertEquals(testFilePath.toString(), queued.getValue().getStoragePath());
+        assertNull(queued.getValue().getContentHash());
+        assertTrue(Files.exists(testFilePath));
+        verify(fileAttachmentRepository).delete(testFileAttachment);
+        verify(storageQuotaService).recordRemoved("user-1", testSession.getId(), 1024L);
+    }
+
+    @Test
+    void deleteFile_ShouldKeepSharedBlob_WhenStillReferenced() throws IOException {
+        // Given
+        Path blobPath = tempDir.resolve("shared.jpg");
+        Files.write(blobPath, "content".getBytes());
+        
+        testFileAttachment.setFilePath(blobPath.toString());
+        testFileAttachment.setContentHash("shared");
+        when(fileAttachmentRepository.findById(testFileId)).thenReturn(Optional.of(testFileAttachment));
+        when(storedBlobRepository.findById("shared")).thenReturn(Optional.of(new StoredBlob("shared", blobPath.toString(), 7L)));
+        when(storedBlobRepository.deleteIfUnreferenced("shared")).thenReturn(0);
+
+        // When
+        fileService.deleteFile(testFileId);
+
+        // Then
+        assertTrue(Files.exists(blobPath));
+        verify(storedBlobRepository).decrementRefCount("shared");
         verify(fileAttachmentRepository).delete(testFileAttachment);
+        verify(blobReclamationRepository, never()).save(any());
+    }
+
+    @Test
+    void deleteFile_ShouldQueueBlob_WhenLastReferenceReleased() {
+        // Given
+        testFileAttachment.setFilePath("blob:ab/cd/abcd.jpg");
+        testFileAttachment.setContentHash("abcd");
+        when(fileAttachmentRepository.findById(testFileId)).thenReturn(Optional.of(testFileAttachment));
+        when(storedBlobRepository.findById("abcd")).thenReturn(Optional.of(new StoredBlob("abcd", "blob:ab/cd/abcd.jpg", 1024L)));
+        when(storedBlobRepository.deleteIfUnreferenced("abcd")).thenReturn(1);
+
+        // When
+        fileService.deleteFile(testFileId);
+
+        // Then: the reclaimer removes the bytes and thumbnails
+        ArgumentCaptor<BlobReclamation> queued = ArgumentCaptor.forClass(BlobReclamation.class);
+        verify(blobReclamationRepository).save(queued.capture());
+        assertEquals("blob:ab/cd/abcd.jpg", queued.getValue().getStoragePath());
+        assertEquals("abcd", queued.getValue().getContentHash());
+        verifyNoInteractions(blobStore, thumbnailService);
+    }
+
+    @Test
+    void deleteFile_ShouldQueueLegacyFile_WithoutReleasingBlobOfSameContent() throws IOException {
+        // Given: a legacy file hashed on download, whose content was also uploaded as a blob
+        Path legacyPath = tempDir.resolve("legacy.jpg");
+        Files.write(legacyPath, "content".getBytes());
+        testFileAttachment.setFilePath(legacyPath.toString());
+        testFileAttachment.setContentHash("abcd");
+        when(fileAttachmentRepository.findById(testFileId)).thenReturn(Optional.of(testFileAttachment));
+        when(storedBlobRepository.findById("abcd")).thenReturn(Optional.of(new StoredBlob("abcd", "blob:ab/cd/abcd.jpg", 7L)));
+
+        // When
+        fileService.deleteFile(testFileId);
+
+        // Then
+        ArgumentCaptor<BlobReclamation> queued = ArgumentCaptor.forClass(BlobReclamation.class);
+        verify(blobReclamationRepository).save(queued.capture());
+        assertEquals(legacyPath.toString(), queued.getValue().getStoragePath());
+        verify(storedBlobRepository, never()).decrementRefCount(any());
+        verify(storedBlobRepository, never()).deleteIfUnreferenced(any());
+    }
+
+    @Test
+    void deleteFile_ShouldKeepBytes_WhenContentIsUploadedAgainBeforeReclamation() throws IOException {
+        // Given: the queue behaves like its table
+        Set<String> queue = ConcurrentHashMap.newKeySet();
+        when(blobReclamationRepository.save(any(BlobReclamation.class))).thenAnswer(invocation -> {
+            BlobReclamation reclamation = invocation.getArgument(0);
+            queue.add(reclamation.getStoragePath());
+            return reclamation;
+        });
+        when(blobReclamationRepository.dequeue(any())).thenAnswer(invocation ->
+            queue.remove(invocation.<String>getArgument(0)) ? 1 : 0);
+
+        String hash = "2cb922ecae93d405c9b9631a154ff097e354a411d5444196a182a0ffcbe63071";
+        String key = "2c/b9/" + hash + ".png";
+        testFileAttachment.setFilePath("blob:" + key);
+        testFileAttachment.setContentHash(hash);
+        when(fileAttachmentRepository.findById(testFileId)).thenReturn(Optional.of(testFileAttachment));
+        when(storedBlobRepository.findById(hash)).thenReturn(Optional.of(new StoredBlob(hash, "blob:" + key, 3L)));
+        when(storedBlobRepository.deleteIfUnreferenced(hash)).thenReturn(1);
+        fileService.deleteFile(testFileId);
+        ArgumentCaptor<BlobReclamation> queued = ArgumentCaptor.forClass(BlobReclamation.class);
+        verify(blobReclamationRepository).save(queued.capture());
+
+        // The same bytes are uploaded again after the delete committed
+        stubReservation(hash);
+        when(fileAttachmentRepository.save(any(FileAttachment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        fileService.uploadFile(new MockMultipartFile("file", "again.png", "image/png", png("abc")), testMessage);
+
+        // When
+        boolean reclaimed = fileService.reclaimBlob(queued.getValue());
+
+        // Then
+        assertFalse(reclaimed);
+        verify(blobStore).put(eq(key), any(Path.class));
+        verify(blobStore, never()).delete(any());
+        verify(thumbnailService, never()).evict(any());
+    }
+
+    @Test
+    void deleteSessionAttachments_ShouldQueueFreedBlobs_BeforeRemovingRows() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        when(fileAttachmentRepository.deleteAllInSession(sessionId)).thenReturn(5000);
+
+        // When
+        int deleted = fileService.deleteSessionAttachments(sessionId, "user-1");
+
+        // Then
+        assertEquals(5000, deleted);
+        InOrder order = inOrder(storageQuotaService, storedBlobRepository, blobReclamationRepository, fileAttachmentRepository);
+        order.verify(storageQuotaService).recordSessionDeleted("user-1", sessionId);
+        order.verify(storedBlobRepository).releaseSessionReferences(sessionId);
+        order.verify(blobReclamationRepository).enqueueUnreferencedBlobsOfSession(sessionId);
+        // Files are told apart from blobs by the blob rows, so they are queued before those go
+        order.verify(blobReclamationRepository).enqueueUnsharedFilesOfSession(sessionId);
+        order.verify(storedBlobRepository).deleteUnreferencedBlobsOfSession(sessionId);
+        order.verify(fileAttachmentRepository).deleteAllInSession(sessionId);
+        verifyNoInteractions(blobStore);
+    }
+
+    @Test
+    void reclaimBlob_ShouldDeleteBytes_WhenStillUnreferenced() throws IOException {
+        // Given
+        BlobReclamation reclamation = new BlobReclamation("blob:ab/cd/abcd.jpg", "abcd");
+        when(blobReclamationRepository.dequeue("blob:ab/cd/abcd.jpg")).thenReturn(1);
+
+        // When
+        boolean reclaimed = fileService.reclaimBlob(reclamation);
+
+        // Then
+        assertTrue(reclaimed);
+        verify(storedBlobRepository).deleteUnreferencedAt("blob:ab/cd/abcd.jpg");
+        verify(blobStore).delete("ab/cd/abcd.jpg");
+        verify(thumbnailService).evict("abcd");
+    }
+
+    @Test
+    void reclaimBlob_ShouldKeepBytes_WhenContentWasUploadedAgain() throws IOException {
+        // Given
+        BlobReclamation reclamation = new BlobReclamation("blob:ab/cd/abcd.jpg", "abcd");
+        when(blobReclamationRepository.dequeue("blob:ab/cd/abcd.jpg")).thenReturn(1);
+        when(storedBlobRepository.existsByStoragePath("blob:ab/cd/abcd.jpg")).thenReturn(true);
+
+        // When
+        boolean reclaimed = fileService.reclaimBlob(reclamation);
+
+        // Then
+        assertFalse(reclaimed);
+        verify(blobStore, never()).delete(any());
+    }
+
+    @Test
+    void reclaimBlob_ShouldSkip_WhenAlreadyTakenOffQueue() throws IOException {
+        // Given
+        BlobReclamation reclamation = new BlobReclamation("blob:ab/cd/abcd.jpg", "abcd");
+        when(blobReclamationRepository.dequeue("blob:ab/cd/abcd.jpg")).thenReturn(0);
+
+        // When
+        boolean reclaimed = fileService.reclaimBlob(reclamation);
+
+        // Then
+        assertFalse(reclaimed);
+        verify(blobStore, never()).delete(any());
     }
 
     @Test
@@ -225,17 +844,74 @@ class FileServiceTest {
         verify(fileAttachmentRepository).existsById(testFileId);
     }
 
+    @Test
+    void migrateFilePathsToNewDirectory_ShouldRewritePathPrefixInBulk() {
+        // Given
+        when(fileAttachmentRepository.replaceFilePathPrefix("./uploads/", "/data/uploads/")).thenReturn(5);
+
+        // When
+        int updated = fileService.migrateFilePathsToNewDirectory("./uploads", "/data/uploads");
+
+        // Then
+        assertEquals(5, updated);
+        verify(storedBlobRepository).replaceStoragePathPrefix("./uploads/", "/data/uploads/");
+        verify(fileAttachmentRepository, never()).findAll();
+    }
+
     @Test
     void getTotalFileSizeBySessionId_ShouldReturnTotalSize() {
         // Given
         UUID sessionId = UUID.randomUUID();
-        when(fileAttachmentRepository.calculateTotalFileSizeBySessionId(sessionId)).thenReturn(5120L);
+        when(storageQuotaService.getSessionUsage(sessionId)).thenReturn(5120L);
 
         // When
         long result = fileService.getTotalFileSizeBySessionId(sessionId);
 
         // Then
         assertEquals(5120L, result);
-        verify(fileAttachmentRepository).calculateTotalFileSizeBySessionId(sessionId);
+        verifyNoInteractions(fileAttachmentRepository);
+    }
+
+    /**
+     * Stub a first upload of {@code hash} that reserves the blob and claims it
+     */
+    private void stubReservation(String hash) {
+        AtomicReference<StoredBlob> reserved = new AtomicReference<>();
+        when(storedBlobRepository.incrementRefCount(hash)).thenReturn(0);
+        when(storedBlobRepository.saveAndFlush(any(StoredBlob.class))).thenAnswer(invocation -> {
+            reserved.set(invocation.getArgument(0));
+            return reserved.get();
+        });
+        when(storedBlobRepository.findById(hash)).thenAnswer(invocation -> Optional.ofNullable(reserved.get()));
+        when(storedBlobRepository.claimReserved(hash)).thenReturn(1);
+    }
+
+    private FileAttachment pending(UUID id) {
+        FileAttachment attachment = new FileAttachment("p.png", "image/png", "blob:ab/cd/p.png", 3L, null);
+        attachment.setId(id);
+        attachment.setOwnerId("user-1");
+        attachment.setExpiresAt(LocalDateTime.now().plusMinutes(5));
+        return attachment;
+    }
+
+    private static byte[] png(String body) {
+        return withHeader(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}, body);
+    }
+
+    private static byte[] jpeg(String body) {
+        return withHeader(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}, body);
+    }
+
+    private static Flux<DataBuffer> buffers(byte[] content, int bufferSize) {
+        return Flux.range(0, (content.length + bufferSize - 1) / bufferSize)
+            .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                Arrays.copyOfRange(content, i * bufferSize, Math.min(content.length, (i + 1) * bufferSize))));
+    }
+
+    private static byte[] withHeader(byte[] header, String body) {
+        byte[] bytes = body.getBytes();
+        byte[] content = Arrays.copyOf(header, header.length + bytes.length);
+        System.arraycopy(bytes, 0, content, header.length, bytes.length);
+        return content;
     }
-}
\ No newline at end of file
+}
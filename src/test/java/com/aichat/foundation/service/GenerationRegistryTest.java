@@ -0,0 +1,71 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.dto.StreamResponse;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerationRegistryTest {
+
+    private final GenerationRegistry registry = new GenerationRegistry();
+    private final UUID sessionId = UUID.randomUUID();
+    private final UUID messageId = UUID.randomUUID();
+
+    @Test
+    void cancel_ShouldCancelUpstream_AndEndWithAbortedEvent() {
+        // Given
+        Sinks.Many<StreamResponse> model = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicBoolean upstreamCancelled = new AtomicBoolean();
+        List<StreamResponse> received = new ArrayList<>();
+        AtomicBoolean completed = new AtomicBoolean();
+        registry.register(sessionId, messageId, "user", model.asFlux().doOnCancel(() -> upstreamCancelled.set(true)))
+            .subscribe(received::add, error -> fail(error), () -> completed.set(true));
+        model.tryEmitNext(StreamResponse.streamChunk(sessionId, messageId, "Hel"));
+
+        // When
+        boolean cancelled = registry.cancel(messageId, "user");
+
+        // Then
+        assertTrue(cancelled);
+        assertTrue(upstreamCancelled.get());
+        assertTrue(completed.get());
+        assertEquals(List.of("stream_chunk", "stream_aborted"), received.stream().map(StreamResponse::getType).toList());
+        assertFalse(registry.isGenerating(messageId));
+    }
+
+    @Test
+    void cancel_ShouldRefuse_OtherUsersAndFinishedReplies() {
+        // Given
+        Sinks.Many<StreamResponse> model = Sinks.many().unicast().onBackpressureBuffer();
+        registry.register(sessionId, messageId, "user", model.asFlux()).subscribe();
+
+        // When & Then
+        assertFalse(registry.cancel(messageId, "someone-else"));
+        assertTrue(registry.isGenerating(messageId));
+
+        model.tryEmitComplete();
+        assertFalse(registry.isGenerating(messageId));
+        assertFalse(registry.cancel(messageId, "user"));
+    }
+
+    @Test
+    void register_ShouldPassStreamThrough_WhenNotCancelled() {
+        // Given
+        Flux<StreamResponse> model = Flux.just(
+            StreamResponse.streamStart(sessionId, messageId),
+            StreamResponse.streamEnd(sessionId, messageId));
+
+        // When
+        List<StreamResponse> received = registry.register(sessionId, messageId, "user", model).collectList().block();
+
+        // Then
+        assertEquals(List.of("stream_start", "stream_end"), received.stream().map(StreamResponse::getType).toList());
+    }
+}
@@ -0,0 +1,174 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.exception.FileStorageException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePreprocessorTest {
+
+    private ImagePreprocessor imagePreprocessor;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        imagePreprocessor = new ImagePreprocessor(Runnable::run);
+        ReflectionTestUtils.setField(imagePreprocessor, "enabled", true);
+        ReflectionTestUtils.setField(imagePreprocessor, "maxEdge", 256);
+        ReflectionTestUtils.setField(imagePreprocessor, "jpegQuality", 0.85f);
+        ReflectionTestUtils.setField(imagePreprocessor, "maxPixels", 40_000_000L);
+        ReflectionTestUtils.setField(imagePreprocessor, "cacheDir", tempDir.resolve("cache").toString());
+    }
+
+    @Test
+    void prepareForModel_ShouldDownscaleToMaxEdge_WhenImageIsLarge() throws IOException {
+        // Given
+        Path original = png(1200, 800);
+
+        // When
+        Path result = imagePreprocessor.prepareForModel("hash-large", original);
+
+        // Then
+        assertEquals(tempDir.resolve("cache").resolve("hash-large-model256.jpg"), result);
+        BufferedImage decoded = ImageIO.read(result.toFile());
+        assertEquals(256, decoded.getWidth());
+        assertEquals(171, decoded.getHeight());
+    }
+
+    @Test
+    void prepareForModel_ShouldServeFromCache_OnSecondCall() throws IOException {
+        // Given
+        Path original = png(1200, 800);
+        Path first = imagePreprocessor.prepareForModel("hash-cached", original);
+        Files.delete(original);
+
+        // When
+        Path second = imagePreprocessor.prepareForModel("hash-cached", original);
+
+        // Then
+        assertEquals(first, second);
+    }
+
+    @Test
+    void prepareForModel_ShouldReturnOriginal_WhenAlreadySmall() throws IOException {
+        // Given
+        Path original = png(100, 50);
+
+        // When
+        Path result = imagePreprocessor.prepareForModel("hash-small", original);
+
+        // Then
+        assertSame(original, result);
+    }
+
+    @Test
+    void prepareForModel_ShouldReturnOriginal_WhenFormatNotDecodable() throws IOException {
+        // Given
+        Path original = Files.write(tempDir.resolve("notes.webp"), "not an image".getBytes());
+
+        // When
+        Path result = imagePreprocessor.prepareForModel("hash-unknown", original);
+
+        // Then
+        assertSame(original, result);
+    }
+
+    @Test
+    void prepareForModel_ShouldSendOriginalWithoutDecoding_WhenPixelCountExceedsLimit() throws Exception {
+        // Given
+        ReflectionTestUtils.setField(imagePreprocessor, "maxPixels", 1_000L);
+        Path original = png(1200, 800);
+
+        // When
+        Path result = imagePreprocessor.prepareForModel("hash-bomb", original);
+        Optional<Path> async = imagePreprocessor.prepareForModelAsync("hash-bomb", new FileSystemResource(original)).get();
+
+        // Then
+        assertSame(original, result);
+        assertTrue(async.isEmpty());
+    }
+
+    @Test
+    void checkDimensions_ShouldReject_WhenPixelCountExceedsLimit() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(imagePreprocessor, "maxPixels", 1_000L);
+        FileSystemResource bomb = new FileSystemResource(png(1200, 800));
+        FileSystemResource small = new FileSystemResource(png(20, 20));
+
+        // When & Then
+        assertThrows(FileStorageException.class, () -> imagePreprocessor.checkDimensions(bomb));
+        assertDoesNotThrow(() -> imagePreprocessor.checkDimensions(small));
+    }
+
+    @Test
+    void prepareForModelAsync_ShouldDownscaleFromUploadSource() throws Exception {
+        // Given
+        MockMultipartFile upload = new MockMultipartFile("file", "big.png", "image/png", Files.readAllBytes(png(1200, 800)));
+
+        // When
+        Optional<Path> result = imagePreprocessor.prepareForModelAsync("hash-upload", upload).get();
+
+        // Then
+        assertTrue(result.isPresent());
+        assertEquals(256, ImageIO.read(result.get().toFile()).getWidth());
+    }
+
+    @Test
+    void prepareForModelAsync_ShouldCompleteEmpty_WhenOriginalShouldBeSent() throws Exception {
+        // Given
+        MockMultipartFile upload = new MockMultipartFile("file", "small.png", "image/png", Files.readAllBytes(png(100, 50)));
+
+        // When
+        Optional<Path> result = imagePreprocessor.prepareForModelAsync("hash-upload-small", upload).get();
+
+        // Then
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void prepareForModelAsync_ShouldShareRunningPreparation_ForSameImage() throws Exception {
+        // Given
+        List<Runnable> queued = new ArrayList<>();
+        ImagePreprocessor queuedPreprocessor = new ImagePreprocessor(queued::add);
+        ReflectionTestUtils.setField(queuedPreprocessor, "enabled", true);
+        ReflectionTestUtils.setField(queuedPreprocessor, "maxEdge", 256);
+        ReflectionTestUtils.setField(queuedPreprocessor, "jpegQuality", 0.85f);
+        ReflectionTestUtils.setField(queuedPreprocessor, "maxPixels", 40_000_000L);
+        ReflectionTestUtils.setField(queuedPreprocessor, "cacheDir", tempDir.resolve("cache").toString());
+        FileSystemResource original = new FileSystemResource(png(1200, 800));
+
+        // When
+        CompletableFuture<Optional<Path>> first = queuedPreprocessor.prepareForModelAsync("hash-shared", original);
+        CompletableFuture<Optional<Path>> second = queuedPreprocessor.prepareForModelAsync("hash-shared", original);
+
+        // Then
+        assertEquals(1, queued.size());
+        queued.get(0).run();
+        assertEquals(first.get(), second.get());
+        assertTrue(first.get().isPresent());
+    }
+
+    private Path png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Path file = tempDir.resolve(width + "x" + height + ".png");
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+}
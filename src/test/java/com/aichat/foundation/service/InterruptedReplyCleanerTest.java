@@ -0,0 +1,38 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.entity.MessageStatus;
+import com.aichat.foundation.repository.MessageRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InterruptedReplyCleanerTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private InterruptedReplyCleaner cleaner;
+
+    @Test
+    void afterSingletonsInstantiated_ShouldMarkStreamingRepliesAborted() {
+        // Given
+        when(messageRepository.replaceStatus(MessageStatus.STREAMING, MessageStatus.ABORTED)).thenReturn(2);
+
+        // When
+        cleaner.afterSingletonsInstantiated();
+
+        // Then
+        verify(messageRepository).replaceStatus(MessageStatus.STREAMING, MessageStatus.ABORTED);
+        verify(transactionManager).commit(any());
+    }
+}
@@ -0,0 +1,100 @@
+package com.aichat.foundation.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the regex-based language detection that {@code ModelService} used before with
+ * {@link LanguageDetector}, on a fresh message and on a later turn of the same session.
+ *
+ * Not part of the test suite; see "Running Benchmarks" in the README.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LanguageDetectorBenchmark {
+
+    @Param({"english-short", "english-long", "french", "chinese"})
+    private String message;
+
+    private String text;
+    private LanguageDetector languageDetector;
+    private UUID sessionId;
+
+    @Setup
+    public void setUp() {
+        text = switch (message) {
+            case "english-short" -> "What is in this picture?";
+            case "english-long" -> "Could you look at the attached screenshot and explain why the build fails? ".repeat(40);
+            case "french" -> "Pouvez-vous regarder la capture d'écran et m'expliquer pourquoi la compilation échoue ? ".repeat(4);
+            case "chinese" -> "请看一下附件中的截图，并解释为什么构建失败了？".repeat(4);
+            default -> throw new IllegalArgumentException(message);
+        };
+        languageDetector = new LanguageDetector();
+        ReflectionTestUtils.setField(languageDetector, "sessionCacheSize", 1000);
+        sessionId = UUID.randomUUID();
+        languageDetector.detect(sessionId, text);
+    }
+
+    @Benchmark
+    public String regexScans() {
+        return detectWithRegexes(text);
+    }
+
+    @Benchmark
+    public LanguageDetector.Language singlePass() {
+        return languageDetector.detect(text);
+    }
+
+    @Benchmark
+    public LanguageDetector.Language singlePassLaterTurn() {
+        return languageDetector.detect(sessionId, text);
+    }
+
+    /** The detection replaced by {@link LanguageDetector}, kept verbatim for comparison */
+    static String detectWithRegexes(String userMessage) {
+        if (userMessage == null || userMessage.trim().isEmpty()) {
+            return "Please respond in the same language as the user's question.";
+        }
+        boolean hasChinese = userMessage.matches(".*[\u4e00-\u9fff]+.*");
+        boolean hasJapanese = userMessage.matches(".*[\u3040-\u309f\u30a0-\u30ff]+.*");
+        boolean hasKorean = userMessage.matches(".*[\uac00-\ud7af]+.*");
+        boolean hasRussian = userMessage.matches(".*[\u0400-\u04ff]+.*");
+        boolean hasArabic = userMessage.matches(".*[\u0600-\u06ff]+.*");
+        if (hasChinese) {
+            return "请使用中文回答用户的问题。务必保持与用户问题相同的语言。";
+        } else if (hasJapanese) {
+            return "ユーザーの質問に日本語で答えてください。ユーザーの質問と同じ言語を保ってください。";
+        } else if (hasKorean) {
+            return "사용자의 질문에 한국어로 답변해 주세요. 사용자 질문과 같은 언어를 유지해 주세요.";
+        } else if (hasRussian) {
+            return "Пожалуйста, отвечайте на вопросы пользователя на русском языке. Сохраняйте тот же язык, что и в вопросе пользователя.";
+        } else if (hasArabic) {
+            return "يرجى الإجابة على أسئلة المستخدم باللغة العربية. حافظ على نفس لغة سؤال المستخدم.";
+        }
+        return "Please respond in English. Keep your response clear and helpful.";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LanguageDetectorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.service.LanguageDetector.Language;
+import com.aichat.foundation.service.LanguageDetector.Script;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LanguageDetectorTest {
+
+    private LanguageDetector languageDetector;
+
+    @BeforeEach
+    void setUp() {
+        languageDetector = new LanguageDetector();
+        ReflectionTestUtils.setField(languageDetector, "sessionCacheSize", 2);
+    }
+
+    @Test
+    void detect_ShouldMatchEachSupportedScript() {
+        assertEquals(Language.CHINESE, languageDetector.detect("这张图片里有什么？"));
+        assertEquals(Language.JAPANESE, languageDetector.detect("この画像には何が写っていますか？"));
+        assertEquals(Language.KOREAN, languageDetector.detect("이 이미지에 무엇이 있나요?"));
+        assertEquals(Language.RUSSIAN, languageDetector.detect("Что изображено на этой картинке?"));
+        assertEquals(Language.ARABIC, languageDetector.detect("ماذا يوجد في هذه الصورة؟"));
+        assertEquals(Language.ENGLISH, languageDetector.detect("What is in this picture?"));
+    }
+
+    @Test
+    void detect_ShouldDecideByMajority_NotByAnySingleCharacter() {
+        // Given: a foreign word in otherwise English text, and English words in Chinese text
+        String english = "How do I say thank you in Chinese, is it 谢谢?";
+        String chinese = "这个 error 怎么 fix？";
+
+        // When & Then
+        assertEquals(Language.ENGLISH, languageDetector.detect(english));
+        assertEquals(Language.CHINESE, languageDetector.detect(chinese));
+    }
+
+    @Test
+    void detect_ShouldTreatKanjiWithKanaAsJapanese() {
+        assertEquals(Script.KANA, LanguageDetector.dominantScript("東京都新宿区に行きたい"));
+        assertEquals(Script.HAN, LanguageDetector.dominantScript("我想去东京的新宿区看看の"));
+    }
+
+    @Test
+    void detect_ShouldClassifyCommonLatinLanguages() {
+        assertEquals(Language.FRENCH, languageDetector.detect("Pouvez-vous me dire ce que vous voyez dans cette image ?"));
+        assertEquals(Language.GERMAN, languageDetector.detect("Kannst du mir sagen, was auf diesem Bild zu sehen ist?"));
+        assertEquals(Language.SPANISH, languageDetector.detect("¿Puedes decirme qué hay en esta imagen, por favor?"));
+        assertEquals(Language.PORTUGUESE, languageDetector.detect("Você pode me dizer o que tem nesta imagem? Não consigo ver."));
+        assertEquals(Language.ITALIAN, languageDetector.detect("Puoi dirmi che cosa c'è in questa immagine? Non riesco a vedere."));
+    }
+
+    @Test
+    void detect_ShouldFallBackToEnglish_WhenLatinEvidenceIsWeak() {
+        assertEquals(Language.ENGLISH, languageDetector.detect("ok"));
+        assertEquals(Language.ENGLISH, languageDetector.detect("HTTP 404"));
+    }
+
+    @Test
+    void detect_ShouldAskForSameLanguage_WhenTextHasNoLettersOrUnknownScript() {
+        assertEquals(Language.UNKNOWN, languageDetector.detect("   "));
+        assertEquals(Language.UNKNOWN, languageDetector.detect("1 + 1 = ?"));
+        assertEquals(Language.UNKNOWN, languageDetector.detect("Τι βλέπεις σε αυτή την εικόνα;"));
+        assertEquals(Language.UNKNOWN, languageDetector.detect(null));
+    }
+
+    @Test
+    void detect_ShouldReuseSessionLanguage_WhileScriptStaysTheSame() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        assertEquals(Language.FRENCH, languageDetector.detect(sessionId, "Bonjour, pouvez-vous m'aider avec cette question ?"));
+
+        // When: a later Latin message without French trigrams
+        Language sameScript = languageDetector.detect(sessionId, "Merci beaucoup, parfait");
+
+        // Then
+        assertEquals(Language.FRENCH, sameScript);
+        assertEquals(Language.CHINESE, languageDetector.detect(sessionId, "请用中文回答"));
+    }
+
+    @Test
+    void detect_ShouldNotRememberShortLatinMessages() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        languageDetector.detect(sessionId, "ok");
+
+        // When
+        Language language = languageDetector.detect(sessionId, "Kannst du mir sagen, was auf diesem Bild zu sehen ist?");
+
+        // Then
+        assertEquals(Language.GERMAN, language);
+    }
+
+    @Test
+    void detect_ShouldEvictLeastRecentlyUsedSessions() {
+        // Given
+        UUID first = UUID.randomUUID();
+        languageDetector.detect(first, "Bonjour, pouvez-vous m'aider avec cette question ?");
+        languageDetector.detect(UUID.randomUUID(), "What is in this picture, please?");
+        languageDetector.detect(UUID.randomUUID(), "What is in this picture, please?");
+
+        // When: the first session was evicted, so its message is classified afresh
+        Language language = languageDetector.detect(first, "What do you see in this picture?");
+
+        // Then
+        assertEquals(Language.ENGLISH, language);
+    }
+}
@@ -0,0 +1,156 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.entity.FileAttachment;
+import com.aichat.foundation.entity.StoredBlob;
+import com.aichat.foundation.repository.BlobReclamationRepository;
+import com.aichat.foundation.repository.FileAttachmentRepository;
+import com.aichat.foundation.repository.StoredBlobRepository;
+import com.aichat.foundation.storage.BlobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrphanBlobCollectorTest {
+
+    @Mock
+    private StoredBlobRepository storedBlobRepository;
+
+    @Mock
+    private FileAttachmentRepository fileAttachmentRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path root;
+
+    private OrphanBlobCollector collector;
+
+    @BeforeEach
+    void setUp() {
+        collector = new OrphanBlobCollector(storedBlobRepository, fileAttachmentRepository, transactionManager);
+        ReflectionTestUtils.setField(collector, "root", root.toString());
+        ReflectionTestUtils.setField(collector, "cacheDir", root.resolve(".derived").toString());
+        ReflectionTestUtils.setField(collector, "gracePeriod", Duration.ofHours(1));
+        ReflectionTestUtils.setField(collector, "batchSize", 2);
+    }
+
+    @Test
+    void collect_ShouldRemoveOnlyOldUnreferencedFiles_AndReportBytes() throws IOException {
+        // Given
+        Path liveBlob = file("ab/cd/abcd1234.jpg", 10, true);
+        Path legacy = file("legacy.png", 20, true);
+        Path orphan = file("ef/01/ef012345.jpg", 30, true);
+        Path staleStaging = file(".staging/upload.tmp-1", 40, true);
+        Path freshOrphan = file("12/34/12345678.jpg", 50, false);
+        Path derived = file(".derived/abcd1234-model1280.jpg", 60, true);
+
+        when(storedBlobRepository.findByContentHashGreaterThanOrderByContentHashAsc(eq(""), any()))
+            .thenReturn(List.of(new StoredBlob("abcd1234", "blob:ab/cd/abcd1234.jpg", 10L)));
+        FileAttachment legacyAttachment = new FileAttachment("legacy.png", "image/png", legacy.toString(), 20L, null);
+        legacyAttachment.setId(UUID.randomUUID());
+        when(fileAttachmentRepository.findLegacyFilesAfter(any(), any()))
+            .thenReturn(List.of(legacyAttachment));
+
+        // When
+        OrphanBlobCollector.Report report = collector.collect();
+
+        // Then
+        assertEquals(70, report.reclaimedBytes());
+        assertEquals(2, report.deletedFiles());
+        assertEquals(5, report.scannedFiles());
+        assertTrue(Files.exists(liveBlob));
+        assertTrue(Files.exists(legacy));
+        assertTrue(Files.exists(freshOrphan));
+        assertTrue(Files.exists(derived));
+        assertFalse(Files.exists(orphan));
+        assertFalse(Files.exists(staleStaging));
+    }
+
+    @Test
+    void collect_ShouldKeepLegacyFile_AfterItsDownloadStoredAContentHash() throws IOException {
+        // Given
+        Path legacy = file("legacy.png", 20, true);
+        FileAttachment legacyAttachment = new FileAttachment("legacy.png", "image/png", legacy.toString(), 20L, null);
+        legacyAttachment.setId(UUID.randomUUID());
+        List<FileAttachment> attachments = List.of(legacyAttachment,
+            new FileAttachment("shared.jpg", "image/jpeg", "blob:ab/cd/abcd1234.jpg", 10L, null));
+        when(fileAttachmentRepository.findById(legacyAttachment.getId())).thenReturn(Optional.of(legacyAttachment));
+        when(fileAttachmentRepository.save(legacyAttachment)).thenReturn(legacyAttachment);
+        when(fileAttachmentRepository.findLegacyFilesAfter(any(), any())).thenAnswer(invocation -> attachments.stream()
+            .filter(attachment -> !attachment.getFilePath().startsWith("blob:"))
+            .toList());
+        when(storedBlobRepository.findByContentHashGreaterThanOrderByContentHashAsc(eq(""), any())).thenReturn(List.of());
+
+        FileService fileService = new FileService(fileAttachmentRepository, storedBlobRepository,
+            mock(BlobReclamationRepository.class), mock(ThumbnailService.class), mock(ImagePreprocessor.class),
+            mock(BlobStore.class), mock(StorageQuotaService.class), transactionManager);
+        ReflectionTestUtils.setField(fileService, "uploadDir", root.toString());
+        fileService.getFileInfo(legacyAttachment.getId());
+
+        // When
+        OrphanBlobCollector.Report report = collector.collect();
+
+        // Then
+        assertNotNull(legacyAttachment.getContentHash());
+        assertEquals(0, report.deletedFiles());
+        assertTrue(Files.exists(legacy));
+    }
+
+    @Test
+    void markLivePaths_ShouldPageThroughBlobs_AndKeepShardedLegacyLocation() {
+        // Given
+        when(storedBlobRepository.findByContentHashGreaterThanOrderByContentHashAsc(eq(""), any()))
+            .thenReturn(List.of(new StoredBlob("aaaa", "blob:aa/aa/aaaa.jpg", 1L),
+                                new StoredBlob("bbbb", "/old/uploads/bbbb5678.jpg", 1L)));
+        when(storedBlobRepository.findByContentHashGreaterThanOrderByContentHashAsc(eq("bbbb"), any()))
+            .thenReturn(List.of());
+        when(fileAttachmentRepository.findLegacyFilesAfter(any(), any()))
+            .thenReturn(List.of());
+
+        // When
+        long[] live = collector.markLivePaths(root);
+
+        // Then
+        assertEquals(3, live.length);
+        assertTrue(contains(live, root.resolve("aa/aa/aaaa.jpg")));
+        assertTrue(contains(live, Path.of("/old/uploads/bbbb5678.jpg")));
+        assertTrue(contains(live, root.resolve("bb/bb/bbbb5678.jpg")));
+    }
+
+    private boolean contains(long[] live, Path path) {
+        return Arrays.binarySearch(live, OrphanBlobCollector.fingerprint(path)) >= 0;
+    }
+
+    private Path file(String relative, int size, boolean old) throws IOException {
+        Path file = root.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        if (old) {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,50 @@
+package com.aichat.foundation.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PendingAttachmentCleanerTest {
+
+    @Mock
+    private FileService fileService;
+
+    @InjectMocks
+    private PendingAttachmentCleaner cleaner;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cleaner, "batchSize", 2);
+    }
+
+    @Test
+    void removeExpired_ShouldContinueUntilBatchIsNotFull() {
+        // Given
+        when(fileService.deleteExpiredPendingAttachments(2)).thenReturn(2, 2, 1);
+
+        // When
+        cleaner.removeExpired();
+
+        // Then
+        verify(fileService, times(3)).deleteExpiredPendingAttachments(2);
+    }
+
+    @Test
+    void removeExpired_ShouldStopQuietly_WhenBatchFails() {
+        // Given
+        when(fileService.deleteExpiredPendingAttachments(2)).thenReturn(2).thenThrow(new IllegalStateException("db down"));
+
+        // When
+        cleaner.removeExpired();
+
+        // Then
+        verify(fileService, times(2)).deleteExpiredPendingAttachments(2);
+    }
+}
@@ -0,0 +1,314 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.dto.ChatMessageRequest;
+import com.aichat.foundation.dto.ChatSessionDto;
+import com.aichat.foundation.dto.StreamResponse;
+import com.aichat.foundation.entity.ChatSessionRow;
+import com.aichat.foundation.entity.Message;
+import com.aichat.foundation.entity.MessageRow;
+import com.aichat.foundation.entity.MessageStatus;
+import com.aichat.foundation.entity.MessageType;
+import com.aichat.foundation.exception.ChatServiceException;
+import com.aichat.foundation.exception.FileStorageException;
+import com.aichat.foundation.repository.ReactiveChatSessionRepository;
+import com.aichat.foundation.repository.ReactiveMessageRepository;
+import com.aichat.foundation.routing.ModelRoute;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveChatServiceTest {
+
+    @Mock
+    private ReactiveChatSessionRepository chatSessionRepository;
+
+    @Mock
+    private ReactiveMessageRepository messageRepository;
+
+    @Mock
+    private ModelService modelService;
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private ImagePreprocessor imagePreprocessor;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private ModelRoute textRoute;
+
+    private final GenerationRegistry generationRegistry = new GenerationRegistry();
+
+    private ReactiveChatService chatService;
+
+    private ChatSessionRow testSession;
+    private String testUserId;
+    private UUID testSessionId;
+
+    @BeforeEach
+    void setUp() {
+        testUserId = "test-user";
+        testSession = ChatSessionRow.create("Test Chat", testUserId, null);
+        testSessionId = testSession.getId();
+
+        chatService = new ReactiveChatService(chatSessionRepository, messageRepository, modelService, fileService,
+            imagePreprocessor, generationRegistry, transactionalOperator);
+        ReflectionTestUtils.setField(chatService, "maxImagesPerMessage", 8);
+        ReflectionTestUtils.setField(chatService, "maxImagePayloadBytes", 1024L);
+
+        lenient().when(transactionalOperator.transactional(ArgumentMatchers.<Mono<Object>>any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void createSession_ShouldSaveSession() {
+        // Given
+        when(chatSessionRepository.save(any(ChatSessionRow.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(messageRepository.countBySessionId(any())).thenReturn(Mono.just(0L));
+
+        // When
+        ChatSessionDto result = chatService.createSession("New Chat Session", testUserId, null).block();
+
+        // Then
+        assertNotNull(result.getId());
+        assertEquals("New Chat Session", result.getTitle());
+        assertEquals(testUserId, result.getUserId());
+        assertEquals("ACTIVE", result.getStatus());
+        assertEquals(0, result.getMessageCount());
+    }
+
+    @Test
+    void createSession_ShouldFail_WhenModelRouteUnknown() {
+        // Given
+        when(modelService.hasRoute("huge")).thenReturn(false);
+
+        // When & Then
+        assertThrows(ChatServiceException.class, () -> chatService.createSession("Chat", testUserId, "huge").block());
+        verify(chatSessionRepository, never()).save(any());
+    }
+
+    @Test
+    void getSession_ShouldBeEmpty_WhenSessionNotFound() {
+        // Given
+        when(chatSessionRepository.findByIdAndUserId(testSessionId, testUserId)).thenReturn(Mono.empty());
+
+        // When
+        ChatSessionDto result = chatService.getSession(testSessionId, testUserId).block();
+
+        // Then
+        assertNull(result);
+    }
+
+    @Test
+    void deleteSession_ShouldDeleteAttachmentsBeforeMessagesAndSession() {
+        // Given
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(Mono.just(true));
+        when(messageRepository.deleteBySessionId(testSessionId)).thenReturn(Mono.just(2));
+        when(chatSessionRepository.deleteByIdAndUserId(testSessionId, testUserId)).thenReturn(Mono.just(1));
+
+        // When
+        Boolean result = chatService.deleteSession(testSessionId, testUserId).block();
+
+        // Then
+        assertTrue(result);
+        InOrder order = inOrder(fileService, messageRepository, chatSessionRepository);
+        order.verify(fileService).deleteSessionAttachments(testSessionId, testUserId);
+        order.verify(messageRepository).deleteBySessionId(testSessionId);
+        order.verify(chatSessionRepository).deleteByIdAndUserId(testSessionId, testUserId);
+    }
+
+    @Test
+    void deleteSession_ShouldReturnFalse_WhenSessionNotFound() {
+        // Given
+        when(chatSessionRepository.existsByIdAndUserId(testSessionId, testUserId)).thenReturn(Mono.just(false));
+
+        // When
+        Boolean result = chatService.deleteSession(testSessionId, testUserId).block();
+
+        // Then
+        assertFalse(result);
+        verifyNoInteractions(fileService);
+        verify(messageRepository, never()).deleteBySessionId(any());
+    }
+
+    @Test
+    void getSessionMessages_ShouldReturnMessagesWithAttachments() {
+        // Given
+        MessageRow userMessage = MessageRow.create(testSessionId, "Hello", MessageType.USER);
+        MessageRow assistantMessage = MessageRow.create(testSessionId, "Hi there!", MessageType.ASSISTANT);
+
+        when(chatSessionRepository.findByIdAndUserId(testSessionId, testUserId)).thenReturn(Mono.just(testSession));
+        when(messageRepository.findBySessionIdOrderByCreatedAtAsc(testSessionId)).thenReturn(Flux.just(userMessage, assistantMessage));
+        when(fileService.getFileAttachmentsByMessageId(any())).thenReturn(List.of());
+
+        // When
+        var result = chatService.getSessionMessages(testSessionId, testUserId).collectList().block();
+
+        // Then
+        assertEquals(2, result.size());
+        assertEquals("Hello", result.get(0).getContent());
+        assertEquals("ASSISTANT", result.get(1).getType());
+        verify(fileService).getFileAttachmentsByMessageId(userMessage.getId());
+    }
+
+    @Test
+    void getSessionMessages_ShouldFail_WhenSessionNotFound() {
+        // Given
+        when(chatSessionRepository.findByIdAndUserId(testSessionId, testUserId)).thenReturn(Mono.empty());
+
+        // When & Then
+        assertThrows(ChatServiceException.class,
+            () -> chatService.getSessionMessages(testSessionId, testUserId).blockLast());
+        verify(messageRepository, never()).findBySessionIdOrderByCreatedAtAsc(any());
+    }
+
+    @Test
+    void processTextMessage_ShouldSaveReply_BeforeStreamEnds() {
+        // Given
+        ChatMessageRequest request = new ChatMessageRequest(testSessionId, "Hello", null);
+        List<MessageRow> saved = stubTextTurn();
+        when(modelService.processTextRequest(eq(textRoute), eq(testSessionId), any(), eq("prompt")))
+            .thenReturn(Flux.just(StreamResponse.streamChunk(testSessionId, UUID.randomUUID(), "Hi "),
+                StreamResponse.streamChunk(testSessionId, UUID.randomUUID(), "there")));
+
+        // When
+        List<StreamResponse> responses = chatService.processTextMessage(request, testUserId).collectList().block();
+
+        // Then
+        assertEquals(2, responses.size());
+        MessageRow reply = saved.get(1);
+        assertEquals(MessageType.ASSISTANT, reply.getType());
+        assertEquals(MessageStatus.STREAMING, reply.getStatus());
+        verify(messageRepository).updateReply(reply.getId(), "Hi there", MessageStatus.COMPLETE);
+        verify(chatSessionRepository).touch(eq(testSessionId), any());
+    }
+
+    @Test
+    void processTextMessage_ShouldKeepPartialReplyAsAborted_WhenCancelled() {
+        // Given
+        ChatMessageRequest request = new ChatMessageRequest(testSessionId, "Tell me a story", null);
+        List<MessageRow> saved = stubTextTurn();
+        Sinks.Many<StreamResponse> model = Sinks.many().unicast().onBackpressureBuffer();
+        when(modelService.processTextRequest(eq(textRoute), eq(testSessionId), any(), eq("prompt")))
+            .thenReturn(model.asFlux());
+
+        List<StreamResponse> responses = new ArrayList<>();
+        chatService.processTextMessage(request, testUserId).subscribe(responses::add);
+        UUID assistantId = saved.get(1).getId();
+        model.tryEmitNext(StreamResponse.streamChunk(testSessionId, assistantId, "Once upon"));
+
+        // When
+        boolean cancelled = chatService.cancelGeneration(assistantId, testUserId);
+
+        // Then
+        assertTrue(cancelled);
+        assertEquals("stream_aborted", responses.get(responses.size() - 1).getType());
+        verify(messageRepository).updateReply(assistantId, "Once upon", MessageStatus.ABORTED);
+        assertFalse(chatService.cancelGeneration(assistantId, testUserId));
+    }
+
+    @Test
+    void processTextMessage_ShouldSaveReplyAsAborted_WhenModelFails() {
+        // Given
+        ChatMessageRequest request = new ChatMessageRequest(testSessionId, "Hello", null);
+        List<MessageRow> saved = stubTextTurn();
+        when(modelService.processTextRequest(eq(textRoute), eq(testSessionId), any(), eq("prompt")))
+            .thenReturn(Flux.just(StreamResponse.streamChunk(testSessionId, UUID.randomUUID(), "Hi"))
+                .concatWith(Flux.error(new IllegalStateException("model down"))));
+
+        // When
+        assertThrows(ChatServiceException.class,
+            () -> chatService.processTextMessage(request, testUserId).blockLast());
+
+        // Then
+        UUID assistantId = saved.get(1).getId();
+        verify(messageRepository).updateReply(assistantId, "Hi", MessageStatus.ABORTED);
+        verify(messageRepository, never()).updateReply(any(), any(), eq(MessageStatus.COMPLETE));
+    }
+
+    @Test
+    void processMultimodalUploads_ShouldDeleteUserMessage_WhenFilesCannotBeStored() {
+        // Given
+        List<StagedUpload> uploads = List.of(mock(StagedUpload.class));
+        when(chatSessionRepository.findByIdAndUserId(testSessionId, testUserId)).thenReturn(Mono.just(testSession));
+        when(messageRepository.save(any(MessageRow.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(messageRepository.deleteById(any(UUID.class))).thenReturn(Mono.empty());
+        when(fileService.uploadFiles(eq(uploads), any(Message.class))).thenThrow(new FileStorageException("Disk full"));
+
+        // When & Then
+        assertThrows(ChatServiceException.class, () -> chatService
+            .processMultimodalUploads(testSessionId, "What is this?", uploads, null, testUserId)
+            .blockLast(Duration.ofSeconds(5)));
+        verify(messageRepository).deleteById(any(UUID.class));
+        verifyNoInteractions(imagePreprocessor);
+        verify(modelService, never()).processMultimodalRequest(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void processMultimodalUploads_ShouldFail_WhenNoFileGiven() {
+        // Given
+        when(chatSessionRepository.findByIdAndUserId(testSessionId, testUserId)).thenReturn(Mono.just(testSession));
+
+        // When & Then
+        ChatServiceException e = assertThrows(ChatServiceException.class, () -> chatService
+            .processMultimodalUploads(testSessionId, "What is this?", List.of(), null, testUserId)
+            .blockLast());
+        assertEquals("At least one attachment is required", e.getMessage());
+        verify(messageRepository, never()).save(any());
+        verifyNoInteractions(modelService);
+    }
+
+    @Test
+    void processMultimodalMessage_ShouldFail_WhenNoAttachmentIdsGiven() {
+        // Given
+        when(chatSessionRepository.findByIdAndUserId(testSessionId, testUserId)).thenReturn(Mono.just(testSession));
+
+        // When & Then
+        assertThrows(ChatServiceException.class, () -> chatService
+            .processMultimodalMessage(testSessionId, "What is this?", List.of(), null, testUserId)
+            .blockLast());
+        verify(messageRepository, never()).save(any());
+    }
+
+    /**
+     * Stub a text turn up to the model call, collecting the rows saved for it
+     */
+    private List<MessageRow> stubTextTurn() {
+        List<MessageRow> saved = new ArrayList<>();
+        when(chatSessionRepository.findByIdAndUserId(testSessionId, testUserId)).thenReturn(Mono.just(testSession));
+        when(messageRepository.save(any(MessageRow.class))).thenAnswer(invocation -> {
+            MessageRow message = invocation.getArgument(0);
+            saved.add(message);
+            return Mono.just(message);
+        });
+        when(messageRepository.findTop10BySessionIdOrderByCreatedAtDesc(testSessionId)).thenReturn(Flux.empty());
+        when(modelService.selectRoute(eq(false), any(), anyInt())).thenReturn(textRoute);
+        when(modelService.createEnhancedPrompt(eq(textRoute), eq(testSessionId), any(), any())).thenReturn("prompt");
+        when(messageRepository.updateReply(any(), any(), any())).thenReturn(Mono.just(1));
+        when(chatSessionRepository.touch(any(), any())).thenReturn(Mono.just(1));
+        return saved;
+    }
+}
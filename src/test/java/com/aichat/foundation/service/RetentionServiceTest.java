@@ -0,0 +1,184 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.entity.ChatSession;
+import com.aichat.foundation.entity.FileAttachment;
+import com.aichat.foundation.entity.MaintenanceCheckpoint;
+import com.aichat.foundation.entity.SessionStatus;
+import com.aichat.foundation.repository.ChatSessionRepository;
+import com.aichat.foundation.repository.FileAttachmentRepository;
+import com.aichat.foundation.repository.MaintenanceCheckpointRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionServiceTest {
+
+    @Mock
+    private ChatSessionRepository chatSessionRepository;
+
+    @Mock
+    private FileAttachmentRepository fileAttachmentRepository;
+
+    @Mock
+    private MaintenanceCheckpointRepository checkpointRepository;
+
+    @Mock
+    private ChatService chatService;
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RetentionService retentionService;
+
+    private final LocalDateTime lastUpdated = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+
+    @BeforeEach
+    void setUp() {
+        retentionService = new RetentionService(chatSessionRepository, fileAttachmentRepository,
+            checkpointRepository, chatService, fileService, transactionManager);
+        ReflectionTestUtils.setField(retentionService, "enabled", true);
+        ReflectionTestUtils.setField(retentionService, "batchSize", 2);
+        ReflectionTestUtils.setField(retentionService, "maxRowsPerSecond", 1000);
+        ReflectionTestUtils.setField(retentionService, "sessionInactiveAfter", Duration.ofDays(90));
+        ReflectionTestUtils.setField(retentionService, "sessionAction", "delete");
+        ReflectionTestUtils.setField(retentionService, "fileMaxAge", Duration.ofDays(365));
+    }
+
+    @Test
+    void expireSessionBatch_ShouldDeleteFullPage_AndRecordPosition() {
+        // Given
+        ChatSession first = session(lastUpdated.minusDays(1));
+        ChatSession second = session(lastUpdated);
+        when(checkpointRepository.findById(RetentionService.SESSIONS_CHECKPOINT)).thenReturn(Optional.empty());
+        when(chatSessionRepository.findInactiveSessions(any(), eq(EnumSet.allOf(SessionStatus.class)),
+                eq(LocalDateTime.of(1970, 1, 1, 0, 0)), eq(new UUID(0L, 0L)), any()))
+            .thenReturn(List.of(first, second));
+
+        // When
+        int processed = retentionService.expireSessionBatch();
+
+        // Then
+        assertEquals(2, processed);
+        verify(chatService).deleteSession(first.getId(), "user");
+        verify(chatService).deleteSession(second.getId(), "user");
+        MaintenanceCheckpoint saved = savedCheckpoint();
+        assertEquals(lastUpdated + "|" + second.getId(), saved.getPosition());
+        assertFalse(saved.isCompleted());
+    }
+
+    @Test
+    void expireSessionBatch_ShouldResumeFromRecordedPosition() {
+        // Given
+        UUID lastId = UUID.randomUUID();
+        MaintenanceCheckpoint checkpoint = new MaintenanceCheckpoint(RetentionService.SESSIONS_CHECKPOINT);
+        checkpoint.setPosition(lastUpdated + "|" + lastId);
+        when(checkpointRepository.findById(RetentionService.SESSIONS_CHECKPOINT)).thenReturn(Optional.of(checkpoint));
+        when(chatSessionRepository.findInactiveSessions(any(), any(), eq(lastUpdated), eq(lastId), any()))
+            .thenReturn(List.of(session(lastUpdated.plusSeconds(1))));
+
+        // When
+        int processed = retentionService.expireSessionBatch();
+
+        // Then: a short page ends the pass
+        assertEquals(1, processed);
+        MaintenanceCheckpoint saved = savedCheckpoint();
+        assertNull(saved.getPosition());
+        assertTrue(saved.isCompleted());
+    }
+
+    @Test
+    void expireSessionBatch_ShouldArchiveActiveSessions_WhenConfigured() {
+        // Given
+        ReflectionTestUtils.setField(retentionService, "sessionAction", "archive");
+        ChatSession inactive = session(lastUpdated);
+        when(checkpointRepository.findById(RetentionService.SESSIONS_CHECKPOINT)).thenReturn(Optional.empty());
+        when(chatSessionRepository.findInactiveSessions(any(), eq(EnumSet.of(SessionStatus.ACTIVE)), any(), any(), any()))
+            .thenReturn(List.of(inactive));
+
+        // When
+        retentionService.expireSessionBatch();
+
+        // Then
+        verify(chatSessionRepository).updateStatus(List.of(inactive.getId()), SessionStatus.ARCHIVED);
+        verifyNoInteractions(chatService);
+    }
+
+    @Test
+    void expireFileBatch_ShouldDeleteOldAttachments() {
+        // Given
+        FileAttachment old = new FileAttachment("a.jpg", "image/jpeg", "blob:a", 1L, null);
+        old.setId(UUID.randomUUID());
+        when(checkpointRepository.findById(RetentionService.FILES_CHECKPOINT)).thenReturn(Optional.empty());
+        when(fileAttachmentRepository.findOldFiles(any(), any(), any(), any())).thenReturn(List.of(old));
+
+        // When
+        int processed = retentionService.expireFileBatch();
+
+        // Then
+        assertEquals(1, processed);
+        verify(fileService).deleteFile(old.getId());
+    }
+
+    @Test
+    void applyRetention_ShouldDoNothing_WhenDisabled() {
+        // Given
+        ReflectionTestUtils.setField(retentionService, "enabled", false);
+
+        // When
+        retentionService.applyRetention();
+
+        // Then
+        verifyNoInteractions(checkpointRepository, chatSessionRepository, fileAttachmentRepository);
+    }
+
+    @Test
+    void applyRetention_ShouldKeepGoing_UntilPageIsShort() {
+        // Given
+        when(checkpointRepository.findById(any())).thenReturn(Optional.empty());
+        when(chatSessionRepository.findInactiveSessions(any(), any(), any(), any(), any()))
+            .thenReturn(List.of(session(lastUpdated), session(lastUpdated)))
+            .thenReturn(List.of());
+        when(fileAttachmentRepository.findOldFiles(any(), any(), any(), any())).thenReturn(List.of());
+
+        // When
+        retentionService.applyRetention();
+
+        // Then
+        verify(chatSessionRepository, times(2)).findInactiveSessions(any(), any(), any(), any(), any());
+        verify(chatService, times(2)).deleteSession(any(), eq("user"));
+    }
+
+    private ChatSession session(LocalDateTime updatedAt) {
+        ChatSession session = new ChatSession("Old chat", "user");
+        session.setId(UUID.randomUUID());
+        session.setUpdatedAt(updatedAt);
+        return session;
+    }
+
+    private MaintenanceCheckpoint savedCheckpoint() {
+        ArgumentCaptor<MaintenanceCheckpoint> saved = ArgumentCaptor.forClass(MaintenanceCheckpoint.class);
+        verify(checkpointRepository).save(saved.capture());
+        return saved.getValue();
+    }
+}
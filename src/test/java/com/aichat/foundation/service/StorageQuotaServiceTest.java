@@ -0,0 +1,192 @@
+package com.aichat.foundation.service;
+
+import com.aichat.foundation.entity.MaintenanceCheckpoint;
+import com.aichat.foundation.exception.StorageQuotaExceededException;
+import com.aichat.foundation.repository.MaintenanceCheckpointRepository;
+import com.aichat.foundation.repository.StorageUsageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StorageQuotaServiceTest {
+
+    @Mock
+    private StorageUsageRepository storageUsageRepository;
+
+    @Mock
+    private MaintenanceCheckpointRepository checkpointRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private StorageQuotaService storageQuotaService;
+
+    private final UUID sessionId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        storageQuotaService = new StorageQuotaService(storageUsageRepository, checkpointRepository, transactionManager);
+        ReflectionTestUtils.setField(storageQuotaService, "userQuota", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(storageQuotaService, "sessionQuota", DataSize.ofKilobytes(512));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void checkQuota_ShouldReject_WhenUserWouldExceedQuota() {
+        // Given
+        when(storageUsageRepository.findBytes("user:user-1")).thenReturn(Optional.of(1_000_000L));
+
+        // When & Then
+        assertThrows(StorageQuotaExceededException.class,
+            () -> storageQuotaService.checkQuota("user-1", null, 100_000L));
+        assertDoesNotThrow(() -> storageQuotaService.checkQuota("user-1", null, 48_576L));
+    }
+
+    @Test
+    void checkQuota_ShouldReject_WhenSessionWouldExceedQuota() {
+        // Given
+        when(storageUsageRepository.findBytes("session:" + sessionId)).thenReturn(Optional.of(500_000L));
+
+        // When & Then: a claim checks only the session
+        assertThrows(StorageQuotaExceededException.class,
+            () -> storageQuotaService.checkQuota(null, sessionId, 100_000L));
+        verify(storageUsageRepository, never()).findBytes(startsWith("user:"));
+    }
+
+    @Test
+    void checkQuota_ShouldReadCounterOnce_AndServeLaterChecksFromMemory() {
+        // Given
+        when(storageUsageRepository.findBytes("user:user-1")).thenReturn(Optional.empty());
+
+        // When
+        storageQuotaService.checkQuota("user-1", null, 10L);
+        storageQuotaService.checkQuota("user-1", null, 10L);
+
+        // Then
+        verify(storageUsageRepository, times(1)).findBytes("user:user-1");
+    }
+
+    @Test
+    void recordAdded_ShouldCreateMissingCounters_AndUpdateMemoryOnlyAfterCommit() {
+        // Given
+        when(storageUsageRepository.findBytes("user:user-1")).thenReturn(Optional.of(100L));
+        assertEquals(100L, storageQuotaService.getUserUsage("user-1"));
+        when(storageUsageRepository.addBytesWithin("user:user-1", 50L, 1_048_576L)).thenReturn(1);
+        when(storageUsageRepository.addBytesWithin("session:" + sessionId, 50L, 524_288L)).thenReturn(0, 1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        storageQuotaService.recordAdded("user-1", sessionId, 50L);
+
+        // Then
+        verify(storageUsageRepository).insert("session:" + sessionId, 0L);
+        verify(storageUsageRepository, never()).insert(eq("user:user-1"), anyLong());
+        assertEquals(100L, storageQuotaService.getUserUsage("user-1"));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(150L, storageQuotaService.getUserUsage("user-1"));
+    }
+
+    @Test
+    void recordAdded_ShouldApplyDeltaAfterCommit_WhenCounterWasNotMirroredYet() {
+        // Given: nothing has read the user's usage yet
+        when(storageUsageRepository.findBytes("user:user-1")).thenReturn(Optional.of(100L));
+        when(storageUsageRepository.addBytesWithin("user:user-1", 50L, 1_048_576L)).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        storageQuotaService.recordAdded("user-1", null, 50L);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        // Then: the copy was loaded before the update, and the delta is not lost
+        assertEquals(150L, storageQuotaService.getUserUsage("user-1"));
+        verify(storageUsageRepository, times(1)).findBytes("user:user-1");
+    }
+
+    @Test
+    void recordAdded_ShouldReject_WhenConditionalUpdateFindsQuotaTaken() {
+        // Given: a concurrent upload committed after the early check passed
+        when(storageUsageRepository.addBytesWithin("user:user-1", 50L, 1_048_576L)).thenReturn(0);
+        when(storageUsageRepository.findBytes("user:user-1")).thenReturn(Optional.of(1_048_550L));
+
+        // When & Then
+        assertThrows(StorageQuotaExceededException.class,
+            () -> storageQuotaService.recordAdded("user-1", sessionId, 50L));
+        verify(storageUsageRepository, times(2)).addBytesWithin("user:user-1", 50L, 1_048_576L);
+        verify(storageUsageRepository, never()).insert(any(), anyLong());
+        verify(storageUsageRepository, never()).addBytesWithin(startsWith("session:"), anyLong(), anyLong());
+    }
+
+    @Test
+    void recordRemoved_ShouldNotBeLimitedByQuota() {
+        // Given
+        when(storageUsageRepository.addBytes(any(), anyLong())).thenReturn(1);
+
+        // When
+        storageQuotaService.recordRemoved("user-1", sessionId, 50L);
+
+        // Then
+        verify(storageUsageRepository).addBytes("user:user-1", -50L);
+        verify(storageUsageRepository).addBytes("session:" + sessionId, -50L);
+        verify(storageUsageRepository, never()).addBytesWithin(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    void recordSessionDeleted_ShouldMoveSessionBytesOffUser() {
+        // Given
+        when(storageUsageRepository.findBytes("session:" + sessionId)).thenReturn(Optional.of(300L));
+        when(storageUsageRepository.addBytes(any(), anyLong())).thenReturn(1);
+
+        // When
+        storageQuotaService.recordSessionDeleted("user-1", sessionId);
+
+        // Then
+        verify(storageUsageRepository).deleteByScopeKey("session:" + sessionId);
+        verify(storageUsageRepository).addBytes("user:user-1", -300L);
+    }
+
+    @Test
+    void afterSingletonsInstantiated_ShouldBackfillOnce() {
+        // Given
+        MaintenanceCheckpoint done = new MaintenanceCheckpoint(StorageQuotaService.BACKFILL_CHECKPOINT);
+        done.setCompletedAt(LocalDateTime.now());
+        when(checkpointRepository.findById(StorageQuotaService.BACKFILL_CHECKPOINT))
+            .thenReturn(Optional.empty())
+            .thenReturn(Optional.of(done));
+
+        // When
+        storageQuotaService.afterSingletonsInstantiated();
+        storageQuotaService.afterSingletonsInstantiated();
+
+        // Then
+        verify(storageUsageRepository, times(1)).backfillSessions();
+        verify(storageUsageRepository, times(1)).backfillUsers();
+        verify(checkpointRepository).save(any(MaintenanceCheckpoint.class));
+    }
+}
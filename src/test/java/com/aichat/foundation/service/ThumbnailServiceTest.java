@@ -0,0 +1,151 @@
+package com.aichat.foundation.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailServiceTest {
+
+    private ImagePreprocessor imagePreprocessor;
+
+    @TempDir
+    Path tempDir;
+
+    private Path cacheDir;
+
+    @BeforeEach
+    void setUp() {
+        cacheDir = tempDir.resolve("cache");
+        imagePreprocessor = new ImagePreprocessor(Runnable::run);
+        ReflectionTestUtils.setField(imagePreprocessor, "jpegQuality", 0.85f);
+        ReflectionTestUtils.setField(imagePreprocessor, "maxPixels", 40_000_000L);
+        ReflectionTestUtils.setField(imagePreprocessor, "cacheDir", cacheDir.toString());
+    }
+
+    @Test
+    void generateAsync_ShouldRenderEverySize() throws Exception {
+        // Given
+        ThumbnailService thumbnailService = thumbnailService(Runnable::run);
+        FileSystemResource original = png(1600, 1200);
+
+        // When
+        thumbnailService.generateAsync("hash-all", original).get();
+
+        // Then
+        assertEquals(640, width(cacheDir.resolve("hash-all-thumb640.jpg")));
+        assertEquals(320, width(cacheDir.resolve("hash-all-thumb320.jpg")));
+        assertEquals(128, width(cacheDir.resolve("hash-all-thumb128.jpg")));
+    }
+
+    @Test
+    void generateAsync_ShouldSkipSizesLargerThanOriginal() throws Exception {
+        // Given
+        ThumbnailService thumbnailService = thumbnailService(Runnable::run);
+        FileSystemResource original = png(400, 200);
+
+        // When
+        thumbnailService.generateAsync("hash-mid", original).get();
+
+        // Then
+        assertFalse(Files.exists(cacheDir.resolve("hash-mid-thumb640.jpg")));
+        assertEquals(320, width(cacheDir.resolve("hash-mid-thumb320.jpg")));
+        assertEquals(128, width(cacheDir.resolve("hash-mid-thumb128.jpg")));
+    }
+
+    @Test
+    void generateAsync_ShouldShareRunningGeneration_ForSameImage() throws Exception {
+        // Given
+        List<Runnable> queued = new ArrayList<>();
+        ThumbnailService thumbnailService = thumbnailService(queued::add);
+        FileSystemResource original = png(1600, 1200);
+
+        // When
+        CompletableFuture<Void> first = thumbnailService.generateAsync("hash-shared", original);
+        CompletableFuture<Void> second = thumbnailService.generateAsync("hash-shared", original);
+
+        // Then
+        assertEquals(1, queued.size());
+        queued.get(0).run();
+        first.get();
+        second.get();
+        assertTrue(Files.exists(cacheDir.resolve("hash-shared-thumb128.jpg")));
+    }
+
+    @Test
+    void getThumbnail_ShouldGenerateOnMiss_WhenPoolIsBusy() throws IOException {
+        // Given
+        ThumbnailService thumbnailService = thumbnailService(task -> {
+            throw new RejectedExecutionException("busy");
+        });
+        FileSystemResource original = png(1600, 1200);
+
+        // When
+        Optional<Path> result = thumbnailService.getThumbnail("hash-lazy", original, ThumbnailSize.MEDIUM);
+
+        // Then
+        assertTrue(result.isPresent());
+        assertEquals(320, width(result.get()));
+        assertFalse(Files.exists(cacheDir.resolve("hash-lazy-thumb128.jpg")));
+    }
+
+    @Test
+    void getThumbnail_ShouldReturnEmpty_WhenOriginalIsSmaller() throws IOException {
+        // Given
+        ThumbnailService thumbnailService = thumbnailService(Runnable::run);
+        FileSystemResource original = png(100, 50);
+
+        // When
+        Optional<Path> result = thumbnailService.getThumbnail("hash-tiny", original, ThumbnailSize.SMALL);
+
+        // Then
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void evict_ShouldRemoveDerivedImages() throws Exception {
+        // Given
+        ThumbnailService thumbnailService = thumbnailService(Runnable::run);
+        thumbnailService.generateAsync("hash-gone", png(1600, 1200)).get();
+
+        // When
+        thumbnailService.evict("hash-gone");
+
+        // Then
+        try (var files = Files.list(cacheDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private ThumbnailService thumbnailService(Executor executor) {
+        ThumbnailService thumbnailService = new ThumbnailService(imagePreprocessor, executor);
+        ReflectionTestUtils.setField(thumbnailService, "enabled", true);
+        return thumbnailService;
+    }
+
+    private FileSystemResource png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Path file = tempDir.resolve(width + "x" + height + ".png");
+        ImageIO.write(image, "png", file.toFile());
+        return new FileSystemResource(file);
+    }
+
+    private int width(Path image) throws IOException {
+        return ImageIO.read(image.toFile()).getWidth();
+    }
+}
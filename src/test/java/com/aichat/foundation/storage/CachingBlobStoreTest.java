@@ -0,0 +1,115 @@
+package com.aichat.foundation.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingBlobStoreTest {
+
+    @Mock
+    private BlobStore delegate;
+
+    @TempDir
+    Path tempDir;
+
+    private CachingBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new CachingBlobStore(delegate, 10, 6);
+    }
+
+    @Test
+    void get_ShouldServeRepeatedReadsFromMemory() throws IOException {
+        // Given
+        when(delegate.get("a")).thenReturn("abc".getBytes());
+
+        // When
+        blobStore.get("a");
+        byte[] second = blobStore.get("a");
+
+        // Then
+        assertArrayEquals("abc".getBytes(), second);
+        verify(delegate, times(1)).get("a");
+        assertEquals(3, blobStore.cachedBytes());
+    }
+
+    @Test
+    void put_ShouldCacheSmallUploads() throws IOException {
+        // Given
+        Path staged = tempDir.resolve("staged");
+        Files.writeString(staged, "abc");
+
+        // When
+        blobStore.put("a", staged);
+        byte[] slice;
+        try (InputStream in = blobStore.range("a", 1, 5)) {
+            slice = in.readAllBytes();
+        }
+
+        // Then
+        verify(delegate).put("a", staged);
+        assertArrayEquals("bc".getBytes(), slice);
+        verify(delegate, never()).range(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    void get_ShouldNotCacheBlobsAboveEntryLimit() throws IOException {
+        // Given
+        when(delegate.get("big")).thenReturn("1234567".getBytes());
+
+        // When
+        blobStore.get("big");
+        blobStore.get("big");
+
+        // Then
+        verify(delegate, times(2)).get("big");
+        assertEquals(0, blobStore.cachedBytes());
+    }
+
+    @Test
+    void get_ShouldEvictLeastRecentlyUsed_WhenFull() throws IOException {
+        // Given
+        when(delegate.get("a")).thenReturn("aaaa".getBytes());
+        when(delegate.get("b")).thenReturn("bbbb".getBytes());
+        when(delegate.get("c")).thenReturn("cccc".getBytes());
+        blobStore.get("a");
+        blobStore.get("b");
+        blobStore.get("a");
+
+        // When
+        blobStore.get("c");
+        blobStore.get("a");
+        blobStore.get("b");
+
+        // Then
+        verify(delegate, times(1)).get("a");
+        verify(delegate, times(2)).get("b");
+    }
+
+    @Test
+    void delete_ShouldInvalidateCachedBlob() throws IOException {
+        // Given
+        when(delegate.get("a")).thenReturn("abc".getBytes());
+        blobStore.get("a");
+
+        // When
+        blobStore.delete("a");
+
+        // Then
+        verify(delegate).delete("a");
+        assertEquals(0, blobStore.cachedBytes());
+    }
+}
@@ -0,0 +1,93 @@
+package com.aichat.foundation.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalBlobStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path root;
+    private LocalBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        root = tempDir.resolve("blobs");
+        blobStore = new LocalBlobStore(root);
+    }
+
+    @Test
+    void put_ShouldMoveStagedFileUnderKey() throws IOException {
+        // Given
+        Path staged = stage("hello world");
+
+        // When
+        blobStore.put("ab/cd/abcd.txt", staged);
+
+        // Then
+        assertFalse(Files.exists(staged));
+        assertEquals("hello world", Files.readString(root.resolve("ab/cd/abcd.txt")));
+        assertTrue(blobStore.exists("ab/cd/abcd.txt"));
+        assertEquals(11, blobStore.size("ab/cd/abcd.txt"));
+    }
+
+    @Test
+    void range_ShouldReturnOnlyRequestedBytes() throws IOException {
+        // Given
+        blobStore.put("ab/cd/abcd.txt", stage("hello world"));
+
+        // When
+        String slice;
+        try (InputStream in = blobStore.range("ab/cd/abcd.txt", 6, 3)) {
+            slice = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        // Then
+        assertEquals("wor", slice);
+    }
+
+    @Test
+    void get_ShouldThrowNoSuchFile_WhenKeyIsMissing() {
+        // When & Then
+        assertThrows(NoSuchFileException.class, () -> blobStore.get("ab/cd/missing.txt"));
+        assertFalse(blobStore.exists("ab/cd/missing.txt"));
+    }
+
+    @Test
+    void delete_ShouldRemoveBlob() throws IOException {
+        // Given
+        blobStore.put("ab/cd/abcd.txt", stage("hello"));
+
+        // When
+        blobStore.delete("ab/cd/abcd.txt");
+
+        // Then
+        assertFalse(blobStore.exists("ab/cd/abcd.txt"));
+    }
+
+    @Test
+    void put_ShouldRejectKeyOutsideRoot() throws IOException {
+        // Given
+        Path staged = stage("hello");
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> blobStore.put("../escape.txt", staged));
+    }
+
+    private Path stage(String content) throws IOException {
+        Path staged = Files.createTempFile(tempDir, "staged", ".tmp");
+        Files.writeString(staged, content);
+        return staged;
+    }
+}
@@ -0,0 +1,109 @@
+package com.aichat.foundation.storage;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+class S3BlobStoreTest {
+
+    private static final String BUCKET = "attachments";
+
+    @Container
+    static final MinIOContainer minio = new MinIOContainer("minio/minio:RELEASE.2024-01-16T16-07-38Z");
+
+    private static S3BlobStore blobStore;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void setUp() {
+        S3Client client = S3Client.builder()
+            .endpointOverride(URI.create(minio.getS3URL()))
+            .region(Region.US_EAST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(
+                AwsBasicCredentials.create(minio.getUserName(), minio.getPassword())))
+            .forcePathStyle(true)
+            .build();
+        client.createBucket(b -> b.bucket(BUCKET));
+        blobStore = new S3BlobStore(client, BUCKET, "test");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        blobStore.close();
+    }
+
+    @Test
+    void put_ShouldStoreObjectReadableByKey() throws IOException {
+        // Given
+        Path staged = stage("hello world");
+
+        // When
+        blobStore.put("ab/cd/abcd.txt", staged);
+
+        // Then
+        assertTrue(blobStore.exists("ab/cd/abcd.txt"));
+        assertEquals(11, blobStore.size("ab/cd/abcd.txt"));
+        assertEquals("hello world", new String(blobStore.get("ab/cd/abcd.txt"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void range_ShouldFetchOnlyRequestedBytes() throws IOException {
+        // Given
+        blobStore.put("ab/cd/range.txt", stage("hello world"));
+
+        // When
+        String slice;
+        try (InputStream in = blobStore.range("ab/cd/range.txt", 6, 3)) {
+            slice = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        // Then
+        assertEquals("wor", slice);
+    }
+
+    @Test
+    void get_ShouldThrowNoSuchFile_WhenObjectIsMissing() {
+        // When & Then
+        assertThrows(NoSuchFileException.class, () -> blobStore.get("ab/cd/missing.txt"));
+        assertFalse(blobStore.exists("ab/cd/missing.txt"));
+    }
+
+    @Test
+    void delete_ShouldRemoveObject() throws IOException {
+        // Given
+        blobStore.put("ab/cd/gone.txt", stage("bye"));
+
+        // When
+        blobStore.delete("ab/cd/gone.txt");
+
+        // Then
+        assertFalse(blobStore.exists("ab/cd/gone.txt"));
+    }
+
+    private Path stage(String content) throws IOException {
+        Path staged = Files.createTempFile(tempDir, "staged", ".tmp");
+        Files.writeString(staged, content);
+        return staged;
+    }
+}